@@ -0,0 +1,212 @@
+"""
+Exporta o modelo híbrido em um arquivo binário que o backend Java mapeia em
+memória (util.FactorModel) para pontuar candidatos sem chamar esta API.
+
+Formato (little-endian, todos os blocos alinhados em 4 bytes):
+
+    cabeçalho (32 bytes)
+        magic            4s   b"FLXM"
+        format_version   i32  1
+        n_users          i32
+        n_items          i32
+        factor_dim       i32  componentes do SVD colaborativo (k)
+        content_dim      i32  termos TF-IDF + gêneros (d)
+        created_at_ms    i64  versão do modelo
+    user_ids             i32[n_users]          ordenados
+    user_content_weight  f32[n_users]
+    user_collab_weight   f32[n_users]
+    item_ids             i32[n_items]          ordenados
+    item_bias            f32[n_items]          bônus de popularidade e rating
+    user_factors         f32[n_users * k]
+    user_content         f32[n_users * d]
+    item_factors         f32[n_items * k]
+    item_content         f32[n_items * d]
+
+Score de (u, i), igual ao de HybridRecommender.get_hybrid_recommendations:
+
+    content = clamp(dot(user_content[u], item_content[i]) + item_bias[i], 0, 1)
+    collab  = dot(user_factors[u], item_factors[i])
+    score   = content * user_content_weight[u] + collab * user_collab_weight[u]
+
+O perfil de conteúdo do usuário reúne os termos lineares do score de
+conteúdo: gêneros preferidos (0.4 / n), pesos de gêneros dos filmes curtidos
+(0.3), similaridade média com os 5 primeiros curtidos (0.2) e com os 3
+primeiros não curtidos (-0.1). As linhas do TF-IDF já têm norma L2, então a
+similaridade de cosseno é o produto escalar. Diferença conhecida: aqui a
+média inclui similaridades zero.
+"""
+import logging
+import os
+import struct
+import time
+
+import numpy as np
+
+logger = logging.getLogger(__name__)
+
+MAGIC = b"FLXM"
+FORMAT_VERSION = 1
+HEADER = struct.Struct("<4siiiiiq")
+
+
+def _split_genres(value):
+    if not isinstance(value, str):
+        return []
+    return [g.strip() for g in value.split("|") if g.strip()]
+
+
+def _item_vectors(model, genre_index):
+    """Conteúdo (TF-IDF denso + gêneros one-hot) e bônus de cada filme"""
+    movies = model.movies_df
+    n_terms = model.content_matrix.shape[1] if model.content_matrix is not None else 0
+    content = np.zeros((len(movies), n_terms + len(genre_index)), dtype=np.float32)
+    if n_terms:
+        content[:, :n_terms] = model.content_matrix.toarray()
+
+    bias = np.zeros(len(movies), dtype=np.float32)
+    for row, movie in enumerate(movies.itertuples(index=False)):
+        for genre in set(_split_genres(getattr(movie, "genres", ""))):
+            content[row, n_terms + genre_index[genre]] = 1.0
+        popularity = float(getattr(movie, "popularity", 0) or 0)
+        rating = float(getattr(movie, "rating", 0) or 0)
+        if popularity > 0:
+            bias[row] += min(popularity / 1000, 0.1)
+        if rating > 0:
+            bias[row] += min(rating / 10, 0.1)
+    return content, bias, n_terms
+
+
+def _profiles(model):
+    """
+    Perfis de todos os usuários (os campos de create_user_profile usados aqui)
+    em uma passada por ratings_df e user_genres_df, em vez de filtrar os dois
+    DataFrames uma vez por usuário
+    """
+    profiles = {}
+
+    movie_genres = {}
+    for movie in model.movies_df.itertuples(index=False):
+        movie_genres.setdefault(int(movie.id), _split_genres(getattr(movie, "genres", "")))
+
+    if model.ratings_df is not None and len(model.ratings_df) > 0:
+        for user_id, ratings in model.ratings_df.groupby("user_id", sort=False):
+            liked = [int(m) for m in ratings.loc[ratings["rating"] == 1, "movie_id"]]
+            disliked = [int(m) for m in ratings.loc[ratings["rating"] == 0, "movie_id"]]
+            genre_counts = {}
+            for movie_id in set(liked):
+                for genre in movie_genres.get(movie_id, []):
+                    genre_counts[genre] = genre_counts.get(genre, 0) + 1
+            profiles[int(user_id)] = {
+                "preferred_genres": [],
+                "liked_movies": liked,
+                "disliked_movies": disliked,
+                "genre_weights": {g: c / len(liked) for g, c in genre_counts.items()} if liked else {},
+            }
+
+    if model.user_genres_df is not None and len(model.user_genres_df) > 0:
+        first = model.user_genres_df.drop_duplicates("user_id", keep="first")
+        for row in first.itertuples(index=False):
+            genres_str = row.preferred_genres
+            profile = profiles.setdefault(int(row.user_id), {
+                "preferred_genres": [], "liked_movies": [], "disliked_movies": [], "genre_weights": {}})
+            if isinstance(genres_str, str) and genres_str.strip():
+                profile["preferred_genres"] = genres_str.split("|")
+
+    return profiles
+
+
+def _user_profile(profile, item_row, item_content, n_terms, genre_index):
+    """Perfil de conteúdo e pesos do híbrido de um usuário"""
+    vector = np.zeros(item_content.shape[1], dtype=np.float32)
+
+    preferred = profile.get("preferred_genres") or []
+    for genre in set(preferred):
+        if genre in genre_index:
+            vector[n_terms + genre_index[genre]] += 0.4 / len(set(preferred))
+    for genre, weight in (profile.get("genre_weights") or {}).items():
+        if genre in genre_index:
+            vector[n_terms + genre_index[genre]] += 0.3 * weight
+
+    if n_terms:
+        liked = [item_row[m] for m in profile.get("liked_movies", [])[:5] if m in item_row]
+        disliked = [item_row[m] for m in profile.get("disliked_movies", [])[:3] if m in item_row]
+        if liked:
+            vector[:n_terms] += 0.2 * item_content[liked, :n_terms].mean(axis=0)
+        if disliked:
+            vector[:n_terms] -= 0.1 * item_content[disliked, :n_terms].mean(axis=0)
+
+    interactions = len(profile.get("liked_movies", [])) + len(profile.get("disliked_movies", []))
+    weights = (0.8, 0.2) if interactions < 5 else (0.4, 0.6)
+    return vector, weights
+
+
+def export_factors(model, path):
+    """
+    Grava o modelo em `path` (arquivo temporário + rename, para o backend
+    nunca ler um arquivo pela metade). Retorna False se não houver filmes.
+    """
+    if model is None or model.movies_df is None or len(model.movies_df) == 0:
+        logger.warning("⚠️ Sem filmes: fatores não exportados")
+        return False
+
+    # As linhas de content_matrix seguem a ordem de movies_df
+    movies = model.movies_df.reset_index(drop=True)
+    genres = sorted({g for value in movies["genres"] for g in _split_genres(value)})
+    genre_index = {genre: i for i, genre in enumerate(genres)}
+    item_content, item_bias, n_terms = _item_vectors(model, genre_index)
+
+    item_ids = movies["id"].astype(np.int32).to_numpy()
+    order = np.argsort(item_ids, kind="stable")
+    item_ids, item_content, item_bias = item_ids[order], item_content[order], item_bias[order]
+    item_row = {int(movie_id): row for row, movie_id in enumerate(item_ids)}
+
+    has_collab = model.collaborative_model is not None and hasattr(model, "user_factors")
+    k = int(model.item_factors.shape[1]) if has_collab else 0
+    item_factors = np.zeros((len(item_ids), k), dtype=np.float32)
+    collab_user_row = {}
+    if has_collab:
+        for col, movie_id in enumerate(model.movie_ids):
+            row = item_row.get(int(movie_id))
+            if row is not None:
+                item_factors[row] = model.item_factors[col]
+        collab_user_row = {int(u): row for row, u in enumerate(model.user_ids)}
+
+    user_ids = set(collab_user_row)
+    if model.ratings_df is not None and len(model.ratings_df) > 0:
+        user_ids.update(int(u) for u in model.ratings_df["user_id"].unique())
+    if model.user_genres_df is not None and len(model.user_genres_df) > 0:
+        user_ids.update(int(u) for u in model.user_genres_df["user_id"].unique())
+    user_ids = np.array(sorted(user_ids), dtype=np.int32)
+
+    profiles = _profiles(model)
+    empty = {"preferred_genres": [], "liked_movies": [], "disliked_movies": [], "genre_weights": {}}
+
+    d = item_content.shape[1]
+    user_factors = np.zeros((len(user_ids), k), dtype=np.float32)
+    user_content = np.zeros((len(user_ids), d), dtype=np.float32)
+    content_weight = np.zeros(len(user_ids), dtype=np.float32)
+    collab_weight = np.zeros(len(user_ids), dtype=np.float32)
+    for row, user_id in enumerate(user_ids):
+        vector, (w_content, w_collab) = _user_profile(
+            profiles.get(int(user_id), empty), item_row, item_content, n_terms, genre_index)
+        user_content[row] = vector
+        content_weight[row] = w_content
+        collab_weight[row] = w_collab
+        if int(user_id) in collab_user_row:
+            user_factors[row] = model.user_factors[collab_user_row[int(user_id)]]
+
+    tmp_path = f"{path}.tmp"
+    with open(tmp_path, "wb") as f:
+        f.write(HEADER.pack(MAGIC, FORMAT_VERSION, len(user_ids), len(item_ids), k, d,
+                            int(time.time() * 1000)))
+        for block, dtype in (
+            (user_ids, "<i4"), (content_weight, "<f4"), (collab_weight, "<f4"),
+            (item_ids, "<i4"), (item_bias, "<f4"),
+            (user_factors, "<f4"), (user_content, "<f4"),
+            (item_factors, "<f4"), (item_content, "<f4"),
+        ):
+            f.write(np.ascontiguousarray(block, dtype=dtype).tobytes())
+    os.replace(tmp_path, path)
+
+    logger.info(f"📤 Fatores exportados: {len(user_ids)} usuários, {len(item_ids)} filmes, k={k}, d={d}")
+    return True
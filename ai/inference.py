@@ -10,7 +10,8 @@ from pydantic import BaseModel, Field
 from fastapi import Query
 
 # Import do sistema de recomendação COM REDIS
-from recommender import (auto_retrain_if_needed, debug_ratings_data, get_cache_stats, load_model, recommend, train)
+from recommender import (auto_retrain_if_needed, debug_ratings_data, export_model_factors, get_cache_stats, load_model,
+                         recommend, train)
 
 # Configuração de logging
 logging.basicConfig(level=logging.INFO)
@@ -71,6 +72,8 @@ async def lifespan(app: FastAPI):
         model = load_model()
         if model:
             logger.info("✅ Sistema de recomendação iniciado com sucesso")
+            # O backend pontua os candidatos com estes fatores, sem chamar /recommend
+            export_model_factors()
         else:
             logger.warning("⚠️ Sistema iniciado mas modelo pode estar limitado")
     except Exception as e:
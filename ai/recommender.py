@@ -54,6 +54,11 @@ logger = logging.getLogger(__name__)
 MODEL_DIR = os.getenv("MODEL_DIR", "./model_data")
 os.makedirs(MODEL_DIR, exist_ok=True)
 MODEL_PATH = f"{MODEL_DIR}/hybrid_model.pkl"
+# Fatores lidos pelo backend Java (pontuação sem chamar esta API)
+FACTORS_PATH = os.getenv("FACTORS_PATH", f"{MODEL_DIR}/factors.bin")
+
+# Intervalo mínimo entre as exportações feitas depois de um treino
+FACTORS_EXPORT_INTERVAL_S = float(os.getenv("FACTORS_EXPORT_INTERVAL_S", "10"))
 
 model_lock = threading.Lock()
 
@@ -899,6 +904,46 @@ def save_model():
             except:
                 pass
 
+def export_model_factors():
+    """Exporta os fatores do modelo atual para o backend; falhas não interrompem o treino"""
+    from export_factors import export_factors
+
+    with model_lock:
+        try:
+            return export_factors(recommender, FACTORS_PATH)
+        except Exception as e:
+            logger.error(f"❌ Erro ao exportar fatores: {e}")
+            return False
+
+# Exportação agendada depois dos treinos: cada /train só marca os fatores como
+# desatualizados; um timer exporta no máximo uma vez por intervalo
+_export_lock = threading.Lock()
+_export_dirty = False
+_export_timer = None
+
+def schedule_factors_export():
+    """Agenda uma exportação dos fatores, se ainda não houver uma agendada"""
+    global _export_dirty, _export_timer
+
+    with _export_lock:
+        _export_dirty = True
+        if _export_timer is None:
+            _export_timer = threading.Timer(FACTORS_EXPORT_INTERVAL_S, _run_scheduled_export)
+            _export_timer.daemon = True
+            _export_timer.start()
+
+def _run_scheduled_export():
+    """Exporta os fatores se algum treino os deixou desatualizados"""
+    global _export_dirty, _export_timer
+
+    with _export_lock:
+        dirty = _export_dirty
+        _export_dirty = False
+        _export_timer = None
+    # Treinos durante a exportação agendam a próxima
+    if dirty:
+        export_model_factors()
+
 def train(ratings_data):
     """API de treinamento com cache e tratamento robusto"""
     global recommender
@@ -938,6 +983,7 @@ def train(ratings_data):
         
         # Salvar modelo treinado
         save_model()
+        schedule_factors_export()
 
         return {
             "message": f"✅ Treinamento concluído com {len(formatted_ratings)} ratings válidos",
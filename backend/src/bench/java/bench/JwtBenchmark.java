@@ -0,0 +1,62 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.auth0.jwt.interfaces.DecodedJWT;
+
+import util.JWTUtil;
+
+/**
+ * Custo da autenticação de um token por requisição: verificação completa
+ * (HMAC, Base64 e JSON) contra um acerto no cache de tokens verificados
+ * (SHA-256 do token e consulta ao LRU).
+ *
+ * mvn -Pbench package && java -cp target/cinematch-0.0.1-SNAPSHOT.jar org.openjdk.jmh.Main JwtBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtBenchmark {
+
+    private JWTUtil jwt;
+    private String token;
+
+    @Setup
+    public void setup() {
+        jwt = new JWTUtil("benchmark-secret");
+        token = jwt.generateToken("bench@flixmate.dev", 42);
+        jwt.authenticate(token); // Deixa o token no cache
+    }
+
+    @Benchmark
+    public DecodedJWT verifyToken() {
+        return jwt.verifyToken(token);
+    }
+
+    @Benchmark
+    public JWTUtil.Claims authenticateCached() {
+        return jwt.authenticate(token);
+    }
+
+    // Várias requisições ao mesmo tempo disputando o LRU
+    @Benchmark
+    @Threads(4)
+    public JWTUtil.Claims authenticateCachedContended() {
+        return jwt.authenticate(token);
+    }
+}
@@ -1,5 +1,6 @@
 package app;
 
+import static spark.Spark.afterAfter;
 import static spark.Spark.before;
 import static spark.Spark.delete;
 import static spark.Spark.get;
@@ -9,27 +10,33 @@ import static spark.Spark.port;
 import static spark.Spark.post;
 import static spark.Spark.staticFiles;
 
+import java.nio.file.Paths;
 import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 
-import com.google.gson.Gson;
 import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 
+import dao.DAO;
 import dao.FavoriteDAO;
 import dao.FeedbackDAO;
 import dao.GenreDAO;
 import dao.MovieDAO;
 import dao.MovieGenreDAO;
+import dao.NPlusOneDetector;
+import dao.QueryStats;
 import dao.RecommendationDAO;
 import dao.UserDAO;
 import dao.UserGenreDAO;
@@ -40,19 +47,36 @@ import model.Genre;
 import model.Movie;
 import model.Recommendation;
 import model.User;
+import model.UserSummary;
 import model.WatchLater;
+import spark.embeddedserver.EmbeddedServers;
+import service.FactorTrainer;
 import service.FavoriteService;
 import service.FeedbackService;
+import service.GenreRanker;
 import service.GenreService;
+import service.MovieContentService;
 import service.MovieGenreService;
 import service.MovieService;
 import service.RecommendationService;
+import service.SimilarMovieService;
 import service.UserGenreService;
 import service.UserService;
 import service.WatchLaterService;
+import spark.Service;
+import util.CircuitBreaker;
 import util.FlixAi;
 import util.JWTUtil;
+import util.JfrEvents;
+import util.LocalScorer;
+import util.MatrixFactorization;
+import util.Json;
+import util.Log;
+import util.Metrics;
+import util.PasswordUtil;
+import util.ServerTiming;
 import util.TMDBUtil;
+import util.Tracing;
 
 public class Application {
 
@@ -82,7 +106,60 @@ public class Application {
             }
         }
 
-        System.out.println("All required environment variables are set.");
+        Log.info("All required environment variables are set.");
+    }
+
+    /**
+     * Monta a lista de filmes de um ranking (pares [id, score]), no mesmo
+     * formato da lista de favoritos, com o score de cada filme. Filmes e
+     * gêneros vêm em uma consulta cada, qualquer que seja o tamanho do ranking.
+     * 
+     * @param ranking           Pares [id, score]
+     * @param movieService      Serviço de filmes
+     * @param movieGenreService Serviço de gêneros dos filmes
+     * @param genreService      Serviço de gêneros (nomes)
+     * @return Os filmes encontrados, na ordem do ranking
+     */
+    private static List<Map<String, Object>> scoredMovies(JsonArray ranking, MovieService movieService,
+            MovieGenreService movieGenreService, GenreService genreService) {
+        List<Integer> ids = new ArrayList<>();
+        for (JsonElement element : ranking) {
+            ids.add(element.getAsJsonArray().get(0).getAsInt());
+        }
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Integer, Movie> movies = movieService.getMoviesByIds(ids);
+        Map<Integer, List<Integer>> genreIds = movieGenreService.getGenreIdsByMovieIds(movies.keySet());
+        Map<Integer, String> genreNames = new HashMap<>();
+        for (Genre genre : genreService.getAllGenres()) {
+            genreNames.put(genre.getId(), genre.getName());
+        }
+
+        List<Map<String, Object>> moviesData = new ArrayList<>();
+        for (JsonElement element : ranking) {
+            JsonArray pair = element.getAsJsonArray();
+            Movie movie = movies.get(pair.get(0).getAsInt());
+            if (movie != null) {
+                List<String> genres = new ArrayList<>();
+                for (Integer genreId : genreIds.getOrDefault(movie.getId(), List.of())) {
+                    String name = genreNames.get(genreId);
+                    if (name != null) {
+                        genres.add(name);
+                    }
+                }
+                // HashMap: pôster, título e data podem ser NULL no banco (Map.of não aceita null)
+                Map<String, Object> movieData = new HashMap<>();
+                movieData.put("id", movie.getId());
+                movieData.put("title", movie.getTitle());
+                movieData.put("poster_path", movie.getPosterPath());
+                movieData.put("release_date", movie.getReleaseDate());
+                movieData.put("genres", genres);
+                movieData.put("score", pair.get(1).getAsDouble());
+                moviesData.add(movieData);
+            }
+        }
+        return moviesData;
     }
 
     /**
@@ -101,6 +178,8 @@ public class Application {
 
         // Pegar todas as variáveis de ambiente respectivamente
         String env = System.getenv("ENV");
+        // Nível do log: DEBUG em desenvolvimento, INFO nos demais ambientes
+        Log.configure(System.getenv().getOrDefault("LOG_LEVEL", "dev".equals(env) ? "DEBUG" : "INFO"));
         // Pegar a porta do servidor
         int porta = Integer.parseInt(System.getenv("PORT"));
         // Envs de autenticação
@@ -112,9 +191,13 @@ public class Application {
         int dbPort = Integer.parseInt(System.getenv("DB_PORT"));
         String dbUser = System.getenv("DB_USER");
         String dbPassword = System.getenv("DB_PASSWORD");
+        // Statements preparados reaproveitados por conexão (0 desliga o cache)
+        DAO.configureStatements(
+                Integer.parseInt(System.getenv().getOrDefault("DB_STATEMENT_CACHE_SIZE", "4")),
+                Integer.parseInt(System.getenv().getOrDefault("DB_PREPARE_THRESHOLD", "1")));
 
         // Libs
-        Gson gson = new Gson();
+        Json gson = new Json();
 
         // DAOs
         FeedbackDAO feedbackDAO = new FeedbackDAO(dbHost, dbName, dbPort, dbUser, dbPassword);
@@ -128,20 +211,118 @@ public class Application {
         FavoriteDAO favoriteDAO = new FavoriteDAO(dbHost, dbName, dbPort, dbUser, dbPassword);
 
         TMDBUtil tmdb = new TMDBUtil(tmdbApiKey);
-        JWTUtil jwt = new JWTUtil(jwtSecret);
-        FlixAi flixAi = new FlixAi();
+        // Tokens verificados mantidos em cache (um por sessão ativa)
+        JWTUtil jwt = new JWTUtil(jwtSecret,
+                Integer.parseInt(System.getenv().getOrDefault("JWT_CACHE_SIZE", "10000")));
+        // IA: tempo limite por endpoint e circuit breaker (falhas seguidas que abrem o
+        // circuito e tempo aberto antes da chamada de teste)
+        FlixAi flixAi = new FlixAi(
+                Long.parseLong(System.getenv().getOrDefault("AI_CONNECT_TIMEOUT_MS", "2000")),
+                Long.parseLong(System.getenv().getOrDefault("AI_RECOMMEND_TIMEOUT_MS", "5000")),
+                Long.parseLong(System.getenv().getOrDefault("AI_FEED_TIMEOUT_MS", "5000")),
+                Long.parseLong(System.getenv().getOrDefault("AI_TRAIN_TIMEOUT_MS", "5000")),
+                new CircuitBreaker("ai",
+                        Integer.parseInt(System.getenv().getOrDefault("AI_CIRCUIT_FAILURES", "5")),
+                        Long.parseLong(System.getenv().getOrDefault("AI_CIRCUIT_OPEN_MS", "30000"))));
 
         // Services
         MovieGenreService movieGenreService = new MovieGenreService(movieGenreDAO);
         RecommendationService recommendationService = new RecommendationService(recommendationDAO, tmdb);
-        MovieService movieService = new MovieService(movieDAO, movieGenreService, tmdb);
+        MovieService movieService = new MovieService(movieDAO, movieGenreService, tmdb,
+                Integer.parseInt(System.getenv().getOrDefault("SEARCH_CACHE_SIZE", "1000")),
+                Long.parseLong(System.getenv().getOrDefault("SEARCH_CACHE_TTL_MS", "30000")));
         FeedbackService feedbackService = new FeedbackService(feedbackDAO, movieService);
         UserGenreService userGenreService = new UserGenreService(userGenreDAO);
-        UserService userService = new UserService(userDAO);
+        UserService userService = new UserService(userDAO, userGenreDAO,
+                Integer.parseInt(System.getenv().getOrDefault("USER_CACHE_SIZE", "5000")));
         GenreService genreService = new GenreService(genreDAO);
         WatchLaterService watchLaterService = new WatchLaterService(watchLaterDAO);
         FavoriteService favoriteService = new FavoriteService(favoriteDAO);
 
+        // Sem a IA, recomendação e feed saem do ranking local por gêneros preferidos
+        flixAi.setFallbackRanker(new GenreRanker(userGenreService, movieService, movieGenreService));
+
+        // Índice TF-IDF das sinopses: reconstruído a cada intervalo, filmes novos entram na hora
+        MovieContentService movieContentService = new MovieContentService(movieService);
+        movieService.setMovieStoredListener(movieContentService::onMovieStored);
+        movieContentService.start(
+                Long.parseLong(System.getenv().getOrDefault("CONTENT_INDEX_REBUILD_MS", "21600000")));
+
+        // Filmes parecidos: índice completo a cada intervalo longo, linhas afetadas por likes a cada
+        // intervalo curto
+        SimilarMovieService similarMovieService = new SimilarMovieService(feedbackService, favoriteService,
+                movieService, movieGenreService,
+                Integer.parseInt(System.getenv().getOrDefault("SIMILAR_NEIGHBORS", "20")),
+                Float.parseFloat(System.getenv().getOrDefault("SIMILAR_COLIKE_WEIGHT", "0.7")));
+        similarMovieService.start(
+                Long.parseLong(System.getenv().getOrDefault("SIMILAR_REBUILD_MS", "3600000")),
+                Long.parseLong(System.getenv().getOrDefault("SIMILAR_REFRESH_MS", "30000")));
+
+        // Fatores treinados aqui (ALS completo a cada intervalo, SGD a cada rating) ou
+        // modelo exportado pela IA: com um deles os candidatos são pontuados aqui, sem chamar a IA
+        String aiModelFile = System.getenv("AI_MODEL_FILE");
+        if (Boolean.parseBoolean(System.getenv().getOrDefault("TRAINER_ENABLED", "false"))) {
+            MatrixFactorization factorization = new MatrixFactorization(
+                    Integer.parseInt(System.getenv().getOrDefault("TRAINER_FACTORS", "32")),
+                    Integer.parseInt(System.getenv().getOrDefault("TRAINER_ITERATIONS", "10")),
+                    Float.parseFloat(System.getenv().getOrDefault("TRAINER_LAMBDA", "0.05")),
+                    Float.parseFloat(System.getenv().getOrDefault("TRAINER_LEARNING_RATE", "0.02")),
+                    Integer.parseInt(System.getenv().getOrDefault("TRAINER_THREADS",
+                            String.valueOf(Runtime.getRuntime().availableProcessors()))),
+                    42L);
+            FactorTrainer factorTrainer = new FactorTrainer(feedbackService, favoriteService, factorization,
+                    Float.parseFloat(System.getenv().getOrDefault("TRAINER_FAVORITE_WEIGHT", "2")));
+            factorTrainer.start(Long.parseLong(System.getenv().getOrDefault("TRAINER_RETRAIN_MS", "600000")));
+            flixAi.setLocalModel(factorTrainer);
+        } else if (aiModelFile != null && !aiModelFile.isBlank()) {
+            LocalScorer localScorer = new LocalScorer(Paths.get(aiModelFile));
+            localScorer.start(Long.parseLong(System.getenv().getOrDefault("AI_MODEL_RELOAD_MS", "10000")));
+            flixAi.setLocalModel(localScorer);
+        }
+
+        // Servidor embutido com compressão gzip das respostas e, opcionalmente,
+        // virtual threads (requer Java 21)
+        int compressionMinSize = Integer.parseInt(System.getenv().getOrDefault("COMPRESSION_MIN_SIZE", "1024"));
+        boolean virtualThreads = Boolean.parseBoolean(System.getenv().getOrDefault("VIRTUAL_THREADS", "false"));
+        EmbeddedServers.add(EmbeddedServers.Identifiers.JETTY,
+                new FlixServerFactory(compressionMinSize, virtualThreads));
+
+        // Tempo limite das rotas que dependem da IA e do TMDB
+        long feedTimeoutMillis = Long.parseLong(System.getenv().getOrDefault("FEED_TIMEOUT_MS", "8000"));
+        long recommendationTimeoutMillis = Long
+                .parseLong(System.getenv().getOrDefault("RECOMMENDATION_TIMEOUT_MS", "8000"));
+        long loginTimeoutMillis = Long.parseLong(System.getenv().getOrDefault("LOGIN_TIMEOUT_MS", "5000"));
+
+        // Pool das respostas das rotas assíncronas (fallbacks e continuações com JDBC)
+        AsyncRoutes.configureExecutor(Integer.parseInt(System.getenv().getOrDefault("ASYNC_ROUTE_THREADS",
+                String.valueOf(Runtime.getRuntime().availableProcessors() * 2))));
+
+        // Pool das verificações BCrypt do login (threads e tamanho da fila)
+        PasswordUtil.configureVerifier(
+                Integer.parseInt(System.getenv().getOrDefault("PASSWORD_VERIFY_THREADS",
+                        String.valueOf(Runtime.getRuntime().availableProcessors()))),
+                Integer.parseInt(System.getenv().getOrDefault("PASSWORD_VERIFY_QUEUE", "64")));
+
+        // Porta do servidor de administração (métricas e estatísticas de queries)
+        int adminPort = Integer.parseInt(System.getenv().getOrDefault("ADMIN_PORT", "9091"));
+
+        // Tracing: fração amostrada e destinos dos spans (arquivo e/ou coletor OTLP/HTTP)
+        Tracing.configure(
+                Double.parseDouble(System.getenv().getOrDefault("TRACE_SAMPLE_RATE", "0")),
+                System.getenv("TRACE_EXPORT_FILE"),
+                System.getenv("TRACE_OTLP_ENDPOINT"));
+
+        // Cabeçalho Server-Timing com o custo de cada requisição (DB, TMDB, IA, JSON)
+        ServerTiming.setEnabled(Boolean.parseBoolean(System.getenv().getOrDefault("SERVER_TIMING", "true")));
+
+        // Detector de consultas N+1 (off, log ou fail), ligado por padrão em dev
+        NPlusOneDetector.configure(
+                System.getenv().getOrDefault("NPLUSONE_MODE", "dev".equals(env) ? "log" : "off"),
+                Integer.parseInt(System.getenv().getOrDefault("NPLUSONE_THRESHOLD", "10")));
+
+        // Log de queries lentas (ms; negativo desliga)
+        QueryStats.configure(Long.parseLong(System.getenv().getOrDefault("SLOW_QUERY_MS", "200")));
+
         // Configurar a porta do servidor
         port(porta);
 
@@ -149,6 +330,23 @@ public class Application {
         staticFiles.location("/public");
         staticFiles.externalLocation("webjars");
 
+        // ==========================
+        // ======= MÉTRICAS =========
+        // ==========================
+
+        // Tempo e status de cada requisição, agrupados pelo template da rota
+        before((req, res) -> RouteMetrics.start(req));
+        afterAfter((req, res) -> RouteMetrics.finish(req, res));
+
+        // Span raiz das requisições amostradas (DAOs, TMDB e IA criam spans filhos)
+        before((req, res) -> RequestTracing.start(req));
+        afterAfter((req, res) -> RequestTracing.finish(req, res));
+
+        // Contagem de queries por requisição para o detector de N+1
+        before((req, res) -> NPlusOneDetector.begin(
+                () -> req.requestMethod() + " " + RouteMetrics.resolve(req.requestMethod(), req.pathInfo())));
+        afterAfter((req, res) -> NPlusOneDetector.end());
+
         // ==========================
         // ======= CORS =============
         // ==========================
@@ -193,6 +391,8 @@ public class Application {
             String origin = req.headers("Origin");
             if (origin != null && allowedOrigins.contains(origin)) {
                 res.header("Access-Control-Allow-Origin", origin);
+                // Permite que o front-end leia o Server-Timing nas ferramentas do navegador
+                res.header("Timing-Allow-Origin", origin);
             }
 
             res.header("Access-Control-Allow-Credentials", "true");
@@ -222,17 +422,13 @@ public class Application {
 
             try {
                 String token = authHeader.substring(7);
-                var decoded = jwt.verifyToken(token);
-
-                if (decoded == null) {
-                    halt(401, gson.toJson(Map.of("error", "Token inválido")));
-                }
+                JWTUtil.Claims claims = jwt.authenticate(token);
 
                 // Adicionar atributos úteis à requisição
-                req.attribute("userEmail", decoded.getSubject());
-                req.attribute("userId", decoded.getClaim("userId").asInt());
+                req.attribute("userEmail", claims.getEmail());
+                req.attribute("userId", claims.getUserId());
             } catch (Exception e) {
-                e.printStackTrace();
+                Log.warn("[🔑:🔴] TOKEN INVALID: [path: {}, motivo: {}]", req.pathInfo(), e.getMessage());
                 halt(403, gson.toJson(Map.of("error", "Token inválido")));
             }
         });
@@ -243,25 +439,33 @@ public class Application {
 
         post("/api/login", (req, res) -> {
             User user = gson.fromJson(req.body(), User.class);
-            if (userService.authenticateUser(user.getEmail(), user.getPassword())) {
-                // Buscar os dados completos do usuário
-                User fullUser = userService.getUserByEmail(user.getEmail());
-
-                // Gerar token JWT
-                String token = jwt.generateToken(user.getEmail(), fullUser.getId());
-
-                // Criar resposta com token e dados básicos do usuário (sem senha)
-                Map<String, Object> response = new HashMap<>();
-                response.put("token", token);
-                response.put("user", Map.of(
-                        "firstName", fullUser.getFirstName(),
-                        "lastName", fullUser.getLastName(),
-                        "email", fullUser.getEmail()));
+            // Uma consulta para os dados e o hash; o BCrypt roda no pool de senhas
+            CompletableFuture<AsyncRoutes.Reply> body = userService.login(user.getEmail(), user.getPassword())
+                    .thenApply(fullUser -> {
+                        if (fullUser == null) {
+                            return AsyncRoutes.Reply.of(401, gson.toJson(Map.of("error", "Credenciais inválidas")));
+                        }
 
-                return gson.toJson(response);
-            }
-            res.status(401);
-            return gson.toJson(Map.of("error", "Credenciais inválidas"));
+                        // Gerar token JWT
+                        String token = jwt.generateToken(fullUser.getEmail(), fullUser.getId());
+
+                        // Criar resposta com token e dados básicos do usuário (sem senha)
+                        Map<String, Object> response = new HashMap<>();
+                        response.put("token", token);
+                        response.put("user", Map.of(
+                                "firstName", fullUser.getFirstName(),
+                                "lastName", fullUser.getLastName(),
+                                "email", fullUser.getEmail()));
+
+                        return AsyncRoutes.Reply.ok(gson.toJson(response));
+                    });
+
+            // Fila do pool de senhas cheia ou tempo esgotado: pede para tentar de novo
+            return AsyncRoutes.suspend(req, res, body, loginTimeoutMillis, () -> {
+                res.status(503);
+                res.header("Retry-After", "1");
+                return gson.toJson(Map.of("error", "Servidor ocupado, tente novamente"));
+            });
         });
 
         post("/api/register", (req, res) -> {
@@ -283,11 +487,6 @@ public class Application {
                 return gson.toJson(Map.of("error", "Todos os campos são obrigatórios"));
             }
 
-            if (userService.getUserByEmail(user.getEmail()) != null) {
-                res.status(400);
-                return gson.toJson(Map.of("error", "Email já cadastrado"));
-            }
-
             // Extrair dados dos gêneros favoritos
             JsonArray favoriteGenresArray = requestBody.getAsJsonArray("favoriteGenres");
             List<Integer> favoriteGenres = new ArrayList<>();
@@ -301,30 +500,29 @@ public class Application {
                 return gson.toJson(Map.of("error", "Selecione pelo menos um gênero favorito"));
             }
 
-            // Inserir usuário no banco
-            if (userService.insertUser(user)) {
-                // Buscar o usuário recém-inserido para obter o ID
-                User fullUser = userService.getUserByEmail(user.getEmail());
-
-                // Inserir os gêneros favoritos
-                boolean allGenresInserted = true;
-                for (Integer genreId : favoriteGenres) {
-                    if (!userGenreService.addPreferredGenre(fullUser.getId(), genreId)) {
-                        allGenresInserted = false;
-                        System.err.println(
-                                "Erro ao inserir gênero favorito: " + genreId + " para o usuário: " + fullUser.getId());
-                    }
+            // Inserir usuário e gêneros favoritos em uma única transação (o INSERT já retorna o ID)
+            int savedGenres = userService.register(user, favoriteGenres);
+            if (savedGenres == -1) {
+                res.status(400);
+                return gson.toJson(Map.of("error", "Email já cadastrado"));
+            }
+
+            if (savedGenres >= 0) {
+                boolean allGenresInserted = savedGenres == new HashSet<>(favoriteGenres).size();
+                if (!allGenresInserted) {
+                    Log.warn("Gêneros favoritos inválidos ignorados para o usuário {}: {}", user.getId(),
+                            favoriteGenres);
                 }
 
                 // Gerar token JWT
-                String token = jwt.generateToken(fullUser.getEmail(), fullUser.getId());
+                String token = jwt.generateToken(user.getEmail(), user.getId());
 
                 // Criar resposta
                 Map<String, Object> userData = Map.of(
-                        "firstName", fullUser.getFirstName(),
-                        "lastName", fullUser.getLastName(),
-                        "email", fullUser.getEmail(),
-                        "gender", fullUser.getGender());
+                        "firstName", user.getFirstName(),
+                        "lastName", user.getLastName(),
+                        "email", user.getEmail(),
+                        "gender", user.getGender());
 
                 res.status(201);
 
@@ -356,11 +554,10 @@ public class Application {
 
             try {
                 String token = authHeader.substring(7);
-                var decoded = jwt.verifyToken(token);
-                int userId = decoded.getClaim("userId").asInt();
+                int userId = jwt.authenticate(token).getUserId();
 
-                // Buscar informações do usuário
-                User user = userService.getUserById(userId);
+                // Buscar informações do usuário (cache de resumos)
+                UserSummary user = userService.getUserSummary(userId);
                 if (user == null) {
                     res.status(401);
                     return gson.toJson(Map.of("valid", false, "error", "Usuário não encontrado"));
@@ -394,7 +591,7 @@ public class Application {
 
                 // Deletar a recomendação do banco de dados
                 boolean deleted = recommendationService.deleteRecommendation(userId, movieId);
-                System.out.println("Recomendação deletada: " + deleted);
+                Log.debug("Recomendação deletada: {}", deleted);
                 flixAi.train(userId, movieId, false);
                 if (deleted) {
                     return gson.toJson(Map.of("status", "ok", "message", "Recomendação deletada com sucesso"));
@@ -403,7 +600,7 @@ public class Application {
                     return gson.toJson(Map.of("error", "Erro ao deletar recomendação"));
                 }
             } catch (Exception e) {
-                e.printStackTrace();
+                Log.error("[🚨:🔴] ROUTE ERROR: [path: {}]", req.pathInfo(), e);
                 res.status(500);
                 return gson.toJson(Map.of("error", "Erro ao deletar recomendação"));
             }
@@ -437,7 +634,7 @@ public class Application {
                     }
 
                     List<Integer> movieGenresIds = movieGenreService.getGenreIdsForMovie(movieId);
-                    System.out.println("Gêneros do filme: " + movieGenresIds);
+                    Log.debug("Gêneros do filme: {}", movieGenresIds);
                     ArrayList<Genre> movieGenres = new ArrayList<>();
                     for (Integer genreId : movieGenresIds) {
                         Genre genre = genreService.getGenreById(genreId);
@@ -459,7 +656,7 @@ public class Application {
                     // Passar se o filme recomendado foi assistido ou favoritado
                     movieData.put("score", recommendation.getScore());
 
-                    System.out.println("Dados do filme: " + movieData);
+                    Log.debug("Dados do filme: {}", movieData);
                     moviesData.add(movieData);
                 }
 
@@ -468,7 +665,7 @@ public class Application {
                 res.status(400);
                 return gson.toJson(Map.of("error", "ID de usuário inválido"));
             } catch (Exception e) {
-                e.printStackTrace();
+                Log.error("[🚨:🔴] ROUTE ERROR: [path: {}]", req.pathInfo(), e);
                 res.status(500);
                 return gson.toJson(Map.of("error", "Erro ao receber recomendações"));
             }
@@ -479,6 +676,12 @@ public class Application {
             try {
                 int targetUserId = Integer.parseInt(req.params("userId"));
 
+                // Versão da lista em uma consulta; 304 se o cliente já tiver a atual
+                if (ConditionalGet.isFresh(req, res, "watchlist",
+                        targetUserId + "|" + watchLaterService.getWatchLaterVersion(targetUserId))) {
+                    return ConditionalGet.notModified(res);
+                }
+
                 ArrayList<Integer> movieIds = watchLaterService.getWatchLaterMovies(targetUserId);
                 List<Map<String, Object>> moviesData = new ArrayList<>();
 
@@ -503,7 +706,7 @@ public class Application {
                 res.status(400);
                 return gson.toJson(Map.of("error", "ID de usuário inválido"));
             } catch (Exception e) {
-                e.printStackTrace();
+                Log.error("[🚨:🔴] ROUTE ERROR: [path: {}]", req.pathInfo(), e);
                 res.status(500);
                 return gson.toJson(Map.of("error", "Erro ao buscar watchlist: " + e.getMessage()));
             }
@@ -514,6 +717,12 @@ public class Application {
             try {
                 int targetUserId = Integer.parseInt(req.params("userId"));
 
+                // Versão da lista em uma consulta; 304 se o cliente já tiver a atual
+                if (ConditionalGet.isFresh(req, res, "favorites",
+                        targetUserId + "|" + favoriteService.getFavoritesVersion(targetUserId))) {
+                    return ConditionalGet.notModified(res);
+                }
+
                 ArrayList<Integer> movieIds = favoriteService.getFavoriteMovies(targetUserId);
                 List<Map<String, Object>> moviesData = new ArrayList<>();
 
@@ -538,7 +747,7 @@ public class Application {
                 res.status(400);
                 return gson.toJson(Map.of("error", "ID de usuário inválido"));
             } catch (Exception e) {
-                e.printStackTrace();
+                Log.error("[🚨:🔴] ROUTE ERROR: [path: {}]", req.pathInfo(), e);
                 res.status(500);
                 return gson.toJson(Map.of("error", "Erro ao buscar favoritos: " + e.getMessage()));
             }
@@ -550,67 +759,94 @@ public class Application {
             JsonObject requestBody = gson.fromJson(req.body(), JsonObject.class);
             int page = requestBody.has("page") ? requestBody.get("page").getAsInt() : 1;
 
-            try {
-                List<Integer> candidatos = movieService.getAllMoviesIds();
-
-                if (candidatos.isEmpty()) {
-                    res.status(400);
-                    return gson.toJson(Map.of("error", "Não há filmes disponíveis para gerar o feed."));
-                }
-
-                final int NUM_CANDIDATOS = 500;
+            JfrEvents.CandidateGeneration candidateEvent = new JfrEvents.CandidateGeneration();
+            candidateEvent.begin();
 
-                Collections.shuffle(candidatos, new Random());
-                candidatos = candidatos.subList(0, Math.min(NUM_CANDIDATOS, candidatos.size()));
-
-                JsonObject aiResponse = flixAi.getFeed(userId, 20, candidatos);
-                JsonArray aiMoviesArray = aiResponse.getAsJsonArray("all_recommendations");
-
-                if (aiMoviesArray == null) {
-                    throw new RuntimeException("❌ Feed da IA retornou vazio ou inválido.");
-                }
-
-                List<Integer> aiMovieIds = new ArrayList<>();
-                aiMoviesArray.forEach(item -> {
-                    JsonArray pair = item.getAsJsonArray();
-                    int movieId = pair.get(0).getAsInt();
-                    aiMovieIds.add(movieId);
-                });
-
-                List<JsonObject> aiMoviesDetails = tmdb.getMoviesDetails(aiMovieIds);
-
-                System.out.println("[🎥] AI movies fetched: total = " + aiMoviesDetails.size());
-
-                JsonArray discoverMovies = tmdb.getPopularMovies(page);
-
-                System.out.println("[🎥] Discover movies fetched: total = " + discoverMovies.size());
-
-                Map<Integer, JsonObject> uniqueMoviesMap = new HashMap<>();
-
-                aiMoviesDetails.forEach(movie -> {
-                    int id = movie.get("id").getAsInt();
-                    uniqueMoviesMap.put(id, movie);
-                });
+            List<Integer> candidatos;
+            try {
+                candidatos = movieService.getAllMoviesIds();
+            } catch (Exception e) {
+                Log.error("[🚨:🔴] ROUTE ERROR: [path: {}]", req.pathInfo(), e);
+                res.status(500);
+                return gson.toJson(Map.of("error", "Erro ao buscar filmes: " + e.getMessage()));
+            }
 
-                discoverMovies.forEach(item -> {
-                    JsonObject movie = item.getAsJsonObject();
-                    int id = movie.get("id").getAsInt();
-                    uniqueMoviesMap.putIfAbsent(id, movie);
-                });
+            if (candidatos.isEmpty()) {
+                res.status(400);
+                return gson.toJson(Map.of("error", "Não há filmes disponíveis para gerar o feed."));
+            }
 
-                List<JsonObject> finalMovies = new ArrayList<>(uniqueMoviesMap.values());
+            final int NUM_CANDIDATOS = 500;
 
-                Collections.shuffle(finalMovies, new SecureRandom());
+            int disponiveis = candidatos.size();
+            Collections.shuffle(candidatos, new Random());
+            candidatos = candidatos.subList(0, Math.min(NUM_CANDIDATOS, candidatos.size()));
+            candidateEvent.record("feed", userId, disponiveis, candidatos.size());
 
-                System.out.println("[🎥] Movies fetched: total = " + finalMovies.size());
+            // IA -> detalhes no TMDB, em paralelo com os populares do TMDB
+            CompletableFuture<JsonObject> aiFeed = flixAi.getFeedAsync(userId, 20, candidatos);
+            CompletableFuture<JsonArray> popularMovies = tmdb.getPopularMoviesAsync(page);
+            CompletableFuture<List<JsonObject>> aiMovies = aiFeed
+                    .thenCompose(aiResponse -> {
+                        JsonArray aiMoviesArray = aiResponse.getAsJsonArray("all_recommendations");
 
-                return gson.toJson(Map.of("status", "ok", "movies", finalMovies));
+                        if (aiMoviesArray == null) {
+                            throw new RuntimeException("❌ Feed da IA retornou vazio ou inválido.");
+                        }
 
-            } catch (Exception e) {
-                e.printStackTrace();
-                res.status(500);
-                return gson.toJson(Map.of("error", "Erro ao buscar filmes: " + e.getMessage()));
-            }
+                        List<Integer> aiMovieIds = new ArrayList<>();
+                        aiMoviesArray.forEach(item -> {
+                            JsonArray pair = item.getAsJsonArray();
+                            aiMovieIds.add(pair.get(0).getAsInt());
+                        });
+
+                        return tmdb.getMoviesDetailsAsync(aiMovieIds);
+                    });
+
+            CompletableFuture<AsyncRoutes.Reply> body = aiMovies.thenCombine(popularMovies,
+                    (aiMoviesDetails, discoverMovies) -> {
+                        Log.debug("[🎥] AI movies fetched: total = {}", aiMoviesDetails.size());
+                        Log.debug("[🎥] Discover movies fetched: total = {}", discoverMovies.size());
+
+                        Map<Integer, JsonObject> uniqueMoviesMap = new HashMap<>();
+
+                        aiMoviesDetails.forEach(movie -> {
+                            int id = movie.get("id").getAsInt();
+                            uniqueMoviesMap.put(id, movie);
+                        });
+
+                        discoverMovies.forEach(item -> {
+                            JsonObject movie = item.getAsJsonObject();
+                            int id = movie.get("id").getAsInt();
+                            uniqueMoviesMap.putIfAbsent(id, movie);
+                        });
+
+                        List<JsonObject> finalMovies = new ArrayList<>(uniqueMoviesMap.values());
+
+                        Collections.shuffle(finalMovies, new SecureRandom());
+
+                        Log.info("[🎥] Movies fetched: total = {}", finalMovies.size());
+
+                        return AsyncRoutes.Reply.ok(gson.toJson(Map.of("status", "ok", "movies", finalMovies)));
+                    });
+
+            // Se a IA ou o TMDB falharem, o feed sai dos filmes mais populares do banco
+            return AsyncRoutes.suspend(req, res, body, feedTimeoutMillis, () -> {
+                List<Map<String, Object>> fallbackMovies = new ArrayList<>();
+                for (Movie movie : movieService.getMostPopularMovies(page, 20)) {
+                    Map<String, Object> movieMap = new HashMap<>();
+                    movieMap.put("id", movie.getId());
+                    movieMap.put("title", movie.getTitle());
+                    movieMap.put("overview", movie.getOverview());
+                    movieMap.put("poster_path", movie.getPosterPath());
+                    movieMap.put("release_date", movie.getReleaseDate());
+                    movieMap.put("vote_average", movie.getRating());
+                    movieMap.put("popularity", movie.getPopularity());
+                    movieMap.put("original_language", movie.getOriginalLanguage());
+                    fallbackMovies.add(movieMap);
+                }
+                return gson.toJson(Map.of("status", "ok", "fallback", true, "movies", fallbackMovies));
+            }, aiFeed, popularMovies);
         });
 
         // Endpoint watchlist toggle
@@ -637,7 +873,7 @@ public class Application {
                 }
 
             } catch (Exception e) {
-                e.printStackTrace();
+                Log.error("[🚨:🔴] ROUTE ERROR: [path: {}]", req.pathInfo(), e);
                 res.status(500);
                 return gson.toJson(Map.of("error", "Erro ao processar watchlist: " + e.getMessage()));
             }
@@ -659,6 +895,7 @@ public class Application {
                 if (success) {
                     boolean currentStatus = favoriteService.isInFavorites(favoriteObj);
                     flixAi.train(userId, movieId, currentStatus);
+                    similarMovieService.onRatings(userId, Map.of(movieId, currentStatus));
                     return gson.toJson(Map.of(
                             "status", "ok",
                             "message", status ? "Filme adicionado aos favoritos" : "Filme removido dos favoritos",
@@ -669,7 +906,7 @@ public class Application {
                 }
 
             } catch (Exception e) {
-                e.printStackTrace();
+                Log.error("[🚨:🔴] ROUTE ERROR: [path: {}]", req.pathInfo(), e);
                 res.status(500);
                 return gson.toJson(Map.of("error", "Erro ao processar favoritos: " + e.getMessage()));
             }
@@ -694,7 +931,7 @@ public class Application {
                 res.status(400);
                 return gson.toJson(Map.of("error", "ID de filme inválido"));
             } catch (Exception e) {
-                e.printStackTrace();
+                Log.error("[🚨:🔴] ROUTE ERROR: [path: {}]", req.pathInfo(), e);
                 res.status(500);
                 return gson.toJson(Map.of("error", "Erro ao verificar watchlist: " + e.getMessage()));
             }
@@ -719,7 +956,7 @@ public class Application {
                 res.status(400);
                 return gson.toJson(Map.of("error", "ID de filme inválido"));
             } catch (Exception e) {
-                e.printStackTrace();
+                Log.error("[🚨:🔴] ROUTE ERROR: [path: {}]", req.pathInfo(), e);
                 res.status(500);
                 return gson.toJson(Map.of("error", "Erro ao verificar favorito: " + e.getMessage()));
             }
@@ -757,7 +994,7 @@ public class Application {
                         "status", "ok",
                         "users", usersData));
             } catch (Exception e) {
-                e.printStackTrace();
+                Log.error("[🚨:🔴] ROUTE ERROR: [path: {}]", req.pathInfo(), e);
                 res.status(500);
                 return gson.toJson(Map.of("error", "Erro ao buscar usuários: " + e.getMessage()));
             }
@@ -768,8 +1005,8 @@ public class Application {
             try {
                 int targetUserId = req.attribute("userId");
 
-                // Buscar o usuário pelo ID
-                User user = userService.getUserById(targetUserId);
+                // Buscar o usuário pelo ID (cache de resumos, já com os gêneros)
+                UserSummary user = userService.getUserSummary(targetUserId);
 
                 if (user == null) {
                     res.status(404);
@@ -777,7 +1014,7 @@ public class Application {
                 }
 
                 // Precisamos enviar os generos favoritos do usuário
-                List<Genre> preferredGenres = userGenreService.getPreferredGenres(targetUserId);
+                List<Genre> preferredGenres = user.getPreferredGenres();
                 List<Map<String, Object>> genresData = new ArrayList<>();
                 for (Genre genre : preferredGenres) {
                     Map<String, Object> genreData = Map.of(
@@ -803,7 +1040,7 @@ public class Application {
                 res.status(400);
                 return gson.toJson(Map.of("error", "ID de usuário inválido"));
             } catch (Exception e) {
-                e.printStackTrace();
+                Log.error("[🚨:🔴] ROUTE ERROR: [path: {}]", req.pathInfo(), e);
                 res.status(500);
                 return gson.toJson(Map.of("error", "Erro ao buscar informações do usuário: " + e.getMessage()));
             }
@@ -814,14 +1051,20 @@ public class Application {
             try {
                 int targetUserId = Integer.parseInt(req.params("userId"));
 
-                // Buscar o usuário pelo ID
-                User user = userService.getUserById(targetUserId);
+                // Buscar o usuário pelo ID (cache de resumos)
+                UserSummary user = userService.getUserSummary(targetUserId);
 
                 if (user == null) {
                     res.status(404);
                     return gson.toJson(Map.of("error", "Usuário não encontrado"));
                 }
 
+                // O resumo vem do cache: a versão são os próprios campos da resposta
+                if (ConditionalGet.isFresh(req, res, "profile", user.getId() + "|" + user.getFirstName() + "|"
+                        + user.getLastName() + "|" + user.getEmail() + "|" + user.getGender())) {
+                    return ConditionalGet.notModified(res);
+                }
+
                 // Apenas informações básicas do usuário
                 Map<String, Object> userData = Map.of(
                         "id", user.getId(),
@@ -835,7 +1078,7 @@ public class Application {
                 res.status(400);
                 return gson.toJson(Map.of("error", "ID de usuário inválido"));
             } catch (Exception e) {
-                e.printStackTrace();
+                Log.error("[🚨:🔴] ROUTE ERROR: [path: {}]", req.pathInfo(), e);
                 res.status(500);
                 return gson.toJson(Map.of("error", "Erro ao buscar informações do usuário: " + e.getMessage()));
             }
@@ -872,7 +1115,7 @@ public class Application {
 
                 return gson.toJson(Map.of("status", "ok", "movies", moviesData));
             } catch (Exception e) {
-                e.printStackTrace();
+                Log.error("[🚨:🔴] ROUTE ERROR: [path: {}]", req.pathInfo(), e);
                 res.status(500);
                 return gson.toJson(Map.of("error", "Erro ao buscar filmes recomendados: " + e.getMessage()));
             }
@@ -933,66 +1176,22 @@ public class Application {
                 if (gender != null && gender.length() > 0)
                     currentUser.setGender(gender.charAt(0));
 
-                // Update user in database
-                boolean userUpdated = userDAO.update(currentUser);
-                if (!userUpdated) {
+                // Atualiza o usuário e substitui os gêneros (se fornecidos) em uma única
+                // transação: em caso de erro nada é alterado
+                if (!userService.updateProfile(currentUser, genres)) {
                     res.status(500);
-                    return gson.toJson(Map.of("error", "Erro ao atualizar informações do usuário"));
-                }
-
-                // Se os gêneros não foram fornecidos na requisição, não mexer nos gêneros
-                // existentes
-                boolean genresUpdated = true;
-                if (genres != null) {
-                    // Obter gêneros atuais antes de remover (backup)
-                    List<Genre> currentGenres = userGenreService.getPreferredGenres(userId);
-
-                    // Remover gêneros existentes
-                    boolean genresRemoved = userGenreService.removeAllPreferredGenres(userId);
-
-                    if (!genresRemoved) {
-                        System.err.println("Erro ao remover gêneros existentes para o usuário " + userId);
-                        // Em caso de falha, não continuamos com a atualização dos gêneros
-                        res.status(500);
-                        return gson.toJson(Map.of("error", "Erro ao atualizar preferências de gêneros"));
-                    }
-
-                    // Adicionar novos gêneros
-                    boolean allGenresAdded = true;
-                    for (Integer genreId : genres) {
-                        if (!userGenreService.addPreferredGenre(userId, genreId)) {
-                            allGenresAdded = false;
-                            System.err.println("Erro ao adicionar gênero " + genreId + " para o usuário " + userId);
-                        }
-                    }
-
-                    // Se houve erro ao adicionar novos gêneros, restaurar os gêneros antigos
-                    if (!allGenresAdded) {
-                        System.err.println("Restaurando gêneros anteriores para o usuário " + userId);
-                        // Primeiro limpar novamente para evitar duplicatas
-                        userGenreService.removeAllPreferredGenres(userId);
-
-                        // Restaurar gêneros anteriores
-                        for (Genre genre : currentGenres) {
-                            userGenreService.addPreferredGenre(userId, genre.getId());
-                        }
-
-                        res.status(500);
-                        return gson.toJson(Map.of("error",
-                                "Erro ao atualizar alguns gêneros preferidos. As alterações foram revertidas."));
-                    }
-
-                    genresUpdated = allGenresAdded;
+                    return gson.toJson(Map.of("error",
+                            "Erro ao atualizar perfil. Nenhuma alteração foi salva."));
                 }
 
-                // Fetch updated user information including genres
-                User updatedUser = userService.getUserById(userId);
-                List<Genre> preferredGenres = userGenreService.getPreferredGenres(userId);
+                // Relê o resumo (o cache foi invalidado pela atualização)
+                UserSummary updatedUser = userService.getUserSummary(userId);
+                List<Genre> preferredGenres = updatedUser.getPreferredGenres();
 
                 // Verificar se o usuário realmente tem gêneros após a atualização
                 if (preferredGenres == null || preferredGenres.isEmpty()) {
-                    System.err.println("AVISO: Usuário " + userId
-                            + " ficou sem gêneros após atualização. Isso não deveria acontecer.");
+                    Log.warn("AVISO: Usuário {} ficou sem gêneros após atualização. Isso não deveria acontecer.",
+                            userId);
                     // Aqui poderíamos adicionar um gênero padrão, mas para ser consistente com a
                     // validação anterior,
                     // vamos apenas retornar um erro
@@ -1024,7 +1223,7 @@ public class Application {
                         "preferredGenres", genresData));
 
             } catch (Exception e) {
-                e.printStackTrace();
+                Log.error("[🚨:🔴] ROUTE ERROR: [path: {}]", req.pathInfo(), e);
                 res.status(500);
                 return gson.toJson(Map.of("error", "Erro ao atualizar perfil: " + e.getMessage()));
             }
@@ -1052,7 +1251,7 @@ public class Application {
                     return gson.toJson(Map.of("error", "Avaliação não encontrada"));
                 }
             } catch (Exception e) {
-                e.printStackTrace();
+                Log.error("[🚨:🔴] ROUTE ERROR: [path: {}]", req.pathInfo(), e);
                 res.status(500);
                 return gson.toJson(Map.of("error", "Erro no servidor: " + e.getMessage()));
             }
@@ -1065,16 +1264,16 @@ public class Application {
                 boolean removed = feedbackService.removeRating(userId, movieId);
 
                 if (removed) {
-                    System.out.println("[🏅:🗑️] RATING DELETE SUCCESS: [userId: " + userId + ", movieId: " + movieId + "]");
+                    Log.info("[🏅:🗑️] RATING DELETE SUCCESS: [userId: {}, movieId: {}]", userId, movieId);
                     res.status(200);
                     return gson.toJson(Map.of("status", "Avaliação removida com sucesso"));
                 } else {
-                    System.out.println("[🏅:🔴] RATING DELETE ERROR: [userId: " + userId + ", movieId: " + movieId + "]");
+                    Log.warn("[🏅:🔴] RATING DELETE ERROR: [userId: {}, movieId: {}]", userId, movieId);
                     res.status(404);
                     return gson.toJson(Map.of("error", "Avaliação não encontrada"));
                 }
             } catch (Exception e) {
-                e.printStackTrace();
+                Log.error("[🚨:🔴] ROUTE ERROR: [path: {}]", req.pathInfo(), e);
                 res.status(500);
                 return gson.toJson(Map.of("error", "Erro no servidor: " + e.getMessage()));
             }
@@ -1092,31 +1291,30 @@ public class Application {
                 int movieId = bodyObj.get("movieId").getAsInt();
                 boolean ratingValue = bodyObj.get("rating").getAsBoolean();
 
-                // Verifica se o filme existe
-                boolean movieExists = movieService.movieExists(movieId);
-                if (!movieExists) {
-                    System.out.println("[🎬:⁉️] MOVIE NOT FOUND: [movieId: " + movieId + "]");
+                // Grava direto (upsert); o filme só é buscado no TMDB se ainda não estiver cadastrado
+                int result = feedbackService.storeOrUpdateRating(userId, movieId, ratingValue);
+                if (result == 4) {
+                    Log.info("[🎬:⁉️] MOVIE NOT FOUND: [movieId: {}]", movieId);
                     JsonObject movieObj = tmdb.getMovieDetails(movieId);
                     if (movieObj == null) {
                         res.status(404);
                         return gson.toJson(Map.of("error", "Filme não encontrado no TMDB"));
-                    } else {
-                        movieService.storeMovie(movieObj);
-                        movieGenreService.storeMovieGenres(movieObj);
                     }
+                    movieService.storeMovie(movieObj);
+                    movieGenreService.storeMovieGenres(movieObj);
+                    result = feedbackService.storeOrUpdateRating(userId, movieId, ratingValue);
                 }
 
-                // Executa a operação
-                int result = feedbackService.storeOrUpdateRating(userId, movieId, ratingValue);
-
                 // Treina a IA se rating for criado ou atualizado
                 if (result == 1 || result == 2) {
                     flixAi.train(userId, movieId, ratingValue);
+                    similarMovieService.onRatings(userId, Map.of(movieId, ratingValue));
                 }
 
                 String operation;
                 String message;
                 Boolean currentRating = null;
+                Boolean previousRating = null;
 
                 switch (result) {
                     case 1 -> { // CREATE
@@ -1124,14 +1322,16 @@ public class Application {
                         message = "Rating criado";
                         currentRating = ratingValue;
                     }
-                    case 2 -> { // UPDATE
+                    case 2 -> { // UPDATE (o upsert só atualiza quando o valor muda)
                         operation = "UPDATE";
                         message = "Rating atualizado";
                         currentRating = ratingValue;
+                        previousRating = !ratingValue;
                     }
                     case 3 -> { // IGNORE
                         operation = "IGNORED";
                         message = "Rating ignorado";
+                        previousRating = ratingValue;
                     }
                     case 0 -> {
                         res.status(500);
@@ -1148,13 +1348,133 @@ public class Application {
                 response.put("success", true);
                 response.put("operation", operation);
                 response.put("currentRating", currentRating);
+                response.put("previousRating", previousRating);
                 response.put("message", message);
 
                 return gson.toJson(response);
 
             } catch (Exception e) {
-                System.err.println("[🏅:🔴] RATING ERROR: Endpoint - " + e.getMessage());
-                e.printStackTrace();
+                Log.error("[🏅:🔴] RATING ERROR: Endpoint - {}", e.getMessage(), e);
+                res.status(500);
+                return gson.toJson(Map.of("error", "Erro no servidor: " + e.getMessage()));
+            }
+        });
+
+        // Endpoint para enviar vários ratings de uma vez (swipes acumulados pelo cliente)
+        post("/api/rate/batch", (req, res) -> {
+            try {
+                int userId = req.attribute("userId");
+                JsonArray events = JsonParser.parseString(req.body()).getAsJsonArray();
+                // Limite de eventos por lote
+                int maxBatch = 100;
+                if (events.size() == 0 || events.size() > maxBatch) {
+                    res.status(400);
+                    return gson.toJson(Map.of("error", "O lote deve ter entre 1 e " + maxBatch + " ratings"));
+                }
+
+                // Os eventos são aplicados em ordem: vale o último rating de cada filme
+                int[] movieIds = new int[events.size()];
+                Map<Integer, Boolean> finalRatings = new LinkedHashMap<>();
+                Map<Integer, Integer> lastIndex = new HashMap<>();
+                for (int i = 0; i < events.size(); i++) {
+                    JsonObject event = events.get(i).getAsJsonObject();
+                    if (!event.has("movieId") || !event.has("rating")) {
+                        res.status(400);
+                        return gson.toJson(Map.of("error", "Rating inválido na posição " + i));
+                    }
+                    movieIds[i] = event.get("movieId").getAsInt();
+                    finalRatings.put(movieIds[i], event.get("rating").getAsBoolean());
+                    lastIndex.put(movieIds[i], i);
+                }
+
+                // Filmes não cadastrados: uma consulta no banco e buscas em paralelo no TMDB
+                Set<Integer> notFound = new HashSet<>(movieService.getMissingMovieIds(finalRatings.keySet()));
+                if (!notFound.isEmpty()) {
+                    Log.info("[🎬:⁉️] MOVIES NOT FOUND: [movieIds: {}]", notFound);
+                    for (JsonObject movieObj : tmdb.getMoviesDetails(new ArrayList<>(notFound))) {
+                        if (movieService.storeMovie(movieObj)) {
+                            movieGenreService.storeMovieGenres(movieObj);
+                            notFound.remove(movieObj.get("id").getAsInt());
+                        }
+                    }
+                }
+
+                // Grava todos os ratings em um único upsert
+                List<Feedback> feedbacks = new ArrayList<>();
+                for (Map.Entry<Integer, Boolean> rating : finalRatings.entrySet()) {
+                    if (!notFound.contains(rating.getKey())) {
+                        feedbacks.add(new Feedback(userId, rating.getKey(), rating.getValue()));
+                    }
+                }
+                Map<Integer, Integer> codes = feedbackService.storeOrUpdateRatings(userId, feedbacks);
+
+                // Treina a IA com os ratings criados ou atualizados, em uma única chamada
+                Map<Integer, Boolean> trained = new LinkedHashMap<>();
+                for (Feedback feedback : feedbacks) {
+                    int code = codes.getOrDefault(feedback.getMovieId(), 0);
+                    if (code == 1 || code == 2) {
+                        trained.put(feedback.getMovieId(), feedback.getFeedback());
+                    }
+                }
+                flixAi.train(userId, trained);
+                similarMovieService.onRatings(userId, trained);
+
+                // Um resultado por evento, na ordem recebida
+                List<Map<String, Object>> results = new ArrayList<>();
+                for (int i = 0; i < movieIds.length; i++) {
+                    int movieId = movieIds[i];
+                    boolean ratingValue = events.get(i).getAsJsonObject().get("rating").getAsBoolean();
+                    Map<String, Object> item = new LinkedHashMap<>();
+                    item.put("movieId", movieId);
+                    if (notFound.contains(movieId)) {
+                        item.put("success", false);
+                        item.put("error", "Filme não encontrado no TMDB");
+                        results.add(item);
+                        continue;
+                    }
+                    if (lastIndex.get(movieId) != i) {
+                        item.put("success", true);
+                        item.put("operation", "SUPERSEDED");
+                        item.put("currentRating", finalRatings.get(movieId));
+                        item.put("message", "Substituído por um rating posterior do lote");
+                        results.add(item);
+                        continue;
+                    }
+                    switch (codes.getOrDefault(movieId, 0)) {
+                        case 1 -> {
+                            item.put("success", true);
+                            item.put("operation", "CREATE");
+                            item.put("currentRating", ratingValue);
+                            item.put("previousRating", null);
+                            item.put("message", "Rating criado");
+                        }
+                        case 2 -> {
+                            item.put("success", true);
+                            item.put("operation", "UPDATE");
+                            item.put("currentRating", ratingValue);
+                            item.put("previousRating", !ratingValue);
+                            item.put("message", "Rating atualizado");
+                        }
+                        case 3 -> {
+                            item.put("success", true);
+                            item.put("operation", "IGNORED");
+                            item.put("currentRating", null);
+                            item.put("previousRating", ratingValue);
+                            item.put("message", "Rating ignorado");
+                        }
+                        default -> {
+                            item.put("success", false);
+                            item.put("error", "Erro ao processar rating");
+                        }
+                    }
+                    results.add(item);
+                }
+
+                res.status(200);
+                return gson.toJson(Map.of("success", true, "results", results));
+
+            } catch (Exception e) {
+                Log.error("[🏅:🔴] RATING BATCH ERROR: Endpoint - {}", e.getMessage(), e);
                 res.status(500);
                 return gson.toJson(Map.of("error", "Erro no servidor: " + e.getMessage()));
             }
@@ -1164,10 +1484,13 @@ public class Application {
         get("/api/recommendation", (req, res) -> {
             int userId = req.attribute("userId");
 
+            JfrEvents.CandidateGeneration candidateEvent = new JfrEvents.CandidateGeneration();
+            candidateEvent.begin();
+
             ArrayList<Integer> recommendedMovies = recommendationService.getRecommendedMoviesIds(userId);
-            System.out.println("Filmes recomendados: " + recommendedMovies.size());
+            Log.debug("Filmes recomendados: {}", recommendedMovies.size());
             ArrayList<Integer> allMovies = movieService.getAllMoviesIds();
-            System.out.println("Filmes disponíveis: " + allMovies.size());
+            Log.debug("Filmes disponíveis: {}", allMovies.size());
 
             if (allMovies.isEmpty()) {
                 res.status(400);
@@ -1180,7 +1503,7 @@ public class Application {
                     .filter(id -> !recommendedMovies.contains(id))
                     .collect(Collectors.toCollection(ArrayList::new));
 
-            System.out.println("Filmes candidatos: " + candidatos.size());
+            Log.debug("Filmes candidatos: {}", candidatos.size());
             if (candidatos.isEmpty()) {
                 res.status(404);
                 return "{\"erro\": \"Não há filmes não avaliados para recomendar.\"}";
@@ -1189,51 +1512,85 @@ public class Application {
             Collections.shuffle(candidatos, new SecureRandom());
 
             candidatos = candidatos.subList(0, Math.min(NUM_CANDIDATOS, candidatos.size()));
+            candidateEvent.record("recommendation", userId, allMovies.size(), candidatos.size());
 
             // Imprimir Candidatos
-            System.out.println("Candidatos: " + candidatos);
-
-            JsonObject recomendacao = flixAi.recommend(userId, candidatos);
+            Log.debug("Candidatos: {}", candidatos);
 
-            System.out.println("Recomendação recebida: " + recomendacao);
+            // A gravação da recomendação é JDBC: roda no pool das rotas, não na thread do HttpClient
+            CompletableFuture<JsonObject> aiRecommendation = flixAi.recommendAsync(userId, candidatos);
+            CompletableFuture<AsyncRoutes.Reply> body = aiRecommendation.thenComposeAsync(recomendacao -> {
+                Log.debug("Recomendação recebida: {}", recomendacao);
 
-            JsonArray recommendedMoviesJSON = recomendacao.getAsJsonArray("recommended_movies");
+                JsonArray recommendedMoviesJSON = recomendacao.getAsJsonArray("recommended_movies");
 
-            if (recommendedMoviesJSON.size() == 0) {
-                res.status(404);
-                return "{\"erro\": \"Não há filmes não avaliados para recomendar.\"}";
-            } else {
-                System.out.println("Filmes recomendados: " + recommendedMoviesJSON.size());
-            }
-
-            JsonObject firstMovie = recommendedMoviesJSON.get(0).getAsJsonObject();
+                if (recommendedMoviesJSON.size() == 0) {
+                    return CompletableFuture.completedFuture(AsyncRoutes.Reply.of(404,
+                            "{\"erro\": \"Não há filmes não avaliados para recomendar.\"}"));
+                } else {
+                    Log.debug("Filmes recomendados: {}", recommendedMoviesJSON.size());
+                }
 
-            int melhorFilmeId = firstMovie.get("id").getAsInt();
-            double score = firstMovie.get("score").getAsDouble();
+                JsonObject firstMovie = recommendedMoviesJSON.get(0).getAsJsonObject();
 
-            System.out.println("Melhor filme recomendado: " + melhorFilmeId + " com score " + score);
+                int melhorFilmeId = firstMovie.get("id").getAsInt();
+                double score = firstMovie.get("score").getAsDouble();
 
-            boolean stored = recommendationService.storeRecommendation(userId, melhorFilmeId, score);
-            if (!stored) {
-                System.err.println(
-                        "Erro ao salvar recomendação no banco para userId=" + userId + ", movieId=" + melhorFilmeId);
-            }
+                Log.info("Melhor filme recomendado: {} com score {}", melhorFilmeId, score);
 
-            JsonObject movie = tmdb.getMovieDetails(melhorFilmeId);
-            if (movie == null) {
-                res.status(404);
-                return "{\"erro\": \"Filme não encontrado.\"}";
-            }
+                boolean stored = recommendationService.storeRecommendation(userId, melhorFilmeId, score);
+                if (!stored) {
+                    Log.error("Erro ao salvar recomendação no banco para userId={}, movieId={}", userId,
+                            melhorFilmeId);
+                }
 
-            res.type("application/json");
-            return movie.toString();
+                return tmdb.getMovieDetailsAsync(melhorFilmeId).thenApply(movie -> {
+                    if (movie == null) {
+                        return AsyncRoutes.Reply.of(404, "{\"erro\": \"Filme não encontrado.\"}");
+                    }
+                    return AsyncRoutes.Reply.ok(movie.toString());
+                });
+            }, AsyncRoutes.executor());
 
+            return AsyncRoutes.suspend(req, res, body, recommendationTimeoutMillis, () -> {
+                res.status(503);
+                return "{\"erro\": \"Serviço de recomendação indisponível no momento.\"}";
+            }, aiRecommendation);
         });
 
         // =====================//
         // Endpoints de Filmes //
         // =====================//
 
+        // Busca por conteúdo: filmes cuja sinopse mais se parece com o texto (cosseno TF-IDF)
+        get("/api/movies/content-search", (req, res) -> {
+            try {
+                String query = req.queryParams("q");
+                if (query == null || query.isBlank()) {
+                    res.status(400);
+                    return gson.toJson(Map.of("error", "Parâmetro q é obrigatório"));
+                }
+                int limit = req.queryParams("limit") != null ? Integer.parseInt(req.queryParams("limit")) : 10;
+
+                JsonArray found = movieContentService.search(query, Math.max(1, Math.min(limit, 50)));
+                if (found == null) {
+                    res.status(503);
+                    return gson.toJson(Map.of("error", "Índice de sinopses ainda não construído"));
+                }
+
+                return gson.toJson(Map.of("status", "ok", "query", query,
+                        "movies", scoredMovies(found, movieService, movieGenreService, genreService)));
+
+            } catch (NumberFormatException e) {
+                res.status(400);
+                return gson.toJson(Map.of("error", "Limite inválido"));
+            } catch (Exception e) {
+                Log.error("[🚨:🔴] ROUTE ERROR: [path: {}]", req.pathInfo(), e);
+                res.status(500);
+                return gson.toJson(Map.of("error", "Erro na busca por conteúdo: " + e.getMessage()));
+            }
+        });
+
         // Endpoint de busca de filmes com filtros avançados
         get("/api/movies/search", (req, res) -> {
             try {
@@ -1299,15 +1656,15 @@ public class Application {
                         "total_results", totalResults,
                         "results", results);
 
-                System.out.println("[🎬:🟢] MOVIE SEARCH SUCCESS: [total: " + totalResults + ", query: " + query
-                        + ", filters applied]");
+                Log.info("[🎬:🟢] MOVIE SEARCH SUCCESS: [total: {}, query: {}, filters applied]", totalResults,
+                        query);
 
                 res.type("application/json");
                 res.status(200);
                 return gson.toJson(response);
 
             } catch (Exception e) {
-                e.printStackTrace();
+                Log.error("[🚨:🔴] ROUTE ERROR: [path: {}]", req.pathInfo(), e);
                 res.status(500);
                 return gson.toJson(Map.of("error", "Erro ao buscar filmes: " + e.getMessage()));
             }
@@ -1375,7 +1732,7 @@ public class Application {
                             "total_results", totalUsers,
                             "results", results);
 
-                    System.out.println("[👤:🟢] PROFILE GET SUCCESS: [total: " + totalUsers + "]");
+                    Log.info("[👤:🟢] PROFILE GET SUCCESS: [total: {}]", totalUsers);
 
                     res.type("application/json");
                     res.status(200);
@@ -1405,14 +1762,14 @@ public class Application {
                         "total_results", totalResults,
                         "results", results);
 
-                System.out.println("[👤:🟢] PROFILE GET SUCCESS: [total: " + totalResults + "query: " + query + "]");
+                Log.info("[👤:🟢] PROFILE GET SUCCESS: [total: {}, query: {}]", totalResults, query);
 
                 res.type("application/json");
                 res.status(200);
                 return gson.toJson(response);
 
             } catch (Exception e) {
-                e.printStackTrace();
+                Log.error("[🚨:🔴] ROUTE ERROR: [path: {}]", req.pathInfo(), e);
                 res.status(500);
                 return gson.toJson(Map.of("error", "Erro ao buscar perfis: " + e.getMessage()));
             }
@@ -1436,18 +1793,78 @@ public class Application {
                 res.status(400);
                 return gson.toJson(Map.of("error", "ID de filme inválido"));
             } catch (Exception e) {
-                e.printStackTrace();
+                Log.error("[🚨:🔴] ROUTE ERROR: [path: {}]", req.pathInfo(), e);
                 res.status(500);
                 return gson.toJson(Map.of("error", "Erro ao verificar recomendação: " + e.getMessage()));
             }
         });
 
+        // Endpoint para buscar filmes parecidos (índice pré-calculado, sem chamar a IA)
+        get("/api/movie/:movieId/similar", (req, res) -> {
+            try {
+                int movieId = Integer.parseInt(req.params("movieId"));
+                int limit = req.queryParams("limit") != null ? Integer.parseInt(req.queryParams("limit")) : 10;
+
+                JsonArray similar = similarMovieService.getSimilar(movieId, Math.max(1, limit));
+                if (similar == null) {
+                    res.status(503);
+                    return gson.toJson(Map.of("error", "Índice de filmes parecidos ainda não calculado"));
+                }
+
+                return gson.toJson(Map.of("status", "ok", "movieId", movieId,
+                        "movies", scoredMovies(similar, movieService, movieGenreService, genreService)));
+
+            } catch (NumberFormatException e) {
+                res.status(400);
+                return gson.toJson(Map.of("error", "ID de filme inválido"));
+            } catch (Exception e) {
+                Log.error("[🚨:🔴] ROUTE ERROR: [path: {}]", req.pathInfo(), e);
+                res.status(500);
+                return gson.toJson(Map.of("error", "Erro ao buscar filmes parecidos: " + e.getMessage()));
+            }
+        });
+
+        // Endpoint para buscar filmes com a sinopse parecida com a de um filme
+        get("/api/movie/:movieId/more-like-this", (req, res) -> {
+            try {
+                int movieId = Integer.parseInt(req.params("movieId"));
+                int limit = req.queryParams("limit") != null ? Integer.parseInt(req.queryParams("limit")) : 10;
+
+                JsonArray similar = movieContentService.moreLikeThis(movieId, Math.max(1, Math.min(limit, 50)));
+                if (similar == null) {
+                    res.status(503);
+                    return gson.toJson(Map.of("error", "Índice de sinopses ainda não construído"));
+                }
+
+                return gson.toJson(Map.of("status", "ok", "movieId", movieId,
+                        "movies", scoredMovies(similar, movieService, movieGenreService, genreService)));
+
+            } catch (NumberFormatException e) {
+                res.status(400);
+                return gson.toJson(Map.of("error", "ID de filme inválido"));
+            } catch (Exception e) {
+                Log.error("[🚨:🔴] ROUTE ERROR: [path: {}]", req.pathInfo(), e);
+                res.status(500);
+                return gson.toJson(Map.of("error", "Erro ao buscar filmes parecidos: " + e.getMessage()));
+            }
+        });
+
         // Endpoint para buscar detalhes de um filme
         get("/api/movie/:movieId/details", (req, res) -> {
             try {
                 int userId = req.attribute("userId");
                 int movieId = Integer.parseInt(req.params("movieId"));
 
+                // Uma consulta (filme, rating do usuário e gêneros) no lugar de três
+                String version = movieService.getMovieDetailsVersion(movieId, userId);
+                if (version == null) {
+                    res.status(404);
+                    return gson.toJson(Map.of("error", "Filme não encontrado"));
+                }
+                if (ConditionalGet.isFresh(req, res, "movie_details", movieId + "|" + version)) {
+                    return ConditionalGet.notModified(res);
+                }
+
                 Map<String, Object> response = new HashMap<>();
 
                 Movie movie = movieService.getMovieById(movieId);
@@ -1492,12 +1909,36 @@ public class Application {
                 res.status(400);
                 return gson.toJson(Map.of("error", "ID de filme inválido"));
             } catch (Exception e) {
-                e.printStackTrace();
+                Log.error("[🚨:🔴] ROUTE ERROR: [path: {}]", req.pathInfo(), e);
                 res.status(500);
                 return gson.toJson(Map.of("error", "Erro ao buscar dados do filme: " + e.getMessage()));
             }
         });
 
+        // Templates das rotas para as métricas (todas as rotas já foram declaradas)
+        RouteMetrics.loadRoutes();
+
+        // ==========================
+        // ==== ADMINISTRAÇÃO =======
+        // ==========================
+
+        // Servidor separado e sem autenticação, fora da porta pública
+        Service admin = Service.ignite().port(adminPort);
+
+        admin.get("/metrics", (req, res) -> {
+            res.type(Metrics.CONTENT_TYPE);
+            return Metrics.scrape();
+        });
+
+        // Ranking das queries por tempo total e últimas queries lentas
+        admin.get("/queries", (req, res) -> {
+            res.type("application/json");
+            int limit = req.queryParams("limit") != null ? Integer.parseInt(req.queryParams("limit")) : 20;
+            return gson.toJson(Map.of(
+                    "top", QueryStats.top(limit),
+                    "slow", QueryStats.recentSlow()));
+        });
+
     }
 
 }
\ No newline at end of file
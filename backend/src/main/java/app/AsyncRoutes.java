@@ -0,0 +1,197 @@
+package app;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+
+import spark.Request;
+import spark.Response;
+import util.Log;
+
+/**
+ * Suporte a rotas assíncronas no Spark.
+ *
+ * A rota monta um CompletableFuture com o corpo da resposta (chamadas à IA,
+ * ao TMDB, etc.) e chama {@link #suspend}. A requisição é suspensa com a API
+ * assíncrona de servlets, a thread do Jetty volta para o pool e a resposta é
+ * enviada quando o futuro terminar, ou com o fallback se ele falhar ou
+ * exceder o tempo limite.
+ *
+ * As continuações do futuro não devem mexer em {@code res}: depois do tempo
+ * limite a resposta já pode ter sido enviada (ou reaproveitada pelo Jetty).
+ * O status vai no {@link Reply} e só é aplicado aqui, uma única vez.
+ */
+public class AsyncRoutes {
+
+    // Margem para que o timeout do futuro dispare antes do timeout do Jetty
+    private static final long CONTAINER_TIMEOUT_MARGIN_MS = 1000;
+
+    // Pool das respostas e dos fallbacks (que podem consultar o banco) e das
+    // continuações bloqueantes das rotas; fora da thread única de timers do JDK
+    private static volatile ThreadPoolExecutor executor = newExecutor(
+            Runtime.getRuntime().availableProcessors() * 2);
+
+    private AsyncRoutes() {
+    }
+
+    /**
+     * Status e corpo de uma resposta assíncrona
+     */
+    public static final class Reply {
+        private final int status;
+        private final String body;
+
+        private Reply(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        /**
+         * Resposta com status 200
+         */
+        public static Reply ok(String body) {
+            return new Reply(200, body);
+        }
+
+        /**
+         * Resposta com outro status
+         */
+        public static Reply of(int status, String body) {
+            return new Reply(status, body);
+        }
+    }
+
+    /**
+     * Configura o pool das respostas assíncronas
+     *
+     * @param threads Threads do pool
+     */
+    public static void configureExecutor(int threads) {
+        ThreadPoolExecutor previous = executor;
+        executor = newExecutor(Math.max(1, threads));
+        previous.shutdown();
+        Log.info("[⏱️:🟢] ASYNC ROUTE EXECUTOR: [threads: {}]", threads);
+    }
+
+    /**
+     * Pool para as continuações que bloqueiam (JDBC, por exemplo), para não
+     * rodarem nas threads do HttpClient
+     */
+    public static Executor executor() {
+        return executor;
+    }
+
+    private static ThreadPoolExecutor newExecutor(int threads) {
+        AtomicInteger counter = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "async-route-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Suspende a requisição até que o corpo da resposta esteja pronto
+     *
+     * @param req           A requisição do Spark
+     * @param res           A resposta do Spark
+     * @param body          Futuro com o status e o corpo final da resposta
+     * @param timeoutMillis Tempo limite para o futuro terminar
+     * @param fallback      Gera o corpo quando o futuro falhar ou exceder o tempo
+     *                      limite (pode alterar o status via {@code res})
+     * @param upstream      Etapas anteriores do futuro, canceladas quando o
+     *                      fallback responder (as continuações delas não rodam)
+     * @return O valor a ser retornado pela rota
+     */
+    public static String suspend(Request req, Response res, CompletableFuture<Reply> body, long timeoutMillis,
+            Supplier<String> fallback, CompletableFuture<?>... upstream) {
+        if (!(res.raw() instanceof CompressionHandler.BufferedResponse)) {
+            // Sem o handler da aplicação não é possível retomar a resposta: espera aqui mesmo
+            try {
+                Reply reply = body.get(timeoutMillis, TimeUnit.MILLISECONDS);
+                res.status(reply.status);
+                return reply.body;
+            } catch (Exception e) {
+                cancel(body, upstream);
+                return runFallback(req.pathInfo(), res, e, fallback);
+            }
+        }
+
+        CompressionHandler.BufferedResponse buffered = (CompressionHandler.BufferedResponse) res.raw();
+        HttpServletRequest rawRequest = req.raw();
+        String path = req.pathInfo();
+
+        AsyncContext context = rawRequest.startAsync(rawRequest, buffered);
+        context.setTimeout(timeoutMillis + CONTAINER_TIMEOUT_MARGIN_MS);
+        context.addListener(new AsyncListener() {
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                body.completeExceptionally(new TimeoutException("Timeout do container"));
+            }
+
+            @Override
+            public void onComplete(AsyncEvent event) {
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                body.completeExceptionally(event.getThrowable());
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+
+        // Único ponto que escreve na resposta; um resultado que chegar depois
+        // do tempo limite é descartado (o futuro já terminou com erro)
+        body.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS).whenCompleteAsync((reply, error) -> {
+            String output;
+            if (error == null) {
+                res.status(reply.status);
+                output = reply.body;
+            } else {
+                cancel(body, upstream);
+                output = runFallback(path, res, error, fallback);
+            }
+            buffered.completeAsync(context, output);
+        }, executor);
+
+        return "";
+    }
+
+    private static void cancel(CompletableFuture<Reply> body, CompletableFuture<?>[] upstream) {
+        body.cancel(false);
+        for (CompletableFuture<?> stage : upstream) {
+            stage.cancel(false);
+        }
+    }
+
+    private static String runFallback(String path, Response res, Throwable error, Supplier<String> fallback) {
+        Throwable cause = (error instanceof CompletionException || error instanceof ExecutionException)
+                && error.getCause() != null ? error.getCause() : error;
+        String reason = cause instanceof TimeoutException ? "tempo limite excedido"
+                : cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+        Log.warn("[⏱️:🔴] ASYNC ROUTE FALLBACK: [path: {}, motivo: {}]", path, reason);
+
+        try {
+            return fallback.get();
+        } catch (Exception e) {
+            res.status(500);
+            return "{\"error\": \"Erro no servidor\"}";
+        }
+    }
+}
@@ -0,0 +1,441 @@
+package app;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
+
+import util.Log;
+import util.Metrics;
+import util.ServerTiming;
+
+/**
+ * Handler do Jetty que comprime as respostas da API com gzip.
+ *
+ * A resposta gerada pelo Spark é mantida em memória e, ao final, comprimida
+ * se o cliente aceitar gzip e o corpo tiver pelo menos {@code minSize} bytes.
+ * Os Deflaters são reaproveitados entre requisições para evitar alocações
+ * nativas a cada resposta.
+ *
+ * Como o corpo só é enviado ao final, o mesmo buffer permite que rotas
+ * assíncronas (ver {@link AsyncRoutes}) concluam a resposta depois que a
+ * thread do Jetty já foi liberada.
+ *
+ * O handler também abre o acumulador de {@link ServerTiming} da requisição e
+ * envia o cabeçalho Server-Timing junto com o corpo.
+ */
+public class CompressionHandler extends HandlerWrapper {
+
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final byte[] GZIP_HEADER = {
+            (byte) GZIP_MAGIC, (byte) (GZIP_MAGIC >> 8), Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+
+    private static final DeflaterPool DEFLATERS = new DeflaterPool(Runtime.getRuntime().availableProcessors() * 2);
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    // Métricas compartilhadas por todos os servidores
+    private static final LongAdder eligibleResponses = new LongAdder();
+    private static final LongAdder compressedResponses = new LongAdder();
+    private static final LongAdder bytesBeforeCompression = new LongAdder();
+    private static final LongAdder bytesAfterCompression = new LongAdder();
+    private static final LongAdder compressionCpuNanos = new LongAdder();
+
+    static {
+        Metrics.counter("flixmate_compression_eligible_responses_total",
+                "Respostas compressíveis de clientes que aceitam gzip", eligibleResponses::sum);
+        Metrics.counter("flixmate_compression_compressed_responses_total",
+                "Respostas enviadas com gzip", compressedResponses::sum);
+        Metrics.counter("flixmate_compression_bytes_before_total",
+                "Bytes das respostas comprimidas antes da compressão", bytesBeforeCompression::sum);
+        Metrics.counter("flixmate_compression_bytes_after_total",
+                "Bytes das respostas comprimidas depois da compressão", bytesAfterCompression::sum);
+        Metrics.counter("flixmate_compression_cpu_seconds_total",
+                "Tempo de CPU gasto comprimindo", () -> compressionCpuNanos.sum() / 1e9);
+    }
+
+    private final int minSize;
+
+    /**
+     * Construtor do handler
+     *
+     * @param minSize Tamanho mínimo (em bytes) para que a resposta seja comprimida
+     */
+    public CompressionHandler(int minSize) {
+        this.minSize = minSize;
+    }
+
+    @Override
+    public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response)
+            throws IOException, ServletException {
+        boolean gzipAccepted = acceptsGzip(request.getHeader("Accept-Encoding"))
+                && !"HEAD".equals(request.getMethod());
+
+        ServerTiming timing = ServerTiming.begin();
+        BufferedResponse buffered = new BufferedResponse(response, gzipAccepted, timing);
+        try {
+            super.handle(target, baseRequest, request, buffered);
+        } finally {
+            ServerTiming.detach();
+        }
+
+        if (request.isAsyncStarted()) {
+            // A rota suspendeu a requisição: o corpo será enviado em completeAsync()
+            buffered.dispatchReturned();
+        } else {
+            buffered.finish();
+        }
+    }
+
+    /**
+     * Verifica se o cabeçalho Accept-Encoding aceita gzip (respeitando q=0)
+     *
+     * @param acceptEncoding Valor do cabeçalho Accept-Encoding
+     * @return true se gzip for aceito, false caso contrário
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.trim().split(";");
+            String coding = tokens[0].trim();
+            if (!coding.equalsIgnoreCase("gzip") && !coding.equals("*")) {
+                continue;
+            }
+            double q = 1.0;
+            for (int i = 1; i < tokens.length; i++) {
+                String param = tokens[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        q = Double.parseDouble(param.substring(2));
+                    } catch (NumberFormatException e) {
+                        q = 0.0;
+                    }
+                }
+            }
+            return q > 0.0;
+        }
+        return false;
+    }
+
+    /**
+     * Verifica se o tipo de conteúdo vale a pena ser comprimido
+     *
+     * @param contentType O Content-Type da resposta
+     * @return true se for texto/JSON, false caso contrário
+     */
+    static boolean isCompressible(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        String type = contentType.toLowerCase();
+        return type.startsWith("application/json") || type.startsWith("text/")
+                || type.startsWith("application/javascript") || type.contains("+json") || type.contains("xml");
+    }
+
+    /**
+     * Comprime os bytes no formato gzip usando um Deflater do pool
+     *
+     * @param body   Os bytes a serem comprimidos
+     * @param length Quantidade de bytes válidos em {@code body}
+     * @return Os bytes comprimidos (cabeçalho + dados + trailer gzip)
+     */
+    static byte[] gzip(byte[] body, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(body, 0, length);
+
+        ExposedByteArrayOutputStream out = new ExposedByteArrayOutputStream(Math.max(64, length / 3));
+        out.write(GZIP_HEADER, 0, GZIP_HEADER.length);
+
+        Deflater deflater = DEFLATERS.acquire();
+        try {
+            deflater.setInput(body, 0, length);
+            deflater.finish();
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(chunk, 0, chunk.length);
+                out.write(chunk, 0, n);
+            }
+        } finally {
+            DEFLATERS.release(deflater);
+        }
+
+        writeIntLE(out, (int) crc.getValue());
+        writeIntLE(out, length);
+        return out.toByteArray();
+    }
+
+    private static void writeIntLE(ByteArrayOutputStream out, int value) {
+        out.write(value & 0xff);
+        out.write((value >> 8) & 0xff);
+        out.write((value >> 16) & 0xff);
+        out.write((value >> 24) & 0xff);
+    }
+
+    private static long currentThreadCpuTime() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+
+    /**
+     * Retorna as métricas acumuladas de compressão
+     *
+     * @return Mapa com contadores, bytes antes/depois, razão de compressão e
+     *         tempo de CPU gasto comprimindo
+     */
+    public static Map<String, Number> stats() {
+        long before = bytesBeforeCompression.sum();
+        long after = bytesAfterCompression.sum();
+        return Map.of(
+                "eligibleResponses", eligibleResponses.sum(),
+                "compressedResponses", compressedResponses.sum(),
+                "bytesBefore", before,
+                "bytesAfter", after,
+                "compressionRatio", after > 0 ? (double) before / after : 0.0,
+                "cpuNanos", compressionCpuNanos.sum());
+    }
+
+    /**
+     * Pool limitado de Deflaters (nível padrão, formato raw para o gzip)
+     */
+    static class DeflaterPool {
+        private final BlockingQueue<Deflater> pool;
+
+        DeflaterPool(int capacity) {
+            this.pool = new ArrayBlockingQueue<>(capacity);
+        }
+
+        Deflater acquire() {
+            Deflater deflater = pool.poll();
+            return deflater != null ? deflater : new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        }
+
+        void release(Deflater deflater) {
+            deflater.reset();
+            if (!pool.offer(deflater)) {
+                deflater.end();
+            }
+        }
+    }
+
+    /**
+     * ByteArrayOutputStream que expõe o buffer interno para evitar cópias
+     */
+    static class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+        ExposedByteArrayOutputStream(int size) {
+            super(size);
+        }
+
+        byte[] buffer() {
+            return buf;
+        }
+    }
+
+    /**
+     * Resposta que acumula o corpo em memória até o fim do processamento
+     */
+    class BufferedResponse extends HttpServletResponseWrapper {
+        private final HttpServletResponse original;
+        private final boolean gzipAccepted;
+        private final ServerTiming timing;
+        private final ExposedByteArrayOutputStream buffer = new ExposedByteArrayOutputStream(1024);
+        private ServletOutputStream outputStream;
+        private PrintWriter writer;
+
+        // Estado da conclusão assíncrona (protegido por synchronized)
+        private boolean dispatchReturned;
+        private boolean asyncBodyReady;
+        private String asyncBody;
+        private AsyncContext asyncContext;
+
+        BufferedResponse(HttpServletResponse original, boolean gzipAccepted, ServerTiming timing) {
+            super(original);
+            this.original = original;
+            this.gzipAccepted = gzipAccepted;
+            this.timing = timing;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            if (outputStream == null) {
+                outputStream = new ServletOutputStream() {
+                    @Override
+                    public void write(int b) {
+                        buffer.write(b);
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) {
+                        buffer.write(b, off, len);
+                    }
+
+                    @Override
+                    public boolean isReady() {
+                        return true;
+                    }
+
+                    @Override
+                    public void setWriteListener(WriteListener writeListener) {
+                        throw new UnsupportedOperationException("Escrita assíncrona não suportada");
+                    }
+                };
+            }
+            return outputStream;
+        }
+
+        @Override
+        public PrintWriter getWriter() {
+            if (writer == null) {
+                String encoding = getCharacterEncoding();
+                Charset charset = encoding != null ? Charset.forName(encoding) : StandardCharsets.UTF_8;
+                writer = new PrintWriter(new OutputStreamWriter(buffer, charset));
+            }
+            return writer;
+        }
+
+        @Override
+        public void setContentLength(int len) {
+            // O tamanho final é definido em finish()
+        }
+
+        @Override
+        public void setContentLengthLong(long len) {
+            // O tamanho final é definido em finish()
+        }
+
+        @Override
+        public void flushBuffer() {
+            // Nada é enviado ao cliente antes de finish()
+        }
+
+        @Override
+        public boolean isCommitted() {
+            return false;
+        }
+
+        @Override
+        public void resetBuffer() {
+            buffer.reset();
+        }
+
+        @Override
+        public void reset() {
+            super.reset();
+            buffer.reset();
+        }
+
+        /**
+         * Envia o corpo acumulado ao cliente, comprimido quando elegível
+         */
+        void finish() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+
+            byte[] body = buffer.buffer();
+            int length = buffer.size();
+
+            boolean compressible = isCompressible(original.getContentType())
+                    && original.getHeader("Content-Encoding") == null;
+
+            if (compressible) {
+                original.addHeader("Vary", "Accept-Encoding");
+            }
+
+            if (compressible && gzipAccepted) {
+                eligibleResponses.increment();
+            }
+
+            if (!compressible || !gzipAccepted || length < minSize) {
+                sendServerTiming();
+                original.setContentLength(length);
+                original.getOutputStream().write(body, 0, length);
+                return;
+            }
+
+            long start = System.nanoTime();
+            long cpuStart = currentThreadCpuTime();
+            byte[] compressed = gzip(body, length);
+            compressionCpuNanos.add(currentThreadCpuTime() - cpuStart);
+            if (timing != null) {
+                timing.addSerialization(System.nanoTime() - start);
+            }
+
+            compressedResponses.increment();
+            bytesBeforeCompression.add(length);
+            bytesAfterCompression.add(compressed.length);
+
+            sendServerTiming();
+            original.setHeader("Content-Encoding", "gzip");
+            original.setContentLength(compressed.length);
+            original.getOutputStream().write(compressed);
+        }
+
+        private void sendServerTiming() {
+            if (timing != null) {
+                original.setHeader("Server-Timing", timing.header());
+            }
+        }
+
+        /**
+         * Define o corpo de uma requisição suspensa e conclui a resposta assim que
+         * a thread que a despachou tiver retornado
+         *
+         * @param context O contexto assíncrono da requisição
+         * @param body    O corpo final da resposta
+         */
+        synchronized void completeAsync(AsyncContext context, String body) {
+            this.asyncContext = context;
+            this.asyncBody = body;
+            this.asyncBodyReady = true;
+            if (dispatchReturned) {
+                writeAsyncBody();
+            }
+        }
+
+        /**
+         * Chamado quando a thread do Jetty sai da rota que suspendeu a requisição
+         */
+        synchronized void dispatchReturned() {
+            dispatchReturned = true;
+            if (asyncBodyReady) {
+                writeAsyncBody();
+            }
+        }
+
+        private void writeAsyncBody() {
+            try {
+                // Descarta o corpo vazio serializado pelo Spark ao retornar da rota
+                buffer.reset();
+                if (asyncBody != null) {
+                    buffer.write(asyncBody.getBytes(StandardCharsets.UTF_8));
+                }
+                finish();
+            } catch (IOException e) {
+                Log.error("❌ Erro ao enviar resposta assíncrona: {}", e.getMessage());
+            } finally {
+                asyncContext.complete();
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package app;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import spark.Request;
+import spark.Response;
+import util.Metrics;
+
+/**
+ * GET condicional com ETags fracas.
+ *
+ * A rota calcula a versão do recurso (em geral uma consulta barata, como a
+ * data de atualização da linha) antes de montar a resposta. Se o cliente
+ * mandar a mesma ETag em If-None-Match, a rota responde 304 sem consultar
+ * nem serializar o corpo.
+ */
+final class ConditionalGet {
+
+    private static final Metrics.Counter REQUESTS = Metrics.counter(
+            "flixmate_http_conditional_requests_total",
+            "GETs condicionais por recurso e resultado (not_modified/modified)",
+            "resource", "result");
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private ConditionalGet() {
+    }
+
+    /**
+     * Escreve a ETag da versão e verifica If-None-Match
+     *
+     * @param req      A requisição do Spark
+     * @param res      A resposta do Spark
+     * @param resource Nome do recurso (label da métrica)
+     * @param version  Versão atual do recurso
+     * @return true se o cliente já tem a versão atual: a rota deve retornar
+     *         {@link #notModified} em vez do corpo
+     */
+    static boolean isFresh(Request req, Response res, String resource, String version) {
+        String etag = "W/\"" + digest(resource + '|' + version) + '"';
+        res.header("ETag", etag);
+        // O navegador guarda a resposta, mas sempre revalida; o conteúdo depende do token
+        res.header("Cache-Control", "private, no-cache");
+        res.header("Vary", "Authorization");
+
+        boolean fresh = matches(req.headers("If-None-Match"), etag);
+        REQUESTS.inc(resource, fresh ? "not_modified" : "modified");
+        return fresh;
+    }
+
+    /**
+     * Marca a resposta como 304 Not Modified
+     *
+     * @param res A resposta do Spark
+     * @return Corpo vazio
+     */
+    static String notModified(Response res) {
+        res.status(304);
+        return "";
+    }
+
+    /**
+     * Comparação fraca (RFC 9110): ignora o prefixo W/ dos dois lados
+     */
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String opaque = etag.substring(2);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String digest(String value) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            char[] out = new char[32];
+            for (int i = 0; i < 16; i++) {
+                out[i * 2] = HEX[(hash[i] >> 4) & 0xf];
+                out[i * 2 + 1] = HEX[hash[i] & 0xf];
+            }
+            return new String(out);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package app;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+import spark.ExceptionMapper;
+import spark.embeddedserver.EmbeddedServer;
+import spark.embeddedserver.EmbeddedServerFactory;
+import spark.embeddedserver.jetty.EmbeddedJettyServer;
+import spark.embeddedserver.jetty.JettyHandler;
+import spark.embeddedserver.jetty.JettyServerFactory;
+import spark.http.matching.MatcherFilter;
+import spark.route.Routes;
+import spark.staticfiles.StaticFilesConfiguration;
+import util.Log;
+
+/**
+ * Fábrica do servidor Jetty embutido usado pelo Spark.
+ *
+ * Replica o que o EmbeddedJettyFactory padrão do Spark faz, mas envolve o
+ * handler do Spark com os handlers da aplicação (ex.: compressão de respostas)
+ * e, opcionalmente, executa as requisições em virtual threads.
+ */
+public class FlixServerFactory implements EmbeddedServerFactory {
+
+    private final int compressionMinSize;
+    private final boolean virtualThreads;
+
+    /**
+     * Construtor da fábrica
+     *
+     * @param compressionMinSize Tamanho mínimo (em bytes) para comprimir uma resposta
+     * @param virtualThreads     true para atender as requisições em virtual threads
+     */
+    public FlixServerFactory(int compressionMinSize, boolean virtualThreads) {
+        this.compressionMinSize = compressionMinSize;
+        this.virtualThreads = virtualThreads;
+    }
+
+    @Override
+    public EmbeddedServer create(Routes routeMatcher, StaticFilesConfiguration staticFilesConfiguration,
+            ExceptionMapper exceptionMapper, boolean hasMultipleHandler) {
+        MatcherFilter matcherFilter = new MatcherFilter(routeMatcher, staticFilesConfiguration, exceptionMapper,
+                false, hasMultipleHandler);
+        matcherFilter.init(null);
+
+        JettyHandler sparkHandler = new JettyHandler(matcherFilter);
+        sparkHandler.getSessionCookieConfig().setHttpOnly(true);
+
+        CompressionHandler compressionHandler = new CompressionHandler(compressionMinSize);
+        compressionHandler.setHandler(sparkHandler);
+
+        EmbeddedJettyServer server = new EmbeddedJettyServer(new ServerFactory(), compressionHandler);
+
+        if (virtualThreads) {
+            ThreadPool pool = VirtualThreadPool.create();
+            if (pool != null) {
+                server.withThreadPool(pool);
+                Log.info("✅ Requisições atendidas em virtual threads");
+            } else {
+                Log.warn("❌ Virtual threads não suportadas nesta JVM, usando o pool padrão do Jetty");
+            }
+        }
+
+        return server;
+    }
+
+    /**
+     * Cria a instância do Jetty Server (a implementação do Spark não é pública).
+     */
+    private static class ServerFactory implements JettyServerFactory {
+
+        @Override
+        public Server create(int maxThreads, int minThreads, int threadTimeoutMillis) {
+            QueuedThreadPool pool = new QueuedThreadPool(
+                    maxThreads > 0 ? maxThreads : 200,
+                    minThreads > 0 ? minThreads : 8,
+                    threadTimeoutMillis > 0 ? threadTimeoutMillis : 60000);
+            return new Server(pool);
+        }
+
+        @Override
+        public Server create(ThreadPool threadPool) {
+            return threadPool != null ? new Server(threadPool) : new Server();
+        }
+    }
+}
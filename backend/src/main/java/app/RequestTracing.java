@@ -0,0 +1,88 @@
+package app;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import spark.Request;
+import spark.Response;
+import util.Tracing;
+
+/**
+ * Abre e encerra o span raiz de cada requisição amostrada.
+ *
+ * O span fica como corrente da thread do Jetty enquanto a rota executa, de
+ * modo que DAOs, TMDB e IA criem seus spans como filhos dele. Requisições
+ * suspensas (ver {@link AsyncRoutes}) são encerradas quando a resposta
+ * assíncrona termina.
+ */
+public class RequestTracing {
+
+    private static final String SPAN_ATTRIBUTE = "requestTracing.span";
+
+    private RequestTracing() {
+    }
+
+    /**
+     * Abre o span da requisição (filtro before)
+     *
+     * @param req A requisição do Spark
+     */
+    public static void start(Request req) {
+        Tracing.Span span = Tracing.startRequest(req.requestMethod(), req.headers("traceparent"));
+        if (span != null) {
+            span.setAttribute("http.method", req.requestMethod());
+            span.setAttribute("http.target", req.pathInfo());
+            req.raw().setAttribute(SPAN_ATTRIBUTE, span);
+        }
+    }
+
+    /**
+     * Encerra o span da requisição (filtro afterAfter)
+     *
+     * @param req A requisição do Spark
+     * @param res A resposta do Spark
+     */
+    public static void finish(Request req, Response res) {
+        HttpServletRequest raw = req.raw();
+        Object attribute = raw.getAttribute(SPAN_ATTRIBUTE);
+        if (!(attribute instanceof Tracing.Span)) {
+            return;
+        }
+
+        Tracing.Span span = (Tracing.Span) attribute;
+        String route = RouteMetrics.resolve(raw.getMethod(), req.pathInfo());
+        span.setName(raw.getMethod() + " " + route);
+        span.setAttribute("http.route", route);
+
+        if (raw.isAsyncStarted()) {
+            // A thread do Jetty volta para o pool: o span termina junto com a resposta
+            Tracing.clear();
+            HttpServletResponse rawResponse = res.raw();
+            raw.getAsyncContext().addListener(new AsyncListener() {
+                @Override
+                public void onComplete(AsyncEvent event) {
+                    span.setAttribute("http.status_code", rawResponse.getStatus());
+                    span.end();
+                }
+
+                @Override
+                public void onTimeout(AsyncEvent event) {
+                }
+
+                @Override
+                public void onError(AsyncEvent event) {
+                }
+
+                @Override
+                public void onStartAsync(AsyncEvent event) {
+                }
+            });
+            return;
+        }
+
+        span.setAttribute("http.status_code", res.status());
+        span.close();
+    }
+}
@@ -0,0 +1,202 @@
+package app;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import spark.Request;
+import spark.Response;
+import spark.RouteImpl;
+import spark.Spark;
+import spark.routematch.RouteMatch;
+import util.JfrEvents;
+import util.Metrics;
+
+/**
+ * Métricas de requisições por rota.
+ *
+ * As requisições são agrupadas pelo template da rota do Spark (ex.:
+ * {@code /api/movie/:movieId/details}) e não pelo caminho real, para que o
+ * número de séries não cresça com os IDs. Caminhos sem rota entram como
+ * {@code unmatched}.
+ *
+ * Cada requisição também gera um evento JFR {@code flixmate.HttpRequest}.
+ */
+public class RouteMetrics {
+
+    private static final String START_ATTRIBUTE = "routeMetrics.start";
+    private static final String EVENT_ATTRIBUTE = "routeMetrics.event";
+    private static final String UNMATCHED = "unmatched";
+
+    private static final Metrics.Counter REQUESTS = Metrics.counter(
+            "flixmate_http_requests_total",
+            "Requisições HTTP atendidas",
+            "method", "route", "status");
+    private static final Metrics.Histogram DURATION = Metrics.histogram(
+            "flixmate_http_request_duration_seconds",
+            "Tempo de resposta por rota",
+            "method", "route");
+
+    private static volatile List<Template> templates = List.of();
+
+    private RouteMetrics() {
+    }
+
+    /**
+     * Carrega os templates das rotas registradas no Spark. Deve ser chamado
+     * depois que todas as rotas forem declaradas.
+     */
+    public static void loadRoutes() {
+        List<Template> loaded = new ArrayList<>();
+        for (RouteMatch match : Spark.routes()) {
+            if (match.getTarget() instanceof RouteImpl) {
+                loaded.add(new Template(match.getHttpMethod().name(), match.getMatchUri()));
+            }
+        }
+        templates = loaded;
+    }
+
+    /**
+     * Marca o início da requisição (filtro before)
+     *
+     * @param req A requisição do Spark
+     */
+    public static void start(Request req) {
+        req.raw().setAttribute(START_ATTRIBUTE, System.nanoTime());
+
+        JfrEvents.HttpRequest event = new JfrEvents.HttpRequest();
+        if (event.isEnabled()) {
+            event.begin();
+            req.raw().setAttribute(EVENT_ATTRIBUTE, event);
+        }
+    }
+
+    /**
+     * Registra a requisição (filtro afterAfter). Se a rota suspendeu a
+     * requisição, o registro é feito quando a resposta assíncrona terminar.
+     *
+     * @param req A requisição do Spark
+     * @param res A resposta do Spark
+     */
+    public static void finish(Request req, Response res) {
+        HttpServletRequest raw = req.raw();
+        Object start = raw.getAttribute(START_ATTRIBUTE);
+        if (!(start instanceof Long)) {
+            return;
+        }
+
+        String method = raw.getMethod();
+        String route = resolve(method, req.pathInfo());
+        long startNanos = (Long) start;
+        JfrEvents.HttpRequest jfrEvent = (JfrEvents.HttpRequest) raw.getAttribute(EVENT_ATTRIBUTE);
+
+        if (raw.isAsyncStarted()) {
+            HttpServletResponse rawResponse = res.raw();
+            raw.getAsyncContext().addListener(new AsyncListener() {
+                @Override
+                public void onComplete(AsyncEvent event) {
+                    record(method, route, rawResponse.getStatus(), startNanos, jfrEvent);
+                }
+
+                @Override
+                public void onTimeout(AsyncEvent event) {
+                }
+
+                @Override
+                public void onError(AsyncEvent event) {
+                }
+
+                @Override
+                public void onStartAsync(AsyncEvent event) {
+                }
+            });
+            return;
+        }
+
+        record(method, route, res.status(), startNanos, jfrEvent);
+    }
+
+    private static void record(String method, String route, int status, long startNanos,
+            JfrEvents.HttpRequest event) {
+        REQUESTS.inc(method, route, Integer.toString(status));
+        DURATION.observeSince(startNanos, method, route);
+
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit()) {
+                event.method = method;
+                event.route = route;
+                event.status = status;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Encontra o template da rota que atende o caminho, na mesma ordem em que
+     * o Spark procura
+     *
+     * @param method Método HTTP
+     * @param path   Caminho da requisição
+     * @return O template da rota, ou "unmatched"
+     */
+    static String resolve(String method, String path) {
+        String httpMethod = method.toLowerCase();
+        String[] segments = split(path);
+
+        for (Template template : templates) {
+            if (template.method.equals(httpMethod) && template.matches(segments)) {
+                return template.uri;
+            }
+        }
+        // O Spark atende HEAD com a rota GET correspondente
+        if ("head".equals(httpMethod)) {
+            return resolve("GET", path);
+        }
+        return UNMATCHED;
+    }
+
+    private static String[] split(String path) {
+        if (path == null) {
+            return new String[0];
+        }
+        String trimmed = path.startsWith("/") ? path.substring(1) : path;
+        if (trimmed.endsWith("/")) {
+            trimmed = trimmed.substring(0, trimmed.length() - 1);
+        }
+        return trimmed.isEmpty() ? new String[0] : trimmed.split("/");
+    }
+
+    private static final class Template {
+        final String method;
+        final String uri;
+        final String[] segments;
+
+        Template(String method, String uri) {
+            this.method = method;
+            this.uri = uri;
+            this.segments = split(uri);
+        }
+
+        boolean matches(String[] path) {
+            for (int i = 0; i < segments.length; i++) {
+                String segment = segments[i];
+                if ("*".equals(segment) && i == segments.length - 1) {
+                    // Splat no final aceita o restante do caminho
+                    return path.length >= segments.length;
+                }
+                if (i >= path.length) {
+                    return false;
+                }
+                if (!segment.startsWith(":") && !"*".equals(segment) && !segment.equals(path[i])) {
+                    return false;
+                }
+            }
+            return segments.length == path.length;
+        }
+    }
+}
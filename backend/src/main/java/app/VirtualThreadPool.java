@@ -0,0 +1,83 @@
+package app;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+/**
+ * Pool de threads do Jetty que executa cada tarefa em uma virtual thread.
+ *
+ * Como quase todas as rotas bloqueiam em JDBC, TMDB ou no serviço de IA, o
+ * limite de requisições simultâneas deixa de ser o número de threads de
+ * plataforma do pool. Só está disponível quando a JVM é 21 ou superior; o
+ * executor é obtido por reflexão para que o build padrão (Java 17) continue
+ * compilando.
+ */
+public class VirtualThreadPool extends AbstractLifeCycle implements ThreadPool {
+
+    private final ExecutorService executor;
+    private final AtomicInteger activeThreads = new AtomicInteger();
+
+    private VirtualThreadPool(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Cria o pool se a JVM suportar virtual threads
+     *
+     * @return O pool criado, ou null se a JVM não suportar virtual threads
+     */
+    public static VirtualThreadPool create() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return new VirtualThreadPool((ExecutorService) factory.invoke(null));
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        activeThreads.incrementAndGet();
+        executor.execute(() -> {
+            try {
+                task.run();
+            } finally {
+                activeThreads.decrementAndGet();
+            }
+        });
+    }
+
+    @Override
+    public void join() throws InterruptedException {
+        while (!executor.awaitTermination(1, TimeUnit.DAYS)) {
+            // Aguarda até o servidor ser parado
+        }
+    }
+
+    @Override
+    public int getThreads() {
+        return activeThreads.get();
+    }
+
+    @Override
+    public int getIdleThreads() {
+        return 0;
+    }
+
+    @Override
+    public boolean isLowOnThreads() {
+        return false;
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        executor.shutdown();
+        super.doStop();
+    }
+}
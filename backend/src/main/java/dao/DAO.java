@@ -1,95 +1,191 @@
-package dao;
-
-import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.SQLException;
-
-/**
- * Classe abstrata DAO (Data Access Object) que fornece funcionalidades
- * básicas de conexão com o banco de dados para as classes DAO específicas.
- */
-public abstract class DAO {
-    protected Connection conexao;
-
-    /**
-     * Construtor padrão
-     */
-    public DAO() {
-        conexao = null;
-    }
-
-    /**
-     * Estabelece conexão com o banco de dados PostgreSQL
-     * 
-     * @param serverName Nome do servidor ou endereço IP
-     * @param mydatabase Nome do banco de dados
-     * @param porta Número da porta (normalmente 5432 para PostgreSQL)
-     * @param username Nome de usuário
-     * @param password Senha
-     */
-    public void conectar(String serverName, String mydatabase, int porta, String username, String password) {
-        String url = null;
-        try {
-            // Carrega o driver do PostgreSQL
-            Class.forName("org.postgresql.Driver");
-            
-            // Cria a URL de conexão
-            url = "jdbc:postgresql://" + serverName + ":" + porta + "/" + mydatabase;
-            
-            // Estabelece a conexão
-            conexao = DriverManager.getConnection(url, username, password);
-            
-            if (conexao != null) {
-                System.out.println("✅ Conexão efetuada com o PostgreSQL!");
-            } else {
-                System.err.println("❌ Erro ao conectar no PostgreSQL!");
-            }
-        } catch (ClassNotFoundException e) {
-            System.err.println("❌ Driver do PostgreSQL não encontrado: " + e.getMessage());
-        } catch (SQLException e) {
-            System.err.println("❌ Erro ao conectar no PostgreSQL: " + e.getMessage());
-            System.err.println("URL: " + url);
-        }
-    }
-
-    /**
-     * Fecha a conexão com o banco de dados
-     * 
-     * @return true se a conexão foi fechada com sucesso, false caso contrário
-     */
-    public boolean close() {
-        boolean status = false;
-        
-        if (conexao == null) {
-            return true; // Se a conexão já é nula, consideramos como "fechada"
-        }
-        
-        try {
-            conexao.close();
-            status = true;
-            System.out.println("✅ Conexão com PostgreSQL encerrada.");
-        } catch (SQLException e) {
-            System.err.println("❌ Erro ao fechar conexão: " + e.getMessage());
-        }
-        return status;
-    }
-    
-    /**
-     * Verifica se a conexão com o banco de dados está ativa
-     * 
-     * @return true se a conexão está ativa, false caso contrário
-     */
-    public boolean isConnected() {
-        boolean status = false;
-        
-        try {
-            if (conexao != null && !conexao.isClosed()) {
-                status = true;
-            }
-        } catch (SQLException e) {
-            System.err.println("❌ Erro ao verificar status da conexão: " + e.getMessage());
-        }
-        
-        return status;
-    }
+package dao;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import util.Log;
+
+/**
+ * Classe abstrata DAO (Data Access Object) que fornece funcionalidades
+ * básicas de conexão com o banco de dados para as classes DAO específicas.
+ */
+public abstract class DAO {
+
+    /**
+     * Linhas buscadas por vez nas leituras da tabela inteira (ver
+     * {@link #inTransaction}: o PgJDBC só usa cursor com autocommit desligado)
+     */
+    protected static final int SCAN_FETCH_SIZE = 1000;
+
+    // Configuração dos statements, compartilhada por todos os DAOs
+    private static volatile int statementCacheSize = 4;
+    private static volatile int prepareThreshold = 1;
+
+    protected Connection conexao;
+    private StatementCache statements;
+
+    /**
+     * Trabalho executado dentro de uma unidade de trabalho
+     */
+    @FunctionalInterface
+    public interface Work<T> {
+        T execute(UnitOfWork uow) throws SQLException;
+    }
+
+    /**
+     * Construtor padrão
+     */
+    public DAO() {
+        conexao = null;
+    }
+
+    /**
+     * Configura o cache de statements e o prepare no servidor do PgJDBC.
+     * Deve ser chamado antes da criação dos DAOs.
+     *
+     * @param cacheSize        Statements livres mantidos por SQL em cada
+     *                         conexão (0 desliga o cache)
+     * @param prepareThreshold Execuções de um statement antes de o PgJDBC
+     *                         passar a usar o statement preparado no servidor
+     */
+    public static void configureStatements(int cacheSize, int prepareThreshold) {
+        DAO.statementCacheSize = Math.max(0, cacheSize);
+        DAO.prepareThreshold = prepareThreshold;
+    }
+
+    /**
+     * Estabelece conexão com o banco de dados PostgreSQL
+     * 
+     * @param serverName Nome do servidor ou endereço IP
+     * @param mydatabase Nome do banco de dados
+     * @param porta Número da porta (normalmente 5432 para PostgreSQL)
+     * @param username Nome de usuário
+     * @param password Senha
+     */
+    public void conectar(String serverName, String mydatabase, int porta, String username, String password) {
+        String url = null;
+        try {
+            // Carrega o driver do PostgreSQL
+            Class.forName("org.postgresql.Driver");
+            
+            // Cria a URL de conexão
+            url = "jdbc:postgresql://" + serverName + ":" + porta + "/" + mydatabase
+                    + "?prepareThreshold=" + prepareThreshold;
+            
+            // Estabelece a conexão
+            conexao = DriverManager.getConnection(url, username, password);
+            
+            if (conexao != null) {
+                if (statementCacheSize > 0) {
+                    statements = new StatementCache(conexao, getClass().getSimpleName(), statementCacheSize);
+                }
+                UnitOfWork.configure(url, username, password, statementCacheSize);
+                Log.info("✅ Conexão efetuada com o PostgreSQL!");
+            } else {
+                Log.error("❌ Erro ao conectar no PostgreSQL!");
+            }
+        } catch (ClassNotFoundException e) {
+            Log.error("❌ Driver do PostgreSQL não encontrado: {}", e.getMessage());
+        } catch (SQLException e) {
+            Log.error("❌ Erro ao conectar no PostgreSQL: {}", e.getMessage());
+            Log.error("URL: {}", url);
+        }
+    }
+
+    /**
+     * Fecha a conexão com o banco de dados
+     * 
+     * @return true se a conexão foi fechada com sucesso, false caso contrário
+     */
+    public boolean close() {
+        boolean status = false;
+        
+        if (conexao == null) {
+            return true; // Se a conexão já é nula, consideramos como "fechada"
+        }
+        
+        try {
+            if (statements != null) {
+                statements.closeAll();
+            }
+            conexao.close();
+            status = true;
+            Log.info("✅ Conexão com PostgreSQL encerrada.");
+        } catch (SQLException e) {
+            Log.error("❌ Erro ao fechar conexão: {}", e.getMessage());
+        }
+        return status;
+    }
+    
+    /**
+     * Verifica se a conexão com o banco de dados está ativa
+     * 
+     * @return true se a conexão está ativa, false caso contrário
+     */
+    public boolean isConnected() {
+        boolean status = false;
+        
+        try {
+            if (conexao != null && !conexao.isClosed()) {
+                status = true;
+            }
+        } catch (SQLException e) {
+            Log.error("❌ Erro ao verificar status da conexão: {}", e.getMessage());
+        }
+        
+        return status;
+    }
+
+    /**
+     * Prepara um statement na conexão do DAO, com medição do tempo de execução.
+     * O statement vem do cache da conexão e volta para ele quando é fechado
+     * (use try-with-resources); fechar o statement também fecha o ResultSet.
+     * 
+     * @param sql SQL a ser preparado
+     * @return O PreparedStatement instrumentado
+     * @throws SQLException se ocorrer um erro ao preparar o statement
+     */
+    protected PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement statement = statements != null ? statements.acquire(sql) : conexao.prepareStatement(sql);
+        return InstrumentedStatement.wrap(statement, getClass().getSimpleName(), sql, statements);
+    }
+
+    /**
+     * Prepara um statement na conexão de uma unidade de trabalho
+     * 
+     * @param uow Unidade de trabalho em andamento
+     * @param sql SQL a ser preparado
+     * @return O PreparedStatement instrumentado
+     * @throws SQLException se ocorrer um erro ao preparar o statement
+     */
+    protected PreparedStatement prepare(UnitOfWork uow, String sql) throws SQLException {
+        return uow.prepare(getClass().getSimpleName(), sql);
+    }
+
+    /**
+     * Executa o trabalho em uma única transação, em uma conexão exclusiva.
+     * Faz commit se o trabalho terminar normalmente e rollback se lançar
+     * qualquer exceção (que é repassada ao chamador).
+     * 
+     * @param work Trabalho a ser executado; os DAOs recebem a unidade de trabalho
+     * @return O valor retornado pelo trabalho
+     * @throws SQLException se o trabalho, o commit ou a conexão falharem
+     */
+    public static <T> T inTransaction(Work<T> work) throws SQLException {
+        UnitOfWork uow = UnitOfWork.acquire();
+        boolean reusable = false;
+        try {
+            T result = work.execute(uow);
+            uow.commit();
+            reusable = true;
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            reusable = uow.rollback();
+            throw e;
+        } finally {
+            uow.release(reusable);
+        }
+    }
 }
\ No newline at end of file
@@ -8,6 +8,12 @@ import java.util.ArrayList;
 import model.Favorite;
 public class FavoriteDAO extends DAO {
 
+    /** Recebe uma linha de {@link #forEachFavorite} */
+    @FunctionalInterface
+    public interface FavoriteRow {
+        void accept(int userId, int movieId);
+    }
+
     public FavoriteDAO(String serverName, String mydatabase, int porta, String username, String password) {
         super();
         conectar(serverName, mydatabase, porta, username, password);
@@ -20,7 +26,7 @@ public class FavoriteDAO extends DAO {
         ArrayList<Integer> movieIds = new ArrayList<>();
         String sql = "SELECT movie_id FROM favorite WHERE user_id = ? ORDER BY created_at DESC";
 
-        try (PreparedStatement st = conexao.prepareStatement(sql)) {
+        try (PreparedStatement st = prepare(sql)) {
             st.setInt(1, userId);
             ResultSet rs = st.executeQuery();
 
@@ -36,6 +42,58 @@ public class FavoriteDAO extends DAO {
         return movieIds;
     }
 
+
+    /**
+     * Percorre os favoritos de todos os usuários sem montar objetos (usado
+     * pelo treino local de fatores), com cursor e em uma transação própria,
+     * fora da conexão do DAO.
+     * Retorna o número de favoritos lidos.
+     */
+    public int forEachFavorite(FavoriteRow row) {
+        String sql = "SELECT user_id, movie_id FROM favorite";
+
+        try {
+            return inTransaction(uow -> {
+                int count = 0;
+                try (PreparedStatement st = prepare(uow, sql)) {
+                    st.setFetchSize(SCAN_FETCH_SIZE);
+                    try (ResultSet rs = st.executeQuery()) {
+                        while (rs.next()) {
+                            row.accept(rs.getInt(1), rs.getInt(2));
+                            count++;
+                        }
+                    }
+                }
+                return count;
+            });
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao percorrer favoritos: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Versão da lista de favoritos de um usuário (usada na ETag): quantidade de
+     * itens, último item adicionado e última atualização dos filmes. Uma
+     * consulta só, no lugar da lista completa.
+     * 
+     * @param userId ID do usuário
+     * @return A versão da lista
+     */
+    public String getListVersion(int userId) {
+        String sql = "SELECT COUNT(*) AS total, MAX(l.created_at) AS added, MAX(m.updated_at) AS updated " +
+                "FROM favorite l LEFT JOIN movies m ON m.id = l.movie_id WHERE l.user_id = ?";
+
+        try (PreparedStatement st = prepare(sql)) {
+            st.setInt(1, userId);
+            try (ResultSet rs = st.executeQuery()) {
+                rs.next();
+                return rs.getLong("total") + "|" + rs.getString("added") + "|" + rs.getString("updated");
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao buscar versão de favoritos: " + e.getMessage(), e);
+        }
+    }
+
     /**
      * Adiciona um filme aos favoritos de um usuário.
      * Se o filme já estiver nos favoritos, não faz nada (ON CONFLICT DO NOTHING).
@@ -44,7 +102,7 @@ public class FavoriteDAO extends DAO {
 
         String sql = "INSERT INTO favorite (user_id, movie_id) VALUES (?, ?) ON CONFLICT DO NOTHING";
 
-        try (PreparedStatement st = conexao.prepareStatement(sql)) {
+        try (PreparedStatement st = prepare(sql)) {
             st.setInt(1, favorite.getUserId());
             st.setInt(2, favorite.getMovieId());
 
@@ -63,7 +121,7 @@ public class FavoriteDAO extends DAO {
     public boolean removeFromFavorites(Favorite favorite) {
         String sql = "DELETE FROM favorite WHERE user_id = ? AND movie_id = ?";
 
-        try (PreparedStatement st = conexao.prepareStatement(sql)) {
+        try (PreparedStatement st = prepare(sql)) {
             st.setInt(1, favorite.getUserId());
             st.setInt(2, favorite.getMovieId());
 
@@ -82,7 +140,7 @@ public class FavoriteDAO extends DAO {
     public boolean isInFavorites(Favorite favorite) {
         String sql = "SELECT 1 FROM favorite WHERE user_id = ? AND movie_id = ?";
 
-        try (PreparedStatement st = conexao.prepareStatement(sql)) {
+        try (PreparedStatement st = prepare(sql)) {
             st.setInt(1, favorite.getUserId());
             st.setInt(2, favorite.getMovieId());
 
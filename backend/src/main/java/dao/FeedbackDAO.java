@@ -4,11 +4,29 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import model.Feedback;
+import util.Log;
 
 public class FeedbackDAO extends DAO {
 
+    /** Resultado de {@link #upsert} */
+    public enum UpsertResult {
+        CREATED, UPDATED, IGNORED, MOVIE_NOT_FOUND, ERROR
+    }
+
+    /** Recebe uma linha de {@link #forEachFeedback} */
+    @FunctionalInterface
+    public interface FeedbackRow {
+        void accept(int userId, int movieId, boolean feedback);
+    }
+
+    /** SQLSTATE de violação de chave estrangeira */
+    private static final String FOREIGN_KEY_VIOLATION = "23503";
+
     public FeedbackDAO(String serverName, String mydatabase, int porta, String username, String password) {
         super();
         conectar(serverName, mydatabase, porta, username, password);
@@ -25,22 +43,107 @@ public class FeedbackDAO extends DAO {
      */
     public boolean insert(Feedback feedback) {
         boolean status = false;
-        try {
-            String sql = "INSERT INTO feedbacks (user_id, movie_id, feedback) VALUES (?, ?, ?)";
-            PreparedStatement st = conexao.prepareStatement(sql);
+        String sql = "INSERT INTO feedbacks (user_id, movie_id, feedback) VALUES (?, ?, ?)";
+        try (PreparedStatement st = prepare(sql)) {
             st.setInt(1, feedback.getUserId());
             st.setInt(2, feedback.getMovieId());
             st.setBoolean(3, feedback.getFeedback());
             
             int affectedRows = st.executeUpdate();
             status = (affectedRows > 0);
-            st.close();
         } catch (SQLException e) {
-            System.err.println("Erro ao inserir interação: " + e.getMessage());
+            Log.error("Erro ao inserir interação: {}", e.getMessage());
         }
         return status;
     }
 
+    /**
+     * Cria ou atualiza a interação em um único comando (sem SELECT prévio).
+     * A atualização só acontece se o valor mudar; se for igual, nenhuma linha
+     * é retornada e a interação é ignorada. Cliques duplos concorrentes são
+     * resolvidos pelo próprio banco, pela chave (user_id, movie_id).
+     * @param feedback A interação a ser gravada
+     * @return O resultado da operação; MOVIE_NOT_FOUND se o filme não estiver
+     *         cadastrado (violação da chave estrangeira)
+     */
+    public UpsertResult upsert(Feedback feedback) {
+        String sql = "INSERT INTO feedbacks (user_id, movie_id, feedback) VALUES (?, ?, ?) " +
+                "ON CONFLICT (user_id, movie_id) DO UPDATE SET feedback = EXCLUDED.feedback " +
+                "WHERE feedbacks.feedback IS DISTINCT FROM EXCLUDED.feedback " +
+                "RETURNING (xmax = 0) AS inserted";
+        try (PreparedStatement st = prepare(sql)) {
+            st.setInt(1, feedback.getUserId());
+            st.setInt(2, feedback.getMovieId());
+            st.setBoolean(3, feedback.getFeedback());
+            ResultSet rs = st.executeQuery();
+
+            // Sem linha retornada: o valor gravado já era o mesmo
+            UpsertResult result = UpsertResult.IGNORED;
+            if (rs.next()) {
+                result = rs.getBoolean("inserted") ? UpsertResult.CREATED : UpsertResult.UPDATED;
+            }
+            rs.close();
+            return result;
+        } catch (SQLException e) {
+            if (FOREIGN_KEY_VIOLATION.equals(e.getSQLState()) && e.getMessage().contains("movie_id")) {
+                return UpsertResult.MOVIE_NOT_FOUND;
+            }
+            Log.error("Erro ao gravar interação: {}", e.getMessage());
+            return UpsertResult.ERROR;
+        }
+    }
+
+    /**
+     * Cria ou atualiza várias interações do mesmo usuário em um único comando,
+     * com as mesmas regras de {@link #upsert}. Os filmes precisam ser distintos
+     * (o Postgres não atualiza a mesma linha duas vezes no mesmo comando) e já
+     * estar cadastrados.
+     * @param userId O ID do usuário
+     * @param feedbacks As interações a serem gravadas
+     * @return Resultado de cada filme, indexado pelo ID; todos ERROR se o
+     *         comando falhar
+     */
+    public Map<Integer, UpsertResult> upsertAll(int userId, List<Feedback> feedbacks) {
+        Map<Integer, UpsertResult> results = new HashMap<>();
+        if (feedbacks.isEmpty()) {
+            return results;
+        }
+        Integer[] movieIds = new Integer[feedbacks.size()];
+        Boolean[] values = new Boolean[feedbacks.size()];
+        for (int i = 0; i < feedbacks.size(); i++) {
+            movieIds[i] = feedbacks.get(i).getMovieId();
+            values[i] = feedbacks.get(i).getFeedback();
+        }
+
+        // unnest mantém o texto do SQL fixo, independente do tamanho do lote
+        String sql = "INSERT INTO feedbacks (user_id, movie_id, feedback) " +
+                "SELECT ?, t.movie_id, t.feedback FROM unnest(?::integer[], ?::boolean[]) AS t(movie_id, feedback) " +
+                "ON CONFLICT (user_id, movie_id) DO UPDATE SET feedback = EXCLUDED.feedback " +
+                "WHERE feedbacks.feedback IS DISTINCT FROM EXCLUDED.feedback " +
+                "RETURNING movie_id, (xmax = 0) AS inserted";
+        try (PreparedStatement st = prepare(sql)) {
+            st.setInt(1, userId);
+            st.setArray(2, conexao.createArrayOf("integer", movieIds));
+            st.setArray(3, conexao.createArrayOf("boolean", values));
+            ResultSet rs = st.executeQuery();
+
+            for (Integer movieId : movieIds) {
+                results.put(movieId, UpsertResult.IGNORED);
+            }
+            while (rs.next()) {
+                results.put(rs.getInt("movie_id"),
+                        rs.getBoolean("inserted") ? UpsertResult.CREATED : UpsertResult.UPDATED);
+            }
+            rs.close();
+        } catch (SQLException e) {
+            Log.error("Erro ao gravar interações em lote: {}", e.getMessage());
+            for (Integer movieId : movieIds) {
+                results.put(movieId, UpsertResult.ERROR);
+            }
+        }
+        return results;
+    }
+
     /**
      * Busca todas as interações de um usuário específico
      * @param userId O ID do usuário
@@ -48,9 +151,8 @@ public class FeedbackDAO extends DAO {
      */
     public ArrayList<Feedback> getFeedbacksByUserId(int userId) {
         ArrayList<Feedback> interacoes = new ArrayList<>();
-        try {
-            String sql = "SELECT * FROM feedbacks WHERE user_id = ?";
-            PreparedStatement st = conexao.prepareStatement(sql);
+        String sql = "SELECT * FROM feedbacks WHERE user_id = ?";
+        try (PreparedStatement st = prepare(sql)) {
             st.setInt(1, userId);
             ResultSet rs = st.executeQuery();
 
@@ -60,13 +162,42 @@ public class FeedbackDAO extends DAO {
                 interacoes.add(new Feedback(userId, movieId, feedback));
             }
             rs.close();
-            st.close();
         } catch (SQLException e) {
-            System.err.println("Erro ao buscar interações do usuário: " + e.getMessage());
+            Log.error("Erro ao buscar interações do usuário: {}", e.getMessage());
         }
         return interacoes;
     }
 
+    /**
+     * Percorre todas as interações sem montar objetos (usado pelo treino
+     * local de fatores, que lê a tabela inteira). Roda em uma transação
+     * própria, com cursor: as linhas chegam em lotes e a conexão do DAO
+     * continua livre para as requisições.
+     * @param row Chamado para cada interação
+     * @return Número de interações lidas, ou -1 em caso de erro
+     */
+    public int forEachFeedback(FeedbackRow row) {
+        String sql = "SELECT user_id, movie_id, feedback FROM feedbacks";
+        try {
+            return inTransaction(uow -> {
+                int count = 0;
+                try (PreparedStatement st = prepare(uow, sql)) {
+                    st.setFetchSize(SCAN_FETCH_SIZE);
+                    try (ResultSet rs = st.executeQuery()) {
+                        while (rs.next()) {
+                            row.accept(rs.getInt(1), rs.getInt(2), rs.getBoolean(3));
+                            count++;
+                        }
+                    }
+                }
+                return count;
+            });
+        } catch (SQLException e) {
+            Log.error("Erro ao percorrer interações: {}", e.getMessage());
+            return -1;
+        }
+    }
+
     /**
      * Busca interações de um usuário com um filme específico
      * @param userId O ID do usuário
@@ -75,9 +206,8 @@ public class FeedbackDAO extends DAO {
      */
     public Feedback getFeedback(int userId, int movieId) {
         Feedback feedback = null;
-        try {
-            String sql = "SELECT * FROM feedbacks WHERE user_id = ? AND movie_id = ?";
-            PreparedStatement st = conexao.prepareStatement(sql);
+        String sql = "SELECT * FROM feedbacks WHERE user_id = ? AND movie_id = ?";
+        try (PreparedStatement st = prepare(sql)) {
             st.setInt(1, userId);
             st.setInt(2, movieId);
             ResultSet rs = st.executeQuery();
@@ -87,9 +217,8 @@ public class FeedbackDAO extends DAO {
                 feedback = new Feedback(userId, movieId, value);
             }
             rs.close();
-            st.close();
         } catch (SQLException e) {
-            System.err.println("Erro ao buscar interação específica: " + e.getMessage());
+            Log.error("Erro ao buscar interação específica: {}", e.getMessage());
         }
         return feedback;
     }
@@ -101,16 +230,14 @@ public class FeedbackDAO extends DAO {
      */
     public boolean clearAllById(int userId) {
         boolean status = false;
-        try {
-            String sql = "DELETE FROM feedbacks WHERE user_id = ?";
-            PreparedStatement st = conexao.prepareStatement(sql);
+        String sql = "DELETE FROM feedbacks WHERE user_id = ?";
+        try (PreparedStatement st = prepare(sql)) {
             st.setInt(1, userId);
             
             int affectedRows = st.executeUpdate();
             status = (affectedRows > 0); // Considera sucesso mesmo se não houver registros para excluir
-            st.close();
         } catch (SQLException e) {
-            System.err.println("Erro ao limpar interações do usuário: " + e.getMessage());
+            Log.error("Erro ao limpar interações do usuário: {}", e.getMessage());
         }
         return status;
     }
@@ -122,18 +249,16 @@ public class FeedbackDAO extends DAO {
      */
     public boolean update(Feedback feedback) {
         boolean status = false;
-        try {
-            String sql = "UPDATE feedbacks SET feedback = ? WHERE user_id = ? AND movie_id = ?";
-            PreparedStatement st = conexao.prepareStatement(sql);
+        String sql = "UPDATE feedbacks SET feedback = ? WHERE user_id = ? AND movie_id = ?";
+        try (PreparedStatement st = prepare(sql)) {
             st.setBoolean(1, feedback.getFeedback());
             st.setInt(2, feedback.getUserId());
             st.setInt(3, feedback.getMovieId());
             
             int affectedRows = st.executeUpdate();
             status = (affectedRows > 0);
-            st.close();
         } catch (SQLException e) {
-            System.err.println("Erro ao atualizar interação: " + e.getMessage());
+            Log.error("Erro ao atualizar interação: {}", e.getMessage());
         }
         return status;
     }
@@ -145,9 +270,8 @@ public class FeedbackDAO extends DAO {
      */
     public int countfeedbacks(int userId) {
         int count = 0;
-        try {
-            String sql = "SELECT COUNT(*) FROM feedbacks WHERE user_id = ?";
-            PreparedStatement st = conexao.prepareStatement(sql);
+        String sql = "SELECT COUNT(*) FROM feedbacks WHERE user_id = ?";
+        try (PreparedStatement st = prepare(sql)) {
             st.setInt(1, userId);
             ResultSet rs = st.executeQuery();
             
@@ -155,9 +279,8 @@ public class FeedbackDAO extends DAO {
                 count = rs.getInt(1);
             }
             rs.close();
-            st.close();
         } catch (SQLException e) {
-            System.err.println("Erro ao contar interações: " + e.getMessage());
+            Log.error("Erro ao contar interações: {}", e.getMessage());
         }
         return count;
     }
@@ -170,17 +293,15 @@ public class FeedbackDAO extends DAO {
      */
     public boolean removeFeedback(int userId, int movieId) {
         boolean status = false;
-        try {
-            String sql = "DELETE FROM feedbacks WHERE user_id = ? AND movie_id = ?";
-            PreparedStatement st = conexao.prepareStatement(sql);
+        String sql = "DELETE FROM feedbacks WHERE user_id = ? AND movie_id = ?";
+        try (PreparedStatement st = prepare(sql)) {
             st.setInt(1, userId);
             st.setInt(2, movieId);
             
             int affectedRows = st.executeUpdate();
             status = (affectedRows > 0);
-            st.close();
         } catch (SQLException e) {
-            System.err.println("Erro ao remover interação: " + e.getMessage());
+            Log.error("Erro ao remover interação: {}", e.getMessage());
         }
         return status;
     }
@@ -3,11 +3,11 @@ package dao;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
 
 import model.Genre;
+import util.Log;
 
 public class GenreDAO extends DAO {
 
@@ -27,17 +27,15 @@ public class GenreDAO extends DAO {
      */
     public boolean insert(Genre genre) {
         boolean status = false;
-        try {
-            String sql = "INSERT INTO genres (id, name) VALUES (?, ?) ON CONFLICT (id) DO NOTHING";
-            PreparedStatement st = conexao.prepareStatement(sql);
+        String sql = "INSERT INTO genres (id, name) VALUES (?, ?) ON CONFLICT (id) DO NOTHING";
+        try (PreparedStatement st = prepare(sql)) {
             st.setInt(1, genre.getId());
             st.setString(2, genre.getName());
             
             int affectedRows = st.executeUpdate();
             status = (affectedRows > 0);
-            st.close();
         } catch (SQLException e) {
-            System.err.println("Erro ao inserir gênero: " + e.getMessage());
+            Log.error("Erro ao inserir gênero: {}", e.getMessage());
         }
         return status;
     }
@@ -49,9 +47,8 @@ public class GenreDAO extends DAO {
      */
     public Genre getById(int id) {
         Genre genre = null;
-        try {
-            String sql = "SELECT * FROM genres WHERE id = ?";
-            PreparedStatement st = conexao.prepareStatement(sql);
+        String sql = "SELECT * FROM genres WHERE id = ?";
+        try (PreparedStatement st = prepare(sql)) {
             st.setInt(1, id);
             ResultSet rs = st.executeQuery();
 
@@ -62,9 +59,8 @@ public class GenreDAO extends DAO {
                 );
             }
             rs.close();
-            st.close();
         } catch (SQLException e) {
-            System.err.println("Erro ao buscar gênero por ID: " + e.getMessage());
+            Log.error("Erro ao buscar gênero por ID: {}", e.getMessage());
         }
         return genre;
     }
@@ -75,10 +71,9 @@ public class GenreDAO extends DAO {
      */
     public List<Genre> getAll() {
         List<Genre> genres = new ArrayList<>();
-        try {
-            String sql = "SELECT * FROM genres ORDER BY name";
-            Statement st = conexao.createStatement();
-            ResultSet rs = st.executeQuery(sql);
+        String sql = "SELECT * FROM genres ORDER BY name";
+        try (PreparedStatement st = prepare(sql)) {
+            ResultSet rs = st.executeQuery();
 
             while (rs.next()) {
                 Genre genre = new Genre(
@@ -88,9 +83,8 @@ public class GenreDAO extends DAO {
                 genres.add(genre);
             }
             rs.close();
-            st.close();
         } catch (SQLException e) {
-            System.err.println("Erro ao buscar todos os gêneros: " + e.getMessage());
+            Log.error("Erro ao buscar todos os gêneros: {}", e.getMessage());
         }
         return genres;
     }
@@ -102,17 +96,15 @@ public class GenreDAO extends DAO {
      */
     public boolean update(Genre genre) {
         boolean status = false;
-        try {
-            String sql = "UPDATE genres SET name = ? WHERE id = ?";
-            PreparedStatement st = conexao.prepareStatement(sql);
+        String sql = "UPDATE genres SET name = ? WHERE id = ?";
+        try (PreparedStatement st = prepare(sql)) {
             st.setString(1, genre.getName());
             st.setInt(2, genre.getId());
 
             int affectedRows = st.executeUpdate();
             status = (affectedRows > 0);
-            st.close();
         } catch (SQLException e) {
-            System.err.println("Erro ao atualizar gênero: " + e.getMessage());
+            Log.error("Erro ao atualizar gênero: {}", e.getMessage());
         }
         return status;
     }
@@ -124,16 +116,14 @@ public class GenreDAO extends DAO {
      */
     public boolean delete(int id) {
         boolean status = false;
-        try {
-            String sql = "DELETE FROM genres WHERE id = ?";
-            PreparedStatement st = conexao.prepareStatement(sql);
+        String sql = "DELETE FROM genres WHERE id = ?";
+        try (PreparedStatement st = prepare(sql)) {
             st.setInt(1, id);
             
             int affectedRows = st.executeUpdate();
             status = (affectedRows > 0);
-            st.close();
         } catch (SQLException e) {
-            System.err.println("Erro ao excluir gênero: " + e.getMessage());
+            Log.error("Erro ao excluir gênero: {}", e.getMessage());
         }
         return status;
     }
@@ -0,0 +1,316 @@
+package dao;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import util.JfrEvents;
+import util.Metrics;
+import util.ServerTiming;
+import util.Tracing;
+
+/**
+ * Envolve um PreparedStatement para medir o tempo de execução das queries.
+ *
+ * Só os métodos execute* são cronometrados (entram no Server-Timing, nas
+ * estatísticas por formato de SQL e viram spans quando a requisição é
+ * rastreada); os demais são repassados diretamente para o statement original.
+ *
+ * Para o log de queries lentas, os parâmetros set* são guardados e as linhas
+ * lidas do ResultSet são contadas; uma SELECT lenta é registrada quando o
+ * ResultSet ou o statement é fechado. Cada execução também gera um evento
+ * JFR {@code flixmate.DbQuery}.
+ *
+ * Statements que vêm do {@link StatementCache} voltam para o cache no
+ * close(), em vez de serem fechados; o ResultSet aberto é fechado antes.
+ */
+final class InstrumentedStatement implements InvocationHandler {
+
+    private static final Metrics.Histogram QUERY_DURATION = Metrics.histogram(
+            "flixmate_db_query_duration_seconds",
+            "Tempo de execução das queries no PostgreSQL",
+            "dao", "operation");
+    private static final Metrics.Counter QUERY_ERRORS = Metrics.counter(
+            "flixmate_db_query_errors_total",
+            "Queries que terminaram com erro",
+            "dao", "operation");
+
+    private final PreparedStatement target;
+    private final String dao;
+    private final String sql;
+    private final SqlShape shape;
+    private final StatementCache cache;
+
+    private boolean closed;
+    /** ResultSet da última execução, fechado ao devolver o statement ao cache */
+    private ResultSet openResultSet;
+
+    /** Parâmetros ligados ao statement, indexados a partir de 1 */
+    private Object[] parameters;
+    private int parameterCount;
+    /** SELECT lenta aguardando a contagem de linhas */
+    private SlowSelect pendingSlow;
+
+    private InstrumentedStatement(PreparedStatement target, String dao, String sql, StatementCache cache) {
+        this.target = target;
+        this.dao = dao;
+        this.sql = sql;
+        this.shape = SqlShape.of(sql);
+        this.cache = cache;
+    }
+
+    /**
+     * Cria o proxy instrumentado
+     *
+     * @param target Statement original
+     * @param dao    Nome do DAO que executa a query
+     * @param sql    SQL do statement
+     * @param cache  Cache para onde o statement volta ao ser fechado, ou null
+     * @return O statement instrumentado
+     */
+    static PreparedStatement wrap(PreparedStatement target, String dao, String sql, StatementCache cache) {
+        return (PreparedStatement) Proxy.newProxyInstance(
+                PreparedStatement.class.getClassLoader(),
+                new Class<?>[] { PreparedStatement.class },
+                new InstrumentedStatement(target, dao, sql, cache));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        if (method.getDeclaringClass() == Object.class) {
+            return invokeTarget(method, args);
+        }
+        if ("close".equals(name)) {
+            close();
+            return null;
+        }
+        if ("isClosed".equals(name)) {
+            return closed || target.isClosed();
+        }
+        if (closed) {
+            // Depois de devolvido ao cache, o statement pertence a outra chamada
+            throw new SQLException("Statement já foi fechado");
+        }
+        if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+            bind((Integer) args[0], "setNull".equals(name) ? null : args[1]);
+            return invokeTarget(method, args);
+        }
+        if ("clearParameters".equals(name)) {
+            parameters = null;
+            parameterCount = 0;
+            return invokeTarget(method, args);
+        }
+        if (!name.startsWith("execute")) {
+            return invokeTarget(method, args);
+        }
+
+        flushSlow();
+        NPlusOneDetector.record(shape.fingerprint);
+
+        Tracing.Span span = Tracing.current() == null ? null : Tracing.start("db " + dao + " " + shape.operation);
+        if (span != null) {
+            span.setAttribute("db.system", "postgresql");
+            span.setAttribute("db.statement", sql);
+        }
+
+        JfrEvents.DbQuery event = new JfrEvents.DbQuery();
+        event.begin();
+        long start = System.nanoTime();
+        Object result;
+        try {
+            result = invokeTarget(method, args);
+        } catch (Throwable e) {
+            commit(event, -1, true);
+            long elapsed = observe(start);
+            QUERY_ERRORS.inc(dao, shape.operation);
+            QueryStats.record(dao, shape, elapsed, true);
+            if (QueryStats.isSlow(elapsed)) {
+                QueryStats.logSlow(dao, shape, elapsed, -1, boundParameters());
+            }
+            if (span != null) {
+                span.setError(e);
+                span.close();
+            }
+            throw e;
+        }
+
+        commit(event, result instanceof Integer ? (Integer) result : -1, false);
+        long elapsed = observe(start);
+        if (span != null) {
+            span.close();
+        }
+        return track(result, elapsed);
+    }
+
+    private void commit(JfrEvents.DbQuery event, long rows, boolean failed) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.dao = dao;
+            event.operation = shape.operation;
+            event.sql = shape.fingerprint;
+            event.rows = rows;
+            event.failed = failed;
+            event.commit();
+        }
+    }
+
+    /**
+     * Fecha o statement ou o devolve ao cache (apenas na primeira chamada)
+     */
+    private void close() throws SQLException {
+        flushSlow();
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (cache == null) {
+            target.close();
+            return;
+        }
+        if (openResultSet != null) {
+            openResultSet.close();
+            openResultSet = null;
+        }
+        cache.release(sql, target);
+    }
+
+    /**
+     * Registra a duração no histograma e no Server-Timing
+     *
+     * @return A duração da execução, em nanossegundos
+     */
+    private long observe(long start) {
+        long elapsed = System.nanoTime() - start;
+        QUERY_DURATION.observe(elapsed / 1e9, dao, shape.operation);
+        ServerTiming.recordDb(elapsed);
+        return elapsed;
+    }
+
+    /**
+     * Registra a execução bem-sucedida e, para SELECTs, passa a contar as
+     * linhas do ResultSet
+     */
+    private Object track(Object result, long elapsed) {
+        QueryStats.Entry entry = QueryStats.record(dao, shape, elapsed, false);
+        boolean slow = QueryStats.isSlow(elapsed);
+
+        if (result instanceof ResultSet) {
+            openResultSet = (ResultSet) result;
+            RowCounter counter = new RowCounter((ResultSet) result, entry);
+            if (slow) {
+                pendingSlow = new SlowSelect(elapsed, counter, boundParameters());
+            }
+            return counter.proxy();
+        }
+
+        long rows = -1;
+        if (result instanceof Integer) {
+            rows = (Integer) result;
+        } else if (result instanceof Long) {
+            rows = (Long) result;
+        } else if (result instanceof int[]) {
+            rows = Arrays.stream((int[]) result).filter(n -> n > 0).sum();
+        }
+        if (entry != null && rows > 0) {
+            entry.rows.add(rows);
+        }
+        if (slow) {
+            QueryStats.logSlow(dao, shape, elapsed, rows, boundParameters());
+        }
+        return result;
+    }
+
+    private void bind(int index, Object value) {
+        if (!QueryStats.capturesParameters() || index < 1) {
+            return;
+        }
+        if (parameters == null || parameters.length <= index) {
+            parameters = Arrays.copyOf(parameters == null ? new Object[0] : parameters, Math.max(index + 1, 8));
+        }
+        parameters[index] = value;
+        parameterCount = Math.max(parameterCount, index);
+    }
+
+    /**
+     * Cópia dos parâmetros ligados (índice a partir de 1), ou null
+     */
+    private Object[] boundParameters() {
+        return parameters == null ? null : Arrays.copyOf(parameters, parameterCount + 1);
+    }
+
+    /**
+     * Escreve no log a SELECT lenta pendente, com as linhas lidas até agora
+     */
+    private void flushSlow() {
+        SlowSelect slow = pendingSlow;
+        if (slow != null) {
+            pendingSlow = null;
+            QueryStats.logSlow(dao, shape, slow.nanos, slow.counter.rows, slow.parameters);
+        }
+    }
+
+    private Object invokeTarget(Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static final class SlowSelect {
+        final long nanos;
+        final RowCounter counter;
+        final Object[] parameters;
+
+        SlowSelect(long nanos, RowCounter counter, Object[] parameters) {
+            this.nanos = nanos;
+            this.counter = counter;
+            this.parameters = parameters;
+        }
+    }
+
+    /**
+     * Conta as linhas lidas de um ResultSet
+     */
+    private final class RowCounter implements InvocationHandler {
+        private final ResultSet target;
+        private final QueryStats.Entry entry;
+        long rows;
+
+        RowCounter(ResultSet target, QueryStats.Entry entry) {
+            this.target = target;
+            this.entry = entry;
+        }
+
+        ResultSet proxy() {
+            return (ResultSet) Proxy.newProxyInstance(
+                    ResultSet.class.getClassLoader(), new Class<?>[] { ResultSet.class }, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            String name = method.getName();
+            if ("next".equals(name) && Boolean.TRUE.equals(result)) {
+                rows++;
+                if (entry != null) {
+                    entry.rows.increment();
+                }
+            } else if ("close".equals(name)) {
+                flushSlow();
+            }
+            return result;
+        }
+    }
+}
@@ -4,11 +4,23 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
 import model.Movie;
+import util.Log;
 
 public class MovieDAO extends DAO {
 
+    /** Recebe uma linha de {@link #forEachOverview} */
+    @FunctionalInterface
+    public interface OverviewRow {
+        void accept(int movieId, String overview);
+    }
+
     public MovieDAO(String serverName, String mydatabase, int porta, String username, String password) {
         super();
         conectar(serverName, mydatabase, porta, username, password);
@@ -26,9 +38,8 @@ public class MovieDAO extends DAO {
      */
     public boolean insert(Movie movie) {
         boolean status = false;
-        try {
-            String sql = "INSERT INTO movies (id, title, overview, rating, release_date, original_language, popularity, poster_path, backdrop_path) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
-            PreparedStatement st = conexao.prepareStatement(sql);
+        String sql = "INSERT INTO movies (id, title, overview, rating, release_date, original_language, popularity, poster_path, backdrop_path) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        try (PreparedStatement st = prepare(sql)) {
             st.setInt(1, movie.getId());
             st.setString(2, movie.getTitle());
             st.setString(3, movie.getOverview());
@@ -41,8 +52,6 @@ public class MovieDAO extends DAO {
 
             int rowsAffected = st.executeUpdate();
             status = rowsAffected > 0;
-
-            st.close();
         } catch (SQLException e) {
             throw new RuntimeException("Erro ao inserir filme: " + e.getMessage(), e);
         }
@@ -57,7 +66,7 @@ public class MovieDAO extends DAO {
      */
     public boolean exists(int movieId) {
         String sql = "SELECT 1 FROM movies WHERE id = ?";
-        try (PreparedStatement stmt = conexao.prepareStatement(sql)) {
+        try (PreparedStatement stmt = prepare(sql)) {
             stmt.setInt(1, movieId);
             try (ResultSet rs = stmt.executeQuery()) {
                 return rs.next(); // Retorna true se o filme for encontrado
@@ -67,6 +76,85 @@ public class MovieDAO extends DAO {
         }
     }
 
+    /**
+     * Verifica quais filmes de uma lista já existem no banco, em uma única consulta
+     * 
+     * @param movieIds IDs dos filmes a serem verificados
+     * @return Conjunto com os IDs encontrados
+     */
+    public Set<Integer> getExistingIds(Collection<Integer> movieIds) {
+        Set<Integer> existing = new HashSet<>();
+        if (movieIds.isEmpty()) {
+            return existing;
+        }
+        String sql = "SELECT id FROM movies WHERE id = ANY(?)";
+        try (PreparedStatement stmt = prepare(sql)) {
+            stmt.setArray(1, conexao.createArrayOf("integer", movieIds.toArray()));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    existing.add(rs.getInt("id"));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao verificar se os filmes existem: " + e.getMessage(), e);
+        }
+        return existing;
+    }
+
+    /**
+     * Busca a popularidade de vários filmes em uma única consulta
+     * 
+     * @param movieIds Os IDs dos filmes
+     * @return Popularidade de cada filme encontrado, indexada pelo ID
+     */
+    public Map<Integer, Double> getPopularityByIds(Collection<Integer> movieIds) {
+        Map<Integer, Double> popularity = new HashMap<>();
+        if (movieIds.isEmpty()) {
+            return popularity;
+        }
+        String sql = "SELECT id, popularity FROM movies WHERE id = ANY(?)";
+        try (PreparedStatement stmt = prepare(sql)) {
+            stmt.setArray(1, conexao.createArrayOf("integer", movieIds.toArray()));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    popularity.put(rs.getInt("id"), rs.getDouble("popularity"));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao buscar popularidade dos filmes: " + e.getMessage(), e);
+        }
+        return popularity;
+    }
+
+    /**
+     * Versão dos detalhes de um filme para um usuário, em uma única consulta:
+     * data de atualização do filme, rating do usuário e gêneros. Muda sempre
+     * que a resposta de detalhes mudaria (usada na ETag).
+     * 
+     * @param movieId O ID do filme
+     * @param userId  O ID do usuário
+     * @return A versão, ou null se o filme não existir
+     */
+    public String getDetailsVersion(int movieId, int userId) {
+        String sql = "SELECT m.updated_at, f.feedback, " +
+                "(SELECT string_agg(mg.genre_id::text, ',' ORDER BY mg.genre_id) " +
+                "FROM movie_genres mg WHERE mg.movie_id = m.id) AS genres " +
+                "FROM movies m LEFT JOIN feedbacks f ON f.movie_id = m.id AND f.user_id = ? " +
+                "WHERE m.id = ?";
+        try (PreparedStatement stmt = prepare(sql)) {
+            stmt.setInt(1, userId);
+            stmt.setInt(2, movieId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                return rs.getString("updated_at") + "|" + rs.getString("feedback") + "|" + rs.getString("genres");
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao buscar versão do filme: " + e.getMessage(), e);
+        }
+    }
+
     /**
      * Busca um filme pelo seu ID
      * 
@@ -75,9 +163,8 @@ public class MovieDAO extends DAO {
      */
     public Movie getMovieById(int movieId) {
         Movie movie = null;
-        try {
-            String sql = "SELECT * FROM movies WHERE id = ?";
-            PreparedStatement st = conexao.prepareStatement(sql);
+        String sql = "SELECT * FROM movies WHERE id = ?";
+        try (PreparedStatement st = prepare(sql)) {
             st.setInt(1, movieId);
             ResultSet rs = st.executeQuery();
             if (rs.next()) {
@@ -93,13 +180,43 @@ public class MovieDAO extends DAO {
                 movie.setBackdropPath(rs.getString("backdrop_path"));
             }
             rs.close();
-            st.close();
         } catch (SQLException e) {
             throw new RuntimeException("Erro ao buscar filme: " + e.getMessage(), e);
         }
         return movie;
     }
 
+    /**
+     * Busca vários filmes em uma única consulta (só os campos das listas:
+     * título, pôster e data de lançamento)
+     * 
+     * @param movieIds Os IDs dos filmes
+     * @return Os filmes encontrados, indexados pelo ID
+     */
+    public Map<Integer, Movie> getMoviesByIds(Collection<Integer> movieIds) {
+        Map<Integer, Movie> movies = new HashMap<>();
+        if (movieIds.isEmpty()) {
+            return movies;
+        }
+        String sql = "SELECT id, title, poster_path, release_date FROM movies WHERE id = ANY(?)";
+        try (PreparedStatement st = prepare(sql)) {
+            st.setArray(1, conexao.createArrayOf("integer", movieIds.toArray()));
+            try (ResultSet rs = st.executeQuery()) {
+                while (rs.next()) {
+                    Movie movie = new Movie();
+                    movie.setId(rs.getInt("id"));
+                    movie.setTitle(rs.getString("title"));
+                    movie.setPosterPath(rs.getString("poster_path"));
+                    movie.setReleaseDate(rs.getString("release_date"));
+                    movies.put(movie.getId(), movie);
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao buscar filmes: " + e.getMessage(), e);
+        }
+        return movies;
+    }
+
     /**
      * Atualiza um filme existente no banco de dados
      * 
@@ -108,9 +225,9 @@ public class MovieDAO extends DAO {
      */
     public boolean update(Movie movie) {
         boolean status = false;
-        try {
-            String sql = "UPDATE movies SET title = ?, release_date = ?, original_language = ?, popularity = ? WHERE id = ?";
-            PreparedStatement st = conexao.prepareStatement(sql);
+        String sql = "UPDATE movies SET title = ?, release_date = ?, original_language = ?, popularity = ?, " +
+                "updated_at = CURRENT_TIMESTAMP WHERE id = ?";
+        try (PreparedStatement st = prepare(sql)) {
             st.setString(1, movie.getTitle());
             st.setString(2, movie.getReleaseDate());
             st.setString(3, movie.getOriginalLanguage());
@@ -119,8 +236,6 @@ public class MovieDAO extends DAO {
 
             int rowsAffected = st.executeUpdate();
             status = rowsAffected > 0;
-
-            st.close();
         } catch (SQLException e) {
             throw new RuntimeException("Erro ao atualizar filme: " + e.getMessage(), e);
         }
@@ -135,21 +250,48 @@ public class MovieDAO extends DAO {
      */
     public ArrayList<Integer> getAllMoviesIds() {
         ArrayList<Integer> ids = new ArrayList<>();
-        try {
-            String sql = "SELECT id FROM movies";
-            PreparedStatement st = conexao.prepareStatement(sql);
+        String sql = "SELECT id FROM movies";
+        try (PreparedStatement st = prepare(sql)) {
             ResultSet rs = st.executeQuery();
             while (rs.next()) {
                 ids.add(rs.getInt("id"));
             }
             rs.close();
-            st.close();
         } catch (SQLException e) {
             throw new RuntimeException("Erro ao buscar IDs dos filmes: " + e.getMessage(), e);
         }
         return ids;
     }
 
+    /**
+     * Percorre as sinopses de todos os filmes que têm uma (usado pelo índice
+     * TF-IDF, que lê o catálogo inteiro), com cursor e em uma transação
+     * própria, fora da conexão do DAO
+     * 
+     * @param row Chamado para cada filme
+     * @return O número de filmes lidos
+     */
+    public int forEachOverview(OverviewRow row) {
+        String sql = "SELECT id, overview FROM movies WHERE overview IS NOT NULL AND overview <> ''";
+        try {
+            return inTransaction(uow -> {
+                int count = 0;
+                try (PreparedStatement st = prepare(uow, sql)) {
+                    st.setFetchSize(SCAN_FETCH_SIZE);
+                    try (ResultSet rs = st.executeQuery()) {
+                        while (rs.next()) {
+                            row.accept(rs.getInt(1), rs.getString(2));
+                            count++;
+                        }
+                    }
+                }
+                return count;
+            });
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao percorrer sinopses: " + e.getMessage(), e);
+        }
+    }
+
     /**
      * Busca filmes com base em uma consulta de pesquisa.
      * 
@@ -166,8 +308,7 @@ public class MovieDAO extends DAO {
                 "ORDER BY popularity DESC " +
                 "LIMIT ? OFFSET ?";
 
-        try {
-            PreparedStatement st = conexao.prepareStatement(sql);
+        try (PreparedStatement st = prepare(sql)) {
             st.setString(1, "%" + query.toLowerCase() + "%");
             st.setInt(2, limit);
             st.setInt(3, (page - 1) * limit);
@@ -183,14 +324,14 @@ public class MovieDAO extends DAO {
                 movies.add(movie);
             }
             rs.close();
-            st.close();
         } catch (SQLException e) {
             throw new RuntimeException("Erro ao buscar filmes: " + e.getMessage(), e);
         }
 
-        System.out.println("Filmes encontrados: " + movies.size());
-        for (Movie movie : movies) {
-            System.out.println(movie.toString());
+        Log.debug("Filmes encontrados: {}", movies.size());
+        if (Log.isDebugEnabled()) {
+            // Monta a string aqui: a lista é devolvida ao chamador e pode mudar depois
+            Log.debug("Filmes: {}", movies.toString());
         }
 
         return movies;
@@ -208,8 +349,7 @@ public class MovieDAO extends DAO {
         String sql = "SELECT COUNT(*) AS total FROM movies " +
                 "WHERE LOWER(title) LIKE ?";
 
-        try {
-            PreparedStatement st = conexao.prepareStatement(sql);
+        try (PreparedStatement st = prepare(sql)) {
             st.setString(1, "%" + query.toLowerCase() + "%");
 
             ResultSet rs = st.executeQuery();
@@ -218,12 +358,11 @@ public class MovieDAO extends DAO {
             }
 
             rs.close();
-            st.close();
         } catch (SQLException e) {
             throw new RuntimeException("Erro ao contar filmes: " + e.getMessage(), e);
         }
 
-        System.out.println("Total de filmes encontrados: " + total);
+        Log.debug("Total de filmes encontrados: {}", total);
         return total;
     }
 
@@ -241,8 +380,7 @@ public class MovieDAO extends DAO {
                 "ORDER BY popularity DESC " +
                 "LIMIT ? OFFSET ?";
 
-        try {
-            PreparedStatement st = conexao.prepareStatement(sql);
+        try (PreparedStatement st = prepare(sql)) {
             st.setInt(1, limit);
             st.setInt(2, (page - 1) * limit);
 
@@ -257,7 +395,6 @@ public class MovieDAO extends DAO {
                 movies.add(movie);
             }
             rs.close();
-            st.close();
         } catch (SQLException e) {
             throw new RuntimeException("Erro ao buscar filmes populares: " + e.getMessage(), e);
         }
@@ -275,8 +412,7 @@ public class MovieDAO extends DAO {
 
         String sql = "SELECT COUNT(*) AS total FROM movies";
 
-        try {
-            PreparedStatement st = conexao.prepareStatement(sql);
+        try (PreparedStatement st = prepare(sql)) {
             ResultSet rs = st.executeQuery();
 
             if (rs.next()) {
@@ -284,7 +420,6 @@ public class MovieDAO extends DAO {
             }
 
             rs.close();
-            st.close();
         } catch (SQLException e) {
             throw new RuntimeException("Erro ao contar filmes: " + e.getMessage(), e);
         }
@@ -372,9 +507,7 @@ public class MovieDAO extends DAO {
         params.add(limit);
         params.add((page - 1) * limit);
 
-        try {
-            PreparedStatement st = conexao.prepareStatement(sql.toString());
-
+        try (PreparedStatement st = prepare(sql.toString())) {
             for (int i = 0; i < params.size(); i++) {
                 Object param = params.get(i);
                 if (param instanceof String) {
@@ -398,12 +531,11 @@ public class MovieDAO extends DAO {
                 movies.add(movie);
             }
             rs.close();
-            st.close();
         } catch (SQLException e) {
             throw new RuntimeException("Erro ao buscar filmes com filtros: " + e.getMessage(), e);
         }
 
-        System.out.println("Filmes encontrados com filtros: " + movies.size());
+        Log.debug("Filmes encontrados com filtros: {}", movies.size());
         return movies;
     }
 
@@ -459,9 +591,7 @@ public class MovieDAO extends DAO {
             params.add(Integer.parseInt(yearTo));
         }
 
-        try {
-            PreparedStatement st = conexao.prepareStatement(sql.toString());
-
+        try (PreparedStatement st = prepare(sql.toString())) {
             for (int i = 0; i < params.size(); i++) {
                 Object param = params.get(i);
                 if (param instanceof String) {
@@ -477,12 +607,11 @@ public class MovieDAO extends DAO {
             }
 
             rs.close();
-            st.close();
         } catch (SQLException e) {
             throw new RuntimeException("Erro ao contar filmes com filtros: " + e.getMessage(), e);
         }
 
-        System.out.println("Total de filmes encontrados com filtros: " + total);
+        Log.debug("Total de filmes encontrados com filtros: {}", total);
         return total;
     }
 
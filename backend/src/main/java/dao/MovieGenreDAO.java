@@ -4,9 +4,14 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import model.Genre;
 import model.MovieGenre;
+import util.Log;
 
 public class MovieGenreDAO extends DAO {
 
@@ -27,18 +32,15 @@ public class MovieGenreDAO extends DAO {
      */
     public boolean insert(MovieGenre movieGenre) {
         boolean status = false;
-        try {
-            String sql = "INSERT INTO movie_genres (movie_id, genre_id) VALUES (?, ?)";
-            PreparedStatement st = conexao.prepareStatement(sql);
+        String sql = "INSERT INTO movie_genres (movie_id, genre_id) VALUES (?, ?)";
+        try (PreparedStatement st = prepare(sql)) {
             st.setInt(1, movieGenre.getMovieId());
             st.setInt(2, movieGenre.getGenreId());
 
             int rowsAffected = st.executeUpdate();
             status = rowsAffected > 0;
-
-            st.close();
         } catch (SQLException e) {
-            System.err.println("Erro ao inserir relação filme-gênero: " + e.getMessage());
+            Log.error("Erro ao inserir relação filme-gênero: {}", e.getMessage());
         }
         return status;
     }
@@ -51,17 +53,14 @@ public class MovieGenreDAO extends DAO {
      */
     public boolean deleteByMovieId(int movieId) {
         boolean status = false;
-        try {
-            String sql = "DELETE FROM movie_genres WHERE movie_id = ?";
-            PreparedStatement st = conexao.prepareStatement(sql);
+        String sql = "DELETE FROM movie_genres WHERE movie_id = ?";
+        try (PreparedStatement st = prepare(sql)) {
             st.setInt(1, movieId);
 
             int rowsAffected = st.executeUpdate();
             status = rowsAffected > 0;
-
-            st.close();
         } catch (SQLException e) {
-            System.err.println("Erro ao remover relações filme-gênero: " + e.getMessage());
+            Log.error("Erro ao remover relações filme-gênero: {}", e.getMessage());
         }
         return status;
     }
@@ -74,18 +73,15 @@ public class MovieGenreDAO extends DAO {
      */
     public boolean delete(MovieGenre movieGenre) {
         boolean status = false;
-        try {
-            String sql = "DELETE FROM movie_genres WHERE movie_id = ? AND genre_id = ?";
-            PreparedStatement st = conexao.prepareStatement(sql);
+        String sql = "DELETE FROM movie_genres WHERE movie_id = ? AND genre_id = ?";
+        try (PreparedStatement st = prepare(sql)) {
             st.setInt(1, movieGenre.getMovieId());
             st.setInt(2, movieGenre.getGenreId());
 
             int rowsAffected = st.executeUpdate();
             status = rowsAffected > 0;
-
-            st.close();
         } catch (SQLException e) {
-            System.err.println("Erro ao remover relação filme-gênero: " + e.getMessage());
+            Log.error("Erro ao remover relação filme-gênero: {}", e.getMessage());
         }
         return status;
     }
@@ -99,11 +95,10 @@ public class MovieGenreDAO extends DAO {
      */
     public ArrayList<Genre> getGenresByMovieId(int movieId) {
         ArrayList<Genre> genres = new ArrayList<>();
-        try {
-            String sql = "SELECT g.id, g.name FROM movie_genres mg " +
-                    "JOIN genres g ON mg.genre_id = g.id " +
-                    "WHERE mg.movie_id = ?";
-            PreparedStatement st = conexao.prepareStatement(sql);
+        String sql = "SELECT g.id, g.name FROM movie_genres mg " +
+                "JOIN genres g ON mg.genre_id = g.id " +
+                "WHERE mg.movie_id = ?";
+        try (PreparedStatement st = prepare(sql)) {
             st.setInt(1, movieId);
 
             ResultSet rs = st.executeQuery();
@@ -114,9 +109,34 @@ public class MovieGenreDAO extends DAO {
             }
 
             rs.close();
-            st.close();
         } catch (SQLException e) {
-            System.err.println("Erro ao buscar gêneros por ID de filme: " + e.getMessage());
+            Log.error("Erro ao buscar gêneros por ID de filme: {}", e.getMessage());
+        }
+        return genres;
+    }
+
+    /**
+     * Busca os IDs dos gêneros de vários filmes em uma única consulta
+     * 
+     * @param movieIds Os IDs dos filmes
+     * @return IDs dos gêneros de cada filme, indexados pelo ID do filme
+     *         (filmes sem gêneros ficam de fora)
+     */
+    public Map<Integer, List<Integer>> getGenreIdsByMovieIds(Collection<Integer> movieIds) {
+        Map<Integer, List<Integer>> genres = new HashMap<>();
+        if (movieIds.isEmpty()) {
+            return genres;
+        }
+        String sql = "SELECT movie_id, genre_id FROM movie_genres WHERE movie_id = ANY(?)";
+        try (PreparedStatement st = prepare(sql)) {
+            st.setArray(1, conexao.createArrayOf("integer", movieIds.toArray()));
+            try (ResultSet rs = st.executeQuery()) {
+                while (rs.next()) {
+                    genres.computeIfAbsent(rs.getInt("movie_id"), id -> new ArrayList<>()).add(rs.getInt("genre_id"));
+                }
+            }
+        } catch (SQLException e) {
+            Log.error("Erro ao buscar gêneros dos filmes: {}", e.getMessage());
         }
         return genres;
     }
@@ -129,9 +149,8 @@ public class MovieGenreDAO extends DAO {
      */
     public boolean checkIfMovieHasGenres(int movieId) {
         boolean hasGenres = false;
-        try {
-            String sql = "SELECT COUNT(*) FROM movie_genres WHERE movie_id = ?";
-            PreparedStatement st = conexao.prepareStatement(sql);
+        String sql = "SELECT COUNT(*) FROM movie_genres WHERE movie_id = ?";
+        try (PreparedStatement st = prepare(sql)) {
             st.setInt(1, movieId);
 
             ResultSet rs = st.executeQuery();
@@ -140,9 +159,8 @@ public class MovieGenreDAO extends DAO {
             }
 
             rs.close();
-            st.close();
         } catch (SQLException e) {
-            System.err.println("Erro ao verificar se o filme tem gêneros: " + e.getMessage());
+            Log.error("Erro ao verificar se o filme tem gêneros: {}", e.getMessage());
         }
         return hasGenres;
     }
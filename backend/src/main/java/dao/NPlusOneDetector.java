@@ -0,0 +1,132 @@
+package dao;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import util.Log;
+
+/**
+ * Detector de consultas N+1 para desenvolvimento e testes.
+ *
+ * Cada requisição conta as queries executadas pelos DAOs, agrupadas pelo
+ * formato do SQL (literais trocados por ?). Quando o mesmo formato passa de
+ * {@code threshold} execuções na mesma requisição, o detector registra a rota
+ * e o ponto de chamada, ou falha a requisição no modo {@code fail}.
+ *
+ * A contagem fica na thread da requisição: queries feitas em continuações
+ * assíncronas (depois de chamadas ao TMDB ou à IA) não são contadas.
+ */
+public final class NPlusOneDetector {
+
+    public enum Mode {
+        OFF, LOG, FAIL
+    }
+
+    private static final ThreadLocal<Scope> current = new ThreadLocal<>();
+    private static final StackWalker STACK = StackWalker.getInstance();
+
+    private static volatile Mode mode = Mode.OFF;
+    private static volatile int threshold = 10;
+
+    private NPlusOneDetector() {
+    }
+
+    /**
+     * Configura o detector
+     *
+     * @param modeName  off, log ou fail
+     * @param threshold Máximo de execuções do mesmo formato de SQL por requisição
+     */
+    public static void configure(String modeName, int threshold) {
+        try {
+            mode = Mode.valueOf(modeName.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            Log.warn("[🔁:🟡] N+1 DETECTOR: modo inválido '{}', usando OFF", modeName);
+            mode = Mode.OFF;
+        }
+        NPlusOneDetector.threshold = Math.max(1, threshold);
+        if (mode != Mode.OFF) {
+            Log.info("[🔁:🟢] N+1 DETECTOR: [modo: {}] [limite: {}]", mode, NPlusOneDetector.threshold);
+        }
+    }
+
+    /**
+     * Inicia a contagem da requisição na thread atual (filtro before)
+     *
+     * @param route Descrição da rota, resolvida só quando o detector está ativo
+     */
+    public static void begin(Supplier<String> route) {
+        if (mode == Mode.OFF) {
+            return;
+        }
+        current.set(new Scope(route.get()));
+    }
+
+    /**
+     * Encerra a contagem da requisição (filtro afterAfter)
+     */
+    public static void end() {
+        Scope scope = current.get();
+        if (scope == null) {
+            return;
+        }
+        current.remove();
+        Log.debug("[🔁:🟢] QUERIES: [rota: {}] [total: {}] [formatos: {}]",
+                scope.route, scope.total, scope.counts.size());
+    }
+
+    /**
+     * Conta uma execução do SQL na requisição atual
+     *
+     * @param shape Formato do SQL (ver {@link SqlShape#fingerprint})
+     */
+    static void record(String shape) {
+        Scope scope = current.get();
+        if (scope == null) {
+            return;
+        }
+
+        scope.total++;
+        int[] count = scope.counts.computeIfAbsent(shape, k -> new int[1]);
+        // Reporta uma vez por formato, no momento em que passa do limite
+        if (++count[0] != threshold + 1) {
+            return;
+        }
+
+        String callSite = callSite();
+        if (mode == Mode.FAIL) {
+            throw new IllegalStateException("Consulta N+1 em " + scope.route + ": '" + shape
+                    + "' executada mais de " + threshold + " vezes (" + callSite + ")");
+        }
+        Log.warn("[🔁:🔴] N+1 QUERY: [rota: {}] [limite: {}] [sql: {}] [origem: {}]",
+                scope.route, threshold, shape, callSite);
+    }
+
+    /**
+     * Primeiros frames fora da camada de acesso a dados (serviço e rota)
+     */
+    private static String callSite() {
+        return STACK.walk(frames -> frames
+                .filter(f -> !f.getClassName().startsWith("dao.")
+                        && !f.getClassName().startsWith("java.")
+                        && !f.getClassName().startsWith("jdk.")
+                        && !f.getClassName().startsWith("com.sun.proxy.")
+                        && !f.getClassName().startsWith("org.postgresql."))
+                .limit(2)
+                .map(f -> f.getClassName() + "." + f.getMethodName() + ":" + f.getLineNumber())
+                .collect(Collectors.joining(" <- ")));
+    }
+
+    private static final class Scope {
+        final String route;
+        final Map<String, int[]> counts = new HashMap<>();
+        int total;
+
+        Scope(String route) {
+            this.route = route;
+        }
+    }
+}
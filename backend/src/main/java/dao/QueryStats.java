@@ -0,0 +1,205 @@
+package dao;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import util.Log;
+
+/**
+ * Estatísticas das queries executadas pelos DAOs, agrupadas pelo formato do
+ * SQL, e log de queries lentas.
+ *
+ * Queries acima do limite configurado são registradas com os parâmetros
+ * (senhas ocultadas) e ficam disponíveis, junto com o ranking por tempo
+ * total, no servidor de administração.
+ */
+public final class QueryStats {
+
+    private static final int MAX_SHAPES = 1000;
+    private static final int RECENT_SLOW = 50;
+    private static final int MAX_PARAMETER_LENGTH = 100;
+
+    private static final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private static final Deque<Map<String, Object>> recentSlow = new ArrayDeque<>();
+
+    private static volatile long slowThresholdNanos = 200_000_000L;
+
+    private QueryStats() {
+    }
+
+    /**
+     * Configura o limite do log de queries lentas
+     *
+     * @param slowThresholdMillis Duração mínima (ms) para uma query ser
+     *                            considerada lenta; negativo desliga o log
+     */
+    public static void configure(long slowThresholdMillis) {
+        slowThresholdNanos = slowThresholdMillis < 0 ? -1 : slowThresholdMillis * 1_000_000L;
+    }
+
+    /**
+     * Indica se os parâmetros dos statements devem ser guardados para o log
+     */
+    static boolean capturesParameters() {
+        return slowThresholdNanos >= 0;
+    }
+
+    static boolean isSlow(long nanos) {
+        long threshold = slowThresholdNanos;
+        return threshold >= 0 && nanos >= threshold;
+    }
+
+    /**
+     * Registra uma execução
+     *
+     * @param dao   Nome do DAO
+     * @param shape Informações do SQL
+     * @param nanos Duração da execução
+     * @param error Se a execução terminou com erro
+     * @return A entrada do formato, para somar as linhas lidas depois
+     */
+    static Entry record(String dao, SqlShape shape, long nanos, boolean error) {
+        String key = dao + '\u0000' + shape.fingerprint;
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            if (entries.size() >= MAX_SHAPES) {
+                return null;
+            }
+            entry = entries.computeIfAbsent(key, k -> new Entry(dao, shape));
+        }
+        entry.calls.increment();
+        entry.totalNanos.add(nanos);
+        entry.maxNanos.accumulateAndGet(nanos, Math::max);
+        if (error) {
+            entry.errors.increment();
+        }
+        return entry;
+    }
+
+    /**
+     * Escreve uma query lenta no log
+     *
+     * @param dao        Nome do DAO
+     * @param shape      Informações do SQL
+     * @param nanos      Duração da execução
+     * @param rows       Linhas lidas ou alteradas (-1 se desconhecido)
+     * @param parameters Parâmetros ligados ao statement (índice a partir de 1)
+     */
+    static void logSlow(String dao, SqlShape shape, long nanos, long rows, Object[] parameters) {
+        String params = formatParameters(parameters, shape);
+        double millis = nanos / 1e6;
+        Log.warn("[🐢:🔴] SLOW QUERY: [dao: {}] [{} ms] [linhas: {}] [sql: {}] [params: {}]",
+                dao, String.format(Locale.ROOT, "%.1f", millis), rows, shape.fingerprint, params);
+
+        Map<String, Object> slow = new LinkedHashMap<>();
+        slow.put("timestamp", System.currentTimeMillis());
+        slow.put("dao", dao);
+        slow.put("durationMs", millis);
+        slow.put("rows", rows);
+        slow.put("sql", shape.fingerprint);
+        slow.put("params", params);
+        synchronized (recentSlow) {
+            if (recentSlow.size() == RECENT_SLOW) {
+                recentSlow.removeFirst();
+            }
+            recentSlow.addLast(slow);
+        }
+    }
+
+    /**
+     * Formatos de SQL com maior tempo total
+     *
+     * @param limit Quantidade máxima de itens
+     * @return Lista ordenada pelo tempo total, do maior para o menor
+     */
+    public static List<Map<String, Object>> top(int limit) {
+        List<Entry> sorted = new ArrayList<>(entries.values());
+        sorted.sort(Comparator.comparingLong((Entry e) -> e.totalNanos.sum()).reversed());
+
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (Entry entry : sorted.subList(0, Math.min(limit, sorted.size()))) {
+            long calls = entry.calls.sum();
+            long total = entry.totalNanos.sum();
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("dao", entry.dao);
+            item.put("operation", entry.operation);
+            item.put("sql", entry.fingerprint);
+            item.put("calls", calls);
+            item.put("errors", entry.errors.sum());
+            item.put("rows", entry.rows.sum());
+            item.put("totalMs", total / 1e6);
+            item.put("meanMs", calls > 0 ? total / 1e6 / calls : 0.0);
+            item.put("maxMs", entry.maxNanos.get() / 1e6);
+            result.add(item);
+        }
+        return result;
+    }
+
+    /**
+     * Últimas queries lentas registradas, da mais antiga para a mais recente
+     */
+    public static List<Map<String, Object>> recentSlow() {
+        synchronized (recentSlow) {
+            return new ArrayList<>(recentSlow);
+        }
+    }
+
+    private static String formatParameters(Object[] parameters, SqlShape shape) {
+        if (parameters == null) {
+            return "[]";
+        }
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 1; i < parameters.length; i++) {
+            if (sb.length() > 1) {
+                sb.append(", ");
+            }
+            sb.append(i).append('=');
+            Object value = parameters[i];
+            if (shape.sensitive.get(i) || isPasswordHash(value)) {
+                sb.append("<oculto>");
+            } else if (value instanceof String) {
+                String text = (String) value;
+                if (text.length() > MAX_PARAMETER_LENGTH) {
+                    text = text.substring(0, MAX_PARAMETER_LENGTH) + "...";
+                }
+                sb.append('\'').append(text).append('\'');
+            } else {
+                sb.append(value);
+            }
+        }
+        return sb.append(']').toString();
+    }
+
+    /**
+     * Hashes BCrypt são ocultados mesmo quando a coluna não foi identificada
+     */
+    private static boolean isPasswordHash(Object value) {
+        return value instanceof String && ((String) value).matches("\\$2[aby]?\\$\\d{2}\\$.*");
+    }
+
+    static final class Entry {
+        final String dao;
+        final String operation;
+        final String fingerprint;
+        final LongAdder calls = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder rows = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final AtomicLong maxNanos = new AtomicLong();
+
+        Entry(String dao, SqlShape shape) {
+            this.dao = dao;
+            this.operation = shape.operation;
+            this.fingerprint = shape.fingerprint;
+        }
+    }
+}
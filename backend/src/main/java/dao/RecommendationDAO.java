@@ -6,6 +6,7 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 
 import model.Recommendation;
+import util.Log;
 
 public class RecommendationDAO extends DAO {
 
@@ -26,18 +27,16 @@ public class RecommendationDAO extends DAO {
      */
     public boolean insert(int userId, int movieId, double score) {
         boolean status = false;
-        try {
-            String sql = "INSERT INTO recommendations (user_id, movie_id, score) VALUES (?, ?, ?)";
-            PreparedStatement st = conexao.prepareStatement(sql);
+        String sql = "INSERT INTO recommendations (user_id, movie_id, score) VALUES (?, ?, ?)";
+        try (PreparedStatement st = prepare(sql)) {
             st.setInt(1, userId);
             st.setInt(2, movieId);
             st.setDouble(3, score);
 
             int rowsAffected = st.executeUpdate();
             status = (rowsAffected > 0);
-            st.close();
         } catch (SQLException e) {
-            System.err.println("Erro ao inserir recomendação: " + e.getMessage());
+            Log.error("Erro ao inserir recomendação: {}", e.getMessage());
         }
         return status;
     }
@@ -51,9 +50,8 @@ public class RecommendationDAO extends DAO {
      */
     public ArrayList<Recommendation> getRecommendationsByUserId(int userId) {
         ArrayList<Recommendation> recommendations = new ArrayList<>();
-        try {
-            String sql = "SELECT * FROM recommendations WHERE user_id = ?";
-            PreparedStatement st = conexao.prepareStatement(sql);
+        String sql = "SELECT * FROM recommendations WHERE user_id = ?";
+        try (PreparedStatement st = prepare(sql)) {
             st.setInt(1, userId);
 
             ResultSet rs = st.executeQuery();
@@ -66,9 +64,8 @@ public class RecommendationDAO extends DAO {
             }
 
             rs.close();
-            st.close();
         } catch (SQLException e) {
-            System.err.println("Erro ao obter recomendações: " + e.getMessage());
+            Log.error("Erro ao obter recomendações: {}", e.getMessage());
         }
         return recommendations;
     }
@@ -83,17 +80,15 @@ public class RecommendationDAO extends DAO {
      */
     public boolean deleteRecommendation(int userId, int movieId) {
         boolean status = false;
-        try {
-            String sql = "DELETE FROM recommendations WHERE user_id = ? AND movie_id = ?";
-            PreparedStatement st = conexao.prepareStatement(sql);
+        String sql = "DELETE FROM recommendations WHERE user_id = ? AND movie_id = ?";
+        try (PreparedStatement st = prepare(sql)) {
             st.setInt(1, userId);
             st.setInt(2, movieId);
 
             int rowsAffected = st.executeUpdate();
             status = (rowsAffected > 0);
-            st.close();
         } catch (SQLException e) {
-            System.err.println("Erro ao remover recomendação: " + e.getMessage());
+            Log.error("Erro ao remover recomendação: {}", e.getMessage());
         }
         return status;
     }
@@ -107,9 +102,8 @@ public class RecommendationDAO extends DAO {
      */
     public boolean isMovieRecommended(int userId, int movieId) {
         boolean exists = false;
-        try {
-            String sql = "SELECT 1 FROM recommendations WHERE user_id = ? AND movie_id = ?";
-            PreparedStatement st = conexao.prepareStatement(sql);
+        String sql = "SELECT 1 FROM recommendations WHERE user_id = ? AND movie_id = ?";
+        try (PreparedStatement st = prepare(sql)) {
             st.setInt(1, userId);
             st.setInt(2, movieId);
 
@@ -117,9 +111,8 @@ public class RecommendationDAO extends DAO {
             exists = rs.next();
 
             rs.close();
-            st.close();
         } catch (SQLException e) {
-            System.err.println("Erro ao verificar recomendação: " + e.getMessage());
+            Log.error("Erro ao verificar recomendação: {}", e.getMessage());
         }
         return exists;
     }
@@ -132,9 +125,8 @@ public class RecommendationDAO extends DAO {
      */
     public ArrayList<Recommendation> getFavoritesByUserId(int userId) {
         ArrayList<Recommendation> recommendations = new ArrayList<>();
-        try {
-            String sql = "SELECT * FROM recommendations WHERE user_id = ? AND favorite = true";
-            PreparedStatement st = conexao.prepareStatement(sql);
+        String sql = "SELECT * FROM recommendations WHERE user_id = ? AND favorite = true";
+        try (PreparedStatement st = prepare(sql)) {
             st.setInt(1, userId);
 
             ResultSet rs = st.executeQuery();
@@ -147,9 +139,8 @@ public class RecommendationDAO extends DAO {
             }
 
             rs.close();
-            st.close();
         } catch (SQLException e) {
-            System.err.println("Erro ao obter recomendações: " + e.getMessage());
+            Log.error("Erro ao obter recomendações: {}", e.getMessage());
         }
         return recommendations;
     }
@@ -162,9 +153,8 @@ public class RecommendationDAO extends DAO {
      */
     public ArrayList<Recommendation> getWatchedByUserId(int userId) {
         ArrayList<Recommendation> recommendations = new ArrayList<>();
-        try {
-            String sql = "SELECT * FROM recommendations WHERE user_id = ? AND watched = true";
-            PreparedStatement st = conexao.prepareStatement(sql);
+        String sql = "SELECT * FROM recommendations WHERE user_id = ? AND watched = true";
+        try (PreparedStatement st = prepare(sql)) {
             st.setInt(1, userId);
 
             ResultSet rs = st.executeQuery();
@@ -177,9 +167,8 @@ public class RecommendationDAO extends DAO {
             }
 
             rs.close();
-            st.close();
         } catch (SQLException e) {
-            System.err.println("Erro ao obter recomendações: " + e.getMessage());
+            Log.error("Erro ao obter recomendações: {}", e.getMessage());
         }
         return recommendations;
     }
@@ -193,9 +182,8 @@ public class RecommendationDAO extends DAO {
      */
     public Recommendation getRecommendationByUserIdAndMovieId(int userId, int movieId) {
         Recommendation recommendation = null;
-        try {
-            String sql = "SELECT * FROM recommendations WHERE user_id = ? AND movie_id = ?";
-            PreparedStatement st = conexao.prepareStatement(sql);
+        String sql = "SELECT * FROM recommendations WHERE user_id = ? AND movie_id = ?";
+        try (PreparedStatement st = prepare(sql)) {
             st.setInt(1, userId);
             st.setInt(2, movieId);
 
@@ -207,9 +195,8 @@ public class RecommendationDAO extends DAO {
             }
 
             rs.close();
-            st.close();
         } catch (SQLException e) {
-            System.err.println("Erro ao obter recomendação: " + e.getMessage());
+            Log.error("Erro ao obter recomendação: {}", e.getMessage());
         }
         return recommendation;
     }
@@ -0,0 +1,156 @@
+package dao;
+
+import java.util.BitSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Informações derivadas do texto de um SQL: operação, formato (fingerprint)
+ * e quais parâmetros não podem aparecer em logs.
+ *
+ * Os DAOs preparam o mesmo SQL a cada chamada, então o resultado é guardado
+ * em cache pelo texto do SQL.
+ */
+final class SqlShape {
+
+    private static final int MAX_CACHED = 2048;
+    private static final Map<String, SqlShape> cache = new ConcurrentHashMap<>();
+
+    private static final Pattern SENSITIVE_COLUMN = Pattern.compile("(?i).*(pass|senha|secret|token).*");
+    private static final Pattern INSERT = Pattern.compile(
+            "(?is)INSERT\\s+INTO\\s+\\S+\\s*\\(([^)]*)\\)\\s*VALUES\\s*\\(([^)]*)\\)");
+
+    final String operation;
+    final String fingerprint;
+    /** Índices (a partir de 1) dos parâmetros que devem ser ocultados */
+    final BitSet sensitive;
+
+    private SqlShape(String sql) {
+        this.operation = operationOf(sql);
+        this.fingerprint = fingerprint(sql);
+        this.sensitive = sensitiveParameters(sql);
+    }
+
+    /**
+     * Retorna as informações do SQL, usando o cache
+     *
+     * @param sql SQL do statement
+     * @return As informações do SQL
+     */
+    static SqlShape of(String sql) {
+        SqlShape shape = cache.get(sql);
+        if (shape == null) {
+            shape = new SqlShape(sql);
+            if (cache.size() < MAX_CACHED) {
+                cache.put(sql, shape);
+            }
+        }
+        return shape;
+    }
+
+    /**
+     * Primeira palavra do SQL (select, insert, update, delete...)
+     */
+    static String operationOf(String sql) {
+        String trimmed = sql.stripLeading();
+        int end = 0;
+        while (end < trimmed.length() && Character.isLetter(trimmed.charAt(end))) {
+            end++;
+        }
+        return end == 0 ? "other" : trimmed.substring(0, end).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Formato do SQL: literais numéricos e strings viram ?, listas IN são
+     * reduzidas e espaços são normalizados
+     *
+     * @param sql SQL original
+     * @return O formato do SQL
+     */
+    static String fingerprint(String sql) {
+        return sql
+                .replaceAll("'(?:[^']|'')*'", "?")
+                .replaceAll("\\b\\d+(?:\\.\\d+)?\\b", "?")
+                .replaceAll("(?i)\\bIN\\s*\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)", "IN (?)")
+                .replaceAll("\\s+", " ")
+                .trim();
+    }
+
+    /**
+     * Encontra os parâmetros ligados a colunas de senha/token, tanto em
+     * {@code coluna = ?} quanto na lista de VALUES de um INSERT
+     */
+    private static BitSet sensitiveParameters(String sql) {
+        BitSet sensitive = new BitSet();
+
+        int index = 0;
+        boolean quoted = false;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+            } else if (c == '?' && !quoted) {
+                index++;
+                String column = columnBefore(sql, i);
+                if (column != null && SENSITIVE_COLUMN.matcher(column).matches()) {
+                    sensitive.set(index);
+                }
+            }
+        }
+
+        Matcher insert = INSERT.matcher(sql);
+        if (insert.find()) {
+            String[] columns = insert.group(1).split(",");
+            String[] values = insert.group(2).split(",");
+            int before = count(sql.substring(0, insert.start(2)));
+            int param = before;
+            for (int i = 0; i < values.length; i++) {
+                if (!"?".equals(values[i].trim())) {
+                    param += count(values[i]);
+                    continue;
+                }
+                param++;
+                if (i < columns.length && SENSITIVE_COLUMN.matcher(columns[i].trim()).matches()) {
+                    sensitive.set(param);
+                }
+            }
+        }
+        return sensitive;
+    }
+
+    /**
+     * Nome da coluna em {@code coluna = ?}, ou null se o ? não estiver numa
+     * comparação
+     */
+    private static String columnBefore(String sql, int questionMark) {
+        int i = questionMark - 1;
+        while (i >= 0 && Character.isWhitespace(sql.charAt(i))) {
+            i--;
+        }
+        if (i < 0 || sql.charAt(i) != '=') {
+            return null;
+        }
+        i--;
+        while (i >= 0 && Character.isWhitespace(sql.charAt(i))) {
+            i--;
+        }
+        int end = i + 1;
+        while (i >= 0 && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '_')) {
+            i--;
+        }
+        return end > i + 1 ? sql.substring(i + 1, end) : null;
+    }
+
+    private static int count(String text) {
+        int n = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '?') {
+                n++;
+            }
+        }
+        return n;
+    }
+}
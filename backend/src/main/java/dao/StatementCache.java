@@ -0,0 +1,116 @@
+package dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+import util.JfrEvents;
+import util.Log;
+import util.Metrics;
+
+/**
+ * Cache de PreparedStatements de uma conexão, indexado pelo texto do SQL.
+ *
+ * A conexão de cada DAO é compartilhada entre as threads do Jetty, então um
+ * statement nunca é usado por duas threads ao mesmo tempo: {@link #acquire}
+ * retira um statement livre do cache (ou prepara um novo) e
+ * {@link #release} o devolve quando o DAO o fecha. Reaproveitar o mesmo
+ * objeto permite que o PgJDBC use o statement preparado no servidor, sem
+ * reenviar e replanejar o SQL a cada requisição.
+ */
+final class StatementCache {
+
+    /** Limite de SQLs distintos por conexão (buscas com filtros geram variações) */
+    private static final int MAX_SQLS = 256;
+
+    private static final Metrics.Counter REQUESTS = Metrics.counter(
+            "flixmate_db_statement_cache_requests_total",
+            "Statements pedidos ao cache, por resultado (hit/miss)",
+            "dao", "result");
+
+    private final Connection connection;
+    private final String dao;
+    private final int maxIdlePerSql;
+    private final Map<String, Deque<PreparedStatement>> idle = new ConcurrentHashMap<>();
+
+    /**
+     * Construtor do cache
+     *
+     * @param connection    Conexão dona dos statements
+     * @param dao           Nome do DAO (label das métricas)
+     * @param maxIdlePerSql Statements livres mantidos por SQL
+     */
+    StatementCache(Connection connection, String dao, int maxIdlePerSql) {
+        this.connection = connection;
+        this.dao = dao;
+        this.maxIdlePerSql = maxIdlePerSql;
+    }
+
+    /**
+     * Retira um statement livre para o SQL ou prepara um novo
+     *
+     * @param sql SQL do statement
+     * @return Statement de uso exclusivo da thread até ser devolvido
+     * @throws SQLException se ocorrer um erro ao preparar o statement
+     */
+    PreparedStatement acquire(String sql) throws SQLException {
+        Deque<PreparedStatement> statements = idle.get(sql);
+        PreparedStatement statement = statements == null ? null : statements.pollFirst();
+        boolean hit = statement != null;
+        REQUESTS.inc(dao, hit ? "hit" : "miss");
+        JfrEvents.cacheAccess("statement", hit);
+        return hit ? statement : connection.prepareStatement(sql);
+    }
+
+    /**
+     * Devolve o statement ao cache, ou o fecha se o cache estiver cheio
+     *
+     * @param sql       SQL do statement
+     * @param statement Statement original (não instrumentado)
+     */
+    void release(String sql, PreparedStatement statement) {
+        try {
+            if (!statement.isClosed()) {
+                statement.clearParameters();
+                Deque<PreparedStatement> statements = idle.get(sql);
+                if (statements == null && idle.size() < MAX_SQLS) {
+                    statements = idle.computeIfAbsent(sql, k -> new ConcurrentLinkedDeque<>());
+                }
+                // O tamanho é aproximado sob concorrência, o que basta aqui
+                if (statements != null && statements.size() < maxIdlePerSql) {
+                    statements.offerFirst(statement);
+                    return;
+                }
+            }
+            statement.close();
+        } catch (SQLException e) {
+            Log.warn("[🗄️:🟡] STATEMENT CACHE: erro ao devolver statement: {}", e.getMessage());
+            try {
+                statement.close();
+            } catch (SQLException ignored) {
+                // O statement já está inutilizado
+            }
+        }
+    }
+
+    /**
+     * Fecha todos os statements livres (antes de fechar a conexão)
+     */
+    void closeAll() {
+        for (Deque<PreparedStatement> statements : idle.values()) {
+            PreparedStatement statement;
+            while ((statement = statements.pollFirst()) != null) {
+                try {
+                    statement.close();
+                } catch (SQLException e) {
+                    // A conexão será fechada em seguida
+                }
+            }
+        }
+        idle.clear();
+    }
+}
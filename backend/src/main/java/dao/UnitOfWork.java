@@ -0,0 +1,137 @@
+package dao;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+import util.Log;
+
+/**
+ * Unidade de trabalho: uma conexão exclusiva e uma única transação.
+ *
+ * As conexões dos DAOs ficam em autocommit e são compartilhadas entre as
+ * threads do Jetty, então não podem abrir transações. A unidade de trabalho
+ * usa uma conexão própria, retirada de um pequeno conjunto de conexões livres
+ * (abertas sob demanda), e a devolve depois do commit ou do rollback. Os DAOs
+ * participam recebendo a unidade nos seus métodos (ver {@link DAO#inTransaction}).
+ */
+public final class UnitOfWork {
+
+    /** Conexões livres mantidas para as próximas transações */
+    private static final int MAX_IDLE = 4;
+
+    private static final Deque<UnitOfWork> idle = new ConcurrentLinkedDeque<>();
+
+    private static volatile String url;
+    private static volatile String username;
+    private static volatile String password;
+    private static volatile int statementCacheSize;
+
+    private final Connection connection;
+    private final StatementCache statements;
+
+    private UnitOfWork(Connection connection) throws SQLException {
+        this.connection = connection;
+        this.connection.setAutoCommit(false);
+        this.statements = statementCacheSize > 0
+                ? new StatementCache(connection, "UnitOfWork", statementCacheSize)
+                : null;
+    }
+
+    /**
+     * Guarda os dados de conexão usados pelas transações (chamado pelo DAO ao conectar)
+     *
+     * @param url                URL JDBC
+     * @param username           Nome de usuário
+     * @param password           Senha
+     * @param statementCacheSize Statements livres mantidos por SQL em cada conexão
+     */
+    static void configure(String url, String username, String password, int statementCacheSize) {
+        UnitOfWork.url = url;
+        UnitOfWork.username = username;
+        UnitOfWork.password = password;
+        UnitOfWork.statementCacheSize = statementCacheSize;
+    }
+
+    /**
+     * Retira uma conexão livre ou abre uma nova
+     *
+     * @return Unidade de uso exclusivo até ser devolvida
+     * @throws SQLException se não for possível abrir a conexão
+     */
+    static UnitOfWork acquire() throws SQLException {
+        UnitOfWork uow;
+        while ((uow = idle.pollFirst()) != null) {
+            if (!uow.connection.isClosed()) {
+                return uow;
+            }
+        }
+        if (url == null) {
+            throw new SQLException("Banco de dados não configurado");
+        }
+        return new UnitOfWork(DriverManager.getConnection(url, username, password));
+    }
+
+    /**
+     * Prepara um statement na conexão da transação
+     *
+     * @param dao Nome do DAO (label das métricas)
+     * @param sql SQL a ser preparado
+     * @return O PreparedStatement instrumentado
+     * @throws SQLException se ocorrer um erro ao preparar o statement
+     */
+    PreparedStatement prepare(String dao, String sql) throws SQLException {
+        PreparedStatement statement = statements != null ? statements.acquire(sql) : connection.prepareStatement(sql);
+        return InstrumentedStatement.wrap(statement, dao, sql, statements);
+    }
+
+    /**
+     * Cria um array SQL na conexão da transação (para parâmetros {@code = ANY(?)})
+     */
+    Array createArrayOf(String typeName, Object[] elements) throws SQLException {
+        return connection.createArrayOf(typeName, elements);
+    }
+
+    void commit() throws SQLException {
+        connection.commit();
+    }
+
+    /**
+     * Desfaz a transação
+     *
+     * @return true se a conexão continua utilizável
+     */
+    boolean rollback() {
+        try {
+            connection.rollback();
+            return true;
+        } catch (SQLException e) {
+            Log.warn("[🗄️:🟡] TRANSACTION: erro no rollback: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Devolve a conexão ao conjunto de livres, ou a fecha
+     *
+     * @param reusable false se a conexão ficou em estado desconhecido
+     */
+    void release(boolean reusable) {
+        if (reusable && idle.size() < MAX_IDLE) {
+            idle.offerFirst(this);
+            return;
+        }
+        if (statements != null) {
+            statements.closeAll();
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            // A conexão já está inutilizada
+        }
+    }
+}
@@ -4,12 +4,12 @@ package dao;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
 
 import model.User;
 import util.PasswordUtil;
+import util.Log;
 
 public class UserDAO extends DAO {
 
@@ -34,7 +34,7 @@ public class UserDAO extends DAO {
         String sql = "INSERT INTO users " +
                 "(first_name, last_name, email, password, gender) " +
                 "VALUES (?, ?, ?, ?, ?) RETURNING id;";
-        try (PreparedStatement st = conexao.prepareStatement(sql)) {
+        try (PreparedStatement st = prepare(sql)) {
             st.setString(1, user.getFirstName());
             st.setString(2, user.getLastName());
             st.setString(3, user.getEmail());
@@ -48,11 +48,42 @@ public class UserDAO extends DAO {
                 }
             }
         } catch (SQLException e) {
-            System.err.println("Erro ao inserir usuário: " + e.getMessage());
+            Log.error("Erro ao inserir usuário: {}", e.getMessage());
         }
         return status;
     }
 
+    /**
+     * Insere um novo usuário dentro de uma unidade de trabalho. A senha já deve
+     * vir criptografada, para que o BCrypt não rode com a transação aberta.
+     * 
+     * @param uow          Unidade de trabalho em andamento
+     * @param user         O usuário a ser inserido (recebe o ID gerado)
+     * @param passwordHash Hash BCrypt da senha
+     * @return true se o usuário foi inserido, false se o email já estiver cadastrado
+     * @throws SQLException se ocorrer um erro no banco (a transação é desfeita)
+     */
+    public boolean insert(UnitOfWork uow, User user, String passwordHash) throws SQLException {
+        String sql = "INSERT INTO users " +
+                "(first_name, last_name, email, password, gender) " +
+                "VALUES (?, ?, ?, ?, ?) ON CONFLICT (email) DO NOTHING RETURNING id";
+        try (PreparedStatement st = prepare(uow, sql)) {
+            st.setString(1, user.getFirstName());
+            st.setString(2, user.getLastName());
+            st.setString(3, user.getEmail());
+            st.setString(4, passwordHash);
+            st.setString(5, String.valueOf(user.getGender()));
+
+            try (ResultSet rs = st.executeQuery()) {
+                if (!rs.next()) {
+                    return false;
+                }
+                user.setId(rs.getInt(1));
+                return true;
+            }
+        }
+    }
+
     /**
      * Busca um usuário pelo ID
      * 
@@ -62,7 +93,7 @@ public class UserDAO extends DAO {
     public User getById(int id) {
         User user = null;
         String sql = "SELECT first_name, last_name, email, password, gender FROM users WHERE id = ?";
-        try (PreparedStatement st = conexao.prepareStatement(sql)) {
+        try (PreparedStatement st = prepare(sql)) {
             st.setInt(1, id);
             try (ResultSet rs = st.executeQuery()) {
                 if (rs.next()) {
@@ -76,7 +107,7 @@ public class UserDAO extends DAO {
                 }
             }
         } catch (SQLException e) {
-            System.err.println("Erro ao buscar usuário por ID: " + e.getMessage());
+            Log.error("Erro ao buscar usuário por ID: {}", e.getMessage());
         }
         return user;
     }
@@ -89,8 +120,8 @@ public class UserDAO extends DAO {
     public List<User> getAll() {
         List<User> users = new ArrayList<>();
         String sql = "SELECT id, first_name, last_name, email, password, gender FROM users";
-        try (Statement st = conexao.createStatement();
-                ResultSet rs = st.executeQuery(sql)) {
+        try (PreparedStatement st = prepare(sql);
+                ResultSet rs = st.executeQuery()) {
 
             while (rs.next()) {
                 users.add(new User(
@@ -102,7 +133,7 @@ public class UserDAO extends DAO {
                         rs.getString("gender").charAt(0)));
             }
         } catch (SQLException e) {
-            System.err.println("Erro ao buscar todos os usuários: " + e.getMessage());
+            Log.error("Erro ao buscar todos os usuários: {}", e.getMessage());
         }
         return users;
     }
@@ -123,7 +154,7 @@ public class UserDAO extends DAO {
         String sql = "UPDATE users SET " +
                 "first_name = ?, last_name = ?, email = ?, password = ?, gender = ? " +
                 "WHERE id = ?";
-        try (PreparedStatement st = conexao.prepareStatement(sql)) {
+        try (PreparedStatement st = prepare(sql)) {
             st.setString(1, user.getFirstName());
             st.setString(2, user.getLastName());
             st.setString(3, user.getEmail());
@@ -133,11 +164,33 @@ public class UserDAO extends DAO {
 
             status = st.executeUpdate() > 0;
         } catch (SQLException e) {
-            System.err.println("Erro ao atualizar usuário: " + e.getMessage());
+            Log.error("Erro ao atualizar usuário: {}", e.getMessage());
         }
         return status;
     }
 
+    /**
+     * Atualiza os dados de perfil (nome, email e gênero) dentro de uma unidade
+     * de trabalho, sem alterar a senha
+     * 
+     * @param uow  Unidade de trabalho em andamento
+     * @param user O usuário com os dados atualizados
+     * @return true se o usuário foi encontrado e atualizado
+     * @throws SQLException se ocorrer um erro no banco (a transação é desfeita)
+     */
+    public boolean updateProfile(UnitOfWork uow, User user) throws SQLException {
+        String sql = "UPDATE users SET first_name = ?, last_name = ?, email = ?, gender = ? WHERE id = ?";
+        try (PreparedStatement st = prepare(uow, sql)) {
+            st.setString(1, user.getFirstName());
+            st.setString(2, user.getLastName());
+            st.setString(3, user.getEmail());
+            st.setString(4, String.valueOf(user.getGender()));
+            st.setInt(5, user.getId());
+
+            return st.executeUpdate() > 0;
+        }
+    }
+
     /**
      * Exclui um usuário pelo ID
      * 
@@ -147,11 +200,11 @@ public class UserDAO extends DAO {
     public boolean delete(int id) {
         boolean status = false;
         String sql = "DELETE FROM users WHERE id = ?";
-        try (PreparedStatement st = conexao.prepareStatement(sql)) {
+        try (PreparedStatement st = prepare(sql)) {
             st.setInt(1, id);
             status = st.executeUpdate() > 0;
         } catch (SQLException e) {
-            System.err.println("Erro ao excluir usuário: " + e.getMessage());
+            Log.error("Erro ao excluir usuário: {}", e.getMessage());
         }
         return status;
     }
@@ -166,7 +219,7 @@ public class UserDAO extends DAO {
     public boolean auth(String email, String password) {
         boolean ok = false;
         String sql = "SELECT password FROM users WHERE email = ?";
-        try (PreparedStatement st = conexao.prepareStatement(sql)) {
+        try (PreparedStatement st = prepare(sql)) {
             st.setString(1, email);
             try (ResultSet rs = st.executeQuery()) {
                 if (rs.next()) {
@@ -174,7 +227,7 @@ public class UserDAO extends DAO {
                 }
             }
         } catch (SQLException e) {
-            System.err.println("Erro durante autenticação: " + e.getMessage());
+            Log.error("Erro durante autenticação: {}", e.getMessage());
         }
         return ok;
     }
@@ -188,13 +241,13 @@ public class UserDAO extends DAO {
     public boolean emailExists(String email) {
         boolean exists = false;
         String sql = "SELECT 1 FROM users WHERE email = ?";
-        try (PreparedStatement st = conexao.prepareStatement(sql)) {
+        try (PreparedStatement st = prepare(sql)) {
             st.setString(1, email);
             try (ResultSet rs = st.executeQuery()) {
                 exists = rs.next();
             }
         } catch (SQLException e) {
-            System.err.println("Erro ao verificar email: " + e.getMessage());
+            Log.error("Erro ao verificar email: {}", e.getMessage());
         }
         return exists;
     }
@@ -208,7 +261,7 @@ public class UserDAO extends DAO {
     public User getByEmail(String email) {
         User user = null;
         String sql = "SELECT id, first_name, last_name, password, gender FROM users WHERE email = ?";
-        try (PreparedStatement st = conexao.prepareStatement(sql)) {
+        try (PreparedStatement st = prepare(sql)) {
             st.setString(1, email);
             try (ResultSet rs = st.executeQuery()) {
                 if (rs.next()) {
@@ -222,7 +275,7 @@ public class UserDAO extends DAO {
                 }
             }
         } catch (SQLException e) {
-            System.err.println("Erro ao buscar usuário por email: " + e.getMessage());
+            Log.error("Erro ao buscar usuário por email: {}", e.getMessage());
         }
         return user;
     }
@@ -243,8 +296,7 @@ public class UserDAO extends DAO {
                 "ORDER BY first_name ASC " +
                 "LIMIT ? OFFSET ?";
 
-        try {
-            PreparedStatement st = conexao.prepareStatement(sql);
+        try (PreparedStatement st = prepare(sql)) {
             String likeQuery = "%" + query.toLowerCase() + "%";
             st.setString(1, likeQuery);
             st.setString(2, likeQuery);
@@ -262,7 +314,6 @@ public class UserDAO extends DAO {
                 users.add(user);
             }
             rs.close();
-            st.close();
         } catch (SQLException e) {
             throw new RuntimeException("Erro ao buscar usuários: " + e.getMessage(), e);
         }
@@ -282,8 +333,7 @@ public class UserDAO extends DAO {
         String sql = "SELECT COUNT(*) AS total FROM users " +
                 "WHERE LOWER(first_name) LIKE ? OR LOWER(last_name) LIKE ? OR LOWER(email) LIKE ?";
 
-        try {
-            PreparedStatement st = conexao.prepareStatement(sql);
+        try (PreparedStatement st = prepare(sql)) {
             String likeQuery = "%" + query.toLowerCase() + "%";
             st.setString(1, likeQuery);
             st.setString(2, likeQuery);
@@ -295,7 +345,6 @@ public class UserDAO extends DAO {
             }
 
             rs.close();
-            st.close();
         } catch (SQLException e) {
             throw new RuntimeException("Erro ao contar usuários: " + e.getMessage(), e);
         }
@@ -317,8 +366,7 @@ public class UserDAO extends DAO {
                 "ORDER BY first_name ASC " +
                 "LIMIT ? OFFSET ?";
 
-        try {
-            PreparedStatement st = conexao.prepareStatement(sql);
+        try (PreparedStatement st = prepare(sql)) {
             st.setInt(1, limit);
             st.setInt(2, (page - 1) * limit);
 
@@ -333,7 +381,6 @@ public class UserDAO extends DAO {
             }
 
             rs.close();
-            st.close();
         } catch (SQLException e) {
             throw new RuntimeException("Erro ao buscar usuários: " + e.getMessage(), e);
         }
@@ -351,8 +398,7 @@ public class UserDAO extends DAO {
 
         String sql = "SELECT COUNT(*) AS total FROM users";
 
-        try {
-            PreparedStatement st = conexao.prepareStatement(sql);
+        try (PreparedStatement st = prepare(sql)) {
             ResultSet rs = st.executeQuery();
 
             if (rs.next()) {
@@ -360,7 +406,6 @@ public class UserDAO extends DAO {
             }
 
             rs.close();
-            st.close();
         } catch (SQLException e) {
             throw new RuntimeException("Erro ao contar usuários: " + e.getMessage(), e);
         }
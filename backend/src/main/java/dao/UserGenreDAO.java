@@ -4,9 +4,11 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.List;
 
 import model.Genre;
 import model.UserGenre;
+import util.Log;
 
 public class UserGenreDAO extends DAO {
 
@@ -26,22 +28,57 @@ public class UserGenreDAO extends DAO {
      * @return true se a inserção foi feita (ou já existia), false se houve erro
      */
     public boolean insert(UserGenre userGenre) {
-        try {
-            String sql = "INSERT INTO user_genres (user_id, genre_id) VALUES (?, ?) " +
-                    "ON CONFLICT (user_id, genre_id) DO NOTHING";
-            PreparedStatement st = conexao.prepareStatement(sql);
+        String sql = "INSERT INTO user_genres (user_id, genre_id) VALUES (?, ?) " +
+                "ON CONFLICT (user_id, genre_id) DO NOTHING";
+        try (PreparedStatement st = prepare(sql)) {
             st.setInt(1, userGenre.getUserId());
             st.setInt(2, userGenre.getGenreId());
 
             st.executeUpdate();
-            st.close();
             return true;
         } catch (SQLException e) {
-            System.err.println("Erro ao inserir gênero preferido: " + e.getMessage());
+            Log.error("Erro ao inserir gênero preferido: {}", e.getMessage());
             return false;
         }
     }
 
+    /**
+     * Adiciona vários gêneros preferidos em um único comando, dentro de uma
+     * unidade de trabalho. IDs que não existem na tabela de gêneros e
+     * duplicatas são ignorados.
+     * 
+     * @param uow      Unidade de trabalho em andamento
+     * @param userId   ID do usuário
+     * @param genreIds IDs dos gêneros
+     * @return Quantidade de gêneros inseridos
+     * @throws SQLException se ocorrer um erro no banco (a transação é desfeita)
+     */
+    public int insertAll(UnitOfWork uow, int userId, List<Integer> genreIds) throws SQLException {
+        String sql = "INSERT INTO user_genres (user_id, genre_id) " +
+                "SELECT ?, g.id FROM genres g WHERE g.id = ANY(?) " +
+                "ON CONFLICT (user_id, genre_id) DO NOTHING";
+        try (PreparedStatement st = prepare(uow, sql)) {
+            st.setInt(1, userId);
+            st.setArray(2, uow.createArrayOf("integer", genreIds.toArray()));
+            return st.executeUpdate();
+        }
+    }
+
+    /**
+     * Remove todos os gêneros preferidos de um usuário dentro de uma unidade de trabalho
+     * 
+     * @param uow    Unidade de trabalho em andamento
+     * @param userId ID do usuário
+     * @throws SQLException se ocorrer um erro no banco (a transação é desfeita)
+     */
+    public void removeAllByUserId(UnitOfWork uow, int userId) throws SQLException {
+        String sql = "DELETE FROM user_genres WHERE user_id = ?";
+        try (PreparedStatement st = prepare(uow, sql)) {
+            st.setInt(1, userId);
+            st.executeUpdate();
+        }
+    }
+
     /**
      * Remove um gênero preferido de um usuário
      * 
@@ -51,17 +88,15 @@ public class UserGenreDAO extends DAO {
      */
     public boolean delete(int userId, int genreId) {
         boolean status = false;
-        try {
-            String sql = "DELETE FROM user_genres WHERE user_id = ? AND genre_id = ?";
-            PreparedStatement st = conexao.prepareStatement(sql);
+        String sql = "DELETE FROM user_genres WHERE user_id = ? AND genre_id = ?";
+        try (PreparedStatement st = prepare(sql)) {
             st.setInt(1, userId);
             st.setInt(2, genreId);
 
             int affectedRows = st.executeUpdate();
             status = (affectedRows > 0);
-            st.close();
         } catch (SQLException e) {
-            System.err.println("Erro ao remover gênero preferido: " + e.getMessage());
+            Log.error("Erro ao remover gênero preferido: {}", e.getMessage());
         }
         return status;
     }
@@ -74,12 +109,11 @@ public class UserGenreDAO extends DAO {
      */
     public ArrayList<Genre> getPreferredGenres(int userId) {
         ArrayList<Genre> genres = new ArrayList<>();
-        try {
-            String sql = "SELECT g.id, g.name FROM genres g " +
-                    "JOIN user_genres upg ON g.id = upg.genre_id " +
-                    "WHERE upg.user_id = ? " +
-                    "ORDER BY g.name";
-            PreparedStatement st = conexao.prepareStatement(sql);
+        String sql = "SELECT g.id, g.name FROM genres g " +
+                "JOIN user_genres upg ON g.id = upg.genre_id " +
+                "WHERE upg.user_id = ? " +
+                "ORDER BY g.name";
+        try (PreparedStatement st = prepare(sql)) {
             st.setInt(1, userId);
 
             ResultSet rs = st.executeQuery();
@@ -91,9 +125,8 @@ public class UserGenreDAO extends DAO {
             }
 
             rs.close();
-            st.close();
         } catch (SQLException e) {
-            System.err.println("Erro ao buscar gêneros preferidos: " + e.getMessage());
+            Log.error("Erro ao buscar gêneros preferidos: {}", e.getMessage());
         }
         return genres;
     }
@@ -106,9 +139,8 @@ public class UserGenreDAO extends DAO {
      */
     public Genre getGenreById(int genreId) {
         Genre genre = null;
-        try {
-            String sql = "SELECT * FROM genres WHERE id = ?";
-            PreparedStatement st = conexao.prepareStatement(sql);
+        String sql = "SELECT * FROM genres WHERE id = ?";
+        try (PreparedStatement st = prepare(sql)) {
             st.setInt(1, genreId);
 
             ResultSet rs = st.executeQuery();
@@ -119,9 +151,8 @@ public class UserGenreDAO extends DAO {
             }
 
             rs.close();
-            st.close();
         } catch (SQLException e) {
-            System.err.println("Erro ao buscar gênero por ID: " + e.getMessage());
+            Log.error("Erro ao buscar gênero por ID: {}", e.getMessage());
         }
         return genre;
     }
@@ -134,9 +165,8 @@ public class UserGenreDAO extends DAO {
      */
     public boolean genreExists(int genreId) {
         boolean exists = false;
-        try {
-            String sql = "SELECT COUNT(*) FROM genres WHERE id = ?";
-            PreparedStatement st = conexao.prepareStatement(sql);
+        String sql = "SELECT COUNT(*) FROM genres WHERE id = ?";
+        try (PreparedStatement st = prepare(sql)) {
             st.setInt(1, genreId);
 
             ResultSet rs = st.executeQuery();
@@ -145,9 +175,8 @@ public class UserGenreDAO extends DAO {
             }
 
             rs.close();
-            st.close();
         } catch (SQLException e) {
-            System.err.println("Erro ao verificar existência do gênero: " + e.getMessage());
+            Log.error("Erro ao verificar existência do gênero: {}", e.getMessage());
         }
         return exists;
     }
@@ -162,14 +191,14 @@ public class UserGenreDAO extends DAO {
         boolean status = false;
         String sql = "DELETE FROM user_genres WHERE user_id = ?";
 
-        try (PreparedStatement st = conexao.prepareStatement(sql)) {
+        try (PreparedStatement st = prepare(sql)) {
             st.setInt(1, userId);
             int rowsAffected = st.executeUpdate();
             status = true; // Consider successful even if no rows were affected (user might not have any
                            // genres)
-            System.out.println("Removed " + rowsAffected + " preferred genres for user " + userId);
+            Log.debug("Removed {} preferred genres for user {}", rowsAffected, userId);
         } catch (SQLException e) {
-            System.err.println("Error removing all preferred genres for user " + userId + ": " + e.getMessage());
+            Log.error("Error removing all preferred genres for user {}: {}", userId, e.getMessage());
         }
 
         return status;
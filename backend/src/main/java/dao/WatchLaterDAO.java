@@ -28,7 +28,7 @@ public class WatchLaterDAO extends DAO {
         ArrayList<Integer> movieIds = new ArrayList<>();
         String sql = "SELECT movie_id FROM watchlater WHERE user_id = ? ORDER BY created_at DESC";
 
-        try (PreparedStatement st = conexao.prepareStatement(sql)) {
+        try (PreparedStatement st = prepare(sql)) {
             st.setInt(1, userId);
             ResultSet rs = st.executeQuery();
 
@@ -44,6 +44,30 @@ public class WatchLaterDAO extends DAO {
         return movieIds;
     }
 
+
+    /**
+     * Versão da lista de watchlist de um usuário (usada na ETag): quantidade de
+     * itens, último item adicionado e última atualização dos filmes. Uma
+     * consulta só, no lugar da lista completa.
+     * 
+     * @param userId ID do usuário
+     * @return A versão da lista
+     */
+    public String getListVersion(int userId) {
+        String sql = "SELECT COUNT(*) AS total, MAX(l.created_at) AS added, MAX(m.updated_at) AS updated " +
+                "FROM watchlater l LEFT JOIN movies m ON m.id = l.movie_id WHERE l.user_id = ?";
+
+        try (PreparedStatement st = prepare(sql)) {
+            st.setInt(1, userId);
+            try (ResultSet rs = st.executeQuery()) {
+                rs.next();
+                return rs.getLong("total") + "|" + rs.getString("added") + "|" + rs.getString("updated");
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Erro ao buscar versão de watchlater: " + e.getMessage(), e);
+        }
+    }
+
     /**
      * Adiciona um filme à watchlist de um usuário.
      * Se o filme já estiver na watchlist, não faz nada (ON CONFLICT DO NOTHING).
@@ -55,7 +79,7 @@ public class WatchLaterDAO extends DAO {
     public boolean addToWatchLater(WatchLater watchLater)  {
         String sql = "INSERT INTO watchlater (user_id, movie_id) VALUES (?, ?) ON CONFLICT DO NOTHING";
 
-        try (PreparedStatement st = conexao.prepareStatement(sql)) {
+        try (PreparedStatement st = prepare(sql)) {
             st.setInt(1, watchLater.getUserId());
             st.setInt(2, watchLater.getMovieId());
 
@@ -78,7 +102,7 @@ public class WatchLaterDAO extends DAO {
     public boolean removeFromWatchLater(WatchLater watchLater) {
         String sql = "DELETE FROM watchlater WHERE user_id = ? AND movie_id = ?";
 
-        try (PreparedStatement st = conexao.prepareStatement(sql)) {
+        try (PreparedStatement st = prepare(sql)) {
             st.setInt(1, watchLater.getUserId());
             st.setInt(2, watchLater.getMovieId());
 
@@ -101,7 +125,7 @@ public class WatchLaterDAO extends DAO {
     public boolean isInWatchLater(WatchLater watchLater) {
         String sql = "SELECT 1 FROM watchlater WHERE user_id = ? AND movie_id = ?";
 
-        try (PreparedStatement st = conexao.prepareStatement(sql)) {
+        try (PreparedStatement st = prepare(sql)) {
             st.setInt(1, watchLater.getUserId());
             st.setInt(2, watchLater.getMovieId());
 
@@ -0,0 +1,49 @@
+package model;
+
+import java.util.List;
+
+/**
+ * Dados públicos de um usuário (sem a senha) e seus gêneros preferidos.
+ * Imutável, para poder ser compartilhado pelo cache de usuários.
+ */
+public class UserSummary {
+    private final int id;
+    private final String firstName;
+    private final String lastName;
+    private final String email;
+    private final char gender;
+    private final List<Genre> preferredGenres;
+
+    public UserSummary(User user, List<Genre> preferredGenres) {
+        this.id = user.getId();
+        this.firstName = user.getFirstName();
+        this.lastName = user.getLastName();
+        this.email = user.getEmail();
+        this.gender = user.getGender();
+        this.preferredGenres = List.copyOf(preferredGenres);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public char getGender() {
+        return gender;
+    }
+
+    public List<Genre> getPreferredGenres() {
+        return preferredGenres;
+    }
+}
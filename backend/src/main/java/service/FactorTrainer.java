@@ -0,0 +1,190 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.google.gson.JsonArray;
+
+import util.FlixAi;
+import util.Log;
+import util.MatrixFactorization;
+import util.Metrics;
+
+/**
+ * Treino de fatores na própria JVM, a partir de feedbacks e favoritos.
+ *
+ * Um treino completo (ALS) roda na partida e a cada intervalo, numa thread
+ * daemon; entre um treino e outro, cada rating recebido em /api/rate aplica
+ * um passo de SGD no modelo em uso. Ratings que chegam durante um treino são
+ * reaplicados no modelo novo antes da troca.
+ */
+public class FactorTrainer implements FlixAi.LocalModel {
+
+    private static final Metrics.Counter RUNS = Metrics.counter(
+            "flixmate_trainer_runs_total",
+            "Treinos completos dos fatores locais, por resultado (ok/error)",
+            "outcome");
+    private static final Metrics.Histogram DURATION = Metrics.histogram(
+            "flixmate_trainer_duration_seconds",
+            "Tempo de cada etapa do treino dos fatores locais (load/train)",
+            "phase");
+    private static final Metrics.Counter ONLINE_UPDATES = Metrics.counter(
+            "flixmate_trainer_online_updates_total",
+            "Ratings aplicados por SGD no modelo em uso, por resultado",
+            "result");
+
+    /** Rating recebido durante um treino */
+    private static final class PendingRating {
+        final int userId;
+        final int movieId;
+        final float value;
+
+        PendingRating(int userId, int movieId, float value) {
+            this.userId = userId;
+            this.movieId = movieId;
+            this.value = value;
+        }
+    }
+
+    private final FeedbackService feedbackService;
+    private final FavoriteService favoriteService;
+    private final MatrixFactorization factorization;
+    private final float favoriteWeight;
+
+    private volatile MatrixFactorization.Model model;
+    // Vazão do último treino (ratings × iterações por segundo)
+    private volatile double ratingsPerSecond;
+    // Ratings recebidos durante um treino (null fora dele), protegidos por this
+    private List<PendingRating> pending;
+
+    /**
+     * @param feedbackService Feedbacks (like = 1, dislike = 0, peso 1)
+     * @param favoriteService Favoritos (like com peso {@code favoriteWeight})
+     * @param factorization   Parâmetros do treino
+     * @param favoriteWeight  Peso de um favorito em relação a um like
+     */
+    public FactorTrainer(FeedbackService feedbackService, FavoriteService favoriteService,
+            MatrixFactorization factorization, float favoriteWeight) {
+        this.feedbackService = feedbackService;
+        this.favoriteService = favoriteService;
+        this.factorization = factorization;
+        this.favoriteWeight = favoriteWeight;
+        Metrics.gauge("flixmate_trainer_ratings_per_second",
+                "Vazão do último treino dos fatores locais (ratings × iterações por segundo)",
+                () -> ratingsPerSecond);
+    }
+
+    /**
+     * Treina em segundo plano agora e a cada {@code retrainIntervalMillis}
+     *
+     * @param retrainIntervalMillis Intervalo entre os treinos completos
+     */
+    public void start(long retrainIntervalMillis) {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "factor-train");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::retrain, 0, retrainIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Treina os fatores do zero com todos os feedbacks e favoritos e troca o
+     * modelo em uso. Se a leitura ou o treino falhar, o modelo atual continua.
+     *
+     * @return true se o modelo foi trocado
+     */
+    public boolean retrain() {
+        synchronized (this) {
+            pending = new ArrayList<>();
+        }
+        try {
+            long start = System.nanoTime();
+            MatrixFactorization.Ratings ratings = new MatrixFactorization.Ratings();
+            int feedbacks = feedbackService.forEachFeedback(
+                    (userId, movieId, liked) -> ratings.add(userId, movieId, liked ? 1f : 0f, 1f));
+            if (feedbacks < 0) {
+                RUNS.inc("error");
+                return false;
+            }
+            int favorites = favoriteService.forEachFavorite(
+                    (userId, movieId) -> ratings.add(userId, movieId, 1f, favoriteWeight));
+            DURATION.observeSince(start, "load");
+            if (ratings.size() == 0) {
+                Log.info("[🧠:⚪] FACTORS NOT TRAINED: sem feedbacks nem favoritos");
+                RUNS.inc("ok");
+                return false;
+            }
+
+            long trainStart = System.nanoTime();
+            MatrixFactorization.Model trained = factorization.train(ratings);
+            long trainNanos = System.nanoTime() - trainStart;
+            DURATION.observe(trainNanos / 1e9, "train");
+
+            int replayed;
+            synchronized (this) {
+                for (PendingRating rating : pending) {
+                    trained.update(rating.userId, rating.movieId, rating.value, 1f);
+                }
+                replayed = pending.size();
+                model = trained;
+            }
+            ratingsPerSecond = (double) trained.getRatingCount() * factorization.getIterations() * 1e9
+                    / Math.max(1, trainNanos);
+            RUNS.inc("ok");
+            Log.info("[🧠:🟢] FACTORS TRAINED: [usuários: {}] [filmes: {}] [ratings: {}] [feedbacks: {}] "
+                    + "[favoritos: {}] [rmse: {}] [reaplicados: {}] [{} ms] [{} ratings/s]",
+                    trained.getUserCount(), trained.getItemCount(), trained.getRatingCount(), feedbacks, favorites,
+                    String.format("%.4f", trained.getRmse()), replayed, trainNanos / 1_000_000,
+                    (long) ratingsPerSecond);
+            return true;
+        } catch (RuntimeException e) {
+            RUNS.inc("error");
+            Log.error("[🧠:🔴] FACTORS TRAIN ERROR: {}", e.getMessage(), e);
+            return false;
+        } finally {
+            synchronized (this) {
+                pending = null;
+            }
+        }
+    }
+
+    @Override
+    public boolean isLoaded() {
+        return model != null;
+    }
+
+    @Override
+    public JsonArray rank(int userId, List<Integer> candidateIds, int topN) {
+        MatrixFactorization.Model current = model;
+        return current != null ? current.rank(userId, candidateIds, topN) : null;
+    }
+
+    /**
+     * Aplica os ratings novos no modelo em uso (um passo de SGD cada)
+     */
+    @Override
+    public void update(int userId, Map<Integer, Boolean> ratings) {
+        MatrixFactorization.Model current;
+        synchronized (this) {
+            if (pending != null) {
+                for (Map.Entry<Integer, Boolean> rating : ratings.entrySet()) {
+                    pending.add(new PendingRating(userId, rating.getKey(), rating.getValue() ? 1f : 0f));
+                }
+            }
+            current = model;
+        }
+        if (current == null) {
+            return;
+        }
+        for (Map.Entry<Integer, Boolean> rating : ratings.entrySet()) {
+            MatrixFactorization.UpdateResult result = current.update(userId, rating.getKey(),
+                    rating.getValue() ? 1f : 0f, 1f);
+            ONLINE_UPDATES.inc(result.name().toLowerCase());
+        }
+    }
+}
@@ -22,6 +22,26 @@ public class FavoriteService {
         return favoriteDAO.getFavoriteMovieIds(userId);
     }
 
+    /**
+     * Percorre os favoritos de todos os usuários (treino local de fatores).
+     *
+     * @param row chamado para cada favorito
+     * @return o número de favoritos lidos
+     */
+    public int forEachFavorite(FavoriteDAO.FavoriteRow row) {
+        return favoriteDAO.forEachFavorite(row);
+    }
+
+    /**
+     * Retorna a versão atual da lista de favoritos do usuário (para ETags).
+     *
+     * @param userId o ID do usuário
+     * @return a versão da lista
+     */
+    public String getFavoritesVersion(int userId) {
+        return favoriteDAO.getListVersion(userId);
+    }
+
     /**
      * Adiciona ou remove um filme dos favoritos do usuário.
      *
@@ -2,10 +2,13 @@ package service;
 
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import dao.FeedbackDAO;
 import model.Feedback;
+import util.Log;
 
 public class FeedbackService {
     private final FeedbackDAO feedbackDAO;
@@ -27,21 +30,31 @@ public class FeedbackService {
         try {
             Feedback feedback = feedbackDAO.getFeedback(userId, movieId);
             if (feedback == null) {
-                System.err.println("Feedback não encontrado");
+                Log.debug("Feedback não encontrado");
                 throw new NoSuchFieldException("Feedback não encontrado");
             }
             return feedback;
         } catch (Exception e) {
             if (e instanceof NoSuchFieldException) {
-                System.err.println("Erro: " + e.getMessage());
+                Log.debug("Erro: {}", e.getMessage());
                 return null;
             } else {
-                System.err.println("Erro inesperado: " + e.getMessage());
+                Log.error("Erro inesperado: {}", e.getMessage());
                 return null;
             }
         }
     }
 
+    /**
+     * Percorre os feedbacks de todos os usuários (treino local de fatores).
+     *
+     * @param row Chamado para cada feedback
+     * @return Número de feedbacks lidos, ou -1 em caso de erro
+     */
+    public int forEachFeedback(FeedbackDAO.FeedbackRow row) {
+        return feedbackDAO.forEachFeedback(row);
+    }
+
     /**
      * Obtém todos os feedbacks de um usuário específico.
      *
@@ -52,16 +65,16 @@ public class FeedbackService {
         try {
             ArrayList<Feedback> feedbacks = feedbackDAO.getFeedbacksByUserId(userId);
             if (feedbacks == null || feedbacks.isEmpty()) {
-                System.err.println("Nenhum feedback encontrado para o usuário " + userId);
+                Log.debug("Nenhum feedback encontrado para o usuário {}", userId);
                 throw new NoSuchFieldException("Nenhum feedback encontrado");
             }
             return feedbacks;
         } catch (Exception e) {
             if (e instanceof NoSuchFieldException) {
-                System.err.println("Erro: " + e.getMessage());
+                Log.debug("Erro: {}", e.getMessage());
                 return null;
             } else {
-                System.err.println("Erro inesperado: " + e.getMessage());
+                Log.error("Erro inesperado: {}", e.getMessage());
                 return null;
             }
         }
@@ -77,36 +90,36 @@ public class FeedbackService {
     public boolean clearAllById(int userId) {
         try {
             if (feedbackDAO.getFeedbacksByUserId(userId) == null) {
-                System.err.println("Nenhum feedback encontrado para o usuário " + userId);
+                Log.debug("Nenhum feedback encontrado para o usuário {}", userId);
                 throw new NoSuchFieldException("Nenhum feedback encontrado");
             }
 
             if (userId <= 0) {
-                System.err.println("Usuário não encontrado");
+                Log.debug("Usuário não encontrado");
                 throw new NoSuchFieldException("Usuário não encontrado");
             }
 
             if (feedbackDAO.getFeedbacksByUserId(userId).isEmpty()) {
-                System.err.println("Nenhum feedback encontrado para o usuário " + userId);
+                Log.debug("Nenhum feedback encontrado para o usuário {}", userId);
                 throw new NoSuchFieldException("Nenhum feedback encontrado");
             }
 
             if (feedbackDAO.clearAllById(userId)) {
-                System.out.println("Feedbacks removidos com sucesso");
+                Log.info("Feedbacks removidos com sucesso");
             } else {
-                System.err.println("Erro ao remover feedbacks");
+                Log.error("Erro ao remover feedbacks");
                 throw new SQLException("Erro ao remover feedbacks");
             }
             return true;
         } catch (Exception e) {
             if (e instanceof NoSuchFieldException) {
-                System.err.println("Erro: " + e.getMessage());
+                Log.debug("Erro: {}", e.getMessage());
                 return false;
             } else if (e instanceof SQLException) {
-                System.err.println("Erro: " + e.getMessage());
+                Log.error("Erro: {}", e.getMessage());
                 return false;
             } else {
-                System.err.println("Erro inesperado: " + e.getMessage());
+                Log.error("Erro inesperado: {}", e.getMessage());
             }
             return false;
         }
@@ -123,7 +136,7 @@ public class FeedbackService {
         try {
             List<Feedback> feedbacks = feedbackDAO.getFeedbacksByUserId(userId);
             if (feedbacks == null || feedbacks.isEmpty()) {
-                System.err.println("Nenhum feedback encontrado");
+                Log.debug("Nenhum feedback encontrado");
                 throw new NoSuchFieldException("Nenhum feedback encontrado");
             }
 
@@ -134,10 +147,10 @@ public class FeedbackService {
         } catch (Exception e) {
             // Tratar exceções específicas
             if (e instanceof NoSuchFieldException) {
-                System.err.println("Erro: " + e.getMessage());
+                Log.debug("Erro: {}", e.getMessage());
                 return null;
             } else {
-                System.err.println("Erro inesperado: " + e.getMessage());
+                Log.error("Erro inesperado: {}", e.getMessage());
                 return null;
             }
         }
@@ -155,16 +168,16 @@ public class FeedbackService {
         try {
             Feedback feedback = feedbackDAO.getFeedback(userId, movieId);
             if (feedback == null) {
-                System.err.println("Feedback não encontrado");
+                Log.debug("Feedback não encontrado");
                 throw new NoSuchFieldException("Feedback não encontrado");
             }
             return feedback.getFeedback() ? 1 : 0;
         } catch (Exception e) {
             if (e instanceof NoSuchFieldException) {
-                System.err.println("Erro: " + e.getMessage());
+                Log.debug("Erro: {}", e.getMessage());
                 return null;
             } else {
-                System.err.println("Erro inesperado: " + e.getMessage());
+                Log.error("Erro inesperado: {}", e.getMessage());
                 return null;
             }
         }
@@ -172,52 +185,89 @@ public class FeedbackService {
 
     /**
      * Armazena ou atualiza o rating de um usuário para um filme específico.
+     * Usa um único upsert, sem consultar o feedback atual antes.
      *
      * @param userId  ID do usuário
      * @param movieId ID do filme
      * @param rating  Valor do rating (true para positivo, false para negativo)
-     * @return 1 se o rating foi criado, 2 se atualizado, 3 se ignorado, 0 em caso
-     *         de erro
+     * @return 1 se o rating foi criado, 2 se atualizado, 3 se ignorado, 4 se o
+     *         filme não estiver cadastrado, 0 em caso de erro
      */
     public int storeOrUpdateRating(int userId, int movieId, boolean rating) {
         try {
-            Feedback feedback = feedbackDAO.getFeedback(userId, movieId);
-            if (feedback != null) {
-                if (feedback.getFeedback() == rating) {
-                    System.out.println("[🏅:⚪] RATING IGNORED: [userId: " + rating + ", movieId: " + userId
-                            + ", rating: " + rating + "]");
+            FeedbackDAO.UpsertResult result = feedbackDAO.upsert(new Feedback(userId, movieId, rating));
+            switch (result) {
+                case CREATED:
+                    Log.info("[🏅:🟢] RATING CREATE SUCCESS: [userId: {}, movieId: {}, rating: {}]",
+                            userId, movieId, rating);
+                    return 1;
+                case UPDATED:
+                    Log.info("[🏅:🔵] RATING UPDATE SUCCESS: [userId: {}, movieId: {}, rating: {}]",
+                            userId, movieId, rating);
+                    return 2;
+                case IGNORED:
+                    Log.info("[🏅:⚪] RATING IGNORED: [userId: {}, movieId: {}, rating: {}]",
+                            userId, movieId, rating);
                     return 3;
-                } else {
-                    feedback.setFeedback(rating);
-                    boolean updated = feedbackDAO.update(feedback);
-                    if (updated) {
-                        System.out.println("[🏅:🔵] RATING UPDATE SUCCESS: [userId: " + rating + ", movieId: " + userId
-                                + ", rating: " + rating + "]");
-                    } else {
-                        System.out.println("[🏅:🔴] RATING UPDATE ERROR: [userId: " + rating + ", movieId: " + userId
-                                + ", rating: " + rating + "]");
-                    }
-                    return updated ? 2 : 0;
-                }
-            } else {
-                feedback = new Feedback(userId, movieId, rating);
-                boolean created = feedbackDAO.insert(feedback);
-                if (created) {
-                    System.out.println("[🏅:🟢] RATING CREATE SUCCESS: [userId: " + rating + ", movieId: " + userId
-                            + ", rating: " + rating + "]");
-                } else {
-                    System.out.println("[🏅:🔴] RATING CREATE ERROR: [userId: " + rating + ", movieId: " + userId
-                            + ", rating: " + rating + "]");
-                }
-                return created ? 1 : 0;
+                case MOVIE_NOT_FOUND:
+                    Log.debug("[🏅:⁉️] RATING MOVIE NOT FOUND: [userId: {}, movieId: {}]", userId, movieId);
+                    return 4;
+                default:
+                    Log.warn("[🏅:🔴] RATING UPSERT ERROR: [userId: {}, movieId: {}, rating: {}]",
+                            userId, movieId, rating);
+                    return 0;
             }
         } catch (Exception e) {
-            System.err.println("[🏅:🔴] RATING ERROR: storeOrUpdateRating - " + e.getMessage());
-            e.printStackTrace();
+            Log.error("[🏅:🔴] RATING ERROR: storeOrUpdateRating - {}", e.getMessage(), e);
             return 0;
         }
     }
 
+    /**
+     * Armazena ou atualiza vários ratings de um usuário em um único upsert.
+     *
+     * @param userId    ID do usuário
+     * @param feedbacks Ratings a serem gravados (filmes distintos e já cadastrados)
+     * @return Código de cada filme, indexado pelo ID, com os mesmos valores de
+     *         {@link #storeOrUpdateRating}
+     */
+    public Map<Integer, Integer> storeOrUpdateRatings(int userId, List<Feedback> feedbacks) {
+        Map<Integer, Integer> codes = new HashMap<>();
+        int created = 0, updated = 0, ignored = 0, failed = 0;
+        for (Map.Entry<Integer, FeedbackDAO.UpsertResult> entry : feedbackDAO.upsertAll(userId, feedbacks).entrySet()) {
+            int code;
+            switch (entry.getValue()) {
+                case CREATED -> {
+                    code = 1;
+                    created++;
+                }
+                case UPDATED -> {
+                    code = 2;
+                    updated++;
+                }
+                case IGNORED -> {
+                    code = 3;
+                    ignored++;
+                }
+                case MOVIE_NOT_FOUND -> {
+                    code = 4;
+                    failed++;
+                }
+                default -> {
+                    code = 0;
+                    failed++;
+                }
+            }
+            codes.put(entry.getKey(), code);
+        }
+        if (failed > 0) {
+            Log.warn("[🏅:🔴] RATING BATCH ERROR: [userId: {}, erros: {}]", userId, failed);
+        }
+        Log.info("[🏅:🟢] RATING BATCH: [userId: {}, criados: {}, atualizados: {}, ignorados: {}]",
+                userId, created, updated, ignored);
+        return codes;
+    }
+
     /**
      * Remove o rating de um usuário para um filme específico.
      *
@@ -229,7 +279,7 @@ public class FeedbackService {
         try {
             return feedbackDAO.removeFeedback(userId, movieId);
         } catch (Exception e) {
-            System.err.println("Erro ao remover feedback: " + e.getMessage());
+            Log.error("Erro ao remover feedback: {}", e.getMessage());
             return false;
         }
     }
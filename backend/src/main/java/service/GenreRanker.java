@@ -0,0 +1,80 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.gson.JsonArray;
+
+import model.Genre;
+import util.FlixAi;
+
+/**
+ * Ranking local usado quando a IA não responde: pontua os candidatos pelos
+ * gêneros em comum com os gêneros preferidos do usuário, com a popularidade
+ * desempatando. São três consultas indexadas, rápidas o bastante para rodar
+ * no lugar da chamada à IA.
+ */
+public class GenreRanker implements FlixAi.FallbackRanker {
+    private final UserGenreService userGenreService;
+    private final MovieService movieService;
+    private final MovieGenreService movieGenreService;
+
+    public GenreRanker(UserGenreService userGenreService, MovieService movieService,
+            MovieGenreService movieGenreService) {
+        this.userGenreService = userGenreService;
+        this.movieService = movieService;
+        this.movieGenreService = movieGenreService;
+    }
+
+    /**
+     * Ordena os candidatos por (gêneros em comum + popularidade normalizada),
+     * dividido por (gêneros preferidos + 1) para ficar entre 0 e 1, como o
+     * score da IA. A popularidade usa log1p, porque poucos filmes concentram
+     * valores muito altos.
+     *
+     * @param userId       ID do usuário
+     * @param candidateIds IDs dos filmes candidatos
+     * @param topN         Número máximo de filmes no resultado
+     * @return Pares [id, score] em ordem decrescente de score
+     */
+    @Override
+    public JsonArray rank(int userId, List<Integer> candidateIds, int topN) {
+        Set<Integer> preferred = new HashSet<>();
+        for (Genre genre : userGenreService.getPreferredGenres(userId)) {
+            preferred.add(genre.getId());
+        }
+        Map<Integer, Double> popularity = movieService.getPopularityByIds(candidateIds);
+        Map<Integer, List<Integer>> genres = movieGenreService.getGenreIdsByMovieIds(candidateIds);
+
+        double maxLogPopularity = 0;
+        for (double value : popularity.values()) {
+            maxLogPopularity = Math.max(maxLogPopularity, Math.log1p(Math.max(0, value)));
+        }
+
+        List<double[]> scored = new ArrayList<>(popularity.size());
+        for (Integer movieId : candidateIds) {
+            Double moviePopularity = popularity.get(movieId);
+            if (moviePopularity == null) {
+                continue; // não está no banco
+            }
+            int overlap = userGenreService.calculateGenreScore(genres.getOrDefault(movieId, List.of()), preferred);
+            double normalizedPopularity = maxLogPopularity > 0
+                    ? Math.log1p(Math.max(0, moviePopularity)) / maxLogPopularity
+                    : 0;
+            scored.add(new double[] { movieId, (overlap + normalizedPopularity) / (preferred.size() + 1) });
+        }
+        scored.sort((a, b) -> Double.compare(b[1], a[1]));
+
+        JsonArray ranking = new JsonArray();
+        for (int i = 0; i < Math.min(topN, scored.size()); i++) {
+            JsonArray pair = new JsonArray();
+            pair.add((int) scored.get(i)[0]);
+            pair.add(scored.get(i)[1]);
+            ranking.add(pair);
+        }
+        return ranking;
+    }
+}
@@ -0,0 +1,171 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.google.gson.JsonArray;
+
+import model.Movie;
+import util.Log;
+import util.Metrics;
+import util.TfIdfIndex;
+
+/**
+ * Busca por conteúdo nas sinopses dos filmes ({@link TfIdfIndex}).
+ *
+ * O índice é construído na partida e reconstruído a cada intervalo (o idf
+ * de todos os documentos é recalculado). Filmes cadastrados por
+ * {@link MovieService#storeMovie} entram no índice na hora; os que chegam
+ * durante uma reconstrução são adicionados ao índice novo antes da troca.
+ */
+public class MovieContentService {
+
+    private static final Metrics.Counter BUILDS = Metrics.counter(
+            "flixmate_content_index_builds_total",
+            "Construções do índice TF-IDF das sinopses, por resultado (ok/error)",
+            "outcome");
+    private static final Metrics.Histogram BUILD_DURATION = Metrics.histogram(
+            "flixmate_content_index_build_duration_seconds",
+            "Tempo de construção do índice TF-IDF das sinopses",
+            "outcome");
+    private static final Metrics.Counter ADDED = Metrics.counter(
+            "flixmate_content_index_added_total",
+            "Filmes adicionados ao índice TF-IDF depois da construção");
+
+    private final MovieService movieService;
+
+    private volatile TfIdfIndex index;
+    // Filmes cadastrados durante uma construção (null fora dela), protegidos por this
+    private List<Movie> pending;
+
+    public MovieContentService(MovieService movieService) {
+        this.movieService = movieService;
+        Metrics.gauge("flixmate_content_index_movies",
+                "Filmes no índice TF-IDF das sinopses",
+                () -> {
+                    TfIdfIndex current = index;
+                    return current != null ? current.size() : 0;
+                });
+    }
+
+    /**
+     * Constrói o índice agora e depois a cada {@code rebuildIntervalMillis},
+     * numa thread daemon
+     */
+    public void start(long rebuildIntervalMillis) {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "content-index");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::rebuild, 0, rebuildIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Reconstrói o índice com as sinopses de todo o catálogo e troca o índice
+     * em uso. Se a leitura falhar, o índice atual continua.
+     */
+    public void rebuild() {
+        synchronized (this) {
+            pending = new ArrayList<>();
+        }
+        long start = System.nanoTime();
+        String outcome = "error";
+        try {
+            List<Integer> ids = new ArrayList<>();
+            List<String> overviews = new ArrayList<>();
+            movieService.forEachOverview((movieId, overview) -> {
+                ids.add(movieId);
+                overviews.add(overview);
+            });
+            TfIdfIndex built = TfIdfIndex.build(ids.stream().mapToInt(Integer::intValue).toArray(),
+                    overviews.toArray(new String[0]), ForkJoinPool.commonPool());
+
+            int added = 0;
+            synchronized (this) {
+                for (Movie movie : pending) {
+                    if (built.add(movie.getId(), movie.getOverview())) {
+                        added++;
+                    }
+                }
+                index = built;
+            }
+            outcome = "ok";
+            Log.info("[📝:🟢] CONTENT INDEX BUILT: [filmes: {}] [termos: {}] [adicionados: {}] [{} ms]",
+                    built.size(), built.getTermCount(), added, (System.nanoTime() - start) / 1_000_000);
+        } catch (RuntimeException e) {
+            Log.error("[📝:🔴] CONTENT INDEX ERROR: {}", e.getMessage(), e);
+        } finally {
+            synchronized (this) {
+                pending = null;
+            }
+            BUILDS.inc(outcome);
+            BUILD_DURATION.observeSince(start, outcome);
+        }
+    }
+
+    /**
+     * Adiciona um filme recém-cadastrado ao índice. Não lança exceções: roda
+     * dentro de {@link MovieService#storeMovie}.
+     *
+     * @param movie O filme cadastrado
+     */
+    public void onMovieStored(Movie movie) {
+        try {
+            TfIdfIndex current;
+            synchronized (this) {
+                if (pending != null) {
+                    pending.add(movie);
+                }
+                current = index;
+            }
+            if (current != null && current.add(movie.getId(), movie.getOverview())) {
+                ADDED.inc();
+            }
+        } catch (RuntimeException e) {
+            Log.error("[📝:🔴] CONTENT INDEX ADD ERROR: [movieId: {}] {}", movie.getId(), e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Verifica se o índice já foi construído
+     */
+    public boolean isLoaded() {
+        return index != null;
+    }
+
+    /**
+     * Filmes cuja sinopse mais se parece com um texto livre
+     *
+     * @param text  O texto da busca
+     * @param limit Número máximo de filmes
+     * @return Pares [id, score] em ordem decrescente de cosseno, ou null se o
+     *         índice ainda não foi construído
+     */
+    public JsonArray search(String text, int limit) {
+        TfIdfIndex current = index;
+        return current != null ? current.search(text, limit) : null;
+    }
+
+    /**
+     * Filmes com a sinopse mais parecida com a de um filme
+     *
+     * @param movieId ID do filme
+     * @param limit   Número máximo de filmes
+     * @return Pares [id, score] em ordem decrescente de cosseno; vazio se o
+     *         filme não tiver sinopse indexada, null se o índice ainda não foi
+     *         construído
+     */
+    public JsonArray moreLikeThis(int movieId, int limit) {
+        TfIdfIndex current = index;
+        if (current == null) {
+            return null;
+        }
+        JsonArray similar = current.moreLikeThis(movieId, limit);
+        return similar != null ? similar : new JsonArray();
+    }
+}
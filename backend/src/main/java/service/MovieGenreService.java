@@ -1,13 +1,16 @@
 package service;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import com.google.gson.JsonObject;
 
 import dao.MovieGenreDAO;
 import model.Genre;
 import model.MovieGenre;
+import util.Log;
 
 public class MovieGenreService {
     private final MovieGenreDAO movieGenreDAO;
@@ -27,7 +30,7 @@ public class MovieGenreService {
         int movieId = movieObj.get("id").getAsInt();
 
         if (movieGenreDAO.checkIfMovieHasGenres(movieId)) {
-            System.out.println("Filme já tem gêneros associados: " + movieId);
+            Log.debug("Filme já tem gêneros associados: {}", movieId);
             return true;
         }
 
@@ -41,7 +44,7 @@ public class MovieGenreService {
             MovieGenre movieGenre = new MovieGenre(movieId, genreId);
             boolean sucesso = movieGenreDAO.insert(movieGenre);
             if (!sucesso) {
-                System.err.println("Erro ao registrar gênero " + genreId + " para o filme " + movieId);
+                Log.error("Erro ao registrar gênero {} para o filme {}", genreId, movieId);
                 todosComSucesso = false;
             }
         }
@@ -85,6 +88,16 @@ public class MovieGenreService {
         return movieGenreDAO.getGenresByMovieId(movieId);
     }
 
+    /**
+     * Busca os IDs dos gêneros de vários filmes em uma única consulta
+     * 
+     * @param movieIds Os IDs dos filmes
+     * @return IDs dos gêneros de cada filme, indexados pelo ID do filme
+     */
+    public Map<Integer, List<Integer>> getGenreIdsByMovieIds(Collection<Integer> movieIds) {
+        return movieGenreDAO.getGenreIdsByMovieIds(movieIds);
+    }
+
     /**
      * Insere múltiplas associações de gêneros para um filme
      * 
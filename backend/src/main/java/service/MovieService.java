@@ -1,23 +1,59 @@
 package service;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
 
 import com.google.gson.JsonObject;
 
 import dao.MovieDAO;
 import model.Movie;
+import util.Log;
+import util.SingleFlight;
 import util.TMDBUtil;
+import util.TtlCache;
 
 public class MovieService {
     private MovieDAO movieDAO;
     private MovieGenreService movieGenreService;
     private TMDBUtil tmdbUtil;
+    // Resultados da busca com filtros (a mesma busca se repete muito, ex.: vazia por popularidade)
+    private final TtlCache<String, ArrayList<Movie>> searchCache;
+    private final TtlCache<String, Integer> searchCountCache;
+    // Leituras frequentes: chamadas simultâneas iguais fazem uma consulta só
+    private final SingleFlight<Integer, Movie> movieByIdFlights = new SingleFlight<>("movie_by_id");
+    private final SingleFlight<Boolean, ArrayList<Integer>> allIdsFlights = new SingleFlight<>("movie_all_ids");
+    // Avisado a cada filme novo cadastrado (ex.: índice TF-IDF das sinopses)
+    private volatile Consumer<Movie> movieStoredListener;
 
     // Construtor com dependências
     public MovieService(MovieDAO movieDAO, MovieGenreService movieGenreService, TMDBUtil tmdbUtil) {
+        this(movieDAO, movieGenreService, tmdbUtil, 1000, 30_000);
+    }
+
+    /**
+     * @param searchCacheSize      Quantidade máxima de buscas em cache
+     * @param searchCacheTtlMillis Validade de cada busca em cache, em milissegundos
+     */
+    public MovieService(MovieDAO movieDAO, MovieGenreService movieGenreService, TMDBUtil tmdbUtil,
+            int searchCacheSize, long searchCacheTtlMillis) {
         this.movieDAO = movieDAO;
         this.movieGenreService = movieGenreService;
         this.tmdbUtil = tmdbUtil;
+        this.searchCache = new TtlCache<>("movie_search", searchCacheSize, searchCacheTtlMillis);
+        this.searchCountCache = new TtlCache<>("movie_search_count", searchCacheSize, searchCacheTtlMillis);
+    }
+
+    /**
+     * Define quem é avisado quando {@link #storeMovie} cadastra um filme novo
+     * 
+     * @param listener Recebe o filme cadastrado (null desativa)
+     */
+    public void setMovieStoredListener(Consumer<Movie> listener) {
+        this.movieStoredListener = listener;
     }
 
     /**
@@ -41,51 +77,165 @@ public class MovieService {
             String backdropPath = movieObj.has("backdrop_path") ? movieObj.get("backdrop_path").getAsString() : null;
 
             if (movieDAO.exists(movieId)) {
-                System.out.println("Filme já existe no banco: " + movieId + " - " + title);
+                Log.debug("Filme já existe no banco: {} - {}", movieId, title);
                 return true;
             }
 
             Movie movie = new Movie(movieId, title, overview, rating, releaseDate, originalLanguage, popularity,
                     posterPath, backdropPath);
             if (!movieDAO.insert(movie)) {
-                System.err.println("Falha ao inserir filme no banco: " + movieId + " - " + title);
+                Log.error("Falha ao inserir filme no banco: {} - {}", movieId, title);
                 return false;
             }
+            invalidateSearchCache();
+            Consumer<Movie> listener = movieStoredListener;
+            if (listener != null) {
+                listener.accept(movie);
+            }
 
-            System.out.println("[🎬:🟢] MOVIE CREATE SUCCESS: [movieId: " + movieId + ", title: " + title + "]");
+            Log.info("[🎬:🟢] MOVIE CREATE SUCCESS: [movieId: {}, title: {}]", movieId, title);
             return true;
 
         } catch (Exception e) {
-            System.err.println("Erro ao processar filme: " + e.getMessage());
-            e.printStackTrace();
+            Log.error("Erro ao processar filme: {}", e.getMessage(), e);
             return false;
         }
     }
 
     /**
-     * Busca filmes com filtros avançados
+     * Atualiza os dados de um filme já cadastrado
+     * 
+     * @param movie O filme com os dados atualizados
+     * @return true se a atualização foi bem-sucedida, false caso contrário
+     */
+    public boolean updateMovie(Movie movie) {
+        try {
+            return movieDAO.update(movie);
+        } finally {
+            invalidateSearchCache();
+        }
+    }
+
+    /**
+     * Descarta as buscas em cache (o catálogo mudou)
+     */
+    public void invalidateSearchCache() {
+        searchCache.invalidate();
+        searchCountCache.invalidate();
+    }
+
+    /**
+     * Busca filmes com filtros avançados. Buscas iguais (depois de normalizar
+     * os filtros) são respondidas pelo cache, e buscas iguais simultâneas
+     * fazem uma só consulta ao banco.
      */
     public ArrayList<Movie> searchWithFilters(String query, int page, int limit, String sortBy, String genresParam,
             String yearFrom, String yearTo) throws Exception {
-        return movieDAO.searchWithFilters(query, page, limit, sortBy, genresParam, yearFrom, yearTo);
+        SearchFilters filters = new SearchFilters(query, sortBy, genresParam, yearFrom, yearTo);
+        ArrayList<Movie> movies = searchCache.get(filters.key(true) + '|' + page + '|' + limit,
+                () -> movieDAO.searchWithFilters(filters.query, page, limit, filters.sortBy, filters.genres,
+                        filters.yearFrom, filters.yearTo));
+        // A lista em cache é compartilhada: quem chama recebe uma cópia
+        return new ArrayList<>(movies);
     }
 
     /**
-     * Conta resultados com filtros avançados
+     * Conta resultados com filtros avançados (com o mesmo cache da busca)
      */
     public int countSearchResultsWithFilters(String query, String sortBy, String genresParam, String yearFrom,
             String yearTo) {
-        return movieDAO.countSearchResultsWithFilters(query, sortBy, genresParam, yearFrom, yearTo);
+        SearchFilters filters = new SearchFilters(query, sortBy, genresParam, yearFrom, yearTo);
+        return searchCountCache.get(filters.key(false),
+                () -> movieDAO.countSearchResultsWithFilters(filters.query, filters.sortBy, filters.genres,
+                        filters.yearFrom, filters.yearTo));
     }
 
     /**
-     * Busca um filme pelo ID
+     * Filtros da busca na forma canônica: texto sem espaços nas pontas e em
+     * minúsculas, gêneros ordenados e sem repetição, anos como inteiros e
+     * ordenação desconhecida tratada como popularidade (como no DAO).
+     * Valores inválidos lançam NumberFormatException, como no DAO.
+     */
+    private static final class SearchFilters {
+        final String query;
+        final String sortBy;
+        final String genres;
+        final String yearFrom;
+        final String yearTo;
+
+        SearchFilters(String query, String sortBy, String genresParam, String yearFrom, String yearTo) {
+            this.query = query == null ? "" : query.trim().toLowerCase();
+            this.sortBy = normalizeSortBy(sortBy);
+            this.genres = normalizeGenres(genresParam);
+            this.yearFrom = normalizeYear(yearFrom);
+            this.yearTo = normalizeYear(yearTo);
+        }
+
+        String key(boolean withSort) {
+            return query + '|' + (genres == null ? "" : genres) + '|' + (yearFrom == null ? "" : yearFrom) + '|'
+                    + (yearTo == null ? "" : yearTo) + (withSort ? '|' + sortBy : "");
+        }
+
+        private static String normalizeSortBy(String sortBy) {
+            if (sortBy == null) {
+                return "popularity";
+            }
+            switch (sortBy) {
+                case "rating":
+                case "release_date_desc":
+                case "release_date_asc":
+                case "title":
+                    return sortBy;
+                default:
+                    return "popularity";
+            }
+        }
+
+        private static String normalizeGenres(String genresParam) {
+            if (genresParam == null || genresParam.trim().isEmpty()) {
+                return null;
+            }
+            TreeSet<Integer> ids = new TreeSet<>();
+            for (String id : genresParam.split(",")) {
+                ids.add(Integer.parseInt(id.trim()));
+            }
+            StringBuilder sb = new StringBuilder();
+            for (Integer id : ids) {
+                if (sb.length() > 0) {
+                    sb.append(',');
+                }
+                sb.append(id);
+            }
+            return sb.toString();
+        }
+
+        private static String normalizeYear(String year) {
+            if (year == null || year.trim().isEmpty()) {
+                return null;
+            }
+            return String.valueOf(Integer.parseInt(year.trim()));
+        }
+    }
+
+    /**
+     * Busca um filme pelo ID. Buscas simultâneas do mesmo filme compartilham
+     * a consulta e o objeto retornado (somente leitura).
      * 
      * @param movieId O ID do filme
      * @return O filme encontrado ou null se não encontrado
      */
     public Movie getMovieById(int movieId) {
-        return movieDAO.getMovieById(movieId);
+        return movieByIdFlights.execute(movieId, () -> movieDAO.getMovieById(movieId));
+    }
+
+    /**
+     * Busca vários filmes em uma única consulta (campos das listas)
+     * 
+     * @param movieIds Os IDs dos filmes
+     * @return Os filmes encontrados, indexados pelo ID
+     */
+    public Map<Integer, Movie> getMoviesByIds(Collection<Integer> movieIds) {
+        return movieDAO.getMoviesByIds(movieIds);
     }
 
     // getMovieDetails
@@ -93,8 +243,13 @@ public class MovieService {
         return tmdbUtil.getMovieDetails(movieId);
     }
 
+    /**
+     * IDs de todos os filmes. Chamadas simultâneas compartilham a consulta;
+     * cada uma recebe a sua cópia da lista (o feed embaralha a lista recebida).
+     */
     public ArrayList<Integer> getAllMoviesIds() {
-        return movieDAO.getAllMoviesIds();
+        ArrayList<Integer> ids = allIdsFlights.execute(Boolean.TRUE, movieDAO::getAllMoviesIds);
+        return ids != null ? new ArrayList<>(ids) : null;
     }
 
     /**
@@ -107,6 +262,55 @@ public class MovieService {
         return movieDAO.exists(movieId);
     }
 
+    /**
+     * Versão dos detalhes de um filme para um usuário (para ETags), sem
+     * carregar o filme
+     * 
+     * @param movieId O ID do filme
+     * @param userId  O ID do usuário (o rating dele faz parte da resposta)
+     * @return A versão, ou null se o filme não existir
+     */
+    public String getMovieDetailsVersion(int movieId, int userId) {
+        return movieDAO.getDetailsVersion(movieId, userId);
+    }
+
+    /**
+     * Percorre as sinopses de todos os filmes que têm uma
+     * 
+     * @param row Chamado para cada filme
+     * @return O número de filmes lidos
+     */
+    public int forEachOverview(MovieDAO.OverviewRow row) {
+        return movieDAO.forEachOverview(row);
+    }
+
+    /**
+     * Popularidade de vários filmes (uma única consulta)
+     * 
+     * @param movieIds Os IDs dos filmes
+     * @return Popularidade de cada filme encontrado, indexada pelo ID
+     */
+    public Map<Integer, Double> getPopularityByIds(Collection<Integer> movieIds) {
+        return movieDAO.getPopularityByIds(movieIds);
+    }
+
+    /**
+     * Filtra os filmes que ainda não existem no banco de dados (uma única consulta)
+     * 
+     * @param movieIds Os IDs dos filmes a serem verificados
+     * @return Os IDs não cadastrados, na ordem recebida
+     */
+    public ArrayList<Integer> getMissingMovieIds(Collection<Integer> movieIds) {
+        Set<Integer> existing = movieDAO.getExistingIds(movieIds);
+        ArrayList<Integer> missing = new ArrayList<>();
+        for (Integer movieId : movieIds) {
+            if (!existing.contains(movieId)) {
+                missing.add(movieId);
+            }
+        }
+        return missing;
+    }
+
     /**
      * Busca filmes com base em uma consulta de pesquisa
      * 
@@ -0,0 +1,571 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.google.gson.JsonArray;
+
+import dao.FavoriteDAO;
+import util.Log;
+import util.Metrics;
+
+/**
+ * Índice de filmes parecidos, pré-calculado na JVM.
+ *
+ * O score entre dois filmes mistura o cosseno dos likes em comum (quantos
+ * usuários curtiram os dois, sobre a raiz do produto dos likes de cada um)
+ * com a similaridade de Jaccard dos gêneros (máscaras de bits). A
+ * popularidade só desempata. Cada filme guarda os K vizinhos de maior score
+ * em arrays primitivos, então a consulta é uma busca binária mais K itens.
+ *
+ * O índice é recalculado do zero a cada intervalo longo. Entre um cálculo e
+ * outro, cada like marca como sujas as linhas afetadas (o filme curtido e os
+ * outros filmes curtidos pelo mesmo usuário), recalculadas a cada intervalo
+ * curto.
+ *
+ * As requisições só enfileiram os ratings ({@link #onRatings}); o grafo e as
+ * linhas sujas pertencem à thread do índice, que consome a fila antes de
+ * cada recálculo. Assim um recálculo demorado nunca segura /api/rate.
+ */
+public class SimilarMovieService {
+
+    private static final Metrics.Counter BUILDS = Metrics.counter(
+            "flixmate_similar_builds_total",
+            "Cálculos do índice de filmes parecidos, por modo (full/incremental) e resultado",
+            "mode", "outcome");
+    private static final Metrics.Histogram BUILD_DURATION = Metrics.histogram(
+            "flixmate_similar_build_duration_seconds",
+            "Tempo dos cálculos do índice de filmes parecidos",
+            "mode");
+
+    // Peso da popularidade no score, só para desempatar
+    private static final float POPULARITY_WEIGHT = 0.01f;
+    // Linhas calculadas por tarefa antes de dividir
+    private static final int ROWS_PER_TASK = 64;
+
+    /**
+     * Vizinhos publicados para consulta (imutável; as linhas recalculadas
+     * geram um novo snapshot)
+     */
+    private static final class Snapshot {
+        final int[] movieIds;
+        final int[][] neighbors;
+        final float[][] scores;
+
+        Snapshot(int[] movieIds, int[][] neighbors, float[][] scores) {
+            this.movieIds = movieIds;
+            this.neighbors = neighbors;
+            this.scores = scores;
+        }
+    }
+
+    /**
+     * Likes e atributos dos filmes, em índices densos (posição do filme em
+     * movieIds). Os arrays de likes são trocados, nunca alterados.
+     */
+    private static final class Graph {
+        final int[] movieIds;
+        final long[] genreMasks;
+        final float[] popularity;
+        final int[][] likersByMovie;
+        final Map<Integer, Integer> userIndex = new HashMap<>();
+        final List<int[]> likesByUser = new ArrayList<>();
+
+        Graph(int[] movieIds, long[] genreMasks, float[] popularity) {
+            this.movieIds = movieIds;
+            this.genreMasks = genreMasks;
+            this.popularity = popularity;
+            this.likersByMovie = new int[movieIds.length][];
+            Arrays.fill(likersByMovie, new int[0]);
+        }
+
+        /**
+         * Carga inicial: agrupa os pares (usuário, filme) por usuário e por
+         * filme de uma vez, em vez de inserir um a um
+         */
+        void load(LikePairs pairs) {
+            likesByUser.addAll(Arrays.asList(group(pairs.users, pairs.movies, pairs.size, userIndex.size())));
+            int[][] likers = group(pairs.movies, pairs.users, pairs.size, movieIds.length);
+            System.arraycopy(likers, 0, likersByMovie, 0, likers.length);
+        }
+
+        /**
+         * Aplica um like ou a retirada de um like
+         *
+         * @return Linhas afetadas, ou null se nada mudou
+         */
+        int[] apply(int userId, int movieId, boolean liked) {
+            int movie = Arrays.binarySearch(movieIds, movieId);
+            if (movie < 0) {
+                return null; // filme novo: entra no próximo cálculo completo
+            }
+            Integer user = userIndex.get(userId);
+            if (user == null) {
+                if (!liked) {
+                    return null;
+                }
+                user = likesByUser.size();
+                userIndex.put(userId, user);
+                likesByUser.add(new int[0]);
+            }
+            int[] likes = likesByUser.get(user);
+            int[] updated = liked ? insert(likes, movie) : remove(likes, movie);
+            if (updated == likes) {
+                return null;
+            }
+            likesByUser.set(user, updated);
+            likersByMovie[movie] = liked ? insert(likersByMovie[movie], user) : remove(likersByMovie[movie], user);
+            // O filme e todos os que dividem este usuário com ele
+            int[] affected = Arrays.copyOf(likes, likes.length + 1);
+            affected[likes.length] = movie;
+            return affected;
+        }
+    }
+
+    /**
+     * Likes lidos do banco, em índices densos, antes de agrupar
+     */
+    private static final class LikePairs {
+        int size;
+        int[] users = new int[1024];
+        int[] movies = new int[1024];
+
+        void add(int user, int movie) {
+            if (size == users.length) {
+                users = Arrays.copyOf(users, size * 2);
+                movies = Arrays.copyOf(movies, size * 2);
+            }
+            users[size] = user;
+            movies[size] = movie;
+            size++;
+        }
+    }
+
+    /** Rating recebido, aguardando a thread do índice */
+    private static final class PendingRating {
+        final int userId;
+        final int movieId;
+        final boolean liked;
+
+        PendingRating(int userId, int movieId, boolean liked) {
+            this.userId = userId;
+            this.movieId = movieId;
+            this.liked = liked;
+        }
+    }
+
+    private final FeedbackService feedbackService;
+    private final FavoriteService favoriteService;
+    private final MovieService movieService;
+    private final MovieGenreService movieGenreService;
+    private final int neighborsPerMovie;
+    private final float coLikeWeight;
+
+    private volatile Snapshot snapshot;
+    // Ratings enfileirados pelas requisições
+    private final ConcurrentLinkedQueue<PendingRating> pending = new ConcurrentLinkedQueue<>();
+    // Protegidos por this (rebuild e refresh; as requisições não usam o lock)
+    private Graph graph;
+    private final BitSet dirty = new BitSet();
+    private volatile int dirtyCount;
+
+    /**
+     * @param neighborsPerMovie Vizinhos guardados por filme (K)
+     * @param coLikeWeight      Peso dos likes em comum; o restante vai para
+     *                          os gêneros
+     */
+    public SimilarMovieService(FeedbackService feedbackService, FavoriteService favoriteService,
+            MovieService movieService, MovieGenreService movieGenreService, int neighborsPerMovie,
+            float coLikeWeight) {
+        this.feedbackService = feedbackService;
+        this.favoriteService = favoriteService;
+        this.movieService = movieService;
+        this.movieGenreService = movieGenreService;
+        this.neighborsPerMovie = Math.max(1, neighborsPerMovie);
+        this.coLikeWeight = Math.max(0f, Math.min(1f, coLikeWeight));
+        Metrics.gauge("flixmate_similar_dirty_movies",
+                "Filmes com vizinhos desatualizados, aguardando o próximo recálculo",
+                () -> dirtyCount);
+    }
+
+    /**
+     * Calcula o índice agora e depois a cada {@code rebuildIntervalMillis};
+     * as linhas sujas são recalculadas a cada {@code refreshIntervalMillis}.
+     * Os dois rodam na mesma thread, nunca ao mesmo tempo.
+     */
+    public void start(long rebuildIntervalMillis, long refreshIntervalMillis) {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "similar-movies");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::rebuild, 0, rebuildIntervalMillis, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::refresh, refreshIntervalMillis, refreshIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Verifica se o índice já foi calculado
+     */
+    public boolean isLoaded() {
+        return snapshot != null;
+    }
+
+    /**
+     * Filmes parecidos com um filme
+     *
+     * @param movieId ID do filme
+     * @param limit   Número máximo de filmes
+     * @return Pares [id, score] em ordem decrescente de score (vazio se o
+     *         filme não estiver no índice), ou null se o índice ainda não foi
+     *         calculado
+     */
+    public JsonArray getSimilar(int movieId, int limit) {
+        Snapshot current = snapshot;
+        if (current == null) {
+            return null;
+        }
+        JsonArray similar = new JsonArray();
+        int row = Arrays.binarySearch(current.movieIds, movieId);
+        if (row < 0) {
+            return similar;
+        }
+        int[] neighbors = current.neighbors[row];
+        float[] scores = current.scores[row];
+        for (int i = 0; i < Math.min(limit, neighbors.length); i++) {
+            JsonArray pair = new JsonArray();
+            pair.add(neighbors[i]);
+            pair.add(scores[i]);
+            similar.add(pair);
+        }
+        return similar;
+    }
+
+    /**
+     * Registra ratings novos: like adiciona, dislike retira um like anterior.
+     * Só enfileira (não bloqueia); as linhas afetadas são recalculadas no
+     * próximo {@link #refresh}.
+     *
+     * @param userId  ID do usuário
+     * @param ratings Rating de cada filme, indexado pelo ID do filme
+     */
+    public void onRatings(int userId, Map<Integer, Boolean> ratings) {
+        for (Map.Entry<Integer, Boolean> rating : ratings.entrySet()) {
+            pending.add(new PendingRating(userId, rating.getKey(), rating.getValue()));
+        }
+    }
+
+    /**
+     * Recalcula o índice do zero: catálogo, gêneros e popularidade dos
+     * filmes, feedbacks positivos e favoritos. Os ratings enfileirados
+     * durante o cálculo são aplicados ao grafo novo (reaplicar um rating que
+     * o banco já tinha não muda nada).
+     */
+    public synchronized void rebuild() {
+        long start = System.nanoTime();
+        try {
+            Graph built = loadGraph();
+            if (built == null) {
+                BUILDS.inc("full", "error");
+                return;
+            }
+            int[][] neighbors = new int[built.movieIds.length][];
+            float[][] scores = new float[built.movieIds.length][];
+            ForkJoinPool.commonPool().invoke(new ComputeRows(built, neighbors, scores, 0, built.movieIds.length));
+
+            graph = built;
+            dirty.clear();
+            snapshot = new Snapshot(built.movieIds, neighbors, scores);
+            int replayed = drainPending();
+            BUILDS.inc("full", "ok");
+            Log.info("[🎞️:🟢] SIMILAR INDEX BUILT: [filmes: {}] [usuários: {}] [K: {}] [reaplicados: {}] [{} ms]",
+                    built.movieIds.length, built.likesByUser.size(), neighborsPerMovie, replayed,
+                    (System.nanoTime() - start) / 1_000_000);
+        } catch (RuntimeException e) {
+            BUILDS.inc("full", "error");
+            Log.error("[🎞️:🔴] SIMILAR INDEX ERROR: {}", e.getMessage(), e);
+        } finally {
+            BUILD_DURATION.observeSince(start, "full");
+        }
+    }
+
+    /**
+     * Aplica os ratings enfileirados e recalcula só as linhas sujas,
+     * publicando um novo snapshot
+     */
+    public synchronized void refresh() {
+        if (graph == null) {
+            // Sem índice ainda: o próximo cálculo completo lê esses ratings do banco
+            pending.clear();
+            return;
+        }
+        drainPending();
+        if (dirty.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        Snapshot current = snapshot;
+        int[][] neighbors = current.neighbors.clone();
+        float[][] scores = current.scores.clone();
+        int[] counts = new int[graph.movieIds.length];
+        int rows = 0;
+        for (int movie = dirty.nextSetBit(0); movie >= 0; movie = dirty.nextSetBit(movie + 1)) {
+            computeRow(graph, movie, counts, neighbors, scores);
+            rows++;
+        }
+        dirty.clear();
+        dirtyCount = 0;
+        snapshot = new Snapshot(current.movieIds, neighbors, scores);
+        BUILDS.inc("incremental", "ok");
+        BUILD_DURATION.observeSince(start, "incremental");
+        Log.debug("[🎞️:🔵] SIMILAR INDEX REFRESHED: [linhas: {}] [{} ms]", rows,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Aplica ao grafo os ratings enfileirados
+     *
+     * @return Quantos ratings foram aplicados
+     */
+    private int drainPending() {
+        int drained = 0;
+        PendingRating rating;
+        while ((rating = pending.poll()) != null) {
+            markDirty(graph.apply(rating.userId, rating.movieId, rating.liked));
+            drained++;
+        }
+        dirtyCount = dirty.cardinality();
+        return drained;
+    }
+
+    private void markDirty(int[] movies) {
+        if (movies != null) {
+            for (int movie : movies) {
+                dirty.set(movie);
+            }
+        }
+    }
+
+    /**
+     * Lê catálogo e likes do banco
+     *
+     * @return O grafo, ou null se a leitura falhar
+     */
+    private Graph loadGraph() {
+        List<Integer> ids = movieService.getAllMoviesIds();
+        if (ids == null) {
+            return null;
+        }
+        int[] movieIds = ids.stream().mapToInt(Integer::intValue).sorted().distinct().toArray();
+
+        // Um bit por gênero (o TMDB tem menos de 64; acima disso os bits se repetem)
+        Map<Integer, List<Integer>> genresByMovie = movieGenreService.getGenreIdsByMovieIds(ids);
+        TreeSet<Integer> genreIds = new TreeSet<>();
+        genresByMovie.values().forEach(genreIds::addAll);
+        Map<Integer, Integer> genreBit = new HashMap<>();
+        for (Integer genreId : genreIds) {
+            genreBit.put(genreId, genreBit.size() % 64);
+        }
+        long[] genreMasks = new long[movieIds.length];
+        float[] popularity = new float[movieIds.length];
+        Map<Integer, Double> popularityById = movieService.getPopularityByIds(ids);
+        double maxLogPopularity = 0;
+        for (double value : popularityById.values()) {
+            maxLogPopularity = Math.max(maxLogPopularity, Math.log1p(Math.max(0, value)));
+        }
+        for (int movie = 0; movie < movieIds.length; movie++) {
+            for (Integer genreId : genresByMovie.getOrDefault(movieIds[movie], List.of())) {
+                genreMasks[movie] |= 1L << genreBit.get(genreId);
+            }
+            double value = popularityById.getOrDefault(movieIds[movie], 0.0);
+            popularity[movie] = maxLogPopularity > 0
+                    ? (float) (Math.log1p(Math.max(0, value)) / maxLogPopularity)
+                    : 0f;
+        }
+
+        Graph built = new Graph(movieIds, genreMasks, popularity);
+        LikePairs pairs = new LikePairs();
+        FavoriteDAO.FavoriteRow like = (userId, movieId) -> {
+            int movie = Arrays.binarySearch(movieIds, movieId);
+            if (movie >= 0) {
+                pairs.add(built.userIndex.computeIfAbsent(userId, id -> built.userIndex.size()), movie);
+            }
+        };
+        int feedbacks = feedbackService.forEachFeedback((userId, movieId, liked) -> {
+            if (liked) {
+                like.accept(userId, movieId);
+            }
+        });
+        if (feedbacks < 0) {
+            return null;
+        }
+        favoriteService.forEachFavorite(like);
+        built.load(pairs);
+        return built;
+    }
+
+    /**
+     * Calcula os vizinhos de um intervalo de filmes
+     */
+    private final class ComputeRows extends RecursiveAction {
+        private final Graph graph;
+        private final int[][] neighbors;
+        private final float[][] scores;
+        private final int from;
+        private final int to;
+
+        ComputeRows(Graph graph, int[][] neighbors, float[][] scores, int from, int to) {
+            this.graph = graph;
+            this.neighbors = neighbors;
+            this.scores = scores;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > ROWS_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ComputeRows(graph, neighbors, scores, from, middle),
+                        new ComputeRows(graph, neighbors, scores, middle, to));
+                return;
+            }
+            int[] counts = new int[graph.movieIds.length];
+            for (int movie = from; movie < to; movie++) {
+                computeRow(graph, movie, counts, neighbors, scores);
+            }
+        }
+    }
+
+    /**
+     * Calcula os K vizinhos de um filme. {@code counts} precisa chegar zerado
+     * e volta zerado.
+     */
+    private void computeRow(Graph graph, int movie, int[] counts, int[][] neighbors, float[][] scores) {
+        // Likes em comum com cada filme, pelos usuários que curtiram este
+        int[] likers = graph.likersByMovie[movie];
+        for (int user : likers) {
+            for (int other : graph.likesByUser.get(user)) {
+                counts[other]++;
+            }
+        }
+
+        int k = neighborsPerMovie;
+        int[] topMovies = new int[k];
+        float[] topScores = new float[k];
+        int size = 0;
+        long genres = graph.genreMasks[movie];
+        for (int other = 0; other < graph.movieIds.length; other++) {
+            if (other == movie) {
+                continue;
+            }
+            float coLike = 0f;
+            if (counts[other] > 0) {
+                coLike = (float) (counts[other]
+                        / Math.sqrt((double) likers.length * graph.likersByMovie[other].length));
+            }
+            float genre = 0f;
+            long union = genres | graph.genreMasks[other];
+            if (union != 0) {
+                genre = (float) Long.bitCount(genres & graph.genreMasks[other]) / Long.bitCount(union);
+            }
+            float score = coLikeWeight * coLike + (1 - coLikeWeight) * genre;
+            if (score <= 0) {
+                continue;
+            }
+            score += POPULARITY_WEIGHT * graph.popularity[other];
+            if (size == k && score <= topScores[k - 1]) {
+                continue;
+            }
+            // Inserção ordenada (K é pequeno)
+            int position = size < k ? size++ : k - 1;
+            while (position > 0 && topScores[position - 1] < score) {
+                topScores[position] = topScores[position - 1];
+                topMovies[position] = topMovies[position - 1];
+                position--;
+            }
+            topScores[position] = score;
+            topMovies[position] = other;
+        }
+        for (int user : likers) {
+            for (int other : graph.likesByUser.get(user)) {
+                counts[other] = 0;
+            }
+        }
+
+        int[] rowNeighbors = new int[size];
+        for (int i = 0; i < size; i++) {
+            rowNeighbors[i] = graph.movieIds[topMovies[i]];
+        }
+        neighbors[movie] = rowNeighbors;
+        scores[movie] = Arrays.copyOf(topScores, size);
+    }
+
+    /**
+     * Agrupa os valores por chave (counting sort), cada grupo ordenado e sem
+     * repetições
+     */
+    private static int[][] group(int[] keys, int[] values, int n, int groups) {
+        int[] counts = new int[groups];
+        for (int i = 0; i < n; i++) {
+            counts[keys[i]]++;
+        }
+        int[][] grouped = new int[groups][];
+        for (int g = 0; g < groups; g++) {
+            grouped[g] = new int[counts[g]];
+            counts[g] = 0;
+        }
+        for (int i = 0; i < n; i++) {
+            grouped[keys[i]][counts[keys[i]]++] = values[i];
+        }
+        for (int g = 0; g < groups; g++) {
+            int[] group = grouped[g];
+            Arrays.sort(group);
+            int distinct = 0;
+            for (int i = 0; i < group.length; i++) {
+                if (distinct == 0 || group[i] != group[distinct - 1]) {
+                    group[distinct++] = group[i];
+                }
+            }
+            if (distinct < group.length) {
+                grouped[g] = Arrays.copyOf(group, distinct);
+            }
+        }
+        return grouped;
+    }
+
+    private static int[] insert(int[] sorted, int value) {
+        int position = Arrays.binarySearch(sorted, value);
+        if (position >= 0) {
+            return sorted;
+        }
+        position = -position - 1;
+        int[] result = new int[sorted.length + 1];
+        System.arraycopy(sorted, 0, result, 0, position);
+        result[position] = value;
+        System.arraycopy(sorted, position, result, position + 1, sorted.length - position);
+        return result;
+    }
+
+    private static int[] remove(int[] sorted, int value) {
+        int position = Arrays.binarySearch(sorted, value);
+        if (position < 0) {
+            return sorted;
+        }
+        int[] result = new int[sorted.length - 1];
+        System.arraycopy(sorted, 0, result, 0, position);
+        System.arraycopy(sorted, position + 1, result, position, sorted.length - position - 1);
+        return result;
+    }
+}
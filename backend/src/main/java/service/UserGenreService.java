@@ -1,6 +1,7 @@
 package service;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 import com.google.gson.JsonObject;
@@ -8,6 +9,7 @@ import com.google.gson.JsonObject;
 import dao.UserGenreDAO;
 import model.Genre;
 import model.UserGenre;
+import util.Log;
 
 public class UserGenreService {
 
@@ -29,11 +31,24 @@ public class UserGenreService {
             return 0;
         }
 
-        var movieGenres = movie.getAsJsonArray("genre_ids");
-        int score = 0;
+        List<Integer> movieGenres = new ArrayList<>();
+        for (var genreElement : movie.getAsJsonArray("genre_ids")) {
+            movieGenres.add(genreElement.getAsInt());
+        }
+        return calculateGenreScore(movieGenres, preferredGenres);
+    }
 
-        for (var genreElement : movieGenres) {
-            int genreId = genreElement.getAsInt();
+    /**
+     * Calcula a pontuação de um filme a partir dos IDs dos seus gêneros.
+     * 
+     * @param movieGenres      IDs dos gêneros do filme
+     * @param preferredGenres  IDs dos gêneros preferidos do usuário (de
+     *                         preferência um Set, para contains rápido)
+     * @return Quantidade de gêneros do filme entre os preferidos do usuário
+     */
+    public int calculateGenreScore(Collection<Integer> movieGenres, Collection<Integer> preferredGenres) {
+        int score = 0;
+        for (Integer genreId : movieGenres) {
             if (preferredGenres.contains(genreId)) {
                 score++;
             }
@@ -70,28 +85,28 @@ public class UserGenreService {
      */
     public boolean addPreferredGenre(int userId, int genreId) {
         if (!isValidGenreId(genreId)) {
-            System.err.println("Invalid genre ID: " + genreId);
+            Log.error("Invalid genre ID: {}", genreId);
             return false;
         }
         if (userId <= 0) {
-            System.err.println("Invalid user ID: " + userId);
+            Log.error("Invalid user ID: {}", userId);
             return false;
         }
         if (userGenreDAO.getPreferredGenres(userId).stream().anyMatch(g -> g.getId() == genreId)) {
-            System.err.println("Genre already exists for user " + userId);
+            Log.error("Genre already exists for user {}", userId);
             return false;
         }
         Genre genre = userGenreDAO.getGenreById(genreId);
         if (genre == null) {
-            System.err.println("Genre not found for ID: " + genreId);
+            Log.error("Genre not found for ID: {}", genreId);
             return false;
         }
         UserGenre userGenre = new UserGenre(userId, genreId);
         boolean result = userGenreDAO.insert(userGenre);
         if (result) {
-            System.out.println("Genre " + genre.getName() + " added for user " + userId);
+            Log.info("Genre {} added for user {}", genre.getName(), userId);
         } else {
-            System.err.println("Failed to add genre " + genre.getName() + " for user " + userId);
+            Log.error("Failed to add genre {} for user {}", genre.getName(), userId);
         }
         return result;
 
@@ -1,15 +1,46 @@
 package service;
 
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
 
+import dao.DAO;
 import dao.UserDAO;
+import dao.UserGenreDAO;
+import model.Genre;
 import model.User;
+import model.UserSummary;
+import util.Log;
+import util.LruCache;
+import util.PasswordUtil;
+import util.SingleFlight;
 
 public class UserService {
     private UserDAO userDAO;
+    private UserGenreDAO userGenreDAO;
+    // Resumos de usuários (dados públicos + gêneros), invalidados nas escritas
+    private final LruCache<Integer, UserSummary> summaries;
+    // Incrementado a cada invalidação: uma leitura que começou antes não grava no cache
+    private final AtomicLong summaryGeneration = new AtomicLong();
+    // Falhas de cache simultâneas para o mesmo usuário fazem uma consulta só
+    private final SingleFlight<Integer, UserSummary> summaryLoads = new SingleFlight<>("user_summary");
 
-    public UserService(UserDAO userDAO) {
+    public UserService(UserDAO userDAO, UserGenreDAO userGenreDAO) {
+        this(userDAO, userGenreDAO, 5000);
+    }
+
+    /**
+     * @param userDAO          DAO de usuários
+     * @param userGenreDAO     DAO de gêneros preferidos
+     * @param summaryCacheSize Quantidade máxima de usuários no cache de resumos
+     */
+    public UserService(UserDAO userDAO, UserGenreDAO userGenreDAO, int summaryCacheSize) {
         this.userDAO = userDAO;
+        this.userGenreDAO = userGenreDAO;
+        this.summaries = new LruCache<>("user_summary", summaryCacheSize);
     }
 
     /**
@@ -23,6 +54,24 @@ public class UserService {
         return userDAO.auth(email, password);
     }
 
+    /**
+     * Autentica o usuário com uma única consulta (dados e hash da senha). A
+     * verificação BCrypt roda no pool de senhas, fora da thread chamadora.
+     *
+     * @param email    O email do usuário
+     * @param password A senha do usuário
+     * @return Futuro com o usuário autenticado, ou null se as credenciais
+     *         forem inválidas
+     */
+    public CompletableFuture<User> login(String email, String password) {
+        User user = email == null || password == null ? null : userDAO.getByEmail(email);
+        if (user == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return PasswordUtil.checkPasswordAsync(password, user.getPassword())
+                .thenApply(valid -> valid ? user : null);
+    }
+
     /**
      * Retorna um usuário com base no email fornecido.
      *
@@ -46,6 +95,108 @@ public class UserService {
         return false;
     }
 
+    /**
+     * Retorna os dados públicos e os gêneros preferidos de um usuário, do
+     * cache quando possível. Falhas simultâneas para o mesmo usuário
+     * compartilham a consulta ao banco.
+     *
+     * @param id O ID do usuário
+     * @return O resumo do usuário, ou null se não encontrado
+     */
+    public UserSummary getUserSummary(int id) {
+        UserSummary summary = summaries.get(id);
+        if (summary != null) {
+            return summary;
+        }
+        return summaryLoads.execute(id, () -> loadUserSummary(id));
+    }
+
+    private UserSummary loadUserSummary(int id) {
+        long generation = summaryGeneration.get();
+        User user = userDAO.getById(id);
+        if (user == null) {
+            return null;
+        }
+        List<Genre> genres = userGenreDAO.getPreferredGenres(id);
+        UserSummary summary = new UserSummary(user, genres != null ? genres : List.of());
+        if (summaryGeneration.get() == generation) {
+            summaries.put(id, summary);
+        }
+        return summary;
+    }
+
+    /**
+     * Remove o usuário do cache de resumos (chamado depois de alterações)
+     *
+     * @param id O ID do usuário
+     */
+    public void invalidateUserSummary(int id) {
+        summaryGeneration.incrementAndGet();
+        summaryLoads.forget(id);
+        summaries.remove(id);
+    }
+
+    /**
+     * Cadastra um usuário e seus gêneros favoritos em uma única transação.
+     * A senha é criptografada antes de a transação começar.
+     *
+     * @param user     O usuário a ser cadastrado (recebe o ID gerado)
+     * @param genreIds IDs dos gêneros favoritos
+     * @return Quantidade de gêneros salvos, -1 se o email já estiver
+     *         cadastrado ou -2 em caso de erro
+     */
+    public int register(User user, List<Integer> genreIds) {
+        String passwordHash = PasswordUtil.hashPassword(user.getPassword());
+        try {
+            int saved = DAO.inTransaction(uow -> {
+                if (!userDAO.insert(uow, user, passwordHash)) {
+                    return -1;
+                }
+                return userGenreDAO.insertAll(uow, user.getId(), genreIds);
+            });
+            if (saved >= 0) {
+                invalidateUserSummary(user.getId());
+            }
+            return saved;
+        } catch (SQLException e) {
+            Log.error("Erro ao cadastrar usuário: {}", e.getMessage());
+            return -2;
+        }
+    }
+
+    /**
+     * Atualiza os dados de perfil (sem a senha) e, se informados, substitui
+     * os gêneros favoritos, tudo em uma única transação: se qualquer parte
+     * falhar, nada é alterado.
+     *
+     * @param user     O usuário com os dados atualizados
+     * @param genreIds Novos gêneros favoritos, ou null para manter os atuais
+     * @return true se o perfil foi atualizado, false caso contrário
+     */
+    public boolean updateProfile(User user, List<Integer> genreIds) {
+        try {
+            return DAO.inTransaction(uow -> {
+                if (!userDAO.updateProfile(uow, user)) {
+                    throw new SQLException("Usuário não encontrado: " + user.getId());
+                }
+                if (genreIds != null) {
+                    userGenreDAO.removeAllByUserId(uow, user.getId());
+                    int expected = new HashSet<>(genreIds).size();
+                    if (userGenreDAO.insertAll(uow, user.getId(), genreIds) != expected) {
+                        throw new SQLException("Gênero inválido na lista " + genreIds);
+                    }
+                }
+                return true;
+            });
+        } catch (SQLException e) {
+            Log.error("Erro ao atualizar perfil do usuário {}: {}", user.getId(), e.getMessage());
+            return false;
+        } finally {
+            // Depois do commit: leituras que começaram antes não regravam dados antigos
+            invalidateUserSummary(user.getId());
+        }
+    }
+
     /**
      * Verifica se um endereço de email já existe no banco de dados.
      *
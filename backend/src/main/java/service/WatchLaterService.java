@@ -22,6 +22,16 @@ public class WatchLaterService {
         return watchLaterDAO.getWatchLaterMovieIds(userId);
     }
 
+    /**
+     * Retorna a versão atual da lista "assistir mais tarde" do usuário (para ETags).
+     *
+     * @param userId o ID do usuário
+     * @return a versão da lista
+     */
+    public String getWatchLaterVersion(int userId) {
+        return watchLaterDAO.getListVersion(userId);
+    }
+
     /**
      * Adiciona ou remove um filme da lista de "assistir mais tarde" do usuário.
      *
@@ -0,0 +1,119 @@
+package util;
+
+/**
+ * Circuit breaker para chamadas a um serviço externo.
+ *
+ * Fechado: as chamadas passam. Depois de {@code failureThreshold} falhas
+ * seguidas o circuito abre e as chamadas são recusadas sem tocar no serviço.
+ * Passado {@code openMillis}, o circuito fica meio aberto e deixa passar uma
+ * única chamada de teste: se ela der certo o circuito fecha, se falhar abre
+ * de novo.
+ *
+ * Transições e chamadas recusadas são contadas em
+ * {@code flixmate_circuit_transitions_total{circuit,state}} e
+ * {@code flixmate_circuit_rejected_total{circuit}}.
+ */
+public final class CircuitBreaker {
+
+    private static final Metrics.Counter TRANSITIONS = Metrics.counter(
+            "flixmate_circuit_transitions_total",
+            "Mudanças de estado dos circuit breakers",
+            "circuit", "state");
+    private static final Metrics.Counter REJECTED = Metrics.counter(
+            "flixmate_circuit_rejected_total",
+            "Chamadas recusadas com o circuito aberto",
+            "circuit");
+
+    /**
+     * Estado do circuito
+     */
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openNanos;
+
+    // Protegidos por this: as operações são curtas e só acontecem uma vez por chamada
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAtNanos;
+    private boolean probeInFlight;
+
+    /**
+     * @param name             Nome do circuito (label das métricas e dos logs)
+     * @param failureThreshold Falhas seguidas que abrem o circuito
+     * @param openMillis       Tempo aberto antes da chamada de teste
+     */
+    public CircuitBreaker(String name, int failureThreshold, long openMillis) {
+        this.name = name;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openNanos = Math.max(0, openMillis) * 1_000_000L;
+    }
+
+    /**
+     * Pede permissão para uma chamada. Quem recebe true deve informar o
+     * resultado com {@link #onSuccess} ou {@link #onFailure}.
+     *
+     * @return true se a chamada pode ser feita
+     */
+    public synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.nanoTime() - openedAtNanos < openNanos) {
+                    break;
+                }
+                transition(State.HALF_OPEN);
+                probeInFlight = true;
+                return true;
+            case HALF_OPEN:
+                if (!probeInFlight) {
+                    probeInFlight = true;
+                    return true;
+                }
+                break;
+        }
+        REJECTED.inc(name);
+        return false;
+    }
+
+    /**
+     * Informa que a chamada deu certo
+     */
+    public synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        probeInFlight = false;
+        if (state != State.CLOSED) {
+            transition(State.CLOSED);
+            Log.info("[🔌:🟢] CIRCUIT CLOSED: [circuit: {}]", name);
+        }
+    }
+
+    /**
+     * Informa que a chamada falhou (erro, timeout ou resposta 5xx)
+     */
+    public synchronized void onFailure() {
+        consecutiveFailures++;
+        probeInFlight = false;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            openedAtNanos = System.nanoTime();
+            transition(State.OPEN);
+            Log.warn("[🔌:🔴] CIRCUIT OPEN: [circuit: {}] [falhas seguidas: {}]", name, consecutiveFailures);
+        }
+    }
+
+    /**
+     * Estado atual do circuito
+     */
+    public synchronized State getState() {
+        return state;
+    }
+
+    private void transition(State next) {
+        state = next;
+        TRANSITIONS.inc(name, next.name().toLowerCase());
+    }
+}
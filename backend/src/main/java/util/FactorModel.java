@@ -0,0 +1,237 @@
+package util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.gson.JsonArray;
+
+/**
+ * Modelo de recomendação exportado pela IA (ai/export_factors.py), mapeado
+ * em memória e somente leitura.
+ *
+ * Guarda, para cada usuário, os fatores colaborativos (SVD) e o perfil de
+ * conteúdo, e para cada filme os fatores, o vetor de conteúdo (TF-IDF +
+ * gêneros) e um bônus de popularidade. O score de (usuário, filme) é
+ *
+ * <pre>
+ * content = clamp(dot(userContent, itemContent) + itemBias, 0, 1)
+ * score   = content * contentWeight + dot(userFactors, itemFactors) * collabWeight
+ * </pre>
+ *
+ * o mesmo cálculo do recomendador híbrido em Python. O formato do arquivo está
+ * documentado em ai/export_factors.py.
+ */
+public final class FactorModel {
+
+    private static final int MAGIC = 'F' | 'L' << 8 | 'X' << 16 | 'M' << 24;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+
+    private final long version;
+    private final int factorDim;
+    private final int contentDim;
+    private final int[] userIds;
+    private final int[] itemIds;
+    private final FloatBuffer userContentWeight;
+    private final FloatBuffer userCollabWeight;
+    private final FloatBuffer itemBias;
+    private final FloatBuffer userFactors;
+    private final FloatBuffer userContent;
+    private final FloatBuffer itemFactors;
+    private final FloatBuffer itemContent;
+
+    private FactorModel(MappedByteBuffer buffer, long version, int users, int items, int factorDim,
+            int contentDim) throws IOException {
+        this.version = version;
+        this.factorDim = factorDim;
+        this.contentDim = contentDim;
+
+        int offset = HEADER_BYTES;
+        this.userIds = sortedIds(section(buffer, offset, users), "usuários");
+        offset += users * 4;
+        this.userContentWeight = section(buffer, offset, users).asFloatBuffer();
+        offset += users * 4;
+        this.userCollabWeight = section(buffer, offset, users).asFloatBuffer();
+        offset += users * 4;
+        this.itemIds = sortedIds(section(buffer, offset, items), "filmes");
+        offset += items * 4;
+        this.itemBias = section(buffer, offset, items).asFloatBuffer();
+        offset += items * 4;
+        this.userFactors = section(buffer, offset, users * factorDim).asFloatBuffer();
+        offset += users * factorDim * 4;
+        this.userContent = section(buffer, offset, users * contentDim).asFloatBuffer();
+        offset += users * contentDim * 4;
+        this.itemFactors = section(buffer, offset, items * factorDim).asFloatBuffer();
+        offset += items * factorDim * 4;
+        this.itemContent = section(buffer, offset, items * contentDim).asFloatBuffer();
+    }
+
+    /**
+     * Mapeia o arquivo exportado pela IA
+     *
+     * @param path Caminho do arquivo
+     * @return O modelo
+     * @throws IOException se o arquivo não existir ou não estiver no formato
+     *                     esperado
+     */
+    public static FactorModel load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES) {
+                throw new IOException("Arquivo de modelo muito pequeno: " + size + " bytes");
+            }
+            // O mapeamento continua válido depois que o canal é fechado
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (buffer.getInt(0) != MAGIC) {
+                throw new IOException("Arquivo de modelo inválido (magic)");
+            }
+            if (buffer.getInt(4) != FORMAT_VERSION) {
+                throw new IOException("Versão do formato não suportada: " + buffer.getInt(4));
+            }
+            int users = buffer.getInt(8);
+            int items = buffer.getInt(12);
+            int factorDim = buffer.getInt(16);
+            int contentDim = buffer.getInt(20);
+            long version = buffer.getLong(24);
+            if (users < 0 || items < 0 || factorDim < 0 || contentDim < 0) {
+                throw new IOException("Dimensões inválidas no arquivo de modelo");
+            }
+
+            long expected = HEADER_BYTES + 4L * (3L * users + 2L * items
+                    + (long) (users + items) * factorDim + (long) (users + items) * contentDim);
+            if (size != expected || expected > Integer.MAX_VALUE) {
+                throw new IOException("Tamanho do arquivo de modelo inesperado: " + size + " bytes, esperado "
+                        + expected);
+            }
+            return new FactorModel(buffer, version, users, items, factorDim, contentDim);
+        }
+    }
+
+    /**
+     * Versão do modelo (momento da exportação, em milissegundos)
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public int getUserCount() {
+        return userIds.length;
+    }
+
+    public int getItemCount() {
+        return itemIds.length;
+    }
+
+    public int getFactorDim() {
+        return factorDim;
+    }
+
+    public int getContentDim() {
+        return contentDim;
+    }
+
+    /**
+     * Verifica se o usuário faz parte do modelo
+     *
+     * @param userId ID do usuário
+     */
+    public boolean hasUser(int userId) {
+        return Arrays.binarySearch(userIds, userId) >= 0;
+    }
+
+    /**
+     * Ordena os candidatos pelo score do usuário. Filmes fora do modelo e
+     * scores não positivos ficam de fora, como no recomendador em Python.
+     *
+     * @param userId       ID do usuário
+     * @param candidateIds IDs dos filmes candidatos
+     * @param topN         Número máximo de filmes no resultado
+     * @return Pares [id, score] em ordem decrescente de score, ou null se o
+     *         usuário não fizer parte do modelo
+     */
+    public JsonArray rank(int userId, List<Integer> candidateIds, int topN) {
+        int user = Arrays.binarySearch(userIds, userId);
+        if (user < 0) {
+            return null;
+        }
+
+        // Vetores do usuário copiados uma vez e reaproveitados em todos os candidatos
+        float[] factors = new float[factorDim];
+        userFactors.get(user * factorDim, factors);
+        float[] content = new float[contentDim];
+        userContent.get(user * contentDim, content);
+        float contentWeight = userContentWeight.get(user);
+        float collabWeight = userCollabWeight.get(user);
+
+        List<double[]> scored = new ArrayList<>(candidateIds.size());
+        for (Integer movieId : candidateIds) {
+            int item = Arrays.binarySearch(itemIds, movieId);
+            if (item < 0) {
+                continue;
+            }
+            float contentScore = dot(content, itemContent, item * contentDim) + itemBias.get(item);
+            contentScore = Math.max(0f, Math.min(1f, contentScore));
+            float collabScore = dot(factors, itemFactors, item * factorDim);
+            float score = contentScore * contentWeight + collabScore * collabWeight;
+            if (score > 0) {
+                scored.add(new double[] { movieId, score });
+            }
+        }
+        scored.sort((a, b) -> Double.compare(b[1], a[1]));
+
+        JsonArray ranking = new JsonArray();
+        for (int i = 0; i < Math.min(topN, scored.size()); i++) {
+            JsonArray pair = new JsonArray();
+            pair.add((int) scored.get(i)[0]);
+            pair.add(scored.get(i)[1]);
+            ranking.add(pair);
+        }
+        return ranking;
+    }
+
+    /**
+     * Produto escalar entre o vetor do usuário e uma linha do arquivo, com
+     * quatro acumuladores para o JIT não serializar as somas
+     */
+    private static float dot(float[] user, FloatBuffer rows, int offset) {
+        int n = user.length;
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (; i + 3 < n; i += 4) {
+            s0 += user[i] * rows.get(offset + i);
+            s1 += user[i + 1] * rows.get(offset + i + 1);
+            s2 += user[i + 2] * rows.get(offset + i + 2);
+            s3 += user[i + 3] * rows.get(offset + i + 3);
+        }
+        for (; i < n; i++) {
+            s0 += user[i] * rows.get(offset + i);
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    private static ByteBuffer section(MappedByteBuffer buffer, int offset, int count) {
+        return buffer.slice(offset, count * 4).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static int[] sortedIds(ByteBuffer section, String what) throws IOException {
+        int[] ids = new int[section.remaining() / 4];
+        section.asIntBuffer().get(ids);
+        for (int i = 1; i < ids.length; i++) {
+            if (ids[i] <= ids[i - 1]) {
+                throw new IOException("IDs de " + what + " fora de ordem no arquivo de modelo");
+            }
+        }
+        return ids;
+    }
+}
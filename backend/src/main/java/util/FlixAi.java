@@ -4,7 +4,13 @@ import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.time.Duration;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
 
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
@@ -12,8 +18,133 @@ import com.google.gson.JsonParser;
 
 public class FlixAi {
 
+    /**
+     * Ranking local usado quando a IA não responde (circuito aberto, timeout
+     * ou erro). Precisa ser rápido: roda na thread que recebeu a falha.
+     */
+    @FunctionalInterface
+    public interface FallbackRanker {
+        /**
+         * @param userId       ID do usuário
+         * @param candidateIds IDs dos filmes candidatos
+         * @param topN         Número máximo de filmes no resultado
+         * @return Pares [id, score] em ordem decrescente de score, no mesmo
+         *         formato de "all_recommendations" da IA
+         */
+        JsonArray rank(int userId, List<Integer> candidateIds, int topN);
+    }
+
+    /**
+     * Modelo que pontua candidatos na própria JVM, no lugar da IA
+     * ({@link LocalScorer} ou o treino local de fatores)
+     */
+    public interface LocalModel {
+        /**
+         * Verifica se há um modelo pronto para pontuar
+         */
+        boolean isLoaded();
+
+        /**
+         * @param userId       ID do usuário
+         * @param candidateIds IDs dos filmes candidatos
+         * @param topN         Número máximo de filmes no resultado
+         * @return Pares [id, score] em ordem decrescente de score, ou null se
+         *         o usuário não fizer parte do modelo
+         */
+        JsonArray rank(int userId, List<Integer> candidateIds, int topN);
+
+        /**
+         * Recebe os ratings enviados para {@link FlixAi#train}. Modelos que
+         * só são atualizados por exportação ignoram.
+         *
+         * @param userId  ID do usuário
+         * @param ratings Rating de cada filme, indexado pelo ID do filme
+         */
+        default void update(int userId, Map<Integer, Boolean> ratings) {
+        }
+    }
+
     private static final String AI_URL = "http://ai:5005";
 
+    private static final Metrics.Histogram REQUEST_DURATION = Metrics.histogram(
+            "flixmate_ai_request_duration_seconds",
+            "Tempo das chamadas ao serviço de IA",
+            "operation", "outcome");
+    private static final Metrics.Histogram FALLBACK_DURATION = Metrics.histogram(
+            "flixmate_ai_fallback_duration_seconds",
+            "Tempo do ranking local usado quando a IA falha",
+            "operation", "outcome");
+
+    /**
+     * Chamada recusada sem contatar a IA porque o circuito está aberto
+     */
+    public static class CircuitOpenException extends RuntimeException {
+        public CircuitOpenException() {
+            super("Circuito da IA aberto");
+        }
+    }
+
+    // Chamadas simultâneas para o mesmo usuário (ex.: clique duplo) esperam a que já está em andamento
+    private final SingleFlight<Integer, JsonObject> recommendFlights = new SingleFlight<>("ai_recommend");
+    private final SingleFlight<String, JsonObject> feedFlights = new SingleFlight<>("ai_feed");
+
+    private final HttpClient client;
+    // Tempo limite de cada chamada, por endpoint da IA
+    private final Duration recommendTimeout;
+    private final Duration feedTimeout;
+    private final Duration trainTimeout;
+    private final CircuitBreaker breaker;
+    private volatile FallbackRanker fallbackRanker;
+    private volatile LocalModel localModel;
+
+    public FlixAi() {
+        this(2000, 5000, 5000, 5000, new CircuitBreaker("ai", 5, 30_000));
+    }
+
+    /**
+     * @param connectTimeoutMillis   Tempo limite para conectar à IA
+     * @param recommendTimeoutMillis Tempo limite de /recommend
+     * @param feedTimeoutMillis      Tempo limite de /feed
+     * @param trainTimeoutMillis     Tempo limite de /train
+     * @param breaker                Circuit breaker das chamadas à IA
+     */
+    public FlixAi(long connectTimeoutMillis, long recommendTimeoutMillis, long feedTimeoutMillis,
+            long trainTimeoutMillis, CircuitBreaker breaker) {
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMillis))
+                .build();
+        this.recommendTimeout = Duration.ofMillis(recommendTimeoutMillis);
+        this.feedTimeout = Duration.ofMillis(feedTimeoutMillis);
+        this.trainTimeout = Duration.ofMillis(trainTimeoutMillis);
+        this.breaker = breaker;
+        Metrics.gauge("flixmate_ai_circuit_state",
+                "Estado do circuit breaker da IA (0 fechado, 1 meio aberto, 2 aberto)",
+                () -> breaker.getState() == CircuitBreaker.State.CLOSED ? 0
+                        : breaker.getState() == CircuitBreaker.State.HALF_OPEN ? 1 : 2);
+    }
+
+    /**
+     * Define o ranking local usado em {@link #recommendAsync} e
+     * {@link #getFeedAsync} quando a IA falhar
+     *
+     * @param fallbackRanker O ranking local (null desativa o fallback)
+     */
+    public void setFallbackRanker(FallbackRanker fallbackRanker) {
+        this.fallbackRanker = fallbackRanker;
+    }
+
+    /**
+     * Define o modelo local usado em {@link #recommendAsync} e
+     * {@link #getFeedAsync}: com um modelo carregado, os candidatos são
+     * pontuados na JVM e a IA não é chamada
+     *
+     * @param localModel O modelo local (null volta a chamar a IA)
+     */
+    public void setLocalModel(LocalModel localModel) {
+        this.localModel = localModel;
+    }
+
     /**
      * Treina a IA com o feedback do usuário sobre um filme.
      *
@@ -22,33 +153,53 @@ public class FlixAi {
      * @param rating   true se o usuário gostou do filme, false caso contrário
      */
     public void train(int userId, int movieId, boolean rating) {
-        JsonObject ratingObj = new JsonObject();
-        ratingObj.addProperty("user", String.valueOf(userId));
-        ratingObj.addProperty("movie", String.valueOf(movieId));
-        ratingObj.addProperty("rating", rating ? 1 : 0);
+        train(userId, Map.of(movieId, rating));
+    }
 
+    /**
+     * Treina a IA com vários feedbacks do usuário em uma única chamada.
+     *
+     * @param userId  ID do usuário
+     * @param ratings Rating de cada filme, indexado pelo ID do filme
+     */
+    public void train(int userId, Map<Integer, Boolean> ratings) {
+        if (ratings.isEmpty()) {
+            return;
+        }
+        LocalModel model = localModel;
+        if (model != null) {
+            model.update(userId, ratings);
+        }
         JsonArray ratingsArray = new JsonArray();
-        ratingsArray.add(ratingObj);
+        for (Map.Entry<Integer, Boolean> rating : ratings.entrySet()) {
+            JsonObject ratingObj = new JsonObject();
+            ratingObj.addProperty("user", String.valueOf(userId));
+            ratingObj.addProperty("movie", String.valueOf(rating.getKey()));
+            ratingObj.addProperty("rating", rating.getValue() ? 1 : 0);
+            ratingsArray.add(ratingObj);
+        }
 
         JsonObject payload = new JsonObject();
         payload.add("ratings", ratingsArray);
 
         try {
-            HttpRequest request = HttpRequest.newBuilder()
+            HttpRequest.Builder request = HttpRequest.newBuilder()
                     .uri(URI.create(AI_URL + "/train"))
+                    .timeout(trainTimeout)
                     .header("Content-Type", "application/json")
-                    .POST(HttpRequest.BodyPublishers.ofString(payload.toString()))
-                    .build();
+                    .POST(HttpRequest.BodyPublishers.ofString(payload.toString()));
 
-            HttpClient client = HttpClient.newBuilder()
-                    .version(HttpClient.Version.HTTP_1_1)
-                    .build();
-
-            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            send("train", request, userId, ratings.size()).join();
 
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof CircuitOpenException) {
+                Log.warn("[🤖:🟡] AI TRAIN SKIPPED: circuito aberto [userId: {}, ratings: {}]", userId,
+                        ratings.size());
+            } else {
+                Log.error("❌ Erro ao enviar dados para IA: {}", e.getMessage(), e);
+            }
         } catch (Exception e) {
-            System.err.println("❌ Erro ao enviar dados para IA: " + e.getMessage());
-            e.printStackTrace();
+            Log.error("❌ Erro ao enviar dados para IA: {}", e.getMessage(), e);
         }
     }
 
@@ -61,6 +212,31 @@ public class FlixAi {
      * @throws Exception se ocorrer um erro ao enviar a solicitação
      */
     public JsonObject recommend(int userId, List<Integer> candidateIds) throws Exception {
+        return await(recommendAsync(userId, candidateIds));
+    }
+
+    /**
+     * Versão assíncrona de {@link #recommend}: não bloqueia a thread chamadora.
+     * Se já houver uma recomendação em andamento para o usuário, espera por ela
+     * (os candidatos são sorteados a cada pedido, então a chave é só o usuário).
+     * Se a IA falhar, o resultado vem do ranking local, com "source": "fallback".
+     * Com um modelo local carregado, a IA não é chamada ("source": "local").
+     *
+     * @param userId        ID do usuário
+     * @param candidateIds  Lista de IDs de filmes candidatos
+     * @return Futuro com o JsonObject contendo as recomendações
+     */
+    public CompletableFuture<JsonObject> recommendAsync(int userId, List<Integer> candidateIds) {
+        JsonObject local = rankLocally(userId, candidateIds, candidateIds.size(), FlixAi::toRecommendation);
+        if (local != null) {
+            return CompletableFuture.completedFuture(local);
+        }
+        return recommendFlights.executeAsync(userId, () -> fetchRecommendation(userId, candidateIds)
+                .exceptionallyCompose(error -> fallback("recommend", error, userId, candidateIds,
+                        candidateIds.size(), FlixAi::toRecommendation)));
+    }
+
+    private CompletableFuture<JsonObject> fetchRecommendation(int userId, List<Integer> candidateIds) {
         JsonObject payload = new JsonObject();
         payload.addProperty("user", String.valueOf(userId));
 
@@ -70,42 +246,125 @@ public class FlixAi {
         }
         payload.add("candidate_ids", candidateArray);
 
-        HttpClient client = HttpClient.newBuilder()
-            .version(HttpClient.Version.HTTP_1_1)
-            .build();
-
-        HttpRequest request = HttpRequest.newBuilder()
+        HttpRequest.Builder request = HttpRequest.newBuilder()
             .uri(URI.create(AI_URL + "/recommend"))
+            .timeout(recommendTimeout)
             .header("Content-Type", "application/json")
-            .POST(HttpRequest.BodyPublishers.ofString(payload.toString()))
-            .build();
-
-        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            .POST(HttpRequest.BodyPublishers.ofString(payload.toString()));
 
-        if (response.statusCode() != 200) {
-            System.err.println("Erro na resposta IA recommend: " + response.body());
-            throw new RuntimeException("Erro na recomendação: " + response.body());
-        }
+        return send("recommend", request, userId, candidateIds.size()).thenApply(response -> {
+            if (response.statusCode() != 200) {
+                Log.error("Erro na resposta IA recommend: {}", response.body());
+                throw new RuntimeException("Erro na recomendação: " + response.body());
+            }
 
-        JsonObject responseJson = JsonParser.parseString(response.body()).getAsJsonObject();
+            JsonObject responseJson = JsonParser.parseString(response.body()).getAsJsonObject();
+            return toRecommendation(responseJson.has("all_recommendations")
+                    ? responseJson.getAsJsonArray("all_recommendations")
+                    : new JsonArray());
+        });
+    }
 
+    /**
+     * Converte os pares [id, score] da IA no formato de {@link #recommendAsync}
+     */
+    private static JsonObject toRecommendation(JsonArray allRecommendations) {
         JsonArray recommendedMoviesJson = new JsonArray();
-        if (responseJson.has("all_recommendations")) {
-            for (var item : responseJson.getAsJsonArray("all_recommendations")) {
-                JsonArray pair = item.getAsJsonArray();
-                JsonObject obj = new JsonObject();
-                obj.addProperty("id", pair.get(0).getAsInt());
-                obj.addProperty("score", pair.get(1).getAsDouble());
-                recommendedMoviesJson.add(obj);
-            }
+        for (var item : allRecommendations) {
+            JsonArray pair = item.getAsJsonArray();
+            JsonObject obj = new JsonObject();
+            obj.addProperty("id", pair.get(0).getAsInt());
+            obj.addProperty("score", pair.get(1).getAsDouble());
+            recommendedMoviesJson.add(obj);
         }
 
         JsonObject result = new JsonObject();
         result.add("recommended_movies", recommendedMoviesJson);
+        return result;
+    }
 
+    /**
+     * No formato de {@link #getFeedAsync}
+     */
+    private static JsonObject toFeed(JsonArray allRecommendations) {
+        JsonObject result = new JsonObject();
+        result.add("all_recommendations", allRecommendations);
         return result;
     }
 
+    /**
+     * Pontua os candidatos com o modelo local. Usuários cadastrados depois da
+     * última exportação, ou sem nenhum candidato com score positivo, vão para
+     * o ranking de fallback (como a IA faria, só com os gêneros preferidos).
+     *
+     * @return A resposta no formato da operação, ou null para chamar a IA
+     *         (sem modelo local, sem candidatos ou erro na pontuação)
+     */
+    private JsonObject rankLocally(int userId, List<Integer> candidateIds, int topN,
+            Function<JsonArray, JsonObject> format) {
+        LocalModel scorer = localModel;
+        if (scorer == null || !scorer.isLoaded() || candidateIds == null || candidateIds.isEmpty()) {
+            return null;
+        }
+        ServerTiming timing = ServerTiming.current();
+        long start = System.nanoTime();
+        try {
+            String source = "local";
+            JsonArray ranking = scorer.rank(userId, candidateIds, topN);
+            if (ranking == null || ranking.size() == 0) {
+                FallbackRanker ranker = fallbackRanker;
+                if (ranker == null) {
+                    return null;
+                }
+                ranking = ranker.rank(userId, candidateIds, topN);
+                source = "fallback";
+            }
+            JsonObject result = format.apply(ranking);
+            result.addProperty("source", source);
+            return result;
+        } catch (RuntimeException e) {
+            Log.error("Erro ao pontuar candidatos com o modelo local: {}", e.getMessage(), e);
+            return null;
+        } finally {
+            if (timing != null) {
+                timing.addAi(System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * Responde com o ranking local no lugar da IA, se houver um configurado
+     *
+     * @param operation Operação que falhou (para o log e a métrica)
+     * @param error     Falha da chamada à IA
+     * @param format    Converte os pares [id, score] na resposta da operação
+     * @return Futuro com a resposta do ranking local, ou com a falha original
+     */
+    private CompletableFuture<JsonObject> fallback(String operation, Throwable error, int userId,
+            List<Integer> candidateIds, int topN, Function<JsonArray, JsonObject> format) {
+        FallbackRanker ranker = fallbackRanker;
+        if (ranker == null || candidateIds == null || candidateIds.isEmpty()) {
+            return CompletableFuture.failedFuture(error);
+        }
+        Throwable cause = error instanceof CompletionException && error.getCause() != null
+                ? error.getCause()
+                : error;
+        Log.warn("[🤖:🟡] AI FALLBACK: [operation: {}] [motivo: {}]", operation,
+                cause instanceof CircuitOpenException ? "circuito aberto" : String.valueOf(cause));
+        long start = System.nanoTime();
+        try {
+            JsonObject result = format.apply(ranker.rank(userId, candidateIds, topN));
+            result.addProperty("source", "fallback");
+            FALLBACK_DURATION.observeSince(start, operation, "ok");
+            return CompletableFuture.completedFuture(result);
+        } catch (RuntimeException e) {
+            FALLBACK_DURATION.observeSince(start, operation, "error");
+            Log.error("Erro no ranking local da IA: {}", e.getMessage(), e);
+            error.addSuppressed(e);
+            return CompletableFuture.failedFuture(error);
+        }
+    }
+
     /**
      * Obtém o feed de recomendações para um usuário.
      *
@@ -116,6 +375,32 @@ public class FlixAi {
      * @throws Exception se ocorrer um erro ao enviar a solicitação
      */
     public JsonObject getFeed(int userId, int topN, List<Integer> candidateIds) throws Exception {
+        return await(getFeedAsync(userId, topN, candidateIds));
+    }
+
+    /**
+     * Versão assíncrona de {@link #getFeed}: não bloqueia a thread chamadora.
+     * Se já houver um feed em andamento para o usuário com o mesmo topN,
+     * espera por ele. Se a IA falhar e houver candidatos, o resultado vem do
+     * ranking local, com "source": "fallback". Com um modelo local carregado e
+     * candidatos, a IA não é chamada ("source": "local").
+     *
+     * @param userId       ID do usuário
+     * @param topN         Número máximo de recomendações a serem retornadas
+     * @param candidateIds Lista de IDs de filmes candidatos (opcional)
+     * @return Futuro com o JsonObject contendo o feed de recomendações
+     */
+    public CompletableFuture<JsonObject> getFeedAsync(int userId, int topN, List<Integer> candidateIds) {
+        JsonObject local = rankLocally(userId, candidateIds, topN, FlixAi::toFeed);
+        if (local != null) {
+            return CompletableFuture.completedFuture(local);
+        }
+        return feedFlights.executeAsync(userId + ":" + topN, () -> fetchFeed(userId, topN, candidateIds)
+                .exceptionallyCompose(error -> fallback("feed", error, userId, candidateIds, topN,
+                        FlixAi::toFeed)));
+    }
+
+    private CompletableFuture<JsonObject> fetchFeed(int userId, int topN, List<Integer> candidateIds) {
         JsonObject payload = new JsonObject();
         payload.addProperty("user", String.valueOf(userId));
         payload.addProperty("top_n", topN);
@@ -126,24 +411,85 @@ public class FlixAi {
             payload.add("candidate_ids", candidatesArray);
         }
 
-        HttpClient client = HttpClient.newBuilder()
-                .version(HttpClient.Version.HTTP_1_1)
-                .build();
-
-        HttpRequest request = HttpRequest.newBuilder()
+        HttpRequest.Builder request = HttpRequest.newBuilder()
                 .uri(URI.create(AI_URL + "/feed"))
+                .timeout(feedTimeout)
                 .header("Content-Type", "application/json")
-                .POST(HttpRequest.BodyPublishers.ofString(payload.toString()))
-                .build();
+                .POST(HttpRequest.BodyPublishers.ofString(payload.toString()));
 
-        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        return send("feed", request, userId, topN).thenApply(response -> {
+            if (response.statusCode() != 200) {
+                Log.error("Erro na resposta IA feed: {}", response.body());
+                throw new RuntimeException("Erro no feed: " + response.body());
+            }
+
+            return JsonParser.parseString(response.body()).getAsJsonObject();
+        });
+    }
+
+    /**
+     * Envia a requisição à IA registrando o tempo da chamada. Se a requisição
+     * atual estiver sendo rastreada, repassa o cabeçalho traceparent. Com o
+     * circuito aberto, falha na hora com {@link CircuitOpenException}.
+     *
+     * @param operation  Nome da operação (label da métrica)
+     * @param request    Requisição a ser enviada
+     * @param userId     ID do usuário (negativo se não houver), para o evento JFR
+     * @param movieCount Filmes candidatos enviados ou pedidos, para o evento JFR
+     * @return Futuro com a resposta
+     */
+    private CompletableFuture<HttpResponse<String>> send(String operation, HttpRequest.Builder request,
+            int userId, int movieCount) {
+        if (!breaker.tryAcquire()) {
+            return CompletableFuture.failedFuture(new CircuitOpenException());
+        }
 
-        if (response.statusCode() != 200) {
-            System.err.println("Erro na resposta IA feed: " + response.body());
-            throw new RuntimeException("Erro no feed: " + response.body());
+        Tracing.Span span = Tracing.startDetached("ai " + operation);
+        if (span != null) {
+            request.header("traceparent", span.traceparent());
         }
 
-        return JsonParser.parseString(response.body()).getAsJsonObject();
+        JfrEvents.AiCall event = new JfrEvents.AiCall();
+        event.begin();
+        ServerTiming timing = ServerTiming.current();
+        long start = System.nanoTime();
+        return ServerTiming.propagate(Tracing.propagate(client.sendAsync(request.build(), HttpResponse.BodyHandlers.ofString())
+                .whenComplete((response, error) -> {
+                    boolean ok = error == null && response.statusCode() < 400;
+                    long elapsed = System.nanoTime() - start;
+                    REQUEST_DURATION.observe(elapsed / 1e9, operation, ok ? "ok" : "error");
+                    // 4xx é erro do pedido, não da IA: não abre o circuito
+                    if (error == null && response.statusCode() < 500) {
+                        breaker.onSuccess();
+                    } else {
+                        breaker.onFailure();
+                    }
+                    if (timing != null) {
+                        timing.addAi(elapsed);
+                    }
+                    event.end();
+                    if (event.shouldCommit()) {
+                        event.operation = operation;
+                        event.userHash = userId < 0 ? null : JfrEvents.hashUserId(userId);
+                        event.movieCount = movieCount;
+                        event.status = response != null ? response.statusCode() : 0;
+                        event.commit();
+                    }
+                    if (span != null) {
+                        span.end(response, error);
+                    }
+                })));
+    }
+
+    /**
+     * Aguarda um futuro e repassa a exceção original em caso de erro
+     */
+    private static <T> T await(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
     }
 
-}
\ No newline at end of file
+}
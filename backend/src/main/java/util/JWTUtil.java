@@ -1,26 +1,73 @@
 package util;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
 
 import com.auth0.jwt.JWT;
 import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.exceptions.TokenExpiredException;
 import com.auth0.jwt.interfaces.DecodedJWT;
 import com.auth0.jwt.interfaces.JWTVerifier;
 
 public class JWTUtil {
     private String SECRET = null;
-    private static Algorithm algorithm;
+    private final Algorithm algorithm;
+    // O verificador é imutável e thread-safe: criado uma vez só
+    private final JWTVerifier verifier;
+    // SHA-256 dos tokens já verificados -> claims (evita HMAC, Base64 e JSON a
+    // cada requisição); a chave é o hash para que o cache não guarde credenciais
+    private final LruCache<String, Claims> verified;
     private static final long EXPIRATION = 1000 * 60 * 60 * 24; // 24 horas
 
-    // JavaDoc
-    
+    /**
+     * Claims de um token verificado
+     */
+    public static final class Claims {
+        private final int userId;
+        private final String email;
+        private final long expiresAtMillis;
+
+        Claims(int userId, String email, long expiresAtMillis) {
+            this.userId = userId;
+            this.email = email;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        public int getUserId() {
+            return userId;
+        }
+
+        public String getEmail() {
+            return email;
+        }
+
+        public long getExpiresAtMillis() {
+            return expiresAtMillis;
+        }
+    }
+
     public JWTUtil(String secret) {
+        this(secret, 10_000);
+    }
+
+    /**
+     * @param secret    Segredo HMAC dos tokens
+     * @param cacheSize Quantidade máxima de tokens verificados em cache
+     */
+    public JWTUtil(String secret, int cacheSize) {
         if (secret == null || secret.isEmpty()) {
             throw new IllegalArgumentException("Secret cannot be null or empty");
         } else {
             this.SECRET = secret;
         }
         algorithm = Algorithm.HMAC256(SECRET);
+        verifier = JWT.require(algorithm)
+                .withIssuer("cinematch")
+                .build();
+        verified = new LruCache<>("jwt", cacheSize);
     }
 
     public String generateToken(String email, int id) {
@@ -33,24 +80,60 @@ public class JWTUtil {
     }
 
     public DecodedJWT verifyToken(String token) {
-        JWTVerifier verifier = JWT.require(algorithm)
-                .withIssuer("cinematch")
-                .build();
         return verifier.verify(token);
     }
 
+    /**
+     * Autentica o token: tokens já verificados custam só uma consulta ao
+     * cache; a expiração é conferida em toda chamada.
+     *
+     * @param token Token JWT
+     * @return As claims do token
+     * @throws com.auth0.jwt.exceptions.JWTVerificationException se o token for
+     *         inválido ou estiver expirado
+     */
+    public Claims authenticate(String token) {
+        String key = digest(token);
+        Claims claims = verified.get(key);
+        if (claims == null) {
+            DecodedJWT decoded = verifier.verify(token);
+            Date expiresAt = decoded.getExpiresAt();
+            claims = new Claims(decoded.getClaim("userId").asInt(), decoded.getSubject(),
+                    expiresAt != null ? expiresAt.getTime() : Long.MAX_VALUE);
+            verified.put(key, claims);
+            return claims;
+        }
+        if (System.currentTimeMillis() >= claims.expiresAtMillis) {
+            verified.remove(key);
+            throw new TokenExpiredException("The Token has expired on " + new Date(claims.expiresAtMillis) + ".",
+                    new Date(claims.expiresAtMillis).toInstant());
+        }
+        return claims;
+    }
+
+    /**
+     * SHA-256 do token, em Base64 (chave do cache de tokens verificados)
+     */
+    private static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            // Toda JVM tem SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
     // Get the userId from the token
     public int getUserId(String token) {
-        DecodedJWT decodedJWT = verifyToken(token);
-        return decodedJWT.getClaim("userId").asInt();
+        return authenticate(token).getUserId();
     }
 
-  
+
 
     // Get the email from the token
     public String getEmail(String token) {
-        DecodedJWT decodedJWT = verifyToken(token);
-        return decodedJWT.getSubject();
+        return authenticate(token).getEmail();
     }
 
     // Check if the token is expired
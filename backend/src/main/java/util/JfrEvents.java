@@ -0,0 +1,188 @@
+package util;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Eventos do Java Flight Recorder para os caminhos mais usados do backend.
+ *
+ * Os eventos ficam no grupo "Flixmate" do JDK Mission Control e são
+ * habilitados/filtrados pelo perfil {@code backend/jfr/flixmate.jfc}. Sem
+ * gravação ativa, begin/commit não custam quase nada. Nenhum evento guarda
+ * stack trace, e IDs de usuário entram apenas como hash.
+ */
+public final class JfrEvents {
+
+    /** Sal do processo para o hash dos IDs de usuário */
+    private static final int USER_SALT = ThreadLocalRandom.current().nextInt();
+
+    private JfrEvents() {
+    }
+
+    /**
+     * Hash do ID do usuário, estável durante a execução do processo
+     *
+     * @param userId ID do usuário
+     * @return O hash em hexadecimal
+     */
+    public static String hashUserId(int userId) {
+        int h = userId ^ USER_SALT;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return Integer.toHexString(h);
+    }
+
+    /**
+     * Registra um acesso a cache
+     *
+     * @param cache Nome do cache
+     * @param hit   true se o valor estava no cache
+     */
+    public static void cacheAccess(String cache, boolean hit) {
+        CacheAccess event = new CacheAccess();
+        if (event.isEnabled()) {
+            event.cache = cache;
+            event.hit = hit;
+            event.commit();
+        }
+    }
+
+    @Name("flixmate.HttpRequest")
+    @Label("HTTP Request")
+    @Category({ "Flixmate", "HTTP" })
+    @Description("Requisição atendida pela API")
+    @StackTrace(false)
+    public static class HttpRequest extends Event {
+        @Label("Method")
+        public String method;
+
+        @Label("Route")
+        @Description("Template da rota do Spark")
+        public String route;
+
+        @Label("Status")
+        public int status;
+    }
+
+    @Name("flixmate.DbQuery")
+    @Label("DB Query")
+    @Category({ "Flixmate", "Database" })
+    @Description("Execução de um statement pelos DAOs")
+    @StackTrace(false)
+    public static class DbQuery extends Event {
+        @Label("DAO")
+        public String dao;
+
+        @Label("Operation")
+        public String operation;
+
+        @Label("SQL Fingerprint")
+        public String sql;
+
+        @Label("Rows Updated")
+        @Description("Linhas alteradas (-1 para consultas)")
+        public long rows;
+
+        @Label("Failed")
+        public boolean failed;
+    }
+
+    @Name("flixmate.TmdbCall")
+    @Label("TMDB Call")
+    @Category({ "Flixmate", "HTTP Client" })
+    @Description("Chamada à API do TMDB")
+    @StackTrace(false)
+    public static class TmdbCall extends Event {
+        @Label("Operation")
+        public String operation;
+
+        @Label("Path")
+        public String path;
+
+        @Label("Status")
+        @Description("Status HTTP (0 em caso de falha de rede)")
+        public int status;
+    }
+
+    @Name("flixmate.AiCall")
+    @Label("AI Call")
+    @Category({ "Flixmate", "HTTP Client" })
+    @Description("Chamada ao serviço de recomendação")
+    @StackTrace(false)
+    public static class AiCall extends Event {
+        @Label("Operation")
+        public String operation;
+
+        @Label("User Hash")
+        public String userHash;
+
+        @Label("Movie Count")
+        @Description("Filmes candidatos enviados ou pedidos")
+        public int movieCount;
+
+        @Label("Status")
+        @Description("Status HTTP (0 em caso de falha de rede)")
+        public int status;
+    }
+
+    @Name("flixmate.CacheAccess")
+    @Label("Cache Access")
+    @Category({ "Flixmate", "Cache" })
+    @StackTrace(false)
+    public static class CacheAccess extends Event {
+        @Label("Cache")
+        public String cache;
+
+        @Label("Hit")
+        public boolean hit;
+    }
+
+    @Name("flixmate.CandidateGeneration")
+    @Label("Candidate Generation")
+    @Category({ "Flixmate", "Recommendation" })
+    @Description("Seleção dos filmes candidatos enviados à IA")
+    @StackTrace(false)
+    public static class CandidateGeneration extends Event {
+        @Label("Source")
+        @Description("Rota que gerou os candidatos (feed ou recommendation)")
+        public String source;
+
+        @Label("User Hash")
+        public String userHash;
+
+        @Label("Available Movies")
+        public int available;
+
+        @Label("Movie Count")
+        @Description("Candidatos selecionados")
+        public int movieCount;
+
+        /**
+         * Encerra o evento e o grava, se a gravação estiver ativa
+         *
+         * @param source     Rota que gerou os candidatos
+         * @param userId     ID do usuário
+         * @param available  Filmes disponíveis antes da seleção
+         * @param movieCount Candidatos selecionados
+         */
+        public void record(String source, int userId, int available, int movieCount) {
+            end();
+            if (shouldCommit()) {
+                this.source = source;
+                this.userHash = hashUserId(userId);
+                this.available = available;
+                this.movieCount = movieCount;
+                commit();
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package util;
+
+import com.google.gson.Gson;
+
+/**
+ * Gson usado pelas rotas, que soma o tempo gasto serializando e
+ * desserializando JSON no Server-Timing da requisição.
+ */
+public final class Json {
+
+    private final Gson gson = new Gson();
+
+    /**
+     * Serializa o objeto para JSON
+     *
+     * @param src Objeto a ser serializado
+     * @return O JSON gerado
+     */
+    public String toJson(Object src) {
+        long start = System.nanoTime();
+        try {
+            return gson.toJson(src);
+        } finally {
+            ServerTiming.recordSerialization(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Desserializa o JSON para um objeto da classe informada
+     *
+     * @param json     Texto JSON
+     * @param classOfT Classe do objeto
+     * @return O objeto lido
+     */
+    public <T> T fromJson(String json, Class<T> classOfT) {
+        long start = System.nanoTime();
+        try {
+            return gson.fromJson(json, classOfT);
+        } finally {
+            ServerTiming.recordSerialization(System.nanoTime() - start);
+        }
+    }
+}
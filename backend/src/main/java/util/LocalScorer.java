@@ -0,0 +1,118 @@
+package util;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.google.gson.JsonArray;
+
+/**
+ * Pontua candidatos na própria JVM com o modelo exportado pela IA
+ * ({@link FactorModel}), sem chamada HTTP.
+ *
+ * Uma thread daemon confere o arquivo periodicamente e, quando ele muda,
+ * carrega o novo modelo e troca a referência. Se a carga falhar, o modelo
+ * anterior continua em uso.
+ *
+ * O arquivo precisa ser substituído por rename (como faz a IA), nunca
+ * sobrescrito no lugar: o modelo em uso está mapeado no arquivo antigo.
+ */
+public final class LocalScorer implements FlixAi.LocalModel {
+
+    private static final Metrics.Counter RELOADS = Metrics.counter(
+            "flixmate_local_model_reloads_total",
+            "Cargas do modelo local de recomendação, por resultado (ok/error)",
+            "outcome");
+    private static final Metrics.Histogram SCORING_DURATION = Metrics.histogram(
+            "flixmate_local_scoring_duration_seconds",
+            "Tempo para pontuar os candidatos com o modelo local",
+            "result");
+
+    private final Path path;
+    private volatile FactorModel model;
+    // Arquivo da última carga (data de modificação e tamanho), para detectar mudanças
+    private volatile String loadedStamp;
+    // Arquivo que falhou na última tentativa, para não repetir o erro a cada verificação
+    private volatile String failedStamp;
+
+    /**
+     * @param path Caminho do arquivo exportado pela IA
+     */
+    public LocalScorer(Path path) {
+        this.path = path;
+        Metrics.gauge("flixmate_local_model_version_seconds",
+                "Momento da exportação do modelo local carregado (0 se nenhum)",
+                () -> {
+                    FactorModel current = model;
+                    return current != null ? current.getVersion() / 1000.0 : 0;
+                });
+    }
+
+    /**
+     * Carrega o modelo (se o arquivo já existir) e passa a conferir o arquivo
+     * a cada {@code reloadIntervalMillis}
+     *
+     * @param reloadIntervalMillis Intervalo entre as verificações
+     */
+    public void start(long reloadIntervalMillis) {
+        reloadIfChanged();
+        ScheduledExecutorService watcher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "model-reload");
+            t.setDaemon(true);
+            return t;
+        });
+        watcher.scheduleWithFixedDelay(this::reloadIfChanged, reloadIntervalMillis, reloadIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Carrega o arquivo se ele mudou desde a última carga
+     */
+    public void reloadIfChanged() {
+        String stamp = null;
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            stamp = attributes.lastModifiedTime().toMillis() + ":" + attributes.size();
+            if (stamp.equals(loadedStamp) || stamp.equals(failedStamp)) {
+                return;
+            }
+            long start = System.nanoTime();
+            FactorModel loaded = FactorModel.load(path);
+            model = loaded;
+            loadedStamp = stamp;
+            RELOADS.inc("ok");
+            Log.info("[🧮:🟢] LOCAL MODEL LOADED: [versão: {}] [usuários: {}] [filmes: {}] [k: {}] [d: {}] [{} ms]",
+                    loaded.getVersion(), loaded.getUserCount(), loaded.getItemCount(), loaded.getFactorDim(),
+                    loaded.getContentDim(), (System.nanoTime() - start) / 1_000_000);
+        } catch (NoSuchFileException e) {
+            // A IA ainda não exportou: as recomendações continuam indo para ela
+        } catch (IOException | RuntimeException e) {
+            failedStamp = stamp;
+            RELOADS.inc("error");
+            Log.error("[🧮:🔴] LOCAL MODEL ERROR: [arquivo: {}] {}", path, e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean isLoaded() {
+        return model != null;
+    }
+
+    @Override
+    public JsonArray rank(int userId, List<Integer> candidateIds, int topN) {
+        FactorModel current = model;
+        if (current == null) {
+            return null;
+        }
+        long start = System.nanoTime();
+        JsonArray ranking = current.rank(userId, candidateIds, topN);
+        SCORING_DURATION.observeSince(start, ranking != null ? "scored" : "unknown_user");
+        return ranking;
+    }
+}
@@ -0,0 +1,353 @@
+package util;
+
+import java.io.PrintStream;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Log da aplicação com níveis e escrita assíncrona.
+ *
+ * As mensagens aceitam parâmetros no formato {@code "filme {} com score {}"} ou
+ * um Supplier, e só são montadas se o nível estiver habilitado. A formatação e
+ * a escrita no console acontecem em uma thread própria, alimentada por um
+ * buffer circular de tamanho fixo: a thread da requisição nunca espera por
+ * I/O. Se o buffer encher, as mensagens são descartadas e contabilizadas.
+ * Como a formatação é feita depois, os parâmetros não devem ser alterados
+ * após a chamada.
+ *
+ * Se o último parâmetro for uma exceção sem {} correspondente, o stack trace
+ * é impresso junto com a mensagem.
+ */
+public final class Log {
+
+    public enum Level {
+        DEBUG, INFO, WARN, ERROR, OFF
+    }
+
+    private static final int CAPACITY = 8192;
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss.SSS");
+
+    private static final ArrayBlockingQueue<Entry> buffer = new ArrayBlockingQueue<>(CAPACITY);
+    private static final LongAdder dropped = new LongAdder();
+    private static volatile Level level = Level.INFO;
+
+    static {
+        Thread writer = new Thread(Log::drainLoop, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(Log::flush, "log-flush"));
+        Metrics.counter("flixmate_log_dropped_messages_total", "Mensagens de log descartadas com o buffer cheio",
+                dropped::sum);
+    }
+
+    private Log() {
+    }
+
+    /**
+     * Define o nível mínimo das mensagens
+     *
+     * @param levelName Nome do nível (DEBUG, INFO, WARN, ERROR ou OFF)
+     */
+    public static void configure(String levelName) {
+        try {
+            level = Level.valueOf(levelName.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            level = Level.INFO;
+            warn("[📝:🟡] LOG_LEVEL inválido: {}, usando INFO", levelName);
+        }
+    }
+
+    public static Level getLevel() {
+        return level;
+    }
+
+    public static boolean isEnabled(Level target) {
+        return target.compareTo(level) >= 0 && target != Level.OFF;
+    }
+
+    public static boolean isDebugEnabled() {
+        return isEnabled(Level.DEBUG);
+    }
+
+    /**
+     * Número de mensagens descartadas porque o buffer estava cheio
+     */
+    public static long droppedCount() {
+        return dropped.sum();
+    }
+
+    // ===== DEBUG =====
+
+    public static void debug(String message) {
+        if (isEnabled(Level.DEBUG)) {
+            enqueue(Level.DEBUG, message, null, null);
+        }
+    }
+
+    public static void debug(String pattern, Object arg) {
+        if (isEnabled(Level.DEBUG)) {
+            enqueue(Level.DEBUG, pattern, new Object[] { arg }, null);
+        }
+    }
+
+    public static void debug(String pattern, Object arg1, Object arg2) {
+        if (isEnabled(Level.DEBUG)) {
+            enqueue(Level.DEBUG, pattern, new Object[] { arg1, arg2 }, null);
+        }
+    }
+
+    public static void debug(String pattern, Object... args) {
+        if (isEnabled(Level.DEBUG)) {
+            enqueue(Level.DEBUG, pattern, args, null);
+        }
+    }
+
+    public static void debug(Supplier<String> message) {
+        if (isEnabled(Level.DEBUG)) {
+            enqueue(Level.DEBUG, null, null, message);
+        }
+    }
+
+    // ===== INFO =====
+
+    public static void info(String message) {
+        if (isEnabled(Level.INFO)) {
+            enqueue(Level.INFO, message, null, null);
+        }
+    }
+
+    public static void info(String pattern, Object arg) {
+        if (isEnabled(Level.INFO)) {
+            enqueue(Level.INFO, pattern, new Object[] { arg }, null);
+        }
+    }
+
+    public static void info(String pattern, Object arg1, Object arg2) {
+        if (isEnabled(Level.INFO)) {
+            enqueue(Level.INFO, pattern, new Object[] { arg1, arg2 }, null);
+        }
+    }
+
+    public static void info(String pattern, Object... args) {
+        if (isEnabled(Level.INFO)) {
+            enqueue(Level.INFO, pattern, args, null);
+        }
+    }
+
+    public static void info(Supplier<String> message) {
+        if (isEnabled(Level.INFO)) {
+            enqueue(Level.INFO, null, null, message);
+        }
+    }
+
+    // ===== WARN =====
+
+    public static void warn(String message) {
+        if (isEnabled(Level.WARN)) {
+            enqueue(Level.WARN, message, null, null);
+        }
+    }
+
+    public static void warn(String pattern, Object arg) {
+        if (isEnabled(Level.WARN)) {
+            enqueue(Level.WARN, pattern, new Object[] { arg }, null);
+        }
+    }
+
+    public static void warn(String pattern, Object arg1, Object arg2) {
+        if (isEnabled(Level.WARN)) {
+            enqueue(Level.WARN, pattern, new Object[] { arg1, arg2 }, null);
+        }
+    }
+
+    public static void warn(String pattern, Object... args) {
+        if (isEnabled(Level.WARN)) {
+            enqueue(Level.WARN, pattern, args, null);
+        }
+    }
+
+    public static void warn(Supplier<String> message) {
+        if (isEnabled(Level.WARN)) {
+            enqueue(Level.WARN, null, null, message);
+        }
+    }
+
+    // ===== ERROR =====
+
+    public static void error(String message) {
+        if (isEnabled(Level.ERROR)) {
+            enqueue(Level.ERROR, message, null, null);
+        }
+    }
+
+    public static void error(String pattern, Object arg) {
+        if (isEnabled(Level.ERROR)) {
+            enqueue(Level.ERROR, pattern, new Object[] { arg }, null);
+        }
+    }
+
+    public static void error(String pattern, Object arg1, Object arg2) {
+        if (isEnabled(Level.ERROR)) {
+            enqueue(Level.ERROR, pattern, new Object[] { arg1, arg2 }, null);
+        }
+    }
+
+    public static void error(String pattern, Object... args) {
+        if (isEnabled(Level.ERROR)) {
+            enqueue(Level.ERROR, pattern, args, null);
+        }
+    }
+
+    public static void error(Supplier<String> message) {
+        if (isEnabled(Level.ERROR)) {
+            enqueue(Level.ERROR, null, null, message);
+        }
+    }
+
+    /**
+     * Escreve no console todas as mensagens pendentes (chamado no desligamento)
+     */
+    public static synchronized void flush() {
+        List<Entry> batch = new ArrayList<>();
+        buffer.drainTo(batch);
+        write(batch);
+    }
+
+    private static void enqueue(Level entryLevel, String pattern, Object[] args, Supplier<String> supplier) {
+        Entry entry = new Entry(entryLevel, System.currentTimeMillis(), Thread.currentThread().getName(), pattern,
+                args, supplier);
+        if (!buffer.offer(entry)) {
+            dropped.increment();
+        }
+    }
+
+    private static void drainLoop() {
+        List<Entry> batch = new ArrayList<>(256);
+        long reportedDrops = 0;
+
+        while (true) {
+            try {
+                Entry first = buffer.poll(1, TimeUnit.SECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    buffer.drainTo(batch, 255);
+                    synchronized (Log.class) {
+                        write(batch);
+                    }
+                    batch.clear();
+                }
+
+                long drops = dropped.sum();
+                if (drops > reportedDrops) {
+                    System.err.println("[📝:🟡] LOG DROPPED: [mensagens: " + (drops - reportedDrops) + "]");
+                    reportedDrops = drops;
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (Throwable t) {
+                // O log nunca pode derrubar a thread de escrita
+                batch.clear();
+            }
+        }
+    }
+
+    private static void write(List<Entry> batch) {
+        boolean wroteOut = false;
+        boolean wroteErr = false;
+
+        for (Entry entry : batch) {
+            PrintStream stream = entry.level.compareTo(Level.WARN) >= 0 ? System.err : System.out;
+            Throwable error = null;
+            String message;
+            try {
+                if (entry.supplier != null) {
+                    message = entry.supplier.get();
+                } else {
+                    StringBuilder sb = new StringBuilder();
+                    error = format(sb, entry.pattern, entry.args);
+                    message = sb.toString();
+                }
+            } catch (RuntimeException e) {
+                message = entry.pattern + " (erro ao formatar: " + e + ")";
+            }
+
+            LocalTime time = LocalTime.ofInstant(Instant.ofEpochMilli(entry.timestamp), ZoneId.systemDefault());
+            stream.print(TIME_FORMAT.format(time));
+            stream.print(' ');
+            stream.print(entry.level.name());
+            stream.print(" [");
+            stream.print(entry.thread);
+            stream.print("] ");
+            stream.println(message);
+            if (error != null) {
+                error.printStackTrace(stream);
+            }
+
+            if (stream == System.err) {
+                wroteErr = true;
+            } else {
+                wroteOut = true;
+            }
+        }
+
+        if (wroteOut) {
+            System.out.flush();
+        }
+        if (wroteErr) {
+            System.err.flush();
+        }
+    }
+
+    /**
+     * Substitui cada {} pelo próximo parâmetro
+     *
+     * @return A exceção final que sobrou sem {}, ou null
+     */
+    private static Throwable format(StringBuilder sb, String pattern, Object[] args) {
+        if (args == null || args.length == 0) {
+            sb.append(pattern);
+            return null;
+        }
+
+        int argIndex = 0;
+        int start = 0;
+        int placeholder;
+        while (argIndex < args.length && (placeholder = pattern.indexOf("{}", start)) >= 0) {
+            sb.append(pattern, start, placeholder);
+            sb.append(args[argIndex++]);
+            start = placeholder + 2;
+        }
+        sb.append(pattern, start, pattern.length());
+
+        if (argIndex == args.length - 1 && args[argIndex] instanceof Throwable) {
+            return (Throwable) args[argIndex];
+        }
+        return null;
+    }
+
+    private static final class Entry {
+        final Level level;
+        final long timestamp;
+        final String thread;
+        final String pattern;
+        final Object[] args;
+        final Supplier<String> supplier;
+
+        Entry(Level level, long timestamp, String thread, String pattern, Object[] args, Supplier<String> supplier) {
+            this.level = level;
+            this.timestamp = timestamp;
+            this.thread = thread;
+            this.pattern = pattern;
+            this.args = args;
+            this.supplier = supplier;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache em memória de tamanho limitado, que descarta o item usado há mais
+ * tempo quando fica cheio.
+ *
+ * Os acessos são sincronizados (as operações são curtas) e cada consulta é
+ * contada na métrica {@code flixmate_cache_requests_total{cache,result}} e no
+ * evento JFR {@code flixmate.CacheAccess}.
+ *
+ * @param <K> Tipo da chave
+ * @param <V> Tipo do valor
+ */
+public final class LruCache<K, V> {
+
+    private static final Metrics.Counter REQUESTS = Metrics.counter(
+            "flixmate_cache_requests_total",
+            "Consultas aos caches em memória, por resultado (hit/miss)",
+            "cache", "result");
+    private static final Metrics.Counter EVICTIONS = Metrics.counter(
+            "flixmate_cache_evictions_total",
+            "Itens descartados dos caches em memória por falta de espaço",
+            "cache");
+
+    private final String name;
+    private final int maxSize;
+    private final LinkedHashMap<K, V> entries;
+
+    /**
+     * Construtor do cache
+     *
+     * @param name    Nome do cache (label das métricas)
+     * @param maxSize Quantidade máxima de itens
+     */
+    public LruCache(String name, int maxSize) {
+        this.name = name;
+        this.maxSize = Math.max(1, maxSize);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                if (size() > LruCache.this.maxSize) {
+                    EVICTIONS.inc(LruCache.this.name);
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Busca um item
+     *
+     * @param key Chave do item
+     * @return O valor, ou null se não estiver no cache
+     */
+    public V get(K key) {
+        V value;
+        synchronized (entries) {
+            value = entries.get(key);
+        }
+        boolean hit = value != null;
+        REQUESTS.inc(name, hit ? "hit" : "miss");
+        JfrEvents.cacheAccess(name, hit);
+        return value;
+    }
+
+    /**
+     * Guarda um item, descartando o menos usado se o cache estiver cheio
+     *
+     * @param key   Chave do item
+     * @param value Valor (não nulo)
+     */
+    public void put(K key, V value) {
+        synchronized (entries) {
+            entries.put(key, value);
+        }
+    }
+
+    /**
+     * Remove um item
+     *
+     * @param key Chave do item
+     */
+    public void remove(K key) {
+        synchronized (entries) {
+            entries.remove(key);
+        }
+    }
+
+    /**
+     * Remove todos os itens
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Quantidade atual de itens
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+}
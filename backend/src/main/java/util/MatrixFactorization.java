@@ -0,0 +1,570 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.google.gson.JsonArray;
+
+/**
+ * Fatoração de matriz dos ratings (ALS ponderado) em arrays primitivos.
+ *
+ * Cada rating tem um valor (1 gostou, 0 não gostou) e um peso (favoritos
+ * pesam mais que um like). Os ratings viram uma matriz esparsa em CSR por
+ * usuário e a transposta por filme; cada iteração resolve os fatores dos
+ * usuários com os dos filmes fixos e depois o contrário. Cada linha é um
+ * sistema k×k independente, então as linhas são divididas entre as threads
+ * de um {@link ForkJoinPool}.
+ *
+ * Depois do treino, {@link Model#update} aplica um passo de SGD por rating
+ * novo, sem esperar o próximo treino.
+ */
+public final class MatrixFactorization {
+
+    // Linhas resolvidas por tarefa antes de dividir
+    private static final int ROWS_PER_TASK = 64;
+
+    private final int factors;
+    private final int iterations;
+    private final float lambda;
+    private final float learningRate;
+    private final long seed;
+    private final ForkJoinPool pool;
+
+    /**
+     * @param factors      Dimensão dos fatores (k)
+     * @param iterations   Iterações do ALS
+     * @param lambda       Regularização (multiplicada pelo peso total da linha)
+     * @param learningRate Passo do SGD nas atualizações online
+     * @param threads      Threads do treino
+     * @param seed         Semente dos fatores iniciais
+     */
+    public MatrixFactorization(int factors, int iterations, float lambda, float learningRate, int threads,
+            long seed) {
+        this.factors = Math.max(1, factors);
+        this.iterations = Math.max(1, iterations);
+        this.lambda = lambda;
+        this.learningRate = learningRate;
+        this.seed = seed;
+        this.pool = new ForkJoinPool(Math.max(1, threads));
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Ratings acumulados para um treino, em arrays que crescem conforme a
+     * leitura do banco
+     */
+    public static final class Ratings {
+        private int size;
+        private int[] users = new int[1024];
+        private int[] items = new int[1024];
+        private float[] values = new float[1024];
+        private float[] weights = new float[1024];
+
+        /**
+         * Adiciona um rating. Se o par (usuário, filme) se repetir, vale o de
+         * maior peso; em caso de empate, o último adicionado.
+         *
+         * @param userId  ID do usuário
+         * @param movieId ID do filme
+         * @param value   1 se gostou, 0 se não gostou
+         * @param weight  Peso do rating
+         */
+        public void add(int userId, int movieId, float value, float weight) {
+            if (size == users.length) {
+                int capacity = size * 2;
+                users = Arrays.copyOf(users, capacity);
+                items = Arrays.copyOf(items, capacity);
+                values = Arrays.copyOf(values, capacity);
+                weights = Arrays.copyOf(weights, capacity);
+            }
+            users[size] = userId;
+            items[size] = movieId;
+            values[size] = value;
+            weights[size] = weight;
+            size++;
+        }
+
+        public int size() {
+            return size;
+        }
+    }
+
+    /**
+     * Matriz esparsa comprimida por linha: as colunas e valores da linha r
+     * ficam em [ptr[r], ptr[r + 1])
+     */
+    private static final class Csr {
+        final int[] ptr;
+        final int[] cols;
+        final float[] values;
+        final float[] weights;
+
+        Csr(int[] ptr, int[] cols, float[] values, float[] weights) {
+            this.ptr = ptr;
+            this.cols = cols;
+            this.values = values;
+            this.weights = weights;
+        }
+
+        int rows() {
+            return ptr.length - 1;
+        }
+
+        int nonZeros() {
+            return ptr[ptr.length - 1];
+        }
+
+        /**
+         * Monta a matriz por counting sort das linhas; dentro de cada linha
+         * as colunas são ordenadas e os pares repetidos, unidos
+         */
+        static Csr build(int[] rows, int[] cols, float[] values, float[] weights, int n, int rowCount) {
+            int[] ptr = new int[rowCount + 1];
+            for (int e = 0; e < n; e++) {
+                ptr[rows[e] + 1]++;
+            }
+            int maxRow = 0;
+            for (int r = 0; r < rowCount; r++) {
+                maxRow = Math.max(maxRow, ptr[r + 1]);
+                ptr[r + 1] += ptr[r];
+            }
+            int[] order = new int[n];
+            int[] next = Arrays.copyOf(ptr, rowCount);
+            for (int e = 0; e < n; e++) {
+                order[next[rows[e]]++] = e;
+            }
+
+            int[] outPtr = new int[rowCount + 1];
+            int[] outCols = new int[n];
+            float[] outValues = new float[n];
+            float[] outWeights = new float[n];
+            // (coluna, posição) num long: ordenar por ele mantém a ordem de inserção nos empates
+            long[] keys = new long[maxRow];
+            int out = 0;
+            for (int r = 0; r < rowCount; r++) {
+                int len = ptr[r + 1] - ptr[r];
+                for (int j = 0; j < len; j++) {
+                    int e = order[ptr[r] + j];
+                    keys[j] = (long) cols[e] << 32 | e;
+                }
+                Arrays.sort(keys, 0, len);
+                int rowStart = out;
+                for (int j = 0; j < len; j++) {
+                    int col = (int) (keys[j] >>> 32);
+                    int e = (int) keys[j];
+                    if (out > rowStart && outCols[out - 1] == col) {
+                        if (weights[e] >= outWeights[out - 1]) {
+                            outValues[out - 1] = values[e];
+                            outWeights[out - 1] = weights[e];
+                        }
+                        continue;
+                    }
+                    outCols[out] = col;
+                    outValues[out] = values[e];
+                    outWeights[out] = weights[e];
+                    out++;
+                }
+                outPtr[r + 1] = out;
+            }
+            return new Csr(outPtr, Arrays.copyOf(outCols, out), Arrays.copyOf(outValues, out),
+                    Arrays.copyOf(outWeights, out));
+        }
+
+        /**
+         * Transposta (por coluna), também em CSR
+         */
+        Csr transpose(int colCount) {
+            int n = nonZeros();
+            int[] tPtr = new int[colCount + 1];
+            for (int i = 0; i < n; i++) {
+                tPtr[cols[i] + 1]++;
+            }
+            for (int c = 0; c < colCount; c++) {
+                tPtr[c + 1] += tPtr[c];
+            }
+            int[] next = Arrays.copyOf(tPtr, colCount);
+            int[] tCols = new int[n];
+            float[] tValues = new float[n];
+            float[] tWeights = new float[n];
+            for (int r = 0; r < rows(); r++) {
+                for (int i = ptr[r]; i < ptr[r + 1]; i++) {
+                    int dest = next[cols[i]]++;
+                    tCols[dest] = r;
+                    tValues[dest] = values[i];
+                    tWeights[dest] = weights[i];
+                }
+            }
+            return new Csr(tPtr, tCols, tValues, tWeights);
+        }
+    }
+
+    /**
+     * Treina os fatores do zero
+     *
+     * @param ratings Ratings de todos os usuários
+     * @return O modelo treinado
+     */
+    public Model train(Ratings ratings) {
+        int[] userIds = distinctSorted(ratings.users, ratings.size);
+        int[] itemIds = distinctSorted(ratings.items, ratings.size);
+        int[] userRows = new int[ratings.size];
+        int[] itemRows = new int[ratings.size];
+        for (int e = 0; e < ratings.size; e++) {
+            userRows[e] = Arrays.binarySearch(userIds, ratings.users[e]);
+            itemRows[e] = Arrays.binarySearch(itemIds, ratings.items[e]);
+        }
+        Csr byUser = Csr.build(userRows, itemRows, ratings.values, ratings.weights, ratings.size, userIds.length);
+        Csr byItem = byUser.transpose(itemIds.length);
+
+        float[] userFactors = new float[userIds.length * factors];
+        float[] itemFactors = new float[itemIds.length * factors];
+        Random random = new Random(seed);
+        for (int i = 0; i < itemFactors.length; i++) {
+            itemFactors[i] = (float) (random.nextGaussian() * 0.1);
+        }
+
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            pool.invoke(new SolveRows(byUser, itemFactors, userFactors, 0, userIds.length));
+            pool.invoke(new SolveRows(byItem, userFactors, itemFactors, 0, itemIds.length));
+        }
+
+        return new Model(factors, lambda, learningRate, userIds, itemIds, userFactors, itemFactors,
+                byUser.nonZeros(), rmse(byUser, userFactors, itemFactors));
+    }
+
+    /**
+     * Resolve os fatores de um intervalo de linhas com os do outro lado fixos
+     */
+    private final class SolveRows extends RecursiveAction {
+        private final Csr matrix;
+        private final float[] fixed;
+        private final float[] target;
+        private final int from;
+        private final int to;
+
+        SolveRows(Csr matrix, float[] fixed, float[] target, int from, int to) {
+            this.matrix = matrix;
+            this.fixed = fixed;
+            this.target = target;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > ROWS_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new SolveRows(matrix, fixed, target, from, middle),
+                        new SolveRows(matrix, fixed, target, middle, to));
+                return;
+            }
+            // Sistema k×k reaproveitado entre as linhas da tarefa
+            double[] a = new double[factors * factors];
+            double[] b = new double[factors];
+            for (int row = from; row < to; row++) {
+                solveRow(row, a, b);
+            }
+        }
+
+        /**
+         * (Σ w·y·yᵀ + λ·Σw·I) x = Σ w·r·y, só com o triângulo inferior de a
+         */
+        private void solveRow(int row, double[] a, double[] b) {
+            int k = factors;
+            Arrays.fill(a, 0);
+            Arrays.fill(b, 0);
+            double totalWeight = 0;
+            for (int i = matrix.ptr[row]; i < matrix.ptr[row + 1]; i++) {
+                int offset = matrix.cols[i] * k;
+                double weight = matrix.weights[i];
+                double weightedValue = weight * matrix.values[i];
+                for (int p = 0; p < k; p++) {
+                    double yp = fixed[offset + p];
+                    b[p] += weightedValue * yp;
+                    double wyp = weight * yp;
+                    for (int q = 0; q <= p; q++) {
+                        a[p * k + q] += wyp * fixed[offset + q];
+                    }
+                }
+                totalWeight += weight;
+            }
+            int base = row * k;
+            if (totalWeight == 0) {
+                Arrays.fill(target, base, base + k, 0f);
+                return;
+            }
+            for (int p = 0; p < k; p++) {
+                a[p * k + p] += lambda * totalWeight;
+            }
+            choleskySolve(a, b, k);
+            for (int p = 0; p < k; p++) {
+                target[base + p] = (float) b[p];
+            }
+        }
+    }
+
+    /**
+     * Resolve a·x = b (a simétrica positiva definida, triângulo inferior
+     * preenchido) por Cholesky; x fica em b
+     */
+    private static void choleskySolve(double[] a, double[] b, int k) {
+        for (int j = 0; j < k; j++) {
+            double diagonal = a[j * k + j];
+            for (int p = 0; p < j; p++) {
+                diagonal -= a[j * k + p] * a[j * k + p];
+            }
+            diagonal = Math.sqrt(Math.max(diagonal, 1e-12));
+            a[j * k + j] = diagonal;
+            for (int i = j + 1; i < k; i++) {
+                double sum = a[i * k + j];
+                for (int p = 0; p < j; p++) {
+                    sum -= a[i * k + p] * a[j * k + p];
+                }
+                a[i * k + j] = sum / diagonal;
+            }
+        }
+        // L·y = b
+        for (int i = 0; i < k; i++) {
+            double sum = b[i];
+            for (int p = 0; p < i; p++) {
+                sum -= a[i * k + p] * b[p];
+            }
+            b[i] = sum / a[i * k + i];
+        }
+        // Lᵀ·x = y
+        for (int i = k - 1; i >= 0; i--) {
+            double sum = b[i];
+            for (int p = i + 1; p < k; p++) {
+                sum -= a[p * k + i] * b[p];
+            }
+            b[i] = sum / a[i * k + i];
+        }
+    }
+
+    /**
+     * Erro quadrático médio ponderado nos ratings de treino
+     */
+    private double rmse(Csr byUser, float[] userFactors, float[] itemFactors) {
+        double error = 0;
+        double totalWeight = 0;
+        for (int row = 0; row < byUser.rows(); row++) {
+            for (int i = byUser.ptr[row]; i < byUser.ptr[row + 1]; i++) {
+                double diff = byUser.values[i]
+                        - dot(userFactors, row * factors, itemFactors, byUser.cols[i] * factors, factors);
+                error += byUser.weights[i] * diff * diff;
+                totalWeight += byUser.weights[i];
+            }
+        }
+        return totalWeight > 0 ? Math.sqrt(error / totalWeight) : 0;
+    }
+
+    private static int[] distinctSorted(int[] values, int size) {
+        int[] sorted = Arrays.copyOf(values, size);
+        Arrays.sort(sorted);
+        int distinct = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (distinct == 0 || sorted[i] != sorted[distinct - 1]) {
+                sorted[distinct++] = sorted[i];
+            }
+        }
+        return Arrays.copyOf(sorted, distinct);
+    }
+
+    /**
+     * Produto escalar de duas linhas, com quatro acumuladores
+     */
+    static float dot(float[] a, int aOffset, float[] b, int bOffset, int n) {
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (; i + 3 < n; i += 4) {
+            s0 += a[aOffset + i] * b[bOffset + i];
+            s1 += a[aOffset + i + 1] * b[bOffset + i + 1];
+            s2 += a[aOffset + i + 2] * b[bOffset + i + 2];
+            s3 += a[aOffset + i + 3] * b[bOffset + i + 3];
+        }
+        for (; i < n; i++) {
+            s0 += a[aOffset + i] * b[bOffset + i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * Resultado de {@link Model#update}
+     */
+    public enum UpdateResult {
+        /** Usuário e filme já estavam no modelo */
+        APPLIED,
+        /** Usuário novo: o vetor dele foi criado agora */
+        NEW_USER,
+        /** Filme fora do modelo: fica para o próximo treino */
+        UNKNOWN_ITEM
+    }
+
+    /**
+     * Fatores treinados. As atualizações online escrevem nos mesmos arrays,
+     * uma de cada vez; a pontuação lê sem trava (um float nunca é lido pela
+     * metade, e um score com parte do passo de SGD aplicado é aceitável).
+     */
+    public static final class Model {
+        private final int k;
+        private final float lambda;
+        private final float learningRate;
+        private final int[] userIds;
+        private final int[] itemIds;
+        private final float[] userFactors;
+        private final float[] itemFactors;
+        // Usuários que chegaram depois do treino
+        private final ConcurrentHashMap<Integer, float[]> newUsers = new ConcurrentHashMap<>();
+        private final int ratingCount;
+        private final double rmse;
+
+        private Model(int k, float lambda, float learningRate, int[] userIds, int[] itemIds, float[] userFactors,
+                float[] itemFactors, int ratingCount, double rmse) {
+            this.k = k;
+            this.lambda = lambda;
+            this.learningRate = learningRate;
+            this.userIds = userIds;
+            this.itemIds = itemIds;
+            this.userFactors = userFactors;
+            this.itemFactors = itemFactors;
+            this.ratingCount = ratingCount;
+            this.rmse = rmse;
+        }
+
+        public int getUserCount() {
+            return userIds.length;
+        }
+
+        public int getItemCount() {
+            return itemIds.length;
+        }
+
+        /**
+         * Ratings usados no treino (pares usuário/filme distintos)
+         */
+        public int getRatingCount() {
+            return ratingCount;
+        }
+
+        /**
+         * Erro quadrático médio ponderado nos ratings de treino
+         */
+        public double getRmse() {
+            return rmse;
+        }
+
+        /**
+         * Score previsto de (usuário, filme), ou NaN se algum dos dois não
+         * estiver no modelo
+         *
+         * @param userId  ID do usuário
+         * @param movieId ID do filme
+         */
+        public float predict(int userId, int movieId) {
+            float[] user = userVector(userId);
+            int item = Arrays.binarySearch(itemIds, movieId);
+            if (user == null || item < 0) {
+                return Float.NaN;
+            }
+            return dot(user, 0, itemFactors, item * k, k);
+        }
+
+        /**
+         * Ordena os candidatos pelo score previsto. Filmes fora do modelo e
+         * scores não positivos (mais perto de "não gostou") ficam de fora.
+         *
+         * @param userId       ID do usuário
+         * @param candidateIds IDs dos filmes candidatos
+         * @param topN         Número máximo de filmes no resultado
+         * @return Pares [id, score] em ordem decrescente de score, ou null se o
+         *         usuário não fizer parte do modelo
+         */
+        public JsonArray rank(int userId, List<Integer> candidateIds, int topN) {
+            float[] user = userVector(userId);
+            if (user == null) {
+                return null;
+            }
+            List<double[]> scored = new ArrayList<>(candidateIds.size());
+            for (Integer movieId : candidateIds) {
+                int item = Arrays.binarySearch(itemIds, movieId);
+                if (item < 0) {
+                    continue;
+                }
+                float score = dot(user, 0, itemFactors, item * k, k);
+                if (score > 0) {
+                    scored.add(new double[] { movieId, score });
+                }
+            }
+            scored.sort((x, y) -> Double.compare(y[1], x[1]));
+
+            JsonArray ranking = new JsonArray();
+            for (int i = 0; i < Math.min(topN, scored.size()); i++) {
+                JsonArray pair = new JsonArray();
+                pair.add((int) scored.get(i)[0]);
+                pair.add(scored.get(i)[1]);
+                ranking.add(pair);
+            }
+            return ranking;
+        }
+
+        /**
+         * Aplica um passo de SGD com um rating novo
+         *
+         * @param userId  ID do usuário
+         * @param movieId ID do filme
+         * @param value   1 se gostou, 0 se não gostou
+         * @param weight  Peso do rating
+         * @return O que foi feito com o rating
+         */
+        public synchronized UpdateResult update(int userId, int movieId, float value, float weight) {
+            int item = Arrays.binarySearch(itemIds, movieId);
+            if (item < 0) {
+                return UpdateResult.UNKNOWN_ITEM;
+            }
+            float[] users = userFactors;
+            int user = Arrays.binarySearch(userIds, userId);
+            int userOffset = user * k;
+            UpdateResult result = UpdateResult.APPLIED;
+            if (user < 0) {
+                // Começa em zero: o primeiro passo aproxima o usuário dos filmes que ele curtiu
+                users = newUsers.get(userId);
+                if (users == null) {
+                    users = new float[k];
+                    newUsers.put(userId, users);
+                    result = UpdateResult.NEW_USER;
+                }
+                userOffset = 0;
+            }
+
+            int itemOffset = item * k;
+            float error = value - dot(users, userOffset, itemFactors, itemOffset, k);
+            for (int f = 0; f < k; f++) {
+                float p = users[userOffset + f];
+                float q = itemFactors[itemOffset + f];
+                users[userOffset + f] += learningRate * (weight * error * q - lambda * p);
+                itemFactors[itemOffset + f] += learningRate * (weight * error * p - lambda * q);
+            }
+            return result;
+        }
+
+        /**
+         * Cópia do vetor do usuário (o original pode estar recebendo SGD)
+         */
+        private float[] userVector(int userId) {
+            int user = Arrays.binarySearch(userIds, userId);
+            if (user >= 0) {
+                return Arrays.copyOfRange(userFactors, user * k, user * k + k);
+            }
+            float[] added = newUsers.get(userId);
+            return added != null ? added.clone() : null;
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Registro de métricas da aplicação no formato texto do Prometheus.
+ *
+ * Contadores e histogramas são criados uma vez (campos estáticos) e
+ * atualizados sem locks; os valores de cada combinação de labels ficam em
+ * LongAdder/DoubleAdder. Gauges são lidos na hora do scrape.
+ */
+public final class Metrics {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    /** Buckets padrão (em segundos) para latências de rotas, queries e chamadas HTTP */
+    private static final double[] DEFAULT_BUCKETS = {
+            0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10 };
+
+    private static final Map<String, Metric> registry = new ConcurrentHashMap<>();
+    private static final List<String> order = new ArrayList<>();
+
+    private Metrics() {
+    }
+
+    /**
+     * Cria (ou retorna o existente) um contador
+     *
+     * @param name       Nome da métrica, terminado em _total
+     * @param help       Descrição
+     * @param labelNames Nomes dos labels
+     * @return O contador
+     */
+    public static Counter counter(String name, String help, String... labelNames) {
+        return (Counter) register(name, new Counter(name, help, labelNames));
+    }
+
+    /**
+     * Cria (ou retorna o existente) um histograma com os buckets padrão
+     *
+     * @param name       Nome da métrica, terminado em _seconds
+     * @param help       Descrição
+     * @param labelNames Nomes dos labels
+     * @return O histograma
+     */
+    public static Histogram histogram(String name, String help, String... labelNames) {
+        return (Histogram) register(name, new Histogram(name, help, DEFAULT_BUCKETS, labelNames));
+    }
+
+    /**
+     * Registra um gauge lido no momento do scrape
+     *
+     * @param name  Nome da métrica
+     * @param help  Descrição
+     * @param value Fonte do valor
+     */
+    public static void gauge(String name, String help, DoubleSupplier value) {
+        register(name, new Gauge(name, help, "gauge", value));
+    }
+
+    /**
+     * Registra um contador mantido fora do registro (ex.: LongAdder de outra
+     * classe), lido no momento do scrape
+     *
+     * @param name  Nome da métrica, terminado em _total
+     * @param help  Descrição
+     * @param value Fonte do valor
+     */
+    public static void counter(String name, String help, DoubleSupplier value) {
+        register(name, new Gauge(name, help, "counter", value));
+    }
+
+    /**
+     * Gera o texto de todas as métricas registradas
+     *
+     * @return Métricas no formato de exposição do Prometheus
+     */
+    public static String scrape() {
+        List<String> names;
+        synchronized (order) {
+            names = new ArrayList<>(order);
+        }
+
+        StringBuilder sb = new StringBuilder(4096);
+        for (String name : names) {
+            Metric metric = registry.get(name);
+            sb.append("# HELP ").append(name).append(' ').append(metric.help).append('\n');
+            sb.append("# TYPE ").append(name).append(' ').append(metric.type()).append('\n');
+            metric.write(sb);
+        }
+        return sb.toString();
+    }
+
+    private static Metric register(String name, Metric metric) {
+        Metric existing = registry.putIfAbsent(name, metric);
+        if (existing != null) {
+            if (existing.getClass() != metric.getClass()) {
+                throw new IllegalArgumentException("Métrica já registrada com outro tipo: " + name);
+            }
+            return existing;
+        }
+        synchronized (order) {
+            order.add(name);
+        }
+        return metric;
+    }
+
+    /**
+     * Base das métricas: guarda os filhos de cada combinação de labels
+     */
+    private abstract static class Metric {
+        final String name;
+        final String help;
+        final String[] labelNames;
+
+        Metric(String name, String help, String[] labelNames) {
+            this.name = name;
+            this.help = help;
+            this.labelNames = labelNames;
+        }
+
+        abstract String type();
+
+        abstract void write(StringBuilder sb);
+
+        String key(String[] labelValues) {
+            if (labelValues.length != labelNames.length) {
+                throw new IllegalArgumentException("Número de labels incorreto para " + name);
+            }
+            return labelValues.length == 1 ? labelValues[0] : String.join("\u0000", labelValues);
+        }
+
+        void appendLabels(StringBuilder sb, String[] labelValues, String extraName, String extraValue) {
+            if (labelNames.length == 0 && extraName == null) {
+                return;
+            }
+            sb.append('{');
+            for (int i = 0; i < labelNames.length; i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                sb.append(labelNames[i]).append("=\"");
+                escape(sb, labelValues[i]);
+                sb.append('"');
+            }
+            if (extraName != null) {
+                if (labelNames.length > 0) {
+                    sb.append(',');
+                }
+                sb.append(extraName).append("=\"").append(extraValue).append('"');
+            }
+            sb.append('}');
+        }
+
+        private static void escape(StringBuilder sb, String value) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '\\' || c == '"') {
+                    sb.append('\\').append(c);
+                } else if (c == '\n') {
+                    sb.append("\\n");
+                } else {
+                    sb.append(c);
+                }
+            }
+        }
+    }
+
+    public static final class Counter extends Metric {
+        private final Map<String, Child> children = new ConcurrentHashMap<>();
+
+        private Counter(String name, String help, String[] labelNames) {
+            super(name, help, labelNames);
+        }
+
+        /**
+         * Incrementa o contador
+         *
+         * @param labelValues Valores dos labels, na ordem em que foram declarados
+         */
+        public void inc(String... labelValues) {
+            children.computeIfAbsent(key(labelValues), k -> new Child(labelValues.clone())).value.increment();
+        }
+
+        @Override
+        String type() {
+            return "counter";
+        }
+
+        @Override
+        void write(StringBuilder sb) {
+            for (Child child : children.values()) {
+                sb.append(name);
+                appendLabels(sb, child.labelValues, null, null);
+                sb.append(' ').append(child.value.sum()).append('\n');
+            }
+        }
+
+        private static final class Child {
+            final String[] labelValues;
+            final LongAdder value = new LongAdder();
+
+            Child(String[] labelValues) {
+                this.labelValues = labelValues;
+            }
+        }
+    }
+
+    public static final class Histogram extends Metric {
+        private final double[] buckets;
+        private final Map<String, Child> children = new ConcurrentHashMap<>();
+
+        private Histogram(String name, String help, double[] buckets, String[] labelNames) {
+            super(name, help, labelNames);
+            this.buckets = buckets;
+        }
+
+        /**
+         * Registra uma observação
+         *
+         * @param seconds     Valor observado, em segundos
+         * @param labelValues Valores dos labels
+         */
+        public void observe(double seconds, String... labelValues) {
+            Child child = children.computeIfAbsent(key(labelValues),
+                    k -> new Child(labelValues.clone(), buckets.length));
+            int bucket = 0;
+            while (bucket < buckets.length && seconds > buckets[bucket]) {
+                bucket++;
+            }
+            child.counts[bucket].increment();
+            child.sum.add(seconds);
+        }
+
+        /**
+         * Registra o tempo decorrido desde {@code startNanos}
+         *
+         * @param startNanos  Valor de System.nanoTime() no início da operação
+         * @param labelValues Valores dos labels
+         */
+        public void observeSince(long startNanos, String... labelValues) {
+            observe((System.nanoTime() - startNanos) / 1e9, labelValues);
+        }
+
+        @Override
+        String type() {
+            return "histogram";
+        }
+
+        @Override
+        void write(StringBuilder sb) {
+            for (Child child : children.values()) {
+                long cumulative = 0;
+                for (int i = 0; i <= buckets.length; i++) {
+                    cumulative += child.counts[i].sum();
+                    sb.append(name).append("_bucket");
+                    String le = i < buckets.length ? Double.toString(buckets[i]) : "+Inf";
+                    appendLabels(sb, child.labelValues, "le", le);
+                    sb.append(' ').append(cumulative).append('\n');
+                }
+                sb.append(name).append("_sum");
+                appendLabels(sb, child.labelValues, null, null);
+                sb.append(' ').append(child.sum.sum()).append('\n');
+                sb.append(name).append("_count");
+                appendLabels(sb, child.labelValues, null, null);
+                sb.append(' ').append(cumulative).append('\n');
+            }
+        }
+
+        private static final class Child {
+            final String[] labelValues;
+            final LongAdder[] counts;
+            final DoubleAdder sum = new DoubleAdder();
+
+            Child(String[] labelValues, int bucketCount) {
+                this.labelValues = labelValues;
+                this.counts = new LongAdder[bucketCount + 1];
+                for (int i = 0; i < counts.length; i++) {
+                    counts[i] = new LongAdder();
+                }
+            }
+        }
+    }
+
+    private static final class Gauge extends Metric {
+        private final String type;
+        private final DoubleSupplier value;
+
+        private Gauge(String name, String help, String type, DoubleSupplier value) {
+            super(name, help, new String[0]);
+            this.type = type;
+            this.value = value;
+        }
+
+        @Override
+        String type() {
+            return type;
+        }
+
+        @Override
+        void write(StringBuilder sb) {
+            sb.append(name).append(' ').append(value.getAsDouble()).append('\n');
+        }
+    }
+}
@@ -1,10 +1,61 @@
 package util;
 
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.mindrot.jbcrypt.BCrypt;
 
 public class PasswordUtil {
     
     private static final int ROUNDS = 12;
+
+    private static final Metrics.Histogram VERIFY_DURATION = Metrics.histogram(
+            "flixmate_password_verify_duration_seconds",
+            "Tempo de CPU das verificações BCrypt no pool de senhas",
+            "outcome");
+    private static final Metrics.Histogram QUEUE_WAIT = Metrics.histogram(
+            "flixmate_password_verify_queue_seconds",
+            "Tempo de espera na fila do pool de senhas");
+    private static final Metrics.Counter REJECTED = Metrics.counter(
+            "flixmate_password_verify_rejected_total",
+            "Verificações recusadas com a fila do pool de senhas cheia");
+
+    // Pool próprio e limitado: uma rajada de logins não ocupa as threads do Jetty
+    private static volatile ThreadPoolExecutor verifier = newVerifier(
+            Runtime.getRuntime().availableProcessors(), 64);
+
+    static {
+        Metrics.gauge("flixmate_password_verify_queue_size", "Verificações BCrypt aguardando na fila",
+                () -> verifier.getQueue().size());
+    }
+
+    /**
+     * Configura o pool de verificação de senhas
+     * 
+     * @param threads   Threads dedicadas ao BCrypt
+     * @param queueSize Verificações que podem aguardar na fila; as excedentes
+     *                  são recusadas
+     */
+    public static void configureVerifier(int threads, int queueSize) {
+        ThreadPoolExecutor previous = verifier;
+        verifier = newVerifier(Math.max(1, threads), Math.max(1, queueSize));
+        previous.shutdown();
+        Log.info("[🔐:🟢] PASSWORD VERIFIER: [threads: {}] [fila: {}]", threads, queueSize);
+    }
+
+    private static ThreadPoolExecutor newVerifier(int threads, int queueSize) {
+        AtomicInteger counter = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+                    Thread thread = new Thread(runnable, "bcrypt-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
     
     /**
      * Criptografa uma senha usando BCrypt
@@ -27,8 +78,32 @@ public class PasswordUtil {
         try {
             return BCrypt.checkpw(plainPassword, hashedPassword);
         } catch (Exception e) {
-            System.err.println("Erro ao verificar senha: " + e.getMessage());
+            Log.error("Erro ao verificar senha: {}", e.getMessage());
             return false;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Verifica a senha no pool de senhas, sem bloquear a thread chamadora
+     * 
+     * @param plainPassword A senha em texto puro
+     * @param hashedPassword O hash da senha armazenado
+     * @return Futuro com true se a senha for válida; falha com
+     *         RejectedExecutionException se a fila estiver cheia
+     */
+    public static CompletableFuture<Boolean> checkPasswordAsync(String plainPassword, String hashedPassword) {
+        long queuedAt = System.nanoTime();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                QUEUE_WAIT.observeSince(queuedAt);
+                long start = System.nanoTime();
+                boolean valid = checkPassword(plainPassword, hashedPassword);
+                VERIFY_DURATION.observeSince(start, valid ? "match" : "mismatch");
+                return valid;
+            }, verifier);
+        } catch (RejectedExecutionException e) {
+            REJECTED.inc();
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
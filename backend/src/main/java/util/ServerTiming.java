@@ -0,0 +1,171 @@
+package util;
+
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Acumulador do custo de uma requisição, enviado no cabeçalho Server-Timing.
+ *
+ * O handler HTTP abre um acumulador por requisição e o deixa na thread;
+ * DAOs, TMDB, IA e a serialização JSON somam seus tempos nele. Chamadas
+ * assíncronas capturam o acumulador no momento da chamada. Desligado, nenhum
+ * acumulador é criado e cada ponto de medição custa só uma leitura de
+ * ThreadLocal.
+ */
+public final class ServerTiming {
+
+    private static final ThreadLocal<ServerTiming> current = new ThreadLocal<>();
+    private static volatile boolean enabled = true;
+
+    private final long startNanos = System.nanoTime();
+    private final AtomicLong dbNanos = new AtomicLong();
+    private final AtomicInteger dbCount = new AtomicInteger();
+    private final AtomicLong tmdbNanos = new AtomicLong();
+    private final AtomicInteger tmdbCount = new AtomicInteger();
+    private final AtomicLong aiNanos = new AtomicLong();
+    private final AtomicInteger aiCount = new AtomicInteger();
+    private final AtomicLong serializationNanos = new AtomicLong();
+
+    private ServerTiming() {
+    }
+
+    public static void setEnabled(boolean enabled) {
+        ServerTiming.enabled = enabled;
+    }
+
+    /**
+     * Abre o acumulador da requisição na thread atual
+     *
+     * @return O acumulador, ou null se o Server-Timing estiver desligado
+     */
+    public static ServerTiming begin() {
+        if (!enabled) {
+            return null;
+        }
+        ServerTiming timing = new ServerTiming();
+        current.set(timing);
+        return timing;
+    }
+
+    /**
+     * Remove o acumulador da thread (a requisição pode continuar em outra thread)
+     */
+    public static void detach() {
+        current.remove();
+    }
+
+    /**
+     * Acumulador da requisição em andamento na thread, ou null
+     */
+    public static ServerTiming current() {
+        return current.get();
+    }
+
+    /**
+     * Registra o tempo de uma query no acumulador da thread
+     *
+     * @param nanos Duração da query
+     */
+    public static void recordDb(long nanos) {
+        ServerTiming timing = current.get();
+        if (timing != null) {
+            timing.dbNanos.addAndGet(nanos);
+            timing.dbCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Registra o tempo de serialização JSON no acumulador da thread
+     *
+     * @param nanos Duração da serialização
+     */
+    public static void recordSerialization(long nanos) {
+        ServerTiming timing = current.get();
+        if (timing != null) {
+            timing.serializationNanos.addAndGet(nanos);
+        }
+    }
+
+    public void addTmdb(long nanos) {
+        tmdbNanos.addAndGet(nanos);
+        tmdbCount.incrementAndGet();
+    }
+
+    public void addAi(long nanos) {
+        aiNanos.addAndGet(nanos);
+        aiCount.incrementAndGet();
+    }
+
+    /**
+     * Soma tempo de serialização da resposta (ex.: compressão do corpo)
+     *
+     * @param nanos Duração
+     */
+    public void addSerialization(long nanos) {
+        serializationNanos.addAndGet(nanos);
+    }
+
+    /**
+     * Faz com que os estágios encadeados no futuro vejam o acumulador de quem
+     * chamou, mesmo que o futuro termine em outra thread
+     *
+     * @param future Futuro original
+     * @return Futuro que termina junto com o original, com o acumulador na thread
+     */
+    public static <T> CompletableFuture<T> propagate(CompletableFuture<T> future) {
+        ServerTiming captured = current.get();
+        if (captured == null) {
+            return future;
+        }
+
+        CompletableFuture<T> relay = new CompletableFuture<>();
+        future.whenComplete((value, error) -> {
+            ServerTiming previous = current.get();
+            current.set(captured);
+            try {
+                if (error != null) {
+                    relay.completeExceptionally(error);
+                } else {
+                    relay.complete(value);
+                }
+            } finally {
+                if (previous == null) {
+                    current.remove();
+                } else {
+                    current.set(previous);
+                }
+            }
+        });
+        return relay;
+    }
+
+    /**
+     * Valor do cabeçalho Server-Timing (durações em milissegundos)
+     *
+     * @return O valor do cabeçalho
+     */
+    public String header() {
+        StringBuilder sb = new StringBuilder(160);
+        metric(sb, "db", dbNanos.get(), dbCount.get(), "queries");
+        metric(sb, "tmdb", tmdbNanos.get(), tmdbCount.get(), "chamadas");
+        metric(sb, "ai", aiNanos.get(), aiCount.get(), "chamadas");
+        metric(sb, "ser", serializationNanos.get(), -1, null);
+        metric(sb, "total", System.nanoTime() - startNanos, -1, null);
+        return sb.toString();
+    }
+
+    private static void metric(StringBuilder sb, String name, long nanos, int count, String unit) {
+        if (count == 0) {
+            return;
+        }
+        if (sb.length() > 0) {
+            sb.append(", ");
+        }
+        sb.append(name).append(";dur=").append(String.format(Locale.ROOT, "%.1f", nanos / 1e6));
+        if (count > 0) {
+            sb.append(";desc=\"").append(count).append(' ').append(unit).append('"');
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Agrupa chamadas simultâneas com a mesma chave: enquanto uma chamada está em
+ * andamento, as outras com a mesma chave esperam por ela em vez de repetir a
+ * consulta (ao TMDB, à IA ou ao banco). Terminada a chamada, a chave é
+ * liberada; não é um cache.
+ *
+ * O resultado é compartilhado entre todos que esperaram: quem chama deve
+ * tratá-lo como somente leitura.
+ *
+ * Cada chamada é contada em {@code flixmate_singleflight_calls_total{flight,result}},
+ * com result=leader (executou a chamada) ou coalesced (esperou a de outro).
+ *
+ * @param <K> Tipo da chave (precisa de equals/hashCode)
+ * @param <V> Tipo do resultado
+ */
+public final class SingleFlight<K, V> {
+
+    private static final Metrics.Counter CALLS = Metrics.counter(
+            "flixmate_singleflight_calls_total",
+            "Chamadas agrupadas por chave: leader executou, coalesced esperou a chamada em andamento",
+            "flight", "result");
+
+    private final String name;
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * @param name Nome do grupo de chamadas (label da métrica)
+     */
+    public SingleFlight(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Executa a chamada na thread atual, ou espera a chamada com a mesma chave
+     * que já estiver em andamento
+     *
+     * @param key  Chave da chamada
+     * @param call A chamada
+     * @return O resultado (o mesmo para todos que esperaram)
+     */
+    public V execute(K key, Supplier<V> call) {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            CALLS.inc(name, "coalesced");
+            return await(running);
+        }
+
+        CALLS.inc(name, "leader");
+        try {
+            V value = call.get();
+            inFlight.remove(key, mine);
+            mine.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            inFlight.remove(key, mine);
+            mine.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Versão assíncrona de {@link #execute}: a chamada só é iniciada se não
+     * houver outra com a mesma chave em andamento
+     *
+     * @param key  Chave da chamada
+     * @param call Inicia a chamada
+     * @return Futuro com o resultado; as continuações rodam com o contexto
+     *         (trace e Server-Timing) de quem chamou
+     */
+    public CompletableFuture<V> executeAsync(K key, Supplier<CompletableFuture<V>> call) {
+        CompletableFuture<V> shared = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, shared);
+        if (running != null) {
+            CALLS.inc(name, "coalesced");
+            return ServerTiming.propagate(Tracing.propagate(running.copy()));
+        }
+
+        CALLS.inc(name, "leader");
+        CompletableFuture<V> upstream;
+        try {
+            upstream = call.get();
+        } catch (RuntimeException | Error e) {
+            inFlight.remove(key, shared);
+            shared.completeExceptionally(e);
+            throw e;
+        }
+        upstream.whenComplete((value, error) -> {
+            // Libera a chave antes de completar: quem chegar depois faz uma chamada nova
+            inFlight.remove(key, shared);
+            if (error != null) {
+                shared.completeExceptionally(error);
+            } else {
+                shared.complete(value);
+            }
+        });
+        // Cópia: quem chama pode cancelar o seu futuro sem afetar os outros
+        return shared.copy();
+    }
+
+    /**
+     * Libera a chave: a próxima chamada não espera a que está em andamento
+     *
+     * @param key Chave da chamada
+     */
+    public void forget(K key) {
+        inFlight.remove(key);
+    }
+
+    /**
+     * Libera todas as chaves
+     */
+    public void forgetAll() {
+        inFlight.clear();
+    }
+
+    private static <V> V await(CompletableFuture<V> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+}
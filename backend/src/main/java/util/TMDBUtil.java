@@ -7,6 +7,8 @@ import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
@@ -17,6 +19,15 @@ public class TMDBUtil {
     private final HttpClient client = HttpClient.newHttpClient();
     private static final String BASE_URL = "https://api.themoviedb.org/3/movie/";
 
+    private static final Metrics.Histogram REQUEST_DURATION = Metrics.histogram(
+            "flixmate_tmdb_request_duration_seconds",
+            "Tempo das chamadas à API do TMDB",
+            "operation", "outcome");
+
+    // Um filme aberto por muitos usuários ao mesmo tempo gera uma chamada só
+    private final SingleFlight<Integer, JsonObject> movieDetailsFlights = new SingleFlight<>("tmdb_movie_details");
+    private final SingleFlight<Integer, JsonArray> popularFlights = new SingleFlight<>("tmdb_popular");
+
     /**
      * Construtor da classe TMDBUtil
      * 
@@ -33,60 +44,74 @@ public class TMDBUtil {
      * @return JsonObject com os detalhes do filme ou null em caso de erro
      */
     public JsonObject getMovieDetails(int movieId) {
-        try {
-            String urlStr = String.format("%s%d?api_key=%s", BASE_URL, movieId, API_KEY);
-            HttpRequest request = HttpRequest.newBuilder()
-                    .uri(URI.create(urlStr))
-                    .GET()
-                    .build();
-            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-
-            // Apenas retorna o JsonObject bruto da API
-            return JsonParser.parseString(response.body()).getAsJsonObject();
-        } catch (Exception e) {
-            System.err.println("Error fetching movie details for ID " + movieId + ": " + e.getMessage());
-            e.printStackTrace();
-            return null;
-        }
+        return getMovieDetailsAsync(movieId).join();
     }
 
     /**
-     * Busca um filme aleatório com alta popularidade
+     * Versão assíncrona de {@link #getMovieDetails}. Pedidos simultâneos do
+     * mesmo filme compartilham a chamada e o JsonObject (somente leitura).
      * 
-     * @param page                Página de resultados a ser buscada
-     * @param popularityThreshold Limiar de popularidade para considerar um filme
-     *                            "popular"
-     * @return JsonObject do filme selecionado ou null se nenhum filme for
-     *         encontrado
+     * @param movieId ID do filme a ser buscado
+     * @return Futuro com os detalhes do filme ou null em caso de erro
      */
-    public List<JsonObject> getMoviesDetails(List<Integer> movieIds) {
-        List<JsonObject> movies = new ArrayList<>();
+    public CompletableFuture<JsonObject> getMovieDetailsAsync(int movieId) {
+        return movieDetailsFlights.executeAsync(movieId, () -> fetchMovieDetails(movieId));
+    }
 
-        for (Integer id : movieIds) {
-            try {
-                String url = "https://api.themoviedb.org/3/movie/" + id + "?&api_key=" + API_KEY;
+    private CompletableFuture<JsonObject> fetchMovieDetails(int movieId) {
+        String urlStr = String.format("%s%d?api_key=%s", BASE_URL, movieId, API_KEY);
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(urlStr))
+                .GET()
+                .build();
 
-                HttpRequest request = HttpRequest.newBuilder()
-                        .uri(URI.create(url))
-                        .GET()
-                        .build();
+        return send("movie_details", request)
+                .thenApply(response -> {
+                    if (response.statusCode() != 200) {
+                        Log.error("Erro ao buscar detalhes do filme ID {}: HTTP {}", movieId,
+                                response.statusCode());
+                        return null;
+                    }
+                    return JsonParser.parseString(response.body()).getAsJsonObject();
+                })
+                .exceptionally(e -> {
+                    Log.error("Error fetching movie details for ID {}: {}", movieId, e.getMessage());
+                    return null;
+                });
+    }
 
-                HttpClient client = HttpClient.newHttpClient();
-                HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+    /**
+     * Busca os detalhes de vários filmes
+     * 
+     * @param movieIds Lista de IDs dos filmes
+     * @return Lista com os detalhes dos filmes encontrados, na ordem de movieIds
+     */
+    public List<JsonObject> getMoviesDetails(List<Integer> movieIds) {
+        return getMoviesDetailsAsync(movieIds).join();
+    }
 
-                if (response.statusCode() == 200) {
-                    JsonObject movie = JsonParser.parseString(response.body()).getAsJsonObject();
+    /**
+     * Busca os detalhes de vários filmes em paralelo
+     * 
+     * @param movieIds Lista de IDs dos filmes
+     * @return Futuro com os detalhes dos filmes encontrados, na ordem de movieIds
+     */
+    public CompletableFuture<List<JsonObject>> getMoviesDetailsAsync(List<Integer> movieIds) {
+        List<CompletableFuture<JsonObject>> requests = new ArrayList<>();
+        for (Integer id : movieIds) {
+            requests.add(getMovieDetailsAsync(id));
+        }
+
+        return CompletableFuture.allOf(requests.toArray(new CompletableFuture[0])).thenApply(done -> {
+            List<JsonObject> movies = new ArrayList<>();
+            for (CompletableFuture<JsonObject> request : requests) {
+                JsonObject movie = request.join();
+                if (movie != null) {
                     movies.add(movie);
-                } else {
-                    System.err.println("Erro ao buscar detalhes do filme ID " + id);
                 }
-
-            } catch (Exception e) {
-                System.err.println("Erro ao buscar detalhes do filme ID " + id + ": " + e.getMessage());
             }
-        }
-
-        return movies;
+            return movies;
+        });
     }
 
 
@@ -97,19 +122,81 @@ public class TMDBUtil {
      * @return JsonArray com os filmes populares ou null em caso de erro
      */
     public JsonArray getPopularMovies(int page) throws IOException, InterruptedException {
+        try {
+            return getPopularMoviesAsync(page).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Versão assíncrona de {@link #getPopularMovies}. Pedidos simultâneos da
+     * mesma página compartilham a chamada e o JsonArray (somente leitura).
+     * 
+     * @param page Página de resultados a ser buscada
+     * @return Futuro com os filmes populares
+     */
+    public CompletableFuture<JsonArray> getPopularMoviesAsync(int page) {
+        return popularFlights.executeAsync(page, () -> fetchPopularMovies(page));
+    }
+
+    private CompletableFuture<JsonArray> fetchPopularMovies(int page) {
         String url = String.format("https://api.themoviedb.org/3/movie/popular?api_key=%s&page=%d", API_KEY, page);
         HttpRequest request = HttpRequest.newBuilder()
                 .uri(URI.create(url))
                 .GET()
                 .build();
-        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
 
-        if (response.statusCode() != 200) {
-            throw new RuntimeException("Erro ao buscar filmes populares: " + response.body());
+        return send("popular", request).thenApply(response -> {
+            if (response.statusCode() != 200) {
+                throw new RuntimeException("Erro ao buscar filmes populares: " + response.body());
+            }
+
+            JsonObject jsonResponse = JsonParser.parseString(response.body()).getAsJsonObject();
+            return jsonResponse.getAsJsonArray("results");
+        });
+    }
+
+    /**
+     * Envia a requisição ao TMDB registrando o tempo da chamada
+     *
+     * @param operation Nome da operação (label da métrica)
+     * @param request   Requisição a ser enviada
+     * @return Futuro com a resposta
+     */
+    private CompletableFuture<HttpResponse<String>> send(String operation, HttpRequest request) {
+        Tracing.Span span = Tracing.startDetached("tmdb " + operation);
+        if (span != null) {
+            // Só o caminho: a query string carrega a chave da API
+            span.setAttribute("http.path", request.uri().getPath());
         }
 
-        JsonObject jsonResponse = JsonParser.parseString(response.body()).getAsJsonObject();
-        return jsonResponse.getAsJsonArray("results");
+        JfrEvents.TmdbCall event = new JfrEvents.TmdbCall();
+        event.begin();
+        ServerTiming timing = ServerTiming.current();
+        long start = System.nanoTime();
+        return ServerTiming.propagate(Tracing.propagate(client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .whenComplete((response, error) -> {
+                    boolean ok = error == null && response.statusCode() < 400;
+                    long elapsed = System.nanoTime() - start;
+                    REQUEST_DURATION.observe(elapsed / 1e9, operation, ok ? "ok" : "error");
+                    if (timing != null) {
+                        timing.addTmdb(elapsed);
+                    }
+                    event.end();
+                    if (event.shouldCommit()) {
+                        event.operation = operation;
+                        event.path = request.uri().getPath();
+                        event.status = response != null ? response.statusCode() : 0;
+                        event.commit();
+                    }
+                    if (span != null) {
+                        span.end(response, error);
+                    }
+                })));
     }
 
 }
\ No newline at end of file
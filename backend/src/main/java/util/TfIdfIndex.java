@@ -0,0 +1,497 @@
+package util;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+import com.google.gson.JsonArray;
+
+/**
+ * Vetores TF-IDF de textos curtos (sinopses) com índice invertido.
+ *
+ * Cada documento guarda os termos (ordenados) e os pesos já normalizados
+ * (norma L2), então a similaridade de cosseno é um produto escalar. O índice
+ * invertido guarda, por termo, os documentos e pesos em que ele aparece: uma
+ * consulta só percorre as listas dos seus próprios termos.
+ *
+ * Peso de um termo: (1 + ln tf) · idf, com idf = ln((1 + N) / (1 + df)) + 1
+ * (o mesmo idf suavizado do TfidfVectorizer da IA). Documentos adicionados
+ * depois da construção usam o idf do momento; os anteriores mantêm os pesos
+ * até a próxima construção.
+ */
+public final class TfIdfIndex {
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+    // Documentos tokenizados por tarefa antes de dividir
+    private static final int DOCS_PER_TASK = 256;
+
+    // Português e inglês, já sem acentos (a comparação é feita depois de removê-los);
+    // copyOf porque as duas listas têm palavras em comum ("do", "so")
+    private static final Set<String> STOPWORDS = Set.copyOf(Arrays.asList(
+            "a", "ao", "aos", "aquela", "aquelas", "aquele", "aqueles", "aquilo", "as", "ate", "com", "como",
+            "da", "das", "de", "dela", "delas", "dele", "deles", "depois", "do", "dos", "e", "ela", "elas",
+            "ele", "eles", "em", "entre", "era", "eram", "essa", "essas", "esse", "esses", "esta", "estao",
+            "estas", "este", "estes", "eu", "foi", "foram", "ha", "isso", "isto", "ja", "la", "lhe", "lhes",
+            "mais", "mas", "me", "mesmo", "meu", "minha", "muito", "na", "nao", "nas", "nem", "no", "nos",
+            "nossa", "nosso", "num", "numa", "o", "os", "ou", "para", "pela", "pelas", "pelo", "pelos",
+            "por", "qual", "quando", "que", "quem", "se", "seja", "sem", "ser", "seu", "seus", "sua", "suas",
+            "so", "tambem", "te", "tem", "ter", "toda", "todas", "todo", "todos", "tu", "um", "uma", "umas",
+            "uns", "vai", "voce", "voces",
+            "about", "after", "again", "all", "also", "an", "and", "any", "are", "at", "be", "been", "before",
+            "being", "between", "both", "but", "by", "can", "could", "did", "do", "does", "during", "each",
+            "for", "from", "had", "has", "have", "he", "her", "hers", "him", "his", "how", "if", "in", "into",
+            "is", "it", "its", "just", "more", "most", "must", "new", "not", "of", "off", "on", "once", "one",
+            "only", "or", "other", "our", "out", "over", "own", "same", "she", "should", "so", "some", "such",
+            "than", "that", "the", "their", "them", "then", "there", "these", "they", "this", "those",
+            "through", "to", "too", "two", "under", "until", "up", "very", "was", "we", "were", "what",
+            "when", "where", "which", "while", "who", "whom", "why", "will", "with", "would", "you", "your"));
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Vocabulário
+    private final Map<String, Integer> termIds = new HashMap<>();
+    private int[] documentFrequency = new int[0];
+
+    // Documentos (posição densa → filme, termos e pesos normalizados)
+    private final Map<Integer, Integer> docByMovie = new HashMap<>();
+    private int docCount;
+    private int[] docMovieIds = new int[0];
+    private int[][] docTerms = new int[0][];
+    private float[][] docWeights = new float[0][];
+
+    // Índice invertido (termo → documentos e pesos); postingSize[t] itens usados
+    private int[][] postingDocs = new int[0][];
+    private float[][] postingWeights = new float[0][];
+    private int[] postingSize = new int[0];
+
+    private TfIdfIndex() {
+    }
+
+    /**
+     * Termos de um texto: minúsculas, sem acentos, sem stopwords e com pelo
+     * menos duas letras
+     *
+     * @param text O texto (null vira vazio)
+     */
+    public static String[] tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return new String[0];
+        }
+        String normalized = MARKS.matcher(Normalizer.normalize(text.toLowerCase(), Normalizer.Form.NFD))
+                .replaceAll("");
+        List<String> tokens = new ArrayList<>();
+        for (String token : NON_WORD.split(normalized)) {
+            if (token.length() >= 2 && !STOPWORDS.contains(token)) {
+                tokens.add(token);
+            }
+        }
+        return tokens.toArray(new String[0]);
+    }
+
+    /**
+     * Constrói o índice. A tokenização roda em paralelo no {@code pool}; o
+     * vocabulário e o índice invertido são montados depois, em sequência.
+     *
+     * @param movieIds IDs dos filmes
+     * @param texts    Texto de cada filme, na mesma ordem
+     * @param pool     Pool usado na tokenização e no cálculo dos pesos
+     * @return O índice
+     */
+    public static TfIdfIndex build(int[] movieIds, String[] texts, ForkJoinPool pool) {
+        int n = movieIds.length;
+        String[][] terms = new String[n][];
+        int[][] counts = new int[n][];
+        pool.invoke(new CountTerms(texts, terms, counts, 0, n));
+
+        TfIdfIndex index = new TfIdfIndex();
+        int[][] ids = new int[n][];
+        for (int doc = 0; doc < n; doc++) {
+            if (index.docByMovie.containsKey(movieIds[doc])) {
+                continue;
+            }
+            index.docByMovie.put(movieIds[doc], index.docCount++);
+            ids[doc] = new int[terms[doc].length];
+            for (int i = 0; i < terms[doc].length; i++) {
+                int term = index.termId(terms[doc][i]);
+                ids[doc][i] = term;
+                index.documentFrequency[term]++;
+            }
+        }
+
+        index.docMovieIds = new int[index.docCount];
+        index.docTerms = new int[index.docCount][];
+        index.docWeights = new float[index.docCount][];
+        pool.invoke(new WeighDocs(index, movieIds, ids, counts, 0, n));
+
+        // Índice invertido em uma passada: tamanho exato de cada lista antes de preencher
+        // (com a mesma capacidade do vocabulário, para os termos novos de add)
+        int capacity = index.documentFrequency.length;
+        index.postingSize = new int[capacity];
+        for (int doc = 0; doc < index.docCount; doc++) {
+            for (int term : index.docTerms[doc]) {
+                index.postingSize[term]++;
+            }
+        }
+        index.postingDocs = new int[capacity][];
+        index.postingWeights = new float[capacity][];
+        for (int term = 0; term < index.termIds.size(); term++) {
+            index.postingDocs[term] = new int[index.postingSize[term]];
+            index.postingWeights[term] = new float[index.postingSize[term]];
+            index.postingSize[term] = 0;
+        }
+        for (int doc = 0; doc < index.docCount; doc++) {
+            index.appendPostings(doc);
+        }
+        return index;
+    }
+
+    /**
+     * Tokeniza e conta os termos de um intervalo de textos
+     */
+    private static final class CountTerms extends RecursiveAction {
+        private final String[] texts;
+        private final String[][] terms;
+        private final int[][] counts;
+        private final int from;
+        private final int to;
+
+        CountTerms(String[] texts, String[][] terms, int[][] counts, int from, int to) {
+            this.texts = texts;
+            this.terms = terms;
+            this.counts = counts;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > DOCS_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new CountTerms(texts, terms, counts, from, middle),
+                        new CountTerms(texts, terms, counts, middle, to));
+                return;
+            }
+            for (int doc = from; doc < to; doc++) {
+                String[] tokens = tokenize(texts[doc]);
+                Arrays.sort(tokens);
+                int distinct = 0;
+                int[] tf = new int[tokens.length];
+                for (int i = 0; i < tokens.length; i++) {
+                    if (distinct > 0 && tokens[i].equals(tokens[distinct - 1])) {
+                        tf[distinct - 1]++;
+                    } else {
+                        tokens[distinct] = tokens[i];
+                        tf[distinct++] = 1;
+                    }
+                }
+                terms[doc] = Arrays.copyOf(tokens, distinct);
+                counts[doc] = Arrays.copyOf(tf, distinct);
+            }
+        }
+    }
+
+    /**
+     * Calcula os pesos normalizados de um intervalo de documentos
+     */
+    private static final class WeighDocs extends RecursiveAction {
+        private final TfIdfIndex index;
+        private final int[] movieIds;
+        private final int[][] ids;
+        private final int[][] counts;
+        private final int from;
+        private final int to;
+
+        WeighDocs(TfIdfIndex index, int[] movieIds, int[][] ids, int[][] counts, int from, int to) {
+            this.index = index;
+            this.movieIds = movieIds;
+            this.ids = ids;
+            this.counts = counts;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > DOCS_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new WeighDocs(index, movieIds, ids, counts, from, middle),
+                        new WeighDocs(index, movieIds, ids, counts, middle, to));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                if (ids[i] == null) {
+                    continue; // filme repetido
+                }
+                int doc = index.docByMovie.get(movieIds[i]);
+                index.docMovieIds[doc] = movieIds[i];
+                index.setVector(doc, ids[i], counts[i]);
+            }
+        }
+    }
+
+    /**
+     * Adiciona um filme novo ao índice (filmes já indexados são ignorados)
+     *
+     * @param movieId ID do filme
+     * @param text    Texto do filme
+     * @return true se o filme foi adicionado
+     */
+    public boolean add(int movieId, String text) {
+        String[] tokens = tokenize(text);
+        Map<String, Integer> tf = new HashMap<>();
+        for (String token : tokens) {
+            tf.merge(token, 1, Integer::sum);
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (docByMovie.containsKey(movieId)) {
+                return false;
+            }
+            int doc = docCount++;
+            docByMovie.put(movieId, doc);
+            if (doc == docMovieIds.length) {
+                int capacity = Math.max(16, doc * 2);
+                docMovieIds = Arrays.copyOf(docMovieIds, capacity);
+                docTerms = Arrays.copyOf(docTerms, capacity);
+                docWeights = Arrays.copyOf(docWeights, capacity);
+            }
+            docMovieIds[doc] = movieId;
+
+            int[] ids = new int[tf.size()];
+            int[] counts = new int[tf.size()];
+            int i = 0;
+            for (Map.Entry<String, Integer> term : tf.entrySet()) {
+                ids[i] = termId(term.getKey());
+                counts[i] = term.getValue();
+                documentFrequency[ids[i]]++;
+                i++;
+            }
+            setVector(doc, ids, counts);
+            appendPostings(doc);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Filmes mais parecidos com um texto livre
+     *
+     * @param text  O texto da busca
+     * @param limit Número máximo de filmes
+     * @return Pares [id, score] em ordem decrescente de cosseno
+     */
+    public JsonArray search(String text, int limit) {
+        String[] tokens = tokenize(text);
+        Arrays.sort(tokens);
+        lock.readLock().lock();
+        try {
+            List<Integer> ids = new ArrayList<>();
+            List<Integer> counts = new ArrayList<>();
+            for (int i = 0; i < tokens.length; i++) {
+                Integer term = termIds.get(tokens[i]);
+                if (term == null) {
+                    continue; // termo fora do vocabulário não pontua nenhum documento
+                }
+                if (i > 0 && tokens[i].equals(tokens[i - 1])) {
+                    counts.set(counts.size() - 1, counts.get(counts.size() - 1) + 1);
+                } else {
+                    ids.add(term);
+                    counts.add(1);
+                }
+            }
+            int[] queryTerms = ids.stream().mapToInt(Integer::intValue).toArray();
+            float[] queryWeights = weights(queryTerms, counts.stream().mapToInt(Integer::intValue).toArray());
+            return query(queryTerms, queryWeights, -1, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Filmes com a sinopse mais parecida com a de um filme ("more like this")
+     *
+     * @param movieId ID do filme
+     * @param limit   Número máximo de filmes
+     * @return Pares [id, score] em ordem decrescente de cosseno, ou null se o
+     *         filme não estiver no índice
+     */
+    public JsonArray moreLikeThis(int movieId, int limit) {
+        lock.readLock().lock();
+        try {
+            Integer doc = docByMovie.get(movieId);
+            if (doc == null) {
+                return null;
+            }
+            return query(docTerms[doc], docWeights[doc], doc, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Quantidade de filmes indexados
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Quantidade de termos no vocabulário
+     */
+    public int getTermCount() {
+        lock.readLock().lock();
+        try {
+            return termIds.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Produto escalar da consulta com os documentos, percorrendo só as
+     * listas dos termos da consulta. Chamado com a trava de leitura.
+     */
+    private JsonArray query(int[] terms, float[] weights, int excludeDoc, int limit) {
+        float[] scores = new float[docCount];
+        int[] touched = new int[Math.min(docCount, 1024)];
+        int touchedCount = 0;
+        for (int i = 0; i < terms.length; i++) {
+            int term = terms[i];
+            int[] docs = postingDocs[term];
+            float[] postings = postingWeights[term];
+            for (int p = 0; p < postingSize[term]; p++) {
+                int doc = docs[p];
+                if (scores[doc] == 0) {
+                    if (touchedCount == touched.length) {
+                        touched = Arrays.copyOf(touched, touchedCount * 2);
+                    }
+                    touched[touchedCount++] = doc;
+                }
+                scores[doc] += weights[i] * postings[p];
+            }
+        }
+
+        int k = Math.max(0, limit);
+        int[] topDocs = new int[k];
+        float[] topScores = new float[k];
+        int size = 0;
+        for (int t = 0; t < touchedCount; t++) {
+            int doc = touched[t];
+            float score = scores[doc];
+            if (doc == excludeDoc || score <= 0 || k == 0 || (size == k && score <= topScores[k - 1])) {
+                continue;
+            }
+            int position = size < k ? size++ : k - 1;
+            while (position > 0 && topScores[position - 1] < score) {
+                topScores[position] = topScores[position - 1];
+                topDocs[position] = topDocs[position - 1];
+                position--;
+            }
+            topScores[position] = score;
+            topDocs[position] = doc;
+        }
+
+        JsonArray ranking = new JsonArray();
+        for (int i = 0; i < size; i++) {
+            JsonArray pair = new JsonArray();
+            pair.add(docMovieIds[topDocs[i]]);
+            pair.add(Math.min(1f, topScores[i]));
+            ranking.add(pair);
+        }
+        return ranking;
+    }
+
+    private int termId(String term) {
+        Integer id = termIds.get(term);
+        if (id == null) {
+            id = termIds.size();
+            termIds.put(term, id);
+            if (id == documentFrequency.length) {
+                int capacity = Math.max(64, id * 2);
+                documentFrequency = Arrays.copyOf(documentFrequency, capacity);
+                postingDocs = Arrays.copyOf(postingDocs, capacity);
+                postingWeights = Arrays.copyOf(postingWeights, capacity);
+                postingSize = Arrays.copyOf(postingSize, capacity);
+            }
+        }
+        return id;
+    }
+
+    /**
+     * Grava os termos (ordenados) e pesos normalizados de um documento
+     */
+    private void setVector(int doc, int[] ids, int[] counts) {
+        // (termo, posição) num long: ordena os termos levando as contagens junto
+        long[] keys = new long[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            keys[i] = (long) ids[i] << 32 | i;
+        }
+        Arrays.sort(keys);
+        int[] sortedIds = new int[ids.length];
+        int[] sortedCounts = new int[ids.length];
+        for (int i = 0; i < keys.length; i++) {
+            sortedIds[i] = (int) (keys[i] >>> 32);
+            sortedCounts[i] = counts[(int) keys[i]];
+        }
+        docTerms[doc] = sortedIds;
+        docWeights[doc] = weights(sortedIds, sortedCounts);
+    }
+
+    /**
+     * (1 + ln tf) · idf, com norma L2 igual a 1
+     */
+    private float[] weights(int[] terms, int[] counts) {
+        float[] weights = new float[terms.length];
+        double norm = 0;
+        for (int i = 0; i < terms.length; i++) {
+            double idf = Math.log((1.0 + docCount) / (1.0 + documentFrequency[terms[i]])) + 1;
+            weights[i] = (float) ((1 + Math.log(counts[i])) * idf);
+            norm += (double) weights[i] * weights[i];
+        }
+        if (norm > 0) {
+            float scale = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < weights.length; i++) {
+                weights[i] *= scale;
+            }
+        }
+        return weights;
+    }
+
+    /**
+     * Acrescenta o documento nas listas dos seus termos
+     */
+    private void appendPostings(int doc) {
+        int[] terms = docTerms[doc];
+        float[] weights = docWeights[doc];
+        for (int i = 0; i < terms.length; i++) {
+            int term = terms[i];
+            int size = postingSize[term];
+            if (postingDocs[term] == null) {
+                postingDocs[term] = new int[4];
+                postingWeights[term] = new float[4];
+            } else if (size == postingDocs[term].length) {
+                postingDocs[term] = Arrays.copyOf(postingDocs[term], Math.max(4, size * 2));
+                postingWeights[term] = Arrays.copyOf(postingWeights[term], Math.max(4, size * 2));
+            }
+            postingDocs[term][size] = doc;
+            postingWeights[term][size] = weights[i];
+            postingSize[term] = size + 1;
+        }
+    }
+}
@@ -0,0 +1,447 @@
+package util;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+/**
+ * Rastreamento (tracing) leve das requisições.
+ *
+ * Cada requisição amostrada abre um span raiz; DAOs, TMDB e IA abrem spans
+ * filhos do span corrente da thread. Em chamadas assíncronas o span corrente
+ * é capturado na chamada e restaurado quando o futuro termina (ver
+ * {@link #propagate}). Spans finalizados vão para uma fila e são exportados
+ * em lotes no formato OTLP/JSON, para um arquivo (uma linha por lote) e/ou
+ * para um coletor OTLP/HTTP. Sem amostragem, nenhum span é criado.
+ */
+public final class Tracing {
+
+    private static final int QUEUE_CAPACITY = 4096;
+    private static final int BATCH_SIZE = 512;
+    private static final String SERVICE_NAME = "flixmate-backend";
+
+    private static final ThreadLocal<Span> current = new ThreadLocal<>();
+    private static final ArrayBlockingQueue<Span> finished = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private static final LongAdder dropped = new LongAdder();
+
+    private static volatile double sampleRate = 0;
+    private static volatile Path exportFile;
+    private static volatile URI collectorEndpoint;
+    private static HttpClient collectorClient;
+    private static Thread exporter;
+
+    static {
+        Metrics.counter("flixmate_trace_spans_dropped_total", "Spans descartados com a fila de exportação cheia",
+                dropped::sum);
+    }
+
+    private Tracing() {
+    }
+
+    /**
+     * Configura a amostragem e os destinos dos spans. Sem nenhum destino o
+     * tracing fica desligado.
+     *
+     * @param rate              Fração das requisições amostradas (0 a 1)
+     * @param file              Arquivo de saída (OTLP/JSON, um lote por linha) ou null
+     * @param collectorEndpoint URL OTLP/HTTP do coletor (ex.: http://collector:4318/v1/traces) ou null
+     */
+    public static synchronized void configure(double rate, String file, String collectorEndpoint) {
+        Tracing.exportFile = file == null || file.isBlank() ? null : Path.of(file);
+        Tracing.collectorEndpoint = collectorEndpoint == null || collectorEndpoint.isBlank() ? null
+                : URI.create(collectorEndpoint);
+        boolean hasSink = Tracing.exportFile != null || Tracing.collectorEndpoint != null;
+        Tracing.sampleRate = hasSink ? Math.max(0, Math.min(1, rate)) : 0;
+
+        if (Tracing.collectorEndpoint != null && collectorClient == null) {
+            collectorClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(2)).build();
+        }
+        if (sampleRate > 0 && exporter == null) {
+            exporter = new Thread(Tracing::exportLoop, "trace-exporter");
+            exporter.setDaemon(true);
+            exporter.start();
+            Log.info("[🔎:🟢] TRACING ON: [amostragem: {}, arquivo: {}, coletor: {}]", sampleRate, exportFile,
+                    Tracing.collectorEndpoint);
+        }
+    }
+
+    public static boolean isEnabled() {
+        return sampleRate > 0;
+    }
+
+    /**
+     * Abre o span raiz de uma requisição e o torna o span corrente da thread
+     *
+     * @param name        Nome do span
+     * @param traceparent Cabeçalho traceparent recebido (W3C) ou null
+     * @return O span, ou null se a requisição não foi amostrada
+     */
+    public static Span startRequest(String name, String traceparent) {
+        if (sampleRate <= 0) {
+            return null;
+        }
+
+        String traceId = null;
+        String parentId = null;
+        boolean sampled;
+        if (traceparent != null && traceparent.length() == 55 && traceparent.startsWith("00-")) {
+            // Continua o trace de quem chamou, respeitando a decisão de amostragem
+            traceId = traceparent.substring(3, 35);
+            parentId = traceparent.substring(36, 52);
+            sampled = traceparent.endsWith("-01");
+        } else {
+            sampled = ThreadLocalRandom.current().nextDouble() < sampleRate;
+        }
+        if (!sampled) {
+            return null;
+        }
+
+        Span span = new Span(name, traceId != null ? traceId : newId(16), parentId, "SERVER");
+        span.previous = current.get();
+        current.set(span);
+        return span;
+    }
+
+    /**
+     * Abre um span filho do span corrente e o torna o corrente até close()
+     *
+     * @param name Nome do span
+     * @return O span, ou null se não houver requisição amostrada na thread
+     */
+    public static Span start(String name) {
+        Span parent = current.get();
+        if (parent == null) {
+            return null;
+        }
+        Span span = new Span(name, parent.traceId, parent.spanId, "INTERNAL");
+        span.previous = parent;
+        current.set(span);
+        return span;
+    }
+
+    /**
+     * Abre um span filho do corrente sem alterar o span corrente da thread
+     * (para operações assíncronas, encerradas em outra thread)
+     *
+     * @param name Nome do span
+     * @return O span, ou null se não houver requisição amostrada na thread
+     */
+    public static Span startDetached(String name) {
+        Span parent = current.get();
+        if (parent == null) {
+            return null;
+        }
+        Span span = new Span(name, parent.traceId, parent.spanId, "CLIENT");
+        span.detached = true;
+        return span;
+    }
+
+    /**
+     * Span corrente da thread
+     */
+    public static Span current() {
+        return current.get();
+    }
+
+    /**
+     * Remove o span corrente da thread sem encerrá-lo (ex.: requisição
+     * suspensa, que termina em outra thread)
+     */
+    public static void clear() {
+        current.remove();
+    }
+
+    /**
+     * Cabeçalho traceparent (W3C) do span corrente, para repassar a outros serviços
+     *
+     * @return O valor do cabeçalho ou null se não houver span corrente
+     */
+    public static String traceparent() {
+        Span span = current.get();
+        return span == null ? null : span.traceparent();
+    }
+
+    /**
+     * Faz com que os estágios encadeados no futuro rodem com o span corrente
+     * de quem chamou, mesmo que o futuro termine em outra thread
+     *
+     * @param future Futuro original
+     * @return Futuro que termina junto com o original, no contexto capturado
+     */
+    public static <T> CompletableFuture<T> propagate(CompletableFuture<T> future) {
+        Span captured = current.get();
+        if (captured == null) {
+            return future;
+        }
+
+        CompletableFuture<T> relay = new CompletableFuture<>();
+        future.whenComplete((value, error) -> {
+            Span previous = current.get();
+            current.set(captured);
+            try {
+                if (error != null) {
+                    relay.completeExceptionally(error);
+                } else {
+                    relay.complete(value);
+                }
+            } finally {
+                if (previous == null) {
+                    current.remove();
+                } else {
+                    current.set(previous);
+                }
+            }
+        });
+        return relay;
+    }
+
+    private static String newId(int bytes) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        StringBuilder sb = new StringBuilder(bytes * 2);
+        for (int i = 0; i < bytes; i += 8) {
+            String hex = Long.toHexString(random.nextLong());
+            for (int pad = hex.length(); pad < 16; pad++) {
+                sb.append('0');
+            }
+            sb.append(hex);
+        }
+        return sb.toString();
+    }
+
+    private static void exportLoop() {
+        List<Span> batch = new ArrayList<>(BATCH_SIZE);
+        while (true) {
+            try {
+                Span first = finished.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                finished.drainTo(batch, BATCH_SIZE - 1);
+                export(toOtlp(batch));
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                Log.warn("[🔎:🔴] TRACE EXPORT ERROR: {}", e.getMessage());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private static void export(String payload) throws IOException, InterruptedException {
+        Path file = exportFile;
+        if (file != null) {
+            Files.writeString(file, payload + "\n", StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                    StandardOpenOption.APPEND);
+        }
+
+        URI endpoint = collectorEndpoint;
+        if (endpoint != null) {
+            HttpRequest request = HttpRequest.newBuilder(endpoint)
+                    .timeout(Duration.ofSeconds(5))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(payload))
+                    .build();
+            HttpResponse<Void> response = collectorClient.send(request, HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() >= 400) {
+                Log.warn("[🔎:🔴] TRACE EXPORT ERROR: coletor respondeu HTTP {}", response.statusCode());
+            }
+        }
+    }
+
+    private static String toOtlp(List<Span> batch) {
+        JsonArray spans = new JsonArray();
+        for (Span span : batch) {
+            spans.add(span.toOtlp());
+        }
+
+        JsonObject scope = new JsonObject();
+        scope.addProperty("name", "flixmate");
+        JsonObject scopeSpans = new JsonObject();
+        scopeSpans.add("scope", scope);
+        scopeSpans.add("spans", spans);
+        JsonArray scopeSpansArray = new JsonArray();
+        scopeSpansArray.add(scopeSpans);
+
+        JsonArray resourceAttributes = new JsonArray();
+        resourceAttributes.add(attribute("service.name", SERVICE_NAME));
+        JsonObject resource = new JsonObject();
+        resource.add("attributes", resourceAttributes);
+
+        JsonObject resourceSpans = new JsonObject();
+        resourceSpans.add("resource", resource);
+        resourceSpans.add("scopeSpans", scopeSpansArray);
+        JsonArray resourceSpansArray = new JsonArray();
+        resourceSpansArray.add(resourceSpans);
+
+        JsonObject root = new JsonObject();
+        root.add("resourceSpans", resourceSpansArray);
+        return root.toString();
+    }
+
+    private static JsonObject attribute(String key, Object value) {
+        JsonObject wrapped = new JsonObject();
+        if (value instanceof Integer || value instanceof Long) {
+            wrapped.addProperty("intValue", value.toString());
+        } else if (value instanceof Number) {
+            wrapped.addProperty("doubleValue", (Number) value);
+        } else if (value instanceof Boolean) {
+            wrapped.addProperty("boolValue", (Boolean) value);
+        } else {
+            wrapped.addProperty("stringValue", String.valueOf(value));
+        }
+
+        JsonObject attribute = new JsonObject();
+        attribute.addProperty("key", key);
+        attribute.add("value", wrapped);
+        return attribute;
+    }
+
+    /**
+     * Um span. close() encerra o span e, se ele era o corrente, restaura o anterior.
+     */
+    public static final class Span implements AutoCloseable {
+        private final String traceId;
+        private final String spanId;
+        private final String parentId;
+        private final String kind;
+        private final long startEpochNanos;
+        private final long startNanos;
+        private String name;
+        private Map<String, Object> attributes;
+        private String errorMessage;
+        private long endEpochNanos;
+        private Span previous;
+        private boolean detached;
+        private boolean ended;
+
+        private Span(String name, String traceId, String parentId, String kind) {
+            this.name = name;
+            this.traceId = traceId;
+            this.spanId = newId(8);
+            this.parentId = parentId;
+            this.kind = kind;
+            this.startEpochNanos = System.currentTimeMillis() * 1_000_000L;
+            this.startNanos = System.nanoTime();
+        }
+
+        public String getTraceId() {
+            return traceId;
+        }
+
+        /**
+         * Cabeçalho traceparent (W3C) que identifica este span como pai
+         */
+        public String traceparent() {
+            return "00-" + traceId + "-" + spanId + "-01";
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public Span setAttribute(String key, Object value) {
+            if (attributes == null) {
+                attributes = new LinkedHashMap<>();
+            }
+            attributes.put(key, value);
+            return this;
+        }
+
+        public void setError(Throwable error) {
+            this.errorMessage = String.valueOf(error.getMessage());
+        }
+
+        /**
+         * Encerra o span e o envia para exportação
+         */
+        public void end() {
+            synchronized (this) {
+                if (ended) {
+                    return;
+                }
+                ended = true;
+            }
+            endEpochNanos = startEpochNanos + (System.nanoTime() - startNanos);
+            if (!finished.offer(this)) {
+                dropped.increment();
+            }
+        }
+
+        /**
+         * Encerra o span de uma chamada HTTP, com o status ou o erro
+         *
+         * @param response Resposta recebida (null em caso de erro)
+         * @param error    Erro da chamada ou null
+         */
+        public void end(HttpResponse<?> response, Throwable error) {
+            if (error != null) {
+                setError(error);
+            } else {
+                setAttribute("http.status_code", response.statusCode());
+            }
+            end();
+        }
+
+        @Override
+        public void close() {
+            end();
+            if (!detached && current.get() == this) {
+                if (previous == null) {
+                    current.remove();
+                } else {
+                    current.set(previous);
+                }
+            }
+        }
+
+        private JsonObject toOtlp() {
+            JsonObject json = new JsonObject();
+            json.addProperty("traceId", traceId);
+            json.addProperty("spanId", spanId);
+            if (parentId != null) {
+                json.addProperty("parentSpanId", parentId);
+            }
+            json.addProperty("name", name);
+            // SPAN_KIND_INTERNAL = 1, SERVER = 2, CLIENT = 3
+            json.addProperty("kind", "SERVER".equals(kind) ? 2 : "CLIENT".equals(kind) ? 3 : 1);
+            json.addProperty("startTimeUnixNano", Long.toString(startEpochNanos));
+            json.addProperty("endTimeUnixNano", Long.toString(endEpochNanos));
+
+            JsonArray attributesJson = new JsonArray();
+            if (attributes != null) {
+                attributes.forEach((key, value) -> attributesJson.add(attribute(key, value)));
+            }
+            json.add("attributes", attributesJson);
+
+            JsonObject status = new JsonObject();
+            if (errorMessage != null) {
+                // STATUS_CODE_ERROR = 2
+                status.addProperty("code", 2);
+                status.addProperty("message", errorMessage);
+            }
+            json.add("status", status);
+            return json;
+        }
+    }
+}
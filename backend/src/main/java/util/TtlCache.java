@@ -0,0 +1,99 @@
+package util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Cache de leitura com validade curta ({@link LruCache} + TTL).
+ *
+ * Quando várias threads pedem a mesma chave ausente ao mesmo tempo, só a
+ * primeira executa o carregamento ({@link SingleFlight}); as outras esperam e
+ * recebem o mesmo resultado (ou a mesma exceção). {@link #invalidate()}
+ * descarta tudo, inclusive resultados de carregamentos que começaram antes
+ * dela.
+ *
+ * @param <K> Tipo da chave (precisa de equals/hashCode)
+ * @param <V> Tipo do valor
+ */
+public final class TtlCache<K, V> {
+
+    private static final Metrics.Counter EXPIRED = Metrics.counter(
+            "flixmate_cache_expired_total",
+            "Itens encontrados vencidos (TTL ou invalidação) nos caches em memória",
+            "cache");
+
+    private static final class Entry<V> {
+        final V value;
+        final long expiresAtNanos;
+        final long generation;
+
+        Entry(V value, long expiresAtNanos, long generation) {
+            this.value = value;
+            this.expiresAtNanos = expiresAtNanos;
+            this.generation = generation;
+        }
+    }
+
+    private final String name;
+    private final long ttlNanos;
+    private final LruCache<K, Entry<V>> entries;
+    private final SingleFlight<K, V> loads;
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Construtor do cache
+     *
+     * @param name      Nome do cache (label das métricas)
+     * @param maxSize   Quantidade máxima de itens
+     * @param ttlMillis Validade de cada item, em milissegundos
+     */
+    public TtlCache(String name, int maxSize, long ttlMillis) {
+        this.name = name;
+        this.ttlNanos = Math.max(1, ttlMillis) * 1_000_000L;
+        this.entries = new LruCache<>(name, maxSize);
+        this.loads = new SingleFlight<>(name);
+    }
+
+    /**
+     * Busca um item, carregando-o se estiver ausente ou vencido
+     *
+     * @param key    Chave do item
+     * @param loader Carrega o valor (executado por uma só thread por chave)
+     * @return O valor; resultados nulos são repassados, mas não guardados
+     */
+    public V get(K key, Supplier<V> loader) {
+        Entry<V> entry = entries.get(key);
+        if (entry != null) {
+            if (entry.generation == generation.get() && System.nanoTime() - entry.expiresAtNanos < 0) {
+                return entry.value;
+            }
+            EXPIRED.inc(name);
+            entries.remove(key);
+        }
+
+        return loads.execute(key, () -> {
+            long startedAt = generation.get();
+            V value = loader.get();
+            if (value != null && startedAt == generation.get()) {
+                entries.put(key, new Entry<>(value, System.nanoTime() + ttlNanos, startedAt));
+            }
+            return value;
+        });
+    }
+
+    /**
+     * Descarta todos os itens; carregamentos em andamento não serão guardados
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+        loads.forgetAll();
+        entries.clear();
+    }
+
+    /**
+     * Quantidade atual de itens (inclui itens vencidos ainda não descartados)
+     */
+    public int size() {
+        return entries.size();
+    }
+}